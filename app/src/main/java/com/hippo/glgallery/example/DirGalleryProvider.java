@@ -17,44 +17,68 @@
 package com.hippo.glgallery.example;
 
 import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.os.Process;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.hippo.glgallery.CancellationToken;
+import com.hippo.glgallery.DecodeScheduler;
 import com.hippo.glgallery.GalleryProvider;
+import com.hippo.glgallery.MappedImageCache;
 import com.hippo.image.Image;
 import com.hippo.image.ImageData;
+import com.hippo.image.ImageRenderer;
 import com.hippo.unifile.FilenameFilter;
 import com.hippo.unifile.UniFile;
 import com.hippo.yorozuya.IOUtils;
 import com.hippo.yorozuya.StringUtils;
 import com.hippo.yorozuya.thread.PriorityThread;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Stack;
-import java.util.concurrent.atomic.AtomicInteger;
 
-public class DirGalleryProvider extends GalleryProvider implements Runnable {
+public class DirGalleryProvider extends GalleryProvider implements Runnable, DecodeScheduler.Decoder {
 
     private static final String TAG = DirGalleryProvider.class.getSimpleName();
 
-    private static final int INVALID_INDEX = -1;
+    private static final String GIF_MIME_TYPE = "image/gif";
+    // Pages smaller than it in decoded pixels are fast enough without preview
+    private static final long PREVIEW_MIN_PIXELS = 1024 * 1024;
+    // The preview is decoded in 1 / 8 of the size of the page
+    private static final int PREVIEW_SAMPLE_FACTOR = 8;
+    private static final long DISK_CACHE_SIZE = 256 * 1024 * 1024;
 
     private final Resources mResources;
     private final UniFile mDir;
-    private final Stack<Integer> mRequests = new Stack<>();
-    private final AtomicInteger mDecodingIndex = new AtomicInteger(INVALID_INDEX);
+    @Nullable
+    private final File mCacheDir;
+    private final DecodeScheduler mScheduler;
+    private final DecodeScheduler mThumbScheduler;
     @Nullable
     private Thread mBgThread;
+    private volatile UniFile[] mFiles;
     private volatile int mSize = STATE_WAIT;
     private String mError;
 
-    public DirGalleryProvider(@NonNull Resources resources, @NonNull UniFile dir) {
+    /**
+     * @param cacheDir the directory to keep decoded pages in, {@code null} for no disk cache
+     */
+    public DirGalleryProvider(@NonNull Resources resources, @NonNull UniFile dir,
+            @Nullable File cacheDir) {
         mResources = resources;
         mDir = dir;
+        mCacheDir = cacheDir;
+        mScheduler = new DecodeScheduler(TAG, DecodeScheduler.getSuggestedWorkerCount(),
+                Process.THREAD_PRIORITY_BACKGROUND, this);
+        // Thumbnails are cheap, one worker is enough
+        mThumbScheduler = new DecodeScheduler(TAG + "-Thumb", 1,
+                Process.THREAD_PRIORITY_BACKGROUND, new ThumbDecoder());
     }
 
     @Override
@@ -73,6 +97,8 @@ public class DirGalleryProvider extends GalleryProvider implements Runnable {
             mBgThread.interrupt();
             mBgThread = null;
         }
+        mScheduler.stop();
+        mThumbScheduler.stop();
     }
 
     @Override
@@ -89,26 +115,55 @@ public class DirGalleryProvider extends GalleryProvider implements Runnable {
     protected void onRequestChapter(int chapter) {}
 
     @Override
-    protected void onRequest(int chapter, int index) {
-        synchronized (mRequests) {
-            if (!mRequests.contains(index) && index != mDecodingIndex.get()) {
-                mRequests.add(index);
-                mRequests.notify();
-            }
-        }
+    protected void onRequest(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {
+        mScheduler.request(chapter, index, targetWidth, targetHeight, true, token);
         notifyPageWait(chapter, index);
     }
 
     @Override
-    protected void onForceRequest(int chapter, int index) {
-        onRequest(chapter, index);
+    protected void onForceRequest(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {
+        onRequest(chapter, index, targetWidth, targetHeight, token);
+    }
+
+    @Override
+    protected void onRequestOrigin(int chapter, int index, CancellationToken token) {
+        // Keep the page in view, no wait
+        mScheduler.request(chapter, index, 0, 0, true, token);
     }
 
     @Override
     public void onCancelRequest(int chapter, int index) {
-        synchronized (mRequests) {
-            mRequests.remove(Integer.valueOf(index));
-        }
+        // The scheduler drops pages with cancelled tokens,
+        // a page still prefetched is kept
+    }
+
+    @Override
+    protected void onPrefetch(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {
+        mScheduler.request(chapter, index, targetWidth, targetHeight, false, token);
+    }
+
+    @Override
+    protected void onCancelPrefetch(int chapter, int index) {
+        // The scheduler drops pages with cancelled tokens
+    }
+
+    @Override
+    protected void onSetCurrentPage(int chapter, int index) {
+        mScheduler.setCurrentPage(chapter, index);
+        mThumbScheduler.setCurrentPage(chapter, index);
+    }
+
+    @Override
+    protected void onRequestThumb(int chapter, int index, int size) {
+        mThumbScheduler.request(chapter, index, size, size, true);
+    }
+
+    @Override
+    protected void onCancelThumb(int chapter, int index) {
+        mThumbScheduler.cancel(chapter, index);
     }
 
     @Override
@@ -148,49 +203,247 @@ public class DirGalleryProvider extends GalleryProvider implements Runnable {
             return;
         }
 
-        while (!Thread.currentThread().isInterrupted()) {
-            final int index;
-            synchronized (mRequests) {
-                if (mRequests.isEmpty()) {
-                    try {
-                        mRequests.wait();
-                    } catch (InterruptedException e) {
-                        // Interrupted
-                        break;
-                    }
-                    continue;
+        // Pages of each directory are kept apart, the key is only the index
+        if (mCacheDir != null) {
+            final File cacheDir = new File(mCacheDir,
+                    Integer.toHexString(mDir.getUri().toString().hashCode()));
+            setDiskCache(new MappedImageCache(cacheDir, DISK_CACHE_SIZE, new BitmapCodec()));
+        }
+
+        // Start decoding
+        mFiles = files;
+        if (!Thread.currentThread().isInterrupted()) {
+            mScheduler.start();
+            mThumbScheduler.start();
+        }
+    }
+
+    @Override
+    public void decode(int chapter, int index, int targetWidth, int targetHeight,
+            @Nullable CancellationToken token) {
+        final UniFile[] files = mFiles;
+
+        // Check index valid
+        if (index < 0 || index >= files.length) {
+            notifyPageFailed(chapter, index, mResources.getString(R.string.out_of_range), token);
+            return;
+        }
+
+        // Decoded before, no need to decode again
+        if (readDiskCache(chapter, index, targetWidth, targetHeight, token)) {
+            return;
+        }
+
+        final UniFile file = files[index];
+        InputStream is = null;
+        try {
+            // Read the size first to choose how to decode
+            final BitmapFactory.Options bounds = decodeBounds(file, token);
+            if (token != null && token.isCancelled()) {
+                return;
+            }
+
+            final boolean gif = GIF_MIME_TYPE.equals(bounds.outMimeType);
+            final boolean tile = !gif && shouldTile(bounds.outWidth, bounds.outHeight);
+            int sampleSize = computeSampleSize(bounds.outWidth, bounds.outHeight,
+                    targetWidth, targetHeight);
+
+            // A coarse pass is shown until the page is done, if no thumbnail
+            if (!tile && (long) bounds.outWidth * bounds.outHeight / sampleSize / sampleSize
+                    >= PREVIEW_MIN_PIXELS && peekThumb(chapter, index) == null) {
+                decodePreview(file, chapter, index, sampleSize * PREVIEW_SAMPLE_FACTOR, token);
+                if (token != null && token.isCancelled()) {
+                    return;
+                }
+            }
+
+            is = openInputStream(file, token);
+            if (tile) {
+                // Too tall, only tiles on screen are decoded
+                final PageRegionDecoder decoder = PageRegionDecoder.newInstance(is);
+                if (decoder == null) {
+                    notifyPageFailed(chapter, index,
+                            mResources.getString(R.string.decoding_failed), token);
+                } else if (token != null && token.isCancelled()) {
+                    decoder.recycle();
+                } else {
+                    notifyPageTiled(chapter, index, decoder, token);
+                }
+                return;
+            }
+
+            final ImageData image;
+            if (sampleSize == 1 || bounds.outWidth <= 0 || gif) {
+                // Image keeps animation, but it can't decode with sample size
+                sampleSize = 1;
+                image = Image.decode(is, false);
+            } else {
+                image = decodeBitmap(is, sampleSize);
+            }
+
+            if (token != null && token.isCancelled()) {
+                // Nobody wants it now
+                if (image != null) {
+                    image.recycle();
                 }
-                index = mRequests.pop();
-                mDecodingIndex.lazySet(index);
+            } else if (image != null) {
+                notifyPageSucceed(chapter, index, image, sampleSize, token);
+            } else {
+                notifyPageFailed(chapter, index, mResources.getString(R.string.decoding_failed),
+                        token);
+            }
+        } catch (IOException e) {
+            if (token == null || !token.isCancelled()) {
+                notifyPageFailed(chapter, index, mResources.getString(R.string.reading_failed),
+                        token);
+            }
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    private void decodePreview(@NonNull UniFile file, int chapter, int index, int sampleSize,
+            @Nullable CancellationToken token) throws IOException {
+        final InputStream is = openInputStream(file, token);
+        try {
+            final ImageData preview = decodeBitmap(is, sampleSize);
+            if (preview == null) {
+                return;
+            }
+            if (token != null && token.isCancelled()) {
+                preview.recycle();
+            } else {
+                notifyPagePreview(chapter, index, preview, sampleSize);
+            }
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    private static BitmapFactory.Options decodeBounds(@NonNull UniFile file,
+            @Nullable CancellationToken token) throws IOException {
+        final InputStream is = openInputStream(file, token);
+        try {
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(is, null, options);
+            return options;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    private static InputStream openInputStream(@NonNull UniFile file,
+            @Nullable CancellationToken token) throws IOException {
+        final InputStream is = file.openInputStream();
+        // Reading stops once the page is cancelled
+        return token != null ? token.wrap(is) : is;
+    }
+
+    // Decode in 1 / sampleSize of original size, null for failed
+    @Nullable
+    private static ImageData decodeBitmap(@NonNull InputStream is, int sampleSize) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        final Bitmap bitmap = BitmapFactory.decodeStream(is, null, options);
+        if (bitmap == null) {
+            return null;
+        }
+        try {
+            return Image.create(bitmap);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    @Override
+    public void onDecodeFailed(int chapter, int index, @NonNull Throwable e,
+            @Nullable CancellationToken token) {
+        notifyPageFailed(chapter, index, mResources.getString(R.string.decoding_failed), token);
+    }
+
+    /**
+     * Stores pages as ARGB_8888 pixels, the format of {@link Bitmap#copyPixelsToBuffer(java.nio.Buffer)}.
+     */
+    private static class BitmapCodec implements MappedImageCache.Codec {
+
+        @Override
+        public int getByteCount(@NonNull ImageData image) {
+            // Only the first frame could be stored
+            if (image.getFrameCount() != 1) {
+                return 0;
+            }
+            return image.getWidth() * image.getHeight() * 4;
+        }
+
+        @Override
+        public boolean encode(@NonNull ImageData image, @NonNull ByteBuffer buffer) {
+            final int width = image.getWidth();
+            final int height = image.getHeight();
+            final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            final ImageRenderer renderer = image.createImageRenderer();
+            try {
+                renderer.render(bitmap, 0, 0, 0, 0, width, height, 1, false, 0);
+                bitmap.copyPixelsToBuffer(buffer);
+                return true;
+            } finally {
+                renderer.recycle();
+                bitmap.recycle();
+            }
+        }
+
+        @Nullable
+        @Override
+        public ImageData decode(@NonNull ByteBuffer buffer, int width, int height) {
+            final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            try {
+                bitmap.copyPixelsFromBuffer(buffer);
+                return Image.create(bitmap);
+            } catch (RuntimeException e) {
+                // The file is shorter than the size
+                return null;
+            } finally {
+                bitmap.recycle();
             }
+        }
+    }
+
+    private class ThumbDecoder implements DecodeScheduler.Decoder {
 
-            // Check index valid
+        @Override
+        public void decode(int chapter, int index, int targetWidth, int targetHeight,
+                @Nullable CancellationToken token) {
+            final UniFile[] files = mFiles;
             if (index < 0 || index >= files.length) {
-                mDecodingIndex.lazySet(INVALID_INDEX);
-                notifyPageFailed(0, index, mResources.getString(R.string.out_of_range));
-                continue;
+                return;
             }
 
+            final UniFile file = files[index];
             InputStream is = null;
             try {
-                is = files[index].openInputStream();
-                final ImageData image = Image.decode(is, false);
-                mDecodingIndex.lazySet(INVALID_INDEX);
+                final BitmapFactory.Options bounds = decodeBounds(file, null);
+                // Not smaller than the size in both width and height
+                final int sampleSize = Math.min(
+                        computeSampleSize(bounds.outWidth, bounds.outHeight, targetWidth, 0),
+                        computeSampleSize(bounds.outWidth, bounds.outHeight, 0, targetHeight));
+                is = openInputStream(file, null);
+                final ImageData image = decodeBitmap(is, sampleSize);
                 if (image != null) {
-                    notifyPageSucceed(0, index, image);
-                } else {
-                    notifyPageFailed(0, index, mResources.getString(R.string.decoding_failed));
+                    notifyThumbSucceed(chapter, index, image, sampleSize);
                 }
             } catch (IOException e) {
-                mDecodingIndex.lazySet(INVALID_INDEX);
-                notifyPageFailed(0, index, mResources.getString(R.string.reading_failed));
+                // Pages are shown without thumbnails
             } finally {
                 IOUtils.closeQuietly(is);
             }
-            mDecodingIndex.lazySet(INVALID_INDEX);
         }
-    }
 
+        @Override
+        public void onDecodeFailed(int chapter, int index, @NonNull Throwable e,
+                @Nullable CancellationToken token) {
+            // Pages are shown without thumbnails
+        }
+    }
 
     private static class Filter implements FilenameFilter {
 
@@ -39,7 +39,8 @@ public class MainActivity extends GLActivity implements GalleryView.Listener {
         final GLRoot glRoot = getGLRoot();
 
         mGalleryProvider = new DirGalleryProvider(getResources(),
-                UniFile.fromFile(new File(Environment.getExternalStorageDirectory(), "GLGallery")));
+                UniFile.fromFile(new File(Environment.getExternalStorageDirectory(), "GLGallery")),
+                new File(getCacheDir(), "pages"));
         mAdapter = new ProviderAdapter(glRoot, mGalleryProvider, 0, 3);
         mAdapter.setShowIndex(true);
         mAdapter.setClipMode(ProviderAdapter.CLIP_RIGHT_LEFT);
@@ -83,6 +84,16 @@ public class MainActivity extends GLActivity implements GalleryView.Listener {
         mAdapter.clearUploader();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        final ProviderAdapter adapter = mAdapter;
+        if (adapter != null) {
+            adapter.trimMemory(level);
+        }
+    }
+
     @Override
     public void onUpdateCurrentId(long index) {
 
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery.example;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.hippo.glgallery.RegionDecoder;
+import com.hippo.image.Image;
+import com.hippo.image.ImageData;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link RegionDecoder} with {@link BitmapRegionDecoder}.
+ */
+class PageRegionDecoder implements RegionDecoder {
+
+    private final BitmapRegionDecoder mDecoder;
+    private final int mWidth;
+    private final int mHeight;
+
+    private PageRegionDecoder(@NonNull BitmapRegionDecoder decoder) {
+        mDecoder = decoder;
+        mWidth = decoder.getWidth();
+        mHeight = decoder.getHeight();
+    }
+
+    /**
+     * Return {@code null} if the format isn't supported.
+     */
+    @Nullable
+    public static PageRegionDecoder newInstance(@NonNull InputStream is) throws IOException {
+        final BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(is, false);
+        return decoder != null ? new PageRegionDecoder(decoder) : null;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Nullable
+    @Override
+    public ImageData decodeRegion(@NonNull Rect region, int sampleSize) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        final Bitmap bitmap = mDecoder.decodeRegion(region, options);
+        if (bitmap == null) {
+            return null;
+        }
+        try {
+            return Image.create(bitmap);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    @Override
+    public void recycle() {
+        mDecoder.recycle();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import android.graphics.RectF;
+
+import com.hippo.glview.glrenderer.GLCanvas;
+import com.hippo.glview.glrenderer.Texture;
+
+/**
+ * A GLCanvas draws nothing, for rendering views without GL.
+ */
+class BenchmarkGLCanvas implements GLCanvas {
+
+    private float mAlpha = 1.0f;
+
+    @Override
+    public void save() {}
+
+    @Override
+    public void restore() {}
+
+    @Override
+    public void translate(float x, float y) {}
+
+    @Override
+    public void clipRect(int left, int top, int right, int bottom) {}
+
+    @Override
+    public void setAlpha(float alpha) {
+        mAlpha = alpha;
+    }
+
+    @Override
+    public float getAlpha() {
+        return mAlpha;
+    }
+
+    @Override
+    public void fillRect(float x, float y, float width, float height, int color) {}
+
+    @Override
+    public void drawTexture(Texture texture, int x, int y, int width, int height) {}
+
+    @Override
+    public void drawTexture(Texture texture, RectF source, RectF target) {}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import android.content.Context;
+
+import com.hippo.glview.view.GLRoot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A GLRoot without GL thread. Idle listeners and handlers
+ * run when the benchmark calls {@link #runIdle()} and {@link #runHandlers()}.
+ */
+class BenchmarkGLRoot implements GLRoot {
+
+    private final Context mContext = new Context();
+    private final List<OnGLIdleListener> mIdleListeners = new ArrayList<>();
+    private final List<OnGLIdleListener> mRunningListeners = new ArrayList<>();
+    private final List<Handler> mHandlers = new ArrayList<>();
+
+    @Override
+    public synchronized void addOnGLIdleListener(OnGLIdleListener listener) {
+        mIdleListeners.add(listener);
+    }
+
+    @Override
+    public void registerHandler(Handler handler) {
+        mHandlers.add(handler);
+    }
+
+    @Override
+    public void unregisterHandler(Handler handler) {
+        mHandlers.remove(handler);
+    }
+
+    @Override
+    public void requestRender() {}
+
+    @Override
+    public void requestLayoutContentPane() {}
+
+    @Override
+    public Context getContext() {
+        return mContext;
+    }
+
+    public void runIdle() {
+        final List<OnGLIdleListener> listeners = mRunningListeners;
+        synchronized (this) {
+            listeners.addAll(mIdleListeners);
+            mIdleListeners.clear();
+        }
+        for (int i = 0, n = listeners.size(); i < n; i++) {
+            final OnGLIdleListener listener = listeners.get(i);
+            if (listener.onGLIdle(null, false)) {
+                addOnGLIdleListener(listener);
+            }
+        }
+        listeners.clear();
+    }
+
+    public void runHandlers() {
+        for (int i = 0, n = mHandlers.size(); i < n; i++) {
+            mHandlers.get(i).onHandle(null);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import com.hippo.image.ImageData;
+
+/**
+ * A provider with fixed chapters and pages. Requests are dropped,
+ * benchmarks feed pages with notify methods.
+ */
+class BenchmarkProvider extends GalleryProvider {
+
+    private final int mChapterCount;
+    private final int[] mPageCounts;
+
+    public BenchmarkProvider(int chapterCount, int pageCount) {
+        mChapterCount = chapterCount;
+        mPageCounts = new int[chapterCount];
+        for (int i = 0; i < chapterCount; i++) {
+            mPageCounts[i] = pageCount;
+        }
+    }
+
+    @Override
+    public int getChapterCount() {
+        return mChapterCount;
+    }
+
+    @Override
+    public int getPageCount(int chapter) {
+        return mPageCounts[chapter];
+    }
+
+    /**
+     * Change page count of the chapter, like the chapter is reloaded.
+     */
+    public void setPageCount(BenchmarkGLRoot root, int chapter, int pageCount) {
+        mPageCounts[chapter] = pageCount;
+        notifyChapterStateChanged(chapter);
+        root.runIdle();
+    }
+
+    @Override
+    protected void onRequestChapter(int chapter) {}
+
+    @Override
+    protected void onRequest(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {}
+
+    @Override
+    protected void onForceRequest(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {}
+
+    @Override
+    protected void onCancelRequest(int chapter, int index) {}
+
+    @Override
+    public String getError() {
+        return null;
+    }
+
+    @Override
+    public String getError(int chapter) {
+        return null;
+    }
+
+    /**
+     * Put the page to memory cache, like a decoder is done.
+     */
+    public void succeed(BenchmarkGLRoot root, int chapter, int index, ImageData image) {
+        notifyPageSucceed(chapter, index, image);
+        root.runIdle();
+    }
+}
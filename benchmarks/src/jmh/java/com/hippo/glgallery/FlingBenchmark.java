@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class FlingBenchmark {
+
+    private BenchmarkFling mFling;
+    private int mVelocity;
+
+    @Setup
+    public void setup() {
+        mFling = new BenchmarkFling(new Context());
+    }
+
+    @Benchmark
+    public int fling() {
+        mVelocity = mVelocity >= 20000 ? 100 : mVelocity + 97;
+        final BenchmarkFling fling = mFling;
+        final int duration = fling.getSplineFlingDuration(mVelocity);
+        final int distance = (int) fling.getSplineFlingDistance(mVelocity);
+        // Hit the edge at two thirds
+        return fling.adjustDuration(0, distance, distance * 2 / 3, duration);
+    }
+
+    @Benchmark
+    public float interpolate() {
+        final BenchmarkFling fling = mFling;
+        float sum = 0.0f;
+        for (int i = 0; i <= 100; i++) {
+            fling.setStartTime(0);
+            fling.calculate(i * 10);
+            sum += fling.mProgress;
+        }
+        return sum;
+    }
+
+    private static class BenchmarkFling extends Fling {
+
+        private float mProgress;
+
+        public BenchmarkFling(Context context) {
+            super(context);
+            setDuration(1000);
+        }
+
+        @Override
+        protected void onCalculate(float progress) {
+            mProgress = progress;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import com.hippo.image.ImageData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class GalleryProviderBenchmark {
+
+    // More pages than the memory cache holds, puts evict
+    private static final int PAGE_COUNT = 64;
+    // Pages in cache for get
+    private static final int HIT_COUNT = 8;
+
+    private BenchmarkGLRoot mRoot;
+    private BenchmarkProvider mProvider;
+    private ImageData[] mImages;
+    private int mGetIndex;
+    private int mPutIndex;
+
+    @Setup
+    public void setup() {
+        mRoot = new BenchmarkGLRoot();
+        mProvider = new BenchmarkProvider(1, PAGE_COUNT);
+        mProvider.setGLRoot(mRoot);
+        mProvider.setListener(new EmptyListener());
+
+        mImages = new ImageData[PAGE_COUNT];
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            mImages[i] = new ImageData(1080, 1520 + i * 8);
+        }
+        for (int i = 0; i < HIT_COUNT; i++) {
+            mProvider.succeed(mRoot, 0, i, mImages[i]);
+        }
+    }
+
+    @Benchmark
+    public ImageData requestHit() {
+        mGetIndex = (mGetIndex + 1) % HIT_COUNT;
+        return mProvider.request(0, mGetIndex);
+    }
+
+    @Benchmark
+    public ImageData requestMiss() {
+        return mProvider.request(1, 0);
+    }
+
+    // Notify, drain in GL idle and put to cache
+    @Benchmark
+    public void notifyPageSucceed() {
+        mPutIndex = (mPutIndex + 1) % PAGE_COUNT;
+        mProvider.succeed(mRoot, 0, mPutIndex, mImages[mPutIndex]);
+    }
+
+    @Benchmark
+    public void batchPercent() {
+        final GalleryProvider.Batch batch = mProvider.newBatch();
+        for (int i = 0; i < 16; i++) {
+            batch.pagePercent(0, i & 3, i / 16.0f);
+        }
+        batch.submit();
+        mRoot.runIdle();
+    }
+
+    static class EmptyListener implements GalleryProvider.Listener {
+
+        @Override
+        public void onStateChanged() {}
+
+        @Override
+        public void onChapterStateChanged(int chapter) {}
+
+        @Override
+        public void onPageWait(int chapter, int page) {}
+
+        @Override
+        public void onPagePercent(int chapter, int page, float percent) {}
+
+        @Override
+        public void onPageSucceed(int chapter, int page, ImageData image, int sampleSize) {}
+
+        @Override
+        public void onPageTiled(int chapter, int page, RegionDecoder decoder) {}
+
+        @Override
+        public void onPageFailed(int chapter, int page, String error) {}
+
+        @Override
+        public void onThumbSucceed(int chapter, int page, ImageData image, int sampleSize) {}
+
+        @Override
+        public void onPagePreview(int chapter, int page, ImageData image, int sampleSize) {}
+
+        @Override
+        public void onDataChanged(int chapter, int page) {}
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import com.hippo.image.ImageData;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays reading traces on the image cache with each policy.
+ * Compare hit rates with the {@code hits} and {@code misses} counters,
+ * the time is the cost of the policy. Set {@code traceFile} to replay
+ * a recorded trace, see {@link ReadingTrace} for formats. Only current pages,
+ * requests and prefetches of it are replayed.
+ */
+@State(Scope.Thread)
+public class ImageCachePolicyBenchmark {
+
+    private static final int CHAPTER_COUNT = 3;
+    private static final int PAGE_COUNT = 120;
+    // The image cache size of the provider with 2GB memory
+    private static final long CACHE_SIZE = 128 * 1024 * 1024;
+    private static final int PAGE_WIDTH = 1080;
+
+    @Param({"lru", "directional", "tinylfu"})
+    public String policy;
+
+    @Param({"linear", "backtrack", "jump"})
+    public String trace;
+
+    // Replaces trace if set
+    @Param({""})
+    public String traceFile;
+
+    // Pages the cache holds
+    @Param({"19", "5"})
+    public int cachePages;
+
+    private ReadingTrace mTrace;
+    private int mPageHeight;
+
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class Counters {
+        // Requests found in cache
+        public long hits;
+        public long misses;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        mPageHeight = (int) (CACHE_SIZE / cachePages / (PAGE_WIDTH * 4));
+
+        if (!traceFile.isEmpty()) {
+            mTrace = ReadingTrace.read(new File(traceFile));
+            return;
+        }
+        switch (trace) {
+            case "linear":
+                mTrace = ReadingTrace.linear(CHAPTER_COUNT, PAGE_COUNT);
+                break;
+            case "backtrack":
+                mTrace = ReadingTrace.backtrack(CHAPTER_COUNT, PAGE_COUNT);
+                break;
+            case "jump":
+                mTrace = ReadingTrace.jump(CHAPTER_COUNT, PAGE_COUNT);
+                break;
+            default:
+                throw new IllegalStateException("Unknown trace: " + trace);
+        }
+    }
+
+    private ImageCachePolicy newPolicy() {
+        switch (policy) {
+            case "lru":
+                return new LruCachePolicy();
+            case "directional":
+                return new DirectionalCachePolicy();
+            case "tinylfu":
+                return new TinyLfuCachePolicy();
+            default:
+                throw new IllegalStateException("Unknown policy: " + policy);
+        }
+    }
+
+    @Benchmark
+    public void replay(Counters counters) {
+        final BenchmarkGLRoot root = new BenchmarkGLRoot();
+        final BenchmarkProvider provider = new BenchmarkProvider(CHAPTER_COUNT, PAGE_COUNT);
+        provider.setGLRoot(root);
+        provider.setListener(new GalleryProviderBenchmark.EmptyListener());
+        provider.setAdaptiveCacheSize(false);
+        provider.setImageCachePolicy(newPolicy());
+
+        final ReadingTrace trace = mTrace;
+        for (int i = 0, n = trace.size(); i < n; i++) {
+            final int chapter = trace.getChapter(i);
+            final int index = trace.getIndex(i);
+            switch (trace.getEvent(i)) {
+                case ReadingRecorder.EVENT_CURRENT_PAGE:
+                    provider.setCurrentPage(chapter, index);
+                    break;
+                case ReadingRecorder.EVENT_REQUEST:
+                    if (provider.request(chapter, index) != null) {
+                        ++counters.hits;
+                    } else {
+                        ++counters.misses;
+                        provider.succeed(root, chapter, index, new ImageData(PAGE_WIDTH, mPageHeight));
+                    }
+                    break;
+                case ReadingRecorder.EVENT_PREFETCH:
+                    if (!provider.prefetch(chapter, index)) {
+                        provider.succeed(root, chapter, index, new ImageData(PAGE_WIDTH, mPageHeight));
+                    }
+                    break;
+            }
+        }
+        provider.stop();
+    }
+}
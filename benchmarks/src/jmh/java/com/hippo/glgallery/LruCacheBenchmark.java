@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import com.hippo.beerbelly.LruCache;
+import com.hippo.beerbelly.LruCacheHelper;
+import com.hippo.image.ImageData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the boxed beerbelly {@link LruCache} the image cache used before
+ * with {@link LongLruCache}. Gets hit cached pages, puts add new pages
+ * and evict the eldest ones, like reading forward.
+ */
+@State(Scope.Thread)
+public class LruCacheBenchmark {
+
+    private static final int PAGE_WIDTH = 1080;
+    private static final int PAGE_HEIGHT = 1920;
+    private static final int PAGE_SIZE = PAGE_WIDTH * PAGE_HEIGHT * 4;
+
+    // Pages the cache holds
+    @Param({"16", "64"})
+    public int pageCount;
+
+    private LruCache<Long, ImageData> mBoxedCache;
+    private LongLruCache<ImageData> mPrimitiveCache;
+    private ImageData[] mImages;
+    // The next page to put
+    private int mBoxedNext;
+    private int mPrimitiveNext;
+
+    @Setup
+    public void setup() {
+        mBoxedCache = LruCache.create(pageCount * PAGE_SIZE, new BoxedHelper(), false);
+        mPrimitiveCache = new LongLruCache<>(pageCount * PAGE_SIZE, new PrimitiveHelper());
+        mImages = new ImageData[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            final ImageData image = new ImageData(PAGE_WIDTH, PAGE_HEIGHT);
+            mImages[i] = image;
+            mBoxedCache.put(genKey(0, i), image);
+            mPrimitiveCache.put(genKey(0, i), image);
+        }
+        mBoxedNext = pageCount;
+        mPrimitiveNext = pageCount;
+    }
+
+    private static long genKey(int chapter, int index) {
+        return ((long) chapter) << 32 | index;
+    }
+
+    @Benchmark
+    public int getBoxed() {
+        final LruCache<Long, ImageData> cache = mBoxedCache;
+        int hits = 0;
+        for (int i = 0, n = pageCount; i < n; i++) {
+            if (cache.get(genKey(0, i)) != null) {
+                ++hits;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int getPrimitive() {
+        final LongLruCache<ImageData> cache = mPrimitiveCache;
+        int hits = 0;
+        for (int i = 0, n = pageCount; i < n; i++) {
+            if (cache.get(genKey(0, i)) != null) {
+                ++hits;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public void putBoxed() {
+        final int index = mBoxedNext++;
+        mBoxedCache.put(genKey(0, index), mImages[index % pageCount]);
+    }
+
+    @Benchmark
+    public void putPrimitive() {
+        final int index = mPrimitiveNext++;
+        mPrimitiveCache.put(genKey(0, index), mImages[index % pageCount]);
+    }
+
+    private static class BoxedHelper implements LruCacheHelper<Long, ImageData> {
+
+        @Override
+        public int sizeOf(Long key, ImageData value) {
+            return value.getWidth() * value.getHeight() * 4;
+        }
+
+        @Override
+        public ImageData create(Long key) {
+            return null;
+        }
+
+        @Override
+        public void onEntryAdded(Long key, ImageData value) {
+            value.addReference();
+        }
+
+        @Override
+        public void onEntryRemoved(boolean evicted, Long key, ImageData oldValue, ImageData newValue) {
+            oldValue.removeReference();
+        }
+    }
+
+    private static class PrimitiveHelper implements LongLruCache.Helper<ImageData> {
+
+        @Override
+        public int sizeOf(long key, ImageData value) {
+            return value.getWidth() * value.getHeight() * 4;
+        }
+
+        @Override
+        public void onEntryAdded(long key, ImageData value) {
+            value.addReference();
+        }
+
+        @Override
+        public void onEntryRemoved(boolean evicted, long key, ImageData oldValue, ImageData newValue) {
+            oldValue.removeReference();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class PostmanBenchmark {
+
+    // Messages posted in one frame
+    @Param({"1", "16", "256"})
+    public int messageCount;
+
+    private GalleryViewPostman mPostman;
+
+    @Setup
+    public void setup() {
+        final BenchmarkGLRoot root = new BenchmarkGLRoot();
+        final GalleryView galleryView = new GalleryView.Builder(root.getContext(), root).build();
+        // No layout manager, handled methods return soon
+        mPostman = new GalleryViewPostman(galleryView);
+    }
+
+    // Scrolls are coalesced into one message
+    @Benchmark
+    public void postScroll() {
+        final GalleryViewPostman postman = mPostman;
+        for (int i = 0, n = messageCount; i < n; i++) {
+            postman.postOnScroll(1.0f, 2.0f, i, i * 2, 540.0f, 960.0f);
+        }
+        postman.onHandle(null);
+    }
+
+    @Benchmark
+    public void postMixed() {
+        final GalleryViewPostman postman = mPostman;
+        for (int i = 0, n = messageCount; i < n; i++) {
+            switch (i & 3) {
+                case 0:
+                    postman.postOnDown(540.0f, 960.0f);
+                    break;
+                case 1:
+                    postman.postOnScroll(1.0f, 2.0f, i, i * 2, 540.0f, 960.0f);
+                    break;
+                case 2:
+                    postman.postOnFling(1000.0f, 2000.0f);
+                    break;
+                default:
+                    postman.postOnUp();
+                    break;
+            }
+        }
+        postman.onHandle(null);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class ProviderAdapterBenchmark {
+
+    @Param({"1", "50", "5000"})
+    public int chapterCount;
+
+    @Param({"500"})
+    public int pageCount;
+
+    private BenchmarkGLRoot mRoot;
+    private BenchmarkProvider mProvider;
+    private ProviderAdapter mAdapter;
+    private boolean mForward;
+    private int mChapter;
+    private int mIndex;
+
+    @Setup
+    public void setup() {
+        mRoot = new BenchmarkGLRoot();
+        mProvider = new BenchmarkProvider(chapterCount, pageCount);
+        mAdapter = new ProviderAdapter(mRoot, mProvider, chapterCount / 2, 0);
+        // Attach it, data changes go to layout manager
+        final GalleryView galleryView = new GalleryView.Builder(mRoot.getContext(), mRoot).build();
+        galleryView.setAdapter(mAdapter);
+        mForward = true;
+    }
+
+    // Walk to the tail, then back to the head
+    @Benchmark
+    public long nextPrevious() {
+        final ProviderAdapter adapter = mAdapter;
+        if (mForward) {
+            if (adapter.hasNext()) {
+                adapter.next();
+            } else {
+                mForward = false;
+            }
+        } else {
+            if (adapter.hasPrevious()) {
+                adapter.previous();
+            } else {
+                mForward = true;
+            }
+        }
+        return adapter.getCurrentId();
+    }
+
+    @Benchmark
+    public long genId() {
+        if (++mIndex == pageCount) {
+            mIndex = 0;
+            mChapter = (mChapter + 1) % chapterCount;
+        }
+        return ProviderAdapter.genId(mChapter, mIndex, (mIndex & 1) != 0);
+    }
+
+    // A chapter after current chapter is reloaded, head and tail change twice
+    @Benchmark
+    public long chapterStateChanged() {
+        final int chapter = chapterCount - 1;
+        mProvider.setPageCount(mRoot, chapter, GalleryProvider.STATE_WAIT);
+        mProvider.setPageCount(mRoot, chapter, pageCount);
+        return mAdapter.getCurrentId();
+    }
+}
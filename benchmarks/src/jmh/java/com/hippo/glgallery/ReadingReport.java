@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache hit rate, request latency and wasted decodes of a reading trace.
+ * <p>
+ * Latency is from a request missing the cache to the result of the page,
+ * cancelled requests are not counted. A decode is wasted if the page is
+ * cancelled by all views and prefetches before it's done, or if the page
+ * is decoded again later, it was evicted.
+ */
+class ReadingReport {
+
+    // Flags of pages
+    private static final int FLAG_REQUESTED = 0x1;
+    private static final int FLAG_PREFETCHED = 0x2;
+    private static final int FLAG_DECODED = 0x4;
+
+    private int mRequests;
+    private int mHits;
+    private int mPrefetches;
+    private int mPrefetchHits;
+    private int mDecodes;
+    private int mCancelledDecodes;
+    private int mRepeatedDecodes;
+    private long[] mLatencies = new long[64];
+    private int mLatencyCount;
+
+    private ReadingReport() {}
+
+    public static ReadingReport of(ReadingTrace trace) {
+        return of(trace, 1.0f);
+    }
+
+    /**
+     * @param speed times of the speed the trace is recorded in,
+     *        latency is scaled to the normal speed
+     */
+    public static ReadingReport of(ReadingTrace trace, float speed) {
+        final ReadingReport report = new ReadingReport();
+        final Map<Long, Integer> flags = new HashMap<>();
+        // Time of the first request missing cache of pending pages
+        final Map<Long, Long> requestTimes = new HashMap<>();
+
+        for (int i = 0, n = trace.size(); i < n; i++) {
+            final int event = trace.getEvent(i);
+            // The key of page events
+            final Long key = trace.getId(i);
+            final Integer oldFlags = flags.get(key);
+            final int flag = oldFlags != null ? oldFlags : 0;
+            switch (event) {
+                case ReadingRecorder.EVENT_REQUEST:
+                    ++report.mRequests;
+                    if (trace.isHit(i)) {
+                        ++report.mHits;
+                    } else {
+                        flags.put(key, flag | FLAG_REQUESTED);
+                        if (!requestTimes.containsKey(key)) {
+                            requestTimes.put(key, trace.getTime(i));
+                        }
+                    }
+                    break;
+                case ReadingRecorder.EVENT_FORCE_REQUEST:
+                    flags.put(key, flag | FLAG_REQUESTED);
+                    break;
+                case ReadingRecorder.EVENT_PREFETCH:
+                    ++report.mPrefetches;
+                    if (trace.isHit(i)) {
+                        ++report.mPrefetchHits;
+                    } else {
+                        flags.put(key, flag | FLAG_PREFETCHED);
+                    }
+                    break;
+                case ReadingRecorder.EVENT_CANCEL_REQUEST:
+                    flags.put(key, flag & ~FLAG_REQUESTED);
+                    requestTimes.remove(key);
+                    break;
+                case ReadingRecorder.EVENT_CANCEL_PREFETCH:
+                    flags.put(key, flag & ~FLAG_PREFETCHED);
+                    break;
+                case ReadingRecorder.EVENT_PAGE_SUCCEED:
+                case ReadingRecorder.EVENT_PAGE_FAILED: {
+                    ++report.mDecodes;
+                    if ((flag & (FLAG_REQUESTED | FLAG_PREFETCHED)) == 0) {
+                        ++report.mCancelledDecodes;
+                    } else if ((flag & FLAG_DECODED) != 0) {
+                        ++report.mRepeatedDecodes;
+                    }
+                    flags.put(key, event == ReadingRecorder.EVENT_PAGE_SUCCEED ? FLAG_DECODED : 0);
+                    final Long requestTime = requestTimes.remove(key);
+                    if (requestTime != null) {
+                        report.addLatency((long) ((trace.getTime(i) - requestTime) * speed));
+                    }
+                    break;
+                }
+            }
+        }
+        Arrays.sort(report.mLatencies, 0, report.mLatencyCount);
+        return report;
+    }
+
+    private void addLatency(long latency) {
+        if (mLatencyCount == mLatencies.length) {
+            mLatencies = Arrays.copyOf(mLatencies, mLatencyCount * 2);
+        }
+        mLatencies[mLatencyCount++] = latency;
+    }
+
+    public int getRequestCount() {
+        return mRequests;
+    }
+
+    public float getHitRate() {
+        return mRequests == 0 ? 0.0f : (float) mHits / (float) mRequests;
+    }
+
+    public float getPrefetchHitRate() {
+        return mPrefetches == 0 ? 0.0f : (float) mPrefetchHits / (float) mPrefetches;
+    }
+
+    public int getDecodeCount() {
+        return mDecodes;
+    }
+
+    /**
+     * Return the number of decodes done after their pages were cancelled.
+     */
+    public int getCancelledDecodeCount() {
+        return mCancelledDecodes;
+    }
+
+    /**
+     * Return the number of decodes of pages decoded before.
+     */
+    public int getRepeatedDecodeCount() {
+        return mRepeatedDecodes;
+    }
+
+    /**
+     * Return the request latency in milliseconds at the percentile, in [0, 100].
+     */
+    public long getLatency(float percentile) {
+        if (mLatencyCount == 0) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile / 100.0f * mLatencyCount) - 1;
+        return mLatencies[Math.max(0, Math.min(mLatencyCount - 1, index))];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests %d, hit rate %.1f%%, prefetch hit rate %.1f%%%n"
+                        + "latency p50 %dms, p90 %dms, p99 %dms, max %dms%n"
+                        + "decodes %d, wasted %d cancelled, %d repeated",
+                mRequests, getHitRate() * 100, getPrefetchHitRate() * 100,
+                getLatency(50), getLatency(90), getLatency(99), getLatency(100),
+                mDecodes, mCancelledDecodes, mRepeatedDecodes);
+    }
+}
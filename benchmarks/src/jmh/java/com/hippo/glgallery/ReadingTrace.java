@@ -0,0 +1,307 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Events of a reading session, replayed on a provider. Event types
+ * are the ones of {@link ReadingRecorder}.
+ * <p>
+ * A trace file is a stream written by {@link ReadingRecorder}, or a text file.
+ * In a text file, each line is an event, {@code c}, {@code r} or {@code p}
+ * for current page, request or prefetch, then chapter and index, like
+ * {@code r 0 12}. Empty lines and lines starting with {@code #} are ignored.
+ * Events in a text file have no time.
+ */
+class ReadingTrace {
+
+    // Pages prefetched ahead of the current one in synthetic traces
+    private static final int PREFETCH = 5;
+
+    private long[] mTimes = new long[64];
+    private int[] mEvents = new int[64];
+    // Chapter, high bits of id, or velocity x
+    private int[] mArgs0 = new int[64];
+    // Index, low bits of id, or velocity y
+    private int[] mArgs1 = new int[64];
+    private boolean[] mHits = new boolean[64];
+    private int mSize;
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Return the time of the event in milliseconds since the first one.
+     */
+    public long getTime(int i) {
+        return mTimes[i];
+    }
+
+    @ReadingRecorder.Event
+    public int getEvent(int i) {
+        return mEvents[i];
+    }
+
+    public int getChapter(int i) {
+        return mArgs0[i];
+    }
+
+    public int getIndex(int i) {
+        return mArgs1[i];
+    }
+
+    public long getId(int i) {
+        return ((long) mArgs0[i]) << 32 | (mArgs1[i] & 0xffffffffL);
+    }
+
+    public int getVelocityX(int i) {
+        return mArgs0[i];
+    }
+
+    public int getVelocityY(int i) {
+        return mArgs1[i];
+    }
+
+    /**
+     * Return {@code true} if the page of the request or prefetch was in cache.
+     */
+    public boolean isHit(int i) {
+        return mHits[i];
+    }
+
+    void add(long time, @ReadingRecorder.Event int event, int arg0, int arg1, boolean hit) {
+        if (mSize == mEvents.length) {
+            final int capacity = mSize * 2;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mEvents = Arrays.copyOf(mEvents, capacity);
+            mArgs0 = Arrays.copyOf(mArgs0, capacity);
+            mArgs1 = Arrays.copyOf(mArgs1, capacity);
+            mHits = Arrays.copyOf(mHits, capacity);
+        }
+        mTimes[mSize] = time;
+        mEvents[mSize] = event;
+        mArgs0[mSize] = arg0;
+        mArgs1[mSize] = arg1;
+        mHits[mSize] = hit;
+        ++mSize;
+    }
+
+    private void add(@ReadingRecorder.Event int event, int chapter, int index) {
+        add(0, event, chapter, index, false);
+    }
+
+    // Read the page, like ProviderAdapter does
+    private void read(int chapter, int index, int direction, int pageCount) {
+        add(ReadingRecorder.EVENT_CURRENT_PAGE, chapter, index);
+        add(ReadingRecorder.EVENT_REQUEST, chapter, index);
+        for (int i = 1; i <= PREFETCH; i++) {
+            final int prefetch = index + i * direction;
+            if (prefetch >= 0 && prefetch < pageCount) {
+                add(ReadingRecorder.EVENT_PREFETCH, chapter, prefetch);
+            }
+        }
+    }
+
+    public static ReadingTrace read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            in.mark(4);
+            int magic = 0;
+            try {
+                magic = in.readInt();
+            } catch (EOFException e) {
+                // Not a binary trace
+            }
+            if (magic == ReadingRecorder.MAGIC) {
+                in.reset();
+                return readBinary(in);
+            }
+        }
+        return readText(file);
+    }
+
+    /**
+     * Read a stream written by {@link ReadingRecorder}.
+     */
+    public static ReadingTrace readBinary(DataInputStream in) throws IOException {
+        if (in.readInt() != ReadingRecorder.MAGIC) {
+            throw new IOException("Not a reading trace");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != ReadingRecorder.VERSION) {
+            throw new IOException("Unsupported version: " + version);
+        }
+
+        final ReadingTrace trace = new ReadingTrace();
+        long time = 0;
+        int event;
+        while ((event = in.read()) != -1) {
+            time += readVarLong(in);
+            switch (event) {
+                case ReadingRecorder.EVENT_CURRENT_ID:
+                case ReadingRecorder.EVENT_PAGE_TO_ID: {
+                    final long id = unzigzag(readVarLong(in));
+                    trace.add(time, event, (int) (id >>> 32), (int) id, false);
+                    break;
+                }
+                case ReadingRecorder.EVENT_FLING: {
+                    final int velocityX = (int) unzigzag(readVarLong(in));
+                    final int velocityY = (int) unzigzag(readVarLong(in));
+                    trace.add(time, event, velocityX, velocityY, false);
+                    break;
+                }
+                case ReadingRecorder.EVENT_REQUEST:
+                case ReadingRecorder.EVENT_PREFETCH: {
+                    final int chapter = (int) readVarLong(in);
+                    final int index = (int) readVarLong(in);
+                    trace.add(time, event, chapter, index, in.readUnsignedByte() != 0);
+                    break;
+                }
+                case ReadingRecorder.EVENT_CURRENT_PAGE:
+                case ReadingRecorder.EVENT_FORCE_REQUEST:
+                case ReadingRecorder.EVENT_CANCEL_REQUEST:
+                case ReadingRecorder.EVENT_CANCEL_PREFETCH:
+                case ReadingRecorder.EVENT_PAGE_SUCCEED:
+                case ReadingRecorder.EVENT_PAGE_FAILED: {
+                    final int chapter = (int) readVarLong(in);
+                    final int index = (int) readVarLong(in);
+                    trace.add(time, event, chapter, index, false);
+                    break;
+                }
+                default:
+                    throw new IOException("Invalid event: " + event);
+            }
+        }
+        return trace;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static ReadingTrace readText(File file) throws IOException {
+        final ReadingTrace trace = new ReadingTrace();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final String[] parts = line.split("\\s+");
+                if (parts.length != 3) {
+                    throw new IOException("Invalid line: " + line);
+                }
+                final int event;
+                switch (parts[0]) {
+                    case "c":
+                        event = ReadingRecorder.EVENT_CURRENT_PAGE;
+                        break;
+                    case "r":
+                        event = ReadingRecorder.EVENT_REQUEST;
+                        break;
+                    case "p":
+                        event = ReadingRecorder.EVENT_PREFETCH;
+                        break;
+                    default:
+                        throw new IOException("Invalid event: " + line);
+                }
+                try {
+                    trace.add(event, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid page: " + line);
+                }
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Read chapters page by page.
+     */
+    public static ReadingTrace linear(int chapterCount, int pageCount) {
+        final ReadingTrace trace = new ReadingTrace();
+        for (int c = 0; c < chapterCount; c++) {
+            for (int i = 0; i < pageCount; i++) {
+                trace.read(c, i, 1, pageCount);
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Read chapters page by page, turn back a few pages now and then.
+     */
+    public static ReadingTrace backtrack(int chapterCount, int pageCount) {
+        final ReadingTrace trace = new ReadingTrace();
+        for (int c = 0; c < chapterCount; c++) {
+            for (int i = 0; i < pageCount; i++) {
+                trace.read(c, i, 1, pageCount);
+                if (i % 10 == 9) {
+                    for (int j = 1; j <= 4; j++) {
+                        trace.read(c, i - j, -1, pageCount);
+                    }
+                    for (int j = 3; j >= 1; j--) {
+                        trace.read(c, i - j, 1, pageCount);
+                    }
+                }
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Read chapters page by page, jump to the first pages
+     * of the chapter and back now and then, like for a map.
+     */
+    public static ReadingTrace jump(int chapterCount, int pageCount) {
+        final ReadingTrace trace = new ReadingTrace();
+        for (int c = 0; c < chapterCount; c++) {
+            for (int i = 0; i < pageCount; i++) {
+                trace.read(c, i, 1, pageCount);
+                if (i % 20 == 19) {
+                    for (int j = 0; j < 3; j++) {
+                        trace.read(c, j, 1, pageCount);
+                    }
+                    trace.read(c, i, 1, pageCount);
+                }
+            }
+        }
+        return trace;
+    }
+}
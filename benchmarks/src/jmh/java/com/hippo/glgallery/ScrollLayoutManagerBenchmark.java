@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class ScrollLayoutManagerBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int PAGE_COUNT = 1000;
+
+    // Distance of each scroll
+    @Param({"16", "480"})
+    public int step;
+
+    // Pages without image are in min height, small ones fill the screen with 30+ pages
+    @Param({"256", "40"})
+    public int pageHeight;
+
+    private GalleryView mGalleryView;
+    private ProviderAdapter mAdapter;
+    private int mDirection = 1;
+    private int mTraveled;
+    // Height of half of pages, so it never hits the head or the tail
+    private int mTravel;
+    private int mFindOffset;
+
+    @Setup
+    public void setup() {
+        final BenchmarkGLRoot root = new BenchmarkGLRoot();
+        final GalleryView.Builder builder = new GalleryView.Builder(root.getContext(), root);
+        builder.layoutMode = GalleryView.LAYOUT_SCROLL_TOP_TO_BOTTOM;
+        builder.pageMinHeight = pageHeight;
+        builder.scrollInterval = pageHeight / 10;
+        builder.progressSize = pageHeight / 4;
+        builder.textSize = pageHeight / 4;
+        builder.pageInfoInterval = pageHeight / 10;
+        mGalleryView = builder.build();
+        mAdapter = new ProviderAdapter(root, new BenchmarkProvider(1, PAGE_COUNT), 0, 0);
+        mGalleryView.setAdapter(mAdapter);
+        mGalleryView.onAttachToRoot(root);
+        mGalleryView.layout(0, 0, WIDTH, HEIGHT);
+        root.runHandlers();
+        root.runIdle();
+
+        // Pages without image are in the same height
+        final int pageSpan = mGalleryView.getComponent(0).getHeight() + builder.scrollInterval;
+        mTravel = PAGE_COUNT / 2 * pageSpan;
+
+        // Scroll to a quarter, then scrollFill() goes between a quarter and three quarters
+        for (int i = 0, n = mTravel / 2 / HEIGHT; i < n; i++) {
+            mGalleryView.onScrollInternal(0, HEIGHT, 0, HEIGHT, WIDTH / 2, HEIGHT / 2);
+            mGalleryView.forceFill();
+        }
+    }
+
+    // Scroll and fill, turn back after traveling
+    @Benchmark
+    public long scrollFill() {
+        mTraveled += step;
+        if (mTraveled > mTravel) {
+            mTraveled = step;
+            mDirection = -mDirection;
+        }
+        final float dy = step * mDirection;
+        mGalleryView.onDownInternal(0, 0);
+        mGalleryView.onScrollInternal(0, dy, 0, dy, WIDTH / 2, HEIGHT / 2);
+        mGalleryView.forceFill();
+        return mAdapter.getCurrentId();
+    }
+
+    // Fill again without scrolling, all pages are kept
+    @Benchmark
+    public void fill() {
+        mGalleryView.forceFill();
+    }
+
+    // Find pages after the first laid out one
+    @Benchmark
+    public boolean findPage() {
+        mFindOffset = (mFindOffset + 1) % 32;
+        // Page ids of chapter 0 are index << 1
+        final int first = (int) (mAdapter.getCurrentId() >>> 1);
+        final int index = Math.min(first + mFindOffset, PAGE_COUNT - 1);
+        return mGalleryView.findPageById(ProviderAdapter.genId(0, index, false)) != null;
+    }
+}
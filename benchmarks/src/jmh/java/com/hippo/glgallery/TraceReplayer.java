@@ -0,0 +1,368 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import android.os.Process;
+
+import com.hippo.glview.view.AnimationTime;
+import com.hippo.image.ImageData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays a reading trace on a {@link GalleryView}, a {@link ProviderAdapter}
+ * and a provider decoding fake pages with a {@link DecodeScheduler}, on the
+ * JVM without GL. It runs in real time, at the recorded speed or faster,
+ * and reports what the provider sees.
+ * <p>
+ * If the trace has current ids or jumps of the view, the view goes to these
+ * pages and the adapter makes requests and prefetches. Flings are not replayed,
+ * the current ids they go through are. Otherwise requests and prefetches
+ * of the trace are made on the provider.
+ * <p>
+ * Run it with {@code gradle :benchmarks:replayTrace -Ptrace=<file>}, optionally
+ * with {@code -Pspeed=<speed>} and {@code -PdecodeTime=<milliseconds>}.
+ */
+class TraceReplayer {
+
+    private static final long FRAME_TIME = 16;
+    // Trace time to run after the last event, for pending decodes
+    private static final long DRAIN_TIME = 1000;
+    private static final long DEFAULT_DECODE_TIME = 100;
+    // Decoding fake pages checks the token in it
+    private static final long DECODE_SLICE = 5;
+    private static final int PAGE_WIDTH = 1080;
+    private static final int PAGE_HEIGHT = 1520;
+
+    private final ReadingTrace mTrace;
+    private final float mSpeed;
+    private final long mDecodeTime;
+
+    private final BenchmarkGLRoot mRoot = new BenchmarkGLRoot();
+    private final BenchmarkGLCanvas mCanvas = new BenchmarkGLCanvas();
+    private GalleryView mGalleryView;
+    private RequestMetrics.Snapshot mMetrics;
+
+    /**
+     * @param speed times of the recorded speed
+     * @param decodeTime milliseconds to decode a page at the recorded speed
+     */
+    public TraceReplayer(ReadingTrace trace, float speed, long decodeTime) {
+        if (speed <= 0.0f) {
+            throw new IllegalArgumentException("Invalid speed: " + speed);
+        }
+        mTrace = trace;
+        mSpeed = speed;
+        mDecodeTime = decodeTime;
+    }
+
+    private static boolean isViewEvent(int event) {
+        return event == ReadingRecorder.EVENT_CURRENT_ID || event == ReadingRecorder.EVENT_PAGE_TO_ID;
+    }
+
+    // The page id to replay, or INVALID_ID
+    private static long getPageId(ReadingTrace trace, int i) {
+        final long id = trace.getId(i);
+        if (id == GalleryView.Adapter.INVALID_ID || ProviderAdapter.getIsText(id)) {
+            return GalleryView.Adapter.INVALID_ID;
+        }
+        return id;
+    }
+
+    /**
+     * Replay the trace, return the report of the replay.
+     * Latency is in milliseconds of the recorded speed.
+     */
+    public ReadingReport replay() throws IOException, InterruptedException {
+        final ReadingTrace trace = mTrace;
+
+        // Chapters and pages the trace touches, and the first page of the view
+        boolean viewEvents = false;
+        int chapterCount = 1;
+        int pageCount = 1;
+        int startChapter = 0;
+        int startPage = 0;
+        for (int i = 0, n = trace.size(); i < n; i++) {
+            final int event = trace.getEvent(i);
+            final int chapter;
+            final int page;
+            if (isViewEvent(event)) {
+                final long id = getPageId(trace, i);
+                if (id == GalleryView.Adapter.INVALID_ID) {
+                    continue;
+                }
+                chapter = ProviderAdapter.getChapter(id);
+                page = ProviderAdapter.getPage(id);
+                // Start from the first page of the view
+                if (!viewEvents) {
+                    viewEvents = true;
+                    startChapter = chapter;
+                    startPage = page;
+                }
+            } else if (event == ReadingRecorder.EVENT_FLING) {
+                continue;
+            } else {
+                chapter = trace.getChapter(i);
+                page = trace.getIndex(i);
+            }
+            chapterCount = Math.max(chapterCount, chapter + 1);
+            pageCount = Math.max(pageCount, page + 1);
+        }
+
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final ReadingRecorder recorder = new ReadingRecorder(os);
+        final ReplayProvider provider = new ReplayProvider(chapterCount, pageCount,
+                (long) (mDecodeTime / mSpeed));
+        provider.setRecorder(recorder);
+        provider.setGLRoot(mRoot);
+        provider.start();
+
+        if (viewEvents) {
+            final ProviderAdapter adapter = new ProviderAdapter(mRoot, provider, startChapter, startPage);
+            mGalleryView = new GalleryView.Builder(mRoot.getContext(), mRoot).build();
+            mGalleryView.setAdapter(adapter);
+            mGalleryView.onAttachToRoot(mRoot);
+            mGalleryView.layout(0, 0, PAGE_WIDTH, PAGE_HEIGHT);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0, n = trace.size(); i < n; i++) {
+            runUntil(start, trace.getTime(i));
+            final int event = trace.getEvent(i);
+            if (viewEvents) {
+                if (isViewEvent(event)) {
+                    final long id = getPageId(trace, i);
+                    if (id != GalleryView.Adapter.INVALID_ID) {
+                        mGalleryView.pageToIdInternal(id);
+                    }
+                }
+            } else {
+                replayProviderEvent(provider, trace, i);
+            }
+        }
+        runUntil(start, trace.getTime(trace.size() - 1) + DRAIN_TIME);
+
+        mMetrics = provider.getRequestMetrics().snapshot(false);
+        provider.stop();
+        recorder.close();
+        return ReadingReport.of(ReadingTrace.readBinary(
+                new DataInputStream(new ByteArrayInputStream(os.toByteArray()))), mSpeed);
+    }
+
+    /**
+     * Return request metrics of the last replay, in milliseconds of the replay speed.
+     */
+    public RequestMetrics.Snapshot getRequestMetrics() {
+        return mMetrics;
+    }
+
+    private static String toString(RequestMetrics.Histogram histogram) {
+        return String.format("mean %.1fms, p50 %dms, p90 %dms, max %dms",
+                histogram.getMean(), histogram.getPercentile(0.5f),
+                histogram.getPercentile(0.9f), histogram.getMax());
+    }
+
+    private static void replayProviderEvent(GalleryProvider provider, ReadingTrace trace, int i) {
+        final int chapter = trace.getChapter(i);
+        final int index = trace.getIndex(i);
+        switch (trace.getEvent(i)) {
+            case ReadingRecorder.EVENT_CURRENT_PAGE:
+                provider.setCurrentPage(chapter, index);
+                break;
+            case ReadingRecorder.EVENT_REQUEST: {
+                // A missing page is decoded, nothing waits for it here
+                final ImageData image = provider.request(chapter, index);
+                break;
+            }
+            case ReadingRecorder.EVENT_FORCE_REQUEST:
+                provider.forceRequest(chapter, index);
+                break;
+            case ReadingRecorder.EVENT_CANCEL_REQUEST:
+                provider.cancelRequest(chapter, index);
+                break;
+            case ReadingRecorder.EVENT_PREFETCH:
+                provider.prefetch(chapter, index);
+                break;
+            case ReadingRecorder.EVENT_CANCEL_PREFETCH:
+                provider.cancelPrefetch(chapter, index);
+                break;
+        }
+    }
+
+    // Render frames until the trace time
+    private void runUntil(long start, long time) throws InterruptedException {
+        final long end = start + (long) (time / mSpeed * 1000000);
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            renderFrame();
+            Thread.sleep(Math.max(1, Math.min(FRAME_TIME, (end - now) / 1000000)));
+        }
+        renderFrame();
+    }
+
+    private void renderFrame() {
+        mRoot.runHandlers();
+        mRoot.runIdle();
+        if (mGalleryView != null) {
+            AnimationTime.update();
+            mGalleryView.render(mCanvas);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceReplayer <trace> [speed] [decode time]");
+            System.exit(1);
+        }
+        final ReadingTrace trace = ReadingTrace.read(new File(args[0]));
+        final float speed = args.length > 1 ? Float.parseFloat(args[1]) : 1.0f;
+        final long decodeTime = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_DECODE_TIME;
+        if (trace.size() == 0) {
+            System.err.println("Empty trace");
+            System.exit(1);
+        }
+
+        System.out.println("Recorded:");
+        System.out.println(ReadingReport.of(trace));
+        System.out.println("Replayed at " + speed + "x, " + decodeTime + "ms for a page:");
+        final TraceReplayer replayer = new TraceReplayer(trace, speed, decodeTime);
+        System.out.println(replayer.replay());
+
+        final RequestMetrics.Snapshot metrics = replayer.getRequestMetrics();
+        System.out.println("Request metrics:");
+        System.out.println("  wait: " + toString(metrics.getHistogram(RequestMetrics.HISTOGRAM_WAIT)));
+        System.out.println("  succeed: " + toString(metrics.getHistogram(RequestMetrics.HISTOGRAM_SUCCEED)));
+        System.out.println("  display: " + toString(metrics.getHistogram(RequestMetrics.HISTOGRAM_DISPLAY)));
+        System.out.println(String.format("  hit rate %.3f, cancel rate %.3f, decodes %d, "
+                + "wasted %d cancelled, %d evicted", metrics.getHitRate(), metrics.getCancelRate(),
+                metrics.getCounter(RequestMetrics.COUNTER_DECODE),
+                metrics.getCounter(RequestMetrics.COUNTER_WASTED_CANCELLED),
+                metrics.getCounter(RequestMetrics.COUNTER_WASTED_EVICTED)));
+    }
+
+    /**
+     * Decodes fake pages in the decode time, in worker threads.
+     */
+    private static class ReplayProvider extends GalleryProvider implements DecodeScheduler.Decoder {
+
+        private final int mChapterCount;
+        private final int mPageCount;
+        private final long mDecodeTime;
+        private final DecodeScheduler mScheduler;
+
+        public ReplayProvider(int chapterCount, int pageCount, long decodeTime) {
+            mChapterCount = chapterCount;
+            mPageCount = pageCount;
+            mDecodeTime = decodeTime;
+            mScheduler = new DecodeScheduler("Replay", DecodeScheduler.getSuggestedWorkerCount(),
+                    Process.THREAD_PRIORITY_BACKGROUND, this);
+            setAdaptiveCacheSize(false);
+        }
+
+        @Override
+        public void start() {
+            super.start();
+            mScheduler.start();
+        }
+
+        @Override
+        public void stop() {
+            super.stop();
+            mScheduler.stop();
+        }
+
+        @Override
+        public int getChapterCount() {
+            return mChapterCount;
+        }
+
+        @Override
+        public int getPageCount(int chapter) {
+            return mPageCount;
+        }
+
+        @Override
+        protected void onRequestChapter(int chapter) {}
+
+        @Override
+        protected void onRequest(int chapter, int index, int targetWidth, int targetHeight,
+                CancellationToken token) {
+            mScheduler.request(chapter, index, targetWidth, targetHeight, true, token);
+            notifyPageWait(chapter, index);
+        }
+
+        @Override
+        protected void onForceRequest(int chapter, int index, int targetWidth, int targetHeight,
+                CancellationToken token) {
+            onRequest(chapter, index, targetWidth, targetHeight, token);
+        }
+
+        // The scheduler drops pages with cancelled tokens
+        @Override
+        protected void onCancelRequest(int chapter, int index) {}
+
+        @Override
+        protected void onPrefetch(int chapter, int index, int targetWidth, int targetHeight,
+                CancellationToken token) {
+            mScheduler.request(chapter, index, targetWidth, targetHeight, false, token);
+        }
+
+        @Override
+        protected void onSetCurrentPage(int chapter, int index) {
+            mScheduler.setCurrentPage(chapter, index);
+        }
+
+        @Override
+        public String getError() {
+            return null;
+        }
+
+        @Override
+        public String getError(int chapter) {
+            return null;
+        }
+
+        @Override
+        public void decode(int chapter, int index, int targetWidth, int targetHeight,
+                CancellationToken token) {
+            // Check the token between slices, like reading a stream
+            for (long time = 0; time < mDecodeTime; time += DECODE_SLICE) {
+                if (token != null && token.isCancelled()) {
+                    return;
+                }
+                try {
+                    Thread.sleep(Math.min(DECODE_SLICE, mDecodeTime - time));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (token != null && token.isCancelled()) {
+                return;
+            }
+            notifyPageSucceed(chapter, index, new ImageData(PAGE_WIDTH, PAGE_HEIGHT), 1, token);
+        }
+
+        @Override
+        public void onDecodeFailed(int chapter, int index, Throwable e, CancellationToken token) {
+            notifyPageFailed(chapter, index, e.toString(), token);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.view;
+
+import android.content.Context;
+import android.os.Handler;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+
+public final class GestureDetectorCompat {
+
+    public GestureDetectorCompat(Context context, GestureDetector.OnGestureListener listener) {}
+
+    public GestureDetectorCompat(Context context, GestureDetector.OnGestureListener listener,
+            Handler handler) {}
+
+    public boolean onTouchEvent(MotionEvent event) {
+        return false;
+    }
+
+    public void setIsLongpressEnabled(boolean enabled) {}
+
+    public void setOnDoubleTapListener(GestureDetector.OnDoubleTapListener listener) {}
+}
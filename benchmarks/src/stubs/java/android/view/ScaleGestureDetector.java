@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import android.content.Context;
+import android.os.Handler;
+
+public class ScaleGestureDetector {
+
+    public ScaleGestureDetector(Context context, OnScaleGestureListener listener) {}
+
+    public ScaleGestureDetector(Context context, OnScaleGestureListener listener, Handler handler) {}
+
+    public boolean onTouchEvent(MotionEvent event) {
+        return false;
+    }
+
+    public boolean isInProgress() {
+        return false;
+    }
+
+    public float getFocusX() {
+        return 0.0f;
+    }
+
+    public float getFocusY() {
+        return 0.0f;
+    }
+
+    public float getScaleFactor() {
+        return 1.0f;
+    }
+
+    public void setQuickScaleEnabled(boolean scales) {}
+
+    public interface OnScaleGestureListener {
+
+        boolean onScale(ScaleGestureDetector detector);
+
+        boolean onScaleBegin(ScaleGestureDetector detector);
+
+        void onScaleEnd(ScaleGestureDetector detector);
+    }
+
+    public static class SimpleOnScaleGestureListener implements OnScaleGestureListener {
+
+        public boolean onScale(ScaleGestureDetector detector) {
+            return false;
+        }
+
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            return true;
+        }
+
+        public void onScaleEnd(ScaleGestureDetector detector) {}
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.beerbelly;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The boxed LRU cache of beerbelly 0.2.1, which the image cache used
+ * before {@code LongLruCache}. Like it, entries live in an access ordered
+ * {@link LinkedHashMap} and all methods are synchronized.
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> mMap;
+    private final LruCacheHelper<K, V> mHelper;
+    private int mSize;
+    private int mMaxSize;
+
+    private LruCache(int maxSize, LruCacheHelper<K, V> helper) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        mHelper = helper;
+        mMap = new LinkedHashMap<>(0, 0.75f, true);
+    }
+
+    public static <K, V> LruCache<K, V> create(int maxSize, LruCacheHelper<K, V> helper,
+            boolean threadSafe) {
+        return new LruCache<>(maxSize, helper);
+    }
+
+    public final synchronized V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V value = mMap.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = mHelper.create(key);
+        if (value == null) {
+            return null;
+        }
+        put(key, value);
+        return value;
+    }
+
+    public final synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        mSize += mHelper.sizeOf(key, value);
+        final V previous = mMap.put(key, value);
+        mHelper.onEntryAdded(key, value);
+        if (previous != null) {
+            mSize -= mHelper.sizeOf(key, previous);
+            mHelper.onEntryRemoved(false, key, previous, value);
+        }
+
+        trimToSize(mMaxSize);
+        return previous;
+    }
+
+    public final synchronized void trimToSize(int maxSize) {
+        while (mSize > maxSize && !mMap.isEmpty()) {
+            final Map.Entry<K, V> toEvict = mMap.entrySet().iterator().next();
+            final K key = toEvict.getKey();
+            final V value = toEvict.getValue();
+            mMap.remove(key);
+            mSize -= mHelper.sizeOf(key, value);
+            mHelper.onEntryRemoved(true, key, value, null);
+        }
+    }
+
+    public final synchronized V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        final V previous = mMap.remove(key);
+        if (previous != null) {
+            mSize -= mHelper.sizeOf(key, previous);
+            mHelper.onEntryRemoved(false, key, previous, null);
+        }
+        return previous;
+    }
+
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    public final synchronized int size() {
+        return mSize;
+    }
+}
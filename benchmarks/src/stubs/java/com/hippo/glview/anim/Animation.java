@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.anim;
+
+import android.view.animation.Interpolator;
+
+public abstract class Animation {
+
+    private static final long ANIMATION_START = -1;
+    private static final long NO_ANIMATION = -2;
+
+    private long mStartTime = NO_ANIMATION;
+    private long mDuration;
+    private Interpolator mInterpolator;
+
+    public void setInterpolator(Interpolator interpolator) {
+        mInterpolator = interpolator;
+    }
+
+    public void setDuration(long duration) {
+        mDuration = duration;
+    }
+
+    public long getDuration() {
+        return mDuration;
+    }
+
+    public void start() {
+        mStartTime = ANIMATION_START;
+    }
+
+    public void setStartTime(long time) {
+        mStartTime = time;
+    }
+
+    public boolean isActive() {
+        return mStartTime != NO_ANIMATION;
+    }
+
+    public boolean isRunning() {
+        return isActive();
+    }
+
+    public void forceStop() {
+        mStartTime = NO_ANIMATION;
+    }
+
+    public void cancel() {
+        forceStop();
+    }
+
+    public boolean calculate(long currentTimeMillis) {
+        if (mStartTime == NO_ANIMATION) {
+            return false;
+        }
+        if (mStartTime == ANIMATION_START) {
+            mStartTime = currentTimeMillis;
+        }
+        final long elapse = currentTimeMillis - mStartTime;
+        final float x = mDuration <= 0 ? 1.0f : Math.min(1.0f, (float) elapse / mDuration);
+        onCalculate(mInterpolator != null ? mInterpolator.getInterpolation(x) : x);
+        if (elapse >= mDuration) {
+            mStartTime = NO_ANIMATION;
+            onFinish();
+        }
+        return mStartTime != NO_ANIMATION;
+    }
+
+    protected abstract void onCalculate(float progress);
+
+    protected void onFinish() {}
+}
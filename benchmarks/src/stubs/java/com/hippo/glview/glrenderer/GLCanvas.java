@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.glrenderer;
+
+import android.graphics.RectF;
+
+public interface GLCanvas {
+
+    void save();
+
+    void restore();
+
+    void translate(float x, float y);
+
+    void clipRect(int left, int top, int right, int bottom);
+
+    void setAlpha(float alpha);
+
+    float getAlpha();
+
+    void fillRect(float x, float y, float width, float height, int color);
+
+    void drawTexture(Texture texture, int x, int y, int width, int height);
+
+    void drawTexture(Texture texture, RectF source, RectF target);
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.image;
+
+import android.graphics.RectF;
+
+import com.hippo.glview.glrenderer.GLCanvas;
+import com.hippo.glview.glrenderer.Texture;
+import com.hippo.glview.view.GLRoot;
+import com.hippo.image.ImageData;
+
+public class ImageTexture implements Texture {
+
+    private final ImageData mImage;
+
+    public ImageTexture(ImageData image) {
+        mImage = image;
+        image.addReference();
+    }
+
+    @Override
+    public int getWidth() {
+        return mImage.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return mImage.getHeight();
+    }
+
+    @Override
+    public void draw(GLCanvas canvas, int x, int y) {
+        draw(canvas, x, y, getWidth(), getHeight());
+    }
+
+    @Override
+    public void draw(GLCanvas canvas, int x, int y, int w, int h) {
+        canvas.drawTexture(this, x, y, w, h);
+    }
+
+    @Override
+    public void draw(GLCanvas canvas, RectF source, RectF target) {
+        canvas.drawTexture(this, source, target);
+    }
+
+    @Override
+    public boolean isOpaque() {
+        return true;
+    }
+
+    public void setCallback(Callback callback) {}
+
+    public void start() {}
+
+    public void stop() {}
+
+    public void recycle() {
+        mImage.removeReference();
+        if (!mImage.isReferenced()) {
+            mImage.recycle();
+        }
+    }
+
+    public interface Callback {
+        void invalidateImageTexture(ImageTexture who);
+    }
+
+    public static class Uploader {
+
+        public Uploader(GLRoot glRoot) {}
+
+        public void addTexture(ImageTexture texture) {}
+
+        public void clear() {}
+    }
+}
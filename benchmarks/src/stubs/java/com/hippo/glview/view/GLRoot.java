@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.view;
+
+import android.content.Context;
+
+import com.hippo.glview.glrenderer.GLCanvas;
+
+import javax.microedition.khronos.opengles.GL10;
+
+public interface GLRoot {
+
+    void addOnGLIdleListener(OnGLIdleListener listener);
+
+    void registerHandler(Handler handler);
+
+    void unregisterHandler(Handler handler);
+
+    void requestRender();
+
+    void requestLayoutContentPane();
+
+    Context getContext();
+
+    interface OnGLIdleListener {
+        boolean onGLIdle(GLCanvas canvas, boolean renderRequested);
+    }
+
+    abstract class Handler {
+
+        // Set by GLRoot
+        volatile GLRoot mGLRoot;
+
+        public void request() {
+            final GLRoot root = mGLRoot;
+            if (root != null) {
+                root.requestRender();
+            }
+        }
+
+        public abstract void onHandle(GL10 gl);
+    }
+}
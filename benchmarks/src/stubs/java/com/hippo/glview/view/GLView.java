@@ -0,0 +1,319 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.view;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.MotionEvent;
+
+import com.hippo.glview.anim.Animation;
+import com.hippo.glview.glrenderer.GLCanvas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures and lays out like the real one, but renders nothing.
+ */
+public class GLView {
+
+    public static final int VISIBLE = 0;
+    public static final int INVISIBLE = 1;
+    public static final int GONE = 2;
+
+    private final Rect mBounds = new Rect();
+    private final List<GLView> mComponents = new ArrayList<>();
+    private GLView mParent;
+    private GLRoot mRoot;
+    private LayoutParams mLayoutParams;
+
+    private int mVisibility = VISIBLE;
+    private int mMeasuredWidth;
+    private int mMeasuredHeight;
+    private int mMinimumWidth;
+    private int mMinimumHeight;
+    private int mBackgroundColor;
+
+    public static class MeasureSpec {
+
+        private static final int MODE_SHIFT = 30;
+        private static final int MODE_MASK = 0x3 << MODE_SHIFT;
+
+        public static final int UNSPECIFIED = 0;
+        public static final int EXACTLY = 1 << MODE_SHIFT;
+        public static final int AT_MOST = 2 << MODE_SHIFT;
+
+        public static int makeMeasureSpec(int size, int mode) {
+            return (size & ~MODE_MASK) | (mode & MODE_MASK);
+        }
+
+        public static int getMode(int measureSpec) {
+            return measureSpec & MODE_MASK;
+        }
+
+        public static int getSize(int measureSpec) {
+            return measureSpec & ~MODE_MASK;
+        }
+    }
+
+    public static class LayoutParams {
+
+        public static final int MATCH_PARENT = -1;
+        public static final int WRAP_CONTENT = -2;
+
+        public int width;
+        public int height;
+
+        public LayoutParams(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public Context getContext() {
+        return mRoot != null ? mRoot.getContext() : null;
+    }
+
+    public GLRoot getGLRoot() {
+        return mRoot;
+    }
+
+    public boolean isAttachedToRoot() {
+        return mRoot != null;
+    }
+
+    public void onAttachToRoot(GLRoot root) {
+        mRoot = root;
+        for (int i = 0, n = mComponents.size(); i < n; i++) {
+            mComponents.get(i).onAttachToRoot(root);
+        }
+    }
+
+    public void onDetachFromRoot() {
+        for (int i = 0, n = mComponents.size(); i < n; i++) {
+            mComponents.get(i).onDetachFromRoot();
+        }
+        mRoot = null;
+    }
+
+    public GLView getParent() {
+        return mParent;
+    }
+
+    public int getComponentCount() {
+        return mComponents.size();
+    }
+
+    public GLView getComponent(int index) {
+        return mComponents.get(index);
+    }
+
+    public void addComponent(GLView component) {
+        addComponent(component, component.mLayoutParams);
+    }
+
+    public void addComponent(GLView component, LayoutParams params) {
+        if (component.mParent != null) {
+            throw new IllegalStateException();
+        }
+        component.mParent = this;
+        component.mLayoutParams = params;
+        mComponents.add(component);
+        if (mRoot != null) {
+            component.onAttachToRoot(mRoot);
+        }
+    }
+
+    public boolean removeComponent(GLView component) {
+        if (mComponents.remove(component)) {
+            if (mRoot != null) {
+                component.onDetachFromRoot();
+            }
+            component.mParent = null;
+            return true;
+        }
+        return false;
+    }
+
+    public void removeAllComponents() {
+        while (!mComponents.isEmpty()) {
+            removeComponent(mComponents.get(mComponents.size() - 1));
+        }
+    }
+
+    public LayoutParams getLayoutParams() {
+        return mLayoutParams;
+    }
+
+    public void setLayoutParams(LayoutParams params) {
+        mLayoutParams = params;
+    }
+
+    public void setVisibility(int visibility) {
+        mVisibility = visibility;
+    }
+
+    public int getVisibility() {
+        return mVisibility;
+    }
+
+    public void setBackgroundColor(int color) {
+        mBackgroundColor = color;
+    }
+
+    public void setMinimumWidth(int minWidth) {
+        mMinimumWidth = minWidth;
+    }
+
+    public void setMinimumHeight(int minHeight) {
+        mMinimumHeight = minHeight;
+    }
+
+    protected int getSuggestedMinimumWidth() {
+        return mMinimumWidth;
+    }
+
+    protected int getSuggestedMinimumHeight() {
+        return mMinimumHeight;
+    }
+
+    public void invalidate() {
+        if (mRoot != null) {
+            mRoot.requestRender();
+        }
+    }
+
+    public void requestLayout() {}
+
+    public void startAnimation(Animation animation, boolean invalidate) {
+        animation.start();
+    }
+
+    public Rect bounds() {
+        return mBounds;
+    }
+
+    public int getWidth() {
+        return mBounds.width();
+    }
+
+    public int getHeight() {
+        return mBounds.height();
+    }
+
+    public int getLeft() {
+        return mBounds.left;
+    }
+
+    public int getTop() {
+        return mBounds.top;
+    }
+
+    public int getRight() {
+        return mBounds.right;
+    }
+
+    public int getBottom() {
+        return mBounds.bottom;
+    }
+
+    public void offsetLeftAndRight(int offset) {
+        mBounds.offset(offset, 0);
+    }
+
+    public void offsetTopAndBottom(int offset) {
+        mBounds.offset(0, offset);
+    }
+
+    // The visible area in the view
+    public void getValidRect(Rect rect) {
+        if (mVisibility == VISIBLE) {
+            rect.set(0, 0, getWidth(), getHeight());
+        } else {
+            rect.setEmpty();
+        }
+    }
+
+    public void measure(int widthSpec, int heightSpec) {
+        onMeasure(widthSpec, heightSpec);
+    }
+
+    protected void onMeasure(int widthSpec, int heightSpec) {
+        setMeasuredSize(getDefaultSize(getSuggestedMinimumWidth(), widthSpec),
+                getDefaultSize(getSuggestedMinimumHeight(), heightSpec));
+    }
+
+    public static int getDefaultSize(int size, int measureSpec) {
+        switch (MeasureSpec.getMode(measureSpec)) {
+            case MeasureSpec.AT_MOST:
+            case MeasureSpec.EXACTLY:
+                return MeasureSpec.getSize(measureSpec);
+            default:
+                return size;
+        }
+    }
+
+    protected void setMeasuredSize(int width, int height) {
+        mMeasuredWidth = width;
+        mMeasuredHeight = height;
+    }
+
+    public int getMeasuredWidth() {
+        return mMeasuredWidth;
+    }
+
+    public int getMeasuredHeight() {
+        return mMeasuredHeight;
+    }
+
+    public void layout(int left, int top, int right, int bottom) {
+        final int oldWidth = mBounds.width();
+        final int oldHeight = mBounds.height();
+        final boolean sizeChanged = right - left != oldWidth || bottom - top != oldHeight;
+        mBounds.set(left, top, right, bottom);
+        if (sizeChanged) {
+            onSizeChanged(right - left, bottom - top, oldWidth, oldHeight);
+        }
+        onLayout(sizeChanged, left, top, right, bottom);
+    }
+
+    protected void onSizeChanged(int newWidth, int newHeight, int oldWidth, int oldHeight) {}
+
+    protected void onLayout(boolean changeSize, int left, int top, int right, int bottom) {}
+
+    protected void onPositionInRootChanged(int x, int y, int oldX, int oldY) {}
+
+    public void render(GLCanvas canvas) {
+        onRender(canvas);
+        for (int i = 0, n = mComponents.size(); i < n; i++) {
+            final GLView component = mComponents.get(i);
+            if (component.mVisibility == VISIBLE) {
+                component.render(canvas);
+            }
+        }
+    }
+
+    protected void onRender(GLCanvas canvas) {}
+
+    protected boolean dispatchTouchEvent(MotionEvent event) {
+        return onTouch(event);
+    }
+
+    protected boolean onTouch(MotionEvent event) {
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.view;
+
+public final class Gravity {
+    public static final int NO_GRAVITY = 0;
+    public static final int LEFT = 3;
+    public static final int RIGHT = 5;
+    public static final int TOP = 48;
+    public static final int BOTTOM = 80;
+    public static final int CENTER_VERTICAL = 16;
+    public static final int CENTER_HORIZONTAL = 1;
+    public static final int CENTER = 17;
+}
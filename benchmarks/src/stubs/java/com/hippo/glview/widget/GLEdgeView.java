@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.widget;
+
+import com.hippo.glview.view.GLView;
+
+public class GLEdgeView extends GLView {
+
+    public static final int LEFT = 0;
+    public static final int TOP = 1;
+    public static final int RIGHT = 2;
+    public static final int BOTTOM = 3;
+
+    private final float[] mPulls = new float[4];
+
+    public GLEdgeView(int color) {}
+
+    public void onPull(float deltaDistance, float displacement, int direction) {
+        mPulls[direction] += deltaDistance;
+    }
+
+    public void onRelease() {
+        for (int i = 0; i < mPulls.length; i++) {
+            mPulls[i] = 0.0f;
+        }
+    }
+
+    public void onRelease(int direction) {
+        mPulls[direction] = 0.0f;
+    }
+
+    public void onAbsorb(float velocity, int direction) {}
+
+    public boolean isFinished(int direction) {
+        return mPulls[direction] == 0.0f;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.widget;
+
+import com.hippo.glview.view.GLView;
+
+public class GLFrameLayout extends GLView {
+
+    public static class GravityLayoutParams extends GLView.LayoutParams {
+
+        public int gravity;
+
+        public GravityLayoutParams(int width, int height) {
+            super(width, height);
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthSpec, int heightSpec) {
+        int maxWidth = 0;
+        int maxHeight = 0;
+        for (int i = 0, n = getComponentCount(); i < n; i++) {
+            final GLView component = getComponent(i);
+            if (component.getVisibility() == GONE) {
+                continue;
+            }
+            component.measure(widthSpec, heightSpec);
+            maxWidth = Math.max(maxWidth, component.getMeasuredWidth());
+            maxHeight = Math.max(maxHeight, component.getMeasuredHeight());
+        }
+        maxWidth = Math.max(maxWidth, getSuggestedMinimumWidth());
+        maxHeight = Math.max(maxHeight, getSuggestedMinimumHeight());
+        setMeasuredSize(getDefaultSize(maxWidth, widthSpec), getDefaultSize(maxHeight, heightSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changeSize, int left, int top, int right, int bottom) {
+        final int width = right - left;
+        final int height = bottom - top;
+        for (int i = 0, n = getComponentCount(); i < n; i++) {
+            final GLView component = getComponent(i);
+            if (component.getVisibility() == GONE) {
+                continue;
+            }
+            final int w = Math.min(width, component.getMeasuredWidth());
+            final int h = Math.min(height, component.getMeasuredHeight());
+            final int l = (width - w) / 2;
+            final int t = (height - h) / 2;
+            component.layout(l, t, l + w, t + h);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.widget;
+
+import com.hippo.glview.view.GLView;
+
+public class GLLinearLayout extends GLView {
+
+    public static final int HORIZONTAL = 0;
+    public static final int VERTICAL = 1;
+
+    private int mOrientation = HORIZONTAL;
+    private int mInterval;
+
+    public static class LayoutParams extends GLView.LayoutParams {
+
+        public int gravity;
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+    }
+
+    public void setOrientation(int orientation) {
+        mOrientation = orientation;
+    }
+
+    public void setInterval(int interval) {
+        mInterval = interval;
+    }
+
+    @Override
+    protected void onMeasure(int widthSpec, int heightSpec) {
+        final int unspecified = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        int width = 0;
+        int height = 0;
+        int count = 0;
+        for (int i = 0, n = getComponentCount(); i < n; i++) {
+            final GLView component = getComponent(i);
+            if (component.getVisibility() == GONE) {
+                continue;
+            }
+            component.measure(unspecified, unspecified);
+            if (mOrientation == VERTICAL) {
+                width = Math.max(width, component.getMeasuredWidth());
+                height += component.getMeasuredHeight();
+            } else {
+                width += component.getMeasuredWidth();
+                height = Math.max(height, component.getMeasuredHeight());
+            }
+            count++;
+        }
+        if (count > 1) {
+            if (mOrientation == VERTICAL) {
+                height += mInterval * (count - 1);
+            } else {
+                width += mInterval * (count - 1);
+            }
+        }
+        setMeasuredSize(getDefaultSize(width, widthSpec), getDefaultSize(height, heightSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changeSize, int left, int top, int right, int bottom) {
+        int offset = 0;
+        for (int i = 0, n = getComponentCount(); i < n; i++) {
+            final GLView component = getComponent(i);
+            if (component.getVisibility() == GONE) {
+                continue;
+            }
+            final int w = component.getMeasuredWidth();
+            final int h = component.getMeasuredHeight();
+            if (mOrientation == VERTICAL) {
+                component.layout(0, offset, w, offset + h);
+                offset += h + mInterval;
+            } else {
+                component.layout(offset, 0, offset + w, h);
+                offset += w + mInterval;
+            }
+        }
+    }
+}
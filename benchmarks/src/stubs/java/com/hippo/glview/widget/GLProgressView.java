@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.widget;
+
+import com.hippo.glview.view.GLView;
+
+public class GLProgressView extends GLView {
+
+    private int mColor;
+    private int mBgColor;
+    private boolean mIndeterminate;
+    private float mProgress;
+
+    public void setColor(int color) {
+        mColor = color;
+    }
+
+    public void setBgColor(int color) {
+        mBgColor = color;
+    }
+
+    public void setIndeterminate(boolean indeterminate) {
+        mIndeterminate = indeterminate;
+    }
+
+    public void setProgress(float progress) {
+        mProgress = progress;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glview.widget;
+
+import com.hippo.glview.glrenderer.Texture;
+import com.hippo.glview.view.GLView;
+
+public class GLTextureView extends GLView {
+
+    private Texture mTexture;
+
+    public void setTexture(Texture texture) {
+        mTexture = texture;
+    }
+
+    public Texture getTexture() {
+        return mTexture;
+    }
+
+    @Override
+    protected int getSuggestedMinimumWidth() {
+        return Math.max(super.getSuggestedMinimumWidth(), mTexture != null ? mTexture.getWidth() : 0);
+    }
+
+    @Override
+    protected int getSuggestedMinimumHeight() {
+        return Math.max(super.getSuggestedMinimumHeight(), mTexture != null ? mTexture.getHeight() : 0);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.image;
+
+/**
+ * An image of the size, pixels are not stored.
+ */
+public class ImageData {
+
+    private final int mWidth;
+    private final int mHeight;
+    private int mReferences;
+    private boolean mRecycled;
+
+    public ImageData(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public synchronized void addReference() {
+        ++mReferences;
+    }
+
+    public synchronized void removeReference() {
+        --mReferences;
+    }
+
+    public synchronized boolean isReferenced() {
+        return mReferences > 0;
+    }
+
+    public void recycle() {
+        mRecycled = true;
+    }
+
+    public boolean isRecycled() {
+        return mRecycled;
+    }
+}
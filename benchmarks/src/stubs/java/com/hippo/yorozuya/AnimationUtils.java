@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.yorozuya;
+
+import android.view.animation.Interpolator;
+
+public final class AnimationUtils {
+
+    public static final Interpolator FAST_SLOW_INTERPOLATOR = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return 1.0f - (1.0f - input) * (1.0f - input);
+        }
+    };
+
+    public static final Interpolator SLOW_FAST_INTERPOLATOR = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input * input;
+        }
+    };
+
+    public static final Interpolator SMOOTH_INTERPOLATOR = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input * input * (3.0f - 2.0f * input);
+        }
+    };
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.yorozuya;
+
+public final class MathUtils {
+
+    public static int clamp(int x, int bound1, int bound2) {
+        final int min = Math.min(bound1, bound2);
+        final int max = Math.max(bound1, bound2);
+        return x < min ? min : (x > max ? max : x);
+    }
+
+    public static long clamp(long x, long bound1, long bound2) {
+        final long min = Math.min(bound1, bound2);
+        final long max = Math.max(bound1, bound2);
+        return x < min ? min : (x > max ? max : x);
+    }
+
+    public static float clamp(float x, float bound1, float bound2) {
+        final float min = Math.min(bound1, bound2);
+        final float max = Math.max(bound1, bound2);
+        return x < min ? min : (x > max ? max : x);
+    }
+
+    public static float lerp(float start, float stop, float amount) {
+        return start + (stop - start) * amount;
+    }
+
+    public static float norm(float start, float stop, float value) {
+        return (value - start) / (stop - start);
+    }
+
+    public static float dist(float x1, float y1, float x2, float y2) {
+        final float x = x2 - x1;
+        final float y = y2 - y1;
+        return (float) Math.hypot(x, y);
+    }
+
+    public static int ceilDivide(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    public static float max(float a, float b, float c) {
+        return Math.max(a, Math.max(b, c));
+    }
+
+    public static float min(float a, float b, float c) {
+        return Math.min(a, Math.min(b, c));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package junit.framework;
+
+public class Assert {
+
+    public static void assertTrue(String message, boolean condition) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    public static void assertTrue(boolean condition) {
+        assertTrue(null, condition);
+    }
+
+    public static void assertFalse(String message, boolean condition) {
+        assertTrue(message, !condition);
+    }
+
+    public static void assertFalse(boolean condition) {
+        assertTrue(null, !condition);
+    }
+
+    public static void assertNull(String message, Object object) {
+        assertTrue(message, object == null);
+    }
+
+    public static void assertNull(Object object) {
+        assertTrue(null, object == null);
+    }
+
+    public static void assertNotNull(String message, Object object) {
+        assertTrue(message, object != null);
+    }
+
+    public static void assertNotNull(Object object) {
+        assertTrue(null, object != null);
+    }
+
+    public static void assertEquals(String message, Object expected, Object actual) {
+        assertTrue(message, expected == null ? actual == null : expected.equals(actual));
+    }
+
+    public static void assertEquals(Object expected, Object actual) {
+        assertEquals(null, expected, actual);
+    }
+
+    public static void fail(String message) {
+        throw new AssertionError(message);
+    }
+}
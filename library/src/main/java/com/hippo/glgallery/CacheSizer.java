@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import com.hippo.yorozuya.MathUtils;
+
+/**
+ * Decides the size of a cache from its hit rate and memory headroom.
+ * Hits are counted in windows of requests. After each window, the size
+ * shrinks by a step if headroom is less than a step, or grows by a step
+ * if the hit rate is low and headroom is enough for a few steps.
+ * <p>
+ * It is thread-safe.
+ */
+class CacheSizer {
+
+    // Requests in a window
+    private static final int WINDOW = 64;
+    // Grow if hit rate of a window is lower than it
+    private static final float GROW_HIT_RATE = 0.8f;
+    // Steps of headroom to keep after growing
+    private static final int GROW_HEADROOM_STEPS = 4;
+    private static final long MIN_STEP = 4 * 1024 * 1024;
+
+    private final long mMinSize;
+    private final long mMaxSize;
+    private long mSize;
+
+    private int mRequests;
+    private int mHits;
+
+    public CacheSizer(long minSize, long maxSize, long size) {
+        if (minSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid size range: " + minSize + " - " + maxSize);
+        }
+        mMinSize = minSize;
+        mMaxSize = maxSize;
+        mSize = MathUtils.clamp(size, minSize, maxSize);
+    }
+
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Record a request. Return {@code true} if a window is done,
+     * call {@link #evaluate(long)} then.
+     */
+    public synchronized boolean onRequest(boolean hit) {
+        ++mRequests;
+        if (hit) {
+            ++mHits;
+        }
+        return mRequests >= WINDOW;
+    }
+
+    /**
+     * Return the new size for the window done.
+     *
+     * @param headroom the bytes could be allocated without memory pressure
+     */
+    public synchronized long evaluate(long headroom) {
+        final float hitRate = mRequests == 0 ? 1.0f : (float) mHits / (float) mRequests;
+        mRequests = 0;
+        mHits = 0;
+
+        final long step = Math.max(mSize / 4, MIN_STEP);
+        if (headroom < step) {
+            mSize = Math.max(mMinSize, mSize - step);
+        } else if (hitRate < GROW_HIT_RATE && headroom >= GROW_HEADROOM_STEPS * step) {
+            mSize = Math.min(mMaxSize, mSize + step);
+        }
+        return mSize;
+    }
+
+    /**
+     * Shrink the size to the fraction of it, and return the new size.
+     */
+    public synchronized long trim(float fraction) {
+        mSize = MathUtils.clamp((long) (mSize * fraction), mMinSize, mSize);
+        return mSize;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.support.annotation.NonNull;
+
+import com.hippo.yorozuya.IOUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tells a provider the page it's loading is not wanted any more.
+ * {@link GalleryProvider} hands one to each request, it's cancelled when
+ * every request and prefetch of the page is cancelled. Check it in decode work,
+ * or read the page from {@link #wrap(InputStream)} to abort reading.
+ * <p>
+ * It's thread-safe.
+ */
+public final class CancellationToken {
+
+    // Closing a stream could block, so it's not done in the cancelling thread,
+    // which is usually the render thread
+    private final Executor mCloser;
+
+    private volatile boolean mCancelled;
+    // Streams being read, closed when cancelled
+    private final List<InputStream> mStreams = new ArrayList<>(1);
+
+    // Requests and prefetches not cancelled yet, guarded by GalleryProvider
+    int requests;
+    int prefetches;
+
+    // Streams are closed in the closer, it's owned by the provider
+    CancellationToken(@NonNull Executor closer) {
+        mCloser = closer;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Throw {@link InterruptedIOException} if it's cancelled.
+     */
+    public void throwIfCancelled() throws InterruptedIOException {
+        if (mCancelled) {
+            throw new InterruptedIOException("Cancelled");
+        }
+    }
+
+    /**
+     * Return a stream reading from the stream, which throws
+     * {@link InterruptedIOException} once the token is cancelled.
+     * A blocked read is aborted by closing the stream in a background thread.
+     */
+    @NonNull
+    public InputStream wrap(@NonNull InputStream is) {
+        final InputStream stream = new CancellableInputStream(is);
+        synchronized (mStreams) {
+            if (!mCancelled) {
+                mStreams.add(stream);
+                return stream;
+            }
+        }
+        // Cancelled before reading
+        IOUtils.closeQuietly(is);
+        return stream;
+    }
+
+    // Set the flag, streams being read are closed in background
+    void cancel() {
+        final InputStream[] streams;
+        synchronized (mStreams) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            if (mStreams.isEmpty()) {
+                return;
+            }
+            streams = mStreams.toArray(new InputStream[mStreams.size()]);
+            mStreams.clear();
+        }
+        final Runnable close = new Runnable() {
+            @Override
+            public void run() {
+                for (InputStream stream : streams) {
+                    IOUtils.closeQuietly(stream);
+                }
+            }
+        };
+        try {
+            mCloser.execute(close);
+        } catch (RejectedExecutionException e) {
+            // The provider is stopped
+            close.run();
+        }
+    }
+
+    private class CancellableInputStream extends FilterInputStream {
+
+        public CancellableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            throwIfCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            throwIfCancelled();
+            final int n;
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                // Closed while reading
+                throwIfCancelled();
+                throw e;
+            }
+            throwIfCancelled();
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throwIfCancelled();
+            return super.skip(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (mStreams) {
+                mStreams.remove(this);
+            }
+            super.close();
+        }
+    }
+}
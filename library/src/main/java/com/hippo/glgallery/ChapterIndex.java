@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+/**
+ * Page counts of chapters, with Fenwick trees over them. A page count is
+ * positive, zero for empty, or {@link GalleryProvider#STATE_WAIT} and
+ * {@link GalleryProvider#STATE_ERROR} for not ready.
+ * <p>
+ * Finding the next or previous non-empty or not ready chapter, the page
+ * offset of a chapter and the chapter of a global page are all O(log n).
+ * {@link #setPageCount(int, int)} is O(log n) too.
+ * <p>
+ * It is not thread-safe.
+ */
+class ChapterIndex {
+
+    public static final int NOT_FOUND = -1;
+
+    private final int[] mPageCounts;
+    // Pages of ready chapters
+    private final Fenwick mPages;
+    // 1 for chapters not empty, not ready chapters included
+    private final Fenwick mNonEmpty;
+    // 1 for chapters not ready
+    private final Fenwick mNotReady;
+
+    /**
+     * @param pageCounts the page count of each chapter, owned by this index now
+     */
+    public ChapterIndex(int[] pageCounts) {
+        final int n = pageCounts.length;
+        mPageCounts = pageCounts;
+        mPages = new Fenwick(n);
+        mNonEmpty = new Fenwick(n);
+        mNotReady = new Fenwick(n);
+        for (int i = 0; i < n; i++) {
+            final int pageCount = pageCounts[i];
+            mPages.set(i, Math.max(pageCount, 0));
+            mNonEmpty.set(i, pageCount != 0 ? 1 : 0);
+            mNotReady.set(i, pageCount < 0 ? 1 : 0);
+        }
+        mPages.build();
+        mNonEmpty.build();
+        mNotReady.build();
+    }
+
+    public int getChapterCount() {
+        return mPageCounts.length;
+    }
+
+    public int getPageCount(int chapter) {
+        return mPageCounts[chapter];
+    }
+
+    public void setPageCount(int chapter, int pageCount) {
+        final int oldPageCount = mPageCounts[chapter];
+        if (oldPageCount == pageCount) {
+            return;
+        }
+        mPageCounts[chapter] = pageCount;
+        mPages.add(chapter, Math.max(pageCount, 0) - Math.max(oldPageCount, 0));
+        mNonEmpty.add(chapter, (pageCount != 0 ? 1 : 0) - (oldPageCount != 0 ? 1 : 0));
+        mNotReady.add(chapter, (pageCount < 0 ? 1 : 0) - (oldPageCount < 0 ? 1 : 0));
+    }
+
+    /**
+     * Return the first non-empty chapter after the chapter, or {@link #NOT_FOUND}.
+     */
+    public int nextNonEmpty(int chapter) {
+        return mNonEmpty.next(chapter + 1);
+    }
+
+    /**
+     * Return the last non-empty chapter before the chapter, or {@link #NOT_FOUND}.
+     */
+    public int previousNonEmpty(int chapter) {
+        return mNonEmpty.previous(chapter - 1);
+    }
+
+    /**
+     * Return the first not ready chapter from the chapter, or {@link #NOT_FOUND}.
+     */
+    public int nextNotReady(int chapter) {
+        return mNotReady.next(chapter);
+    }
+
+    /**
+     * Return the last not ready chapter up to the chapter, or {@link #NOT_FOUND}.
+     */
+    public int previousNotReady(int chapter) {
+        return mNotReady.previous(chapter);
+    }
+
+    /**
+     * Return the number of pages in ready chapters before the chapter.
+     */
+    public long getPageOffset(int chapter) {
+        return mPages.prefix(chapter);
+    }
+
+    /**
+     * Return the number of pages in all ready chapters.
+     */
+    public long getTotalPageCount() {
+        return mPages.prefix(mPageCounts.length);
+    }
+
+    /**
+     * Return the chapter containing the global page, or {@link #NOT_FOUND}.
+     * The page in the chapter is {@code page - getPageOffset(chapter)}.
+     */
+    public int getChapterOfPage(long page) {
+        return page < 0 ? NOT_FOUND : mPages.find(page);
+    }
+
+    // Fenwick tree of non-negative values
+    private static class Fenwick {
+
+        private final long[] mTree;
+        private final int mHighBit;
+
+        public Fenwick(int size) {
+            mTree = new long[size + 1];
+            mHighBit = size == 0 ? 0 : Integer.highestOneBit(size);
+        }
+
+        // Set value before build
+        public void set(int index, long value) {
+            mTree[index + 1] = value;
+        }
+
+        // O(n) build from values set
+        public void build() {
+            final long[] tree = mTree;
+            for (int i = 1, n = tree.length; i < n; i++) {
+                final int parent = i + (i & -i);
+                if (parent < n) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+
+        public void add(int index, long delta) {
+            if (delta == 0) {
+                return;
+            }
+            final long[] tree = mTree;
+            for (int i = index + 1, n = tree.length; i < n; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        // Sum of values in [0, end)
+        public long prefix(int end) {
+            final long[] tree = mTree;
+            long sum = 0;
+            for (int i = Math.min(end, tree.length - 1); i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        // The smallest index whose prefix sum including itself is greater than k,
+        // NOT_FOUND if k is not less than the total
+        public int find(long k) {
+            final long[] tree = mTree;
+            int position = 0;
+            for (int bit = mHighBit; bit != 0; bit >>= 1) {
+                final int next = position + bit;
+                if (next < tree.length && tree[next] <= k) {
+                    position = next;
+                    k -= tree[next];
+                }
+            }
+            return position < tree.length - 1 ? position : NOT_FOUND;
+        }
+
+        // The first index from start with positive value
+        public int next(int start) {
+            return start < 0 ? find(0) : find(prefix(start));
+        }
+
+        // The last index up to end with positive value
+        public int previous(int end) {
+            if (end < 0) {
+                return NOT_FOUND;
+            }
+            final long k = prefix(end + 1);
+            return k == 0 ? NOT_FOUND : find(k - 1);
+        }
+    }
+}
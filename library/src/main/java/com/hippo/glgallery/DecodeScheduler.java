@@ -0,0 +1,545 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.hippo.yorozuya.thread.PriorityThread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A decode queue with a pool of worker threads for {@link GalleryProvider}.
+ * <p>
+ * Pending pages are ordered by distance from the current page,
+ * and visible pages always go before prefetched pages.
+ * Requesting a page which is pending or decoding does nothing unless
+ * it needs a larger target size, and cancelling a pending page
+ * takes constant time.
+ * <p>
+ * If there are more than one worker, one worker is kept
+ * for visible pages, prefetched pages never take it.
+ * <p>
+ * Pending pages with cancelled {@link CancellationToken}s are dropped.
+ * A page decoding with a cancelled token is decoded again if it's
+ * requested with a new token.
+ * <p>
+ * A throwable from the decoder fails the page only, the worker goes on.
+ */
+public class DecodeScheduler {
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_DECODING = 1;
+    private static final int STATE_CANCELLED = 2;
+
+    private final String mName;
+    private final int mWorkerCount;
+    private final int mThreadPriority;
+    private final Decoder mDecoder;
+
+    private final Object mLock = new Object();
+    // Pending and decoding tasks
+    private final LongMap<Task> mTasks = new LongMap<>();
+    private Task[] mHeap = new Task[16];
+    private int mHeapSize;
+    private final List<Task> mTaskPool = new ArrayList<>();
+    private final List<Thread> mWorkers = new ArrayList<>();
+
+    private int mCurrentChapter;
+    private int mCurrentIndex;
+    private long mSequence;
+    // Prefetched pages being decoded, including ones of stopped workers
+    private int mDecodingPrefetch;
+    private boolean mStarted;
+    // Increased by stop(), workers of an old generation exit
+    private int mGeneration;
+
+    /**
+     * @param name the name of worker threads
+     * @param workerCount the number of worker threads
+     * @param threadPriority the priority of worker threads, like
+     *        {@link android.os.Process#THREAD_PRIORITY_BACKGROUND}
+     */
+    public DecodeScheduler(@NonNull String name, int workerCount, int threadPriority,
+            @NonNull Decoder decoder) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workerCount <= 0");
+        }
+        mName = name;
+        mWorkerCount = workerCount;
+        mThreadPriority = threadPriority;
+        mDecoder = decoder;
+    }
+
+    /**
+     * Return a suggested worker count for this device.
+     */
+    public static int getSuggestedWorkerCount() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Start worker threads. Requests before it are kept.
+     * It could be started again after {@link #stop()}.
+     */
+    public void start() {
+        synchronized (mLock) {
+            if (mStarted) {
+                throw new IllegalStateException("Can't start it twice");
+            }
+            mStarted = true;
+            for (int i = 0; i < mWorkerCount; i++) {
+                final Thread thread = new PriorityThread(new Worker(mGeneration),
+                        mName + '-' + i, mThreadPriority);
+                mWorkers.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Stop worker threads and drop all pending requests.
+     * Pages being decoded are not interrupted, workers exit after them.
+     */
+    public void stop() {
+        synchronized (mLock) {
+            mStarted = false;
+            ++mGeneration;
+            for (final Thread thread : mWorkers) {
+                thread.interrupt();
+            }
+            mWorkers.clear();
+            for (int i = 0; i < mHeapSize; i++) {
+                mHeap[i] = null;
+            }
+            mHeapSize = 0;
+            // Decoding tasks are released in onTaskDone()
+            mTasks.clear();
+            mLock.notifyAll();
+        }
+    }
+
+    private static long genKey(int chapter, int index) {
+        return ((long) chapter) << 32 | (index & 0xffffffffL);
+    }
+
+    /**
+     * Set the page which the user is reading.
+     * Pending pages are reordered.
+     */
+    public void setCurrentPage(int chapter, int index) {
+        synchronized (mLock) {
+            if (mCurrentChapter == chapter && mCurrentIndex == index) {
+                return;
+            }
+            mCurrentChapter = chapter;
+            mCurrentIndex = index;
+
+            final Task[] heap = mHeap;
+            for (int i = 0, n = mHeapSize; i < n; i++) {
+                final Task task = heap[i];
+                task.distance = getDistance(task.chapter, task.index);
+            }
+            for (int i = mHeapSize / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+    }
+
+    // Chapters behind the current one are farther than chapters ahead
+    private long getDistance(int chapter, int index) {
+        if (chapter == mCurrentChapter) {
+            return Math.abs((long) index - mCurrentIndex);
+        } else if (chapter > mCurrentChapter) {
+            return ((long) (chapter - mCurrentChapter) << 32) + index;
+        } else {
+            return ((long) (mCurrentChapter - chapter) << 32) + Integer.MAX_VALUE - index;
+        }
+    }
+
+    /**
+     * Add a page to decode in original size.
+     *
+     * @see #request(int, int, int, int, boolean, CancellationToken)
+     */
+    public boolean request(int chapter, int index, boolean visible) {
+        return request(chapter, index, 0, 0, visible, null);
+    }
+
+    /**
+     * Add a page to decode without token.
+     *
+     * @see #request(int, int, int, int, boolean, CancellationToken)
+     */
+    public boolean request(int chapter, int index, int targetWidth, int targetHeight,
+            boolean visible) {
+        return request(chapter, index, targetWidth, targetHeight, visible, null);
+    }
+
+    /**
+     * Add a page to decode. If the page is already pending or decoding
+     * with a smaller target size, it will be decoded in the larger one.
+     *
+     * @param targetWidth the width the page is shown in, 0 for no limit
+     * @param targetHeight the height the page is shown in, 0 for no limit
+     * @param visible {@code true} if the page is shown to the user,
+     *                {@code false} if it is prefetched
+     * @param token the token from {@link GalleryProvider}, it's passed to the decoder
+     * @return {@code false} if the page is already pending or decoding
+     */
+    public boolean request(int chapter, int index, int targetWidth, int targetHeight,
+            boolean visible, @Nullable CancellationToken token) {
+        synchronized (mLock) {
+            final long key = genKey(chapter, index);
+            final Task old = mTasks.get(key);
+            if (old != null) {
+                if (old.state == STATE_PENDING) {
+                    old.targetWidth = mergeTargetSize(old.targetWidth, targetWidth);
+                    old.targetHeight = mergeTargetSize(old.targetHeight, targetHeight);
+                    if (token != null) {
+                        old.token = token;
+                    }
+                    if (visible && !old.visible) {
+                        // Pin it
+                        old.visible = true;
+                        siftUp(old.heapIndex);
+                    }
+                } else if (isCancelled(old)) {
+                    // Decode it again with the new token after current decoding
+                    old.redo = true;
+                    old.targetWidth = targetWidth;
+                    old.targetHeight = targetHeight;
+                    old.visible = visible;
+                    old.token = token;
+                } else if (!coversTargetSize(old.targetWidth, targetWidth)
+                        || !coversTargetSize(old.targetHeight, targetHeight)) {
+                    // Decode it again after current decoding
+                    old.redo = true;
+                    old.targetWidth = mergeTargetSize(old.targetWidth, targetWidth);
+                    old.targetHeight = mergeTargetSize(old.targetHeight, targetHeight);
+                    old.visible |= visible;
+                }
+                return false;
+            }
+
+            final Task task = obtainTask();
+            task.chapter = chapter;
+            task.index = index;
+            task.targetWidth = targetWidth;
+            task.targetHeight = targetHeight;
+            task.redo = false;
+            task.visible = visible;
+            task.token = token;
+            task.state = STATE_PENDING;
+            task.distance = getDistance(chapter, index);
+            task.sequence = mSequence++;
+            mTasks.put(key, task);
+            offer(task);
+            mLock.notify();
+            return true;
+        }
+    }
+
+    /**
+     * Remove the page from pending pages. If it is decoding,
+     * it won't be decoded again for a larger target size.
+     */
+    public void cancel(int chapter, int index) {
+        synchronized (mLock) {
+            cancel(genKey(chapter, index), false);
+        }
+    }
+
+    /**
+     * Remove the page from pending pages if it is prefetched.
+     */
+    public void cancelPrefetch(int chapter, int index) {
+        synchronized (mLock) {
+            cancel(genKey(chapter, index), true);
+        }
+    }
+
+    // Must be called in mLock
+    private void cancel(long key, boolean prefetchOnly) {
+        final Task task = mTasks.get(key);
+        if (task == null || (prefetchOnly && task.visible)) {
+            return;
+        }
+        if (task.state == STATE_PENDING) {
+            // Leave it in heap, workers drop it
+            task.state = STATE_CANCELLED;
+            mTasks.remove(key);
+        } else {
+            task.redo = false;
+        }
+    }
+
+    /**
+     * Return {@code true} if the page is pending or decoding.
+     */
+    public boolean contains(int chapter, int index) {
+        synchronized (mLock) {
+            return mTasks.containsKey(genKey(chapter, index));
+        }
+    }
+
+    // 0 means no limit
+    private static int mergeTargetSize(int a, int b) {
+        return a <= 0 || b <= 0 ? 0 : Math.max(a, b);
+    }
+
+    // Return true if decoding in size a is enough for size b
+    private static boolean coversTargetSize(int a, int b) {
+        return a <= 0 || (b > 0 && b <= a);
+    }
+
+    private Task obtainTask() {
+        final int size = mTaskPool.size();
+        return size == 0 ? new Task() : mTaskPool.remove(size - 1);
+    }
+
+    private void releaseTask(Task task) {
+        task.heapIndex = -1;
+        task.token = null;
+        mTaskPool.add(task);
+    }
+
+    // Return true if a goes before b
+    private static boolean before(Task a, Task b) {
+        if (a.visible != b.visible) {
+            return a.visible;
+        }
+        if (a.distance != b.distance) {
+            return a.distance < b.distance;
+        }
+        // The newer one first
+        return a.sequence > b.sequence;
+    }
+
+    private void offer(Task task) {
+        if (mHeapSize == mHeap.length) {
+            final Task[] heap = new Task[mHeap.length * 2];
+            System.arraycopy(mHeap, 0, heap, 0, mHeapSize);
+            mHeap = heap;
+        }
+        task.heapIndex = mHeapSize;
+        mHeap[mHeapSize++] = task;
+        siftUp(task.heapIndex);
+    }
+
+    private Task pollFirst() {
+        final Task[] heap = mHeap;
+        final Task first = heap[0];
+        final int last = --mHeapSize;
+        if (last > 0) {
+            heap[0] = heap[last];
+            heap[0].heapIndex = 0;
+            heap[last] = null;
+            siftDown(0);
+        } else {
+            heap[0] = null;
+        }
+        return first;
+    }
+
+    private void siftUp(int i) {
+        final Task[] heap = mHeap;
+        final Task task = heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            final Task p = heap[parent];
+            if (!before(task, p)) {
+                break;
+            }
+            heap[i] = p;
+            p.heapIndex = i;
+            i = parent;
+        }
+        heap[i] = task;
+        task.heapIndex = i;
+    }
+
+    private void siftDown(int i) {
+        final Task[] heap = mHeap;
+        final int size = mHeapSize;
+        final Task task = heap[i];
+        final int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            final int right = child + 1;
+            if (right < size && before(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!before(heap[child], task)) {
+                break;
+            }
+            heap[i] = heap[child];
+            heap[i].heapIndex = i;
+            i = child;
+        }
+        heap[i] = task;
+        task.heapIndex = i;
+    }
+
+    private static boolean isCancelled(Task task) {
+        return task.token != null && task.token.isCancelled();
+    }
+
+    // Must be called in mLock. Return null if no task can be decoded now.
+    private Task nextTask() {
+        while (mHeapSize > 0) {
+            final Task first = mHeap[0];
+            if (first.state == STATE_CANCELLED) {
+                pollFirst();
+                releaseTask(first);
+                continue;
+            }
+            if (isCancelled(first)) {
+                pollFirst();
+                mTasks.remove(genKey(first.chapter, first.index));
+                releaseTask(first);
+                continue;
+            }
+            if (!first.visible && mWorkerCount > 1 && mDecodingPrefetch >= mWorkerCount - 1) {
+                // Keep one worker for visible pages
+                return null;
+            }
+            pollFirst();
+            first.state = STATE_DECODING;
+            if (!first.visible) {
+                ++mDecodingPrefetch;
+            }
+            return first;
+        }
+        return null;
+    }
+
+    private void onTaskDone(Task task, boolean prefetch) {
+        synchronized (mLock) {
+            if (prefetch) {
+                --mDecodingPrefetch;
+            }
+            final long key = genKey(task.chapter, task.index);
+            if (mTasks.get(key) == task) {
+                if (task.redo && !isCancelled(task)) {
+                    task.redo = false;
+                    task.state = STATE_PENDING;
+                    task.distance = getDistance(task.chapter, task.index);
+                    offer(task);
+                } else {
+                    mTasks.remove(key);
+                    releaseTask(task);
+                }
+            } else {
+                releaseTask(task);
+            }
+            // A visible page might be waiting for a kept worker
+            mLock.notifyAll();
+        }
+    }
+
+    private static class Task {
+        int chapter;
+        int index;
+        int targetWidth;
+        int targetHeight;
+        // Decode it again when it is done
+        boolean redo;
+        boolean visible;
+        CancellationToken token;
+        int state;
+        long distance;
+        long sequence;
+        int heapIndex = -1;
+    }
+
+    private class Worker implements Runnable {
+
+        private final int mWorkerGeneration;
+
+        public Worker(int generation) {
+            mWorkerGeneration = generation;
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Task task;
+                final int targetWidth;
+                final int targetHeight;
+                final boolean prefetch;
+                final CancellationToken token;
+                synchronized (mLock) {
+                    // The decoder might have cleared the interrupt
+                    if (mWorkerGeneration != mGeneration) {
+                        break;
+                    }
+                    task = nextTask();
+                    if (task == null) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            // Interrupted
+                            break;
+                        }
+                        continue;
+                    }
+                    // They might be changed by request()
+                    targetWidth = task.targetWidth;
+                    targetHeight = task.targetHeight;
+                    prefetch = !task.visible;
+                    token = task.token;
+                }
+
+                try {
+                    mDecoder.decode(task.chapter, task.index, targetWidth, targetHeight, token);
+                } catch (Throwable e) {
+                    // Only this page fails
+                    if (token == null || !token.isCancelled()) {
+                        mDecoder.onDecodeFailed(task.chapter, task.index, e, token);
+                    }
+                } finally {
+                    onTaskDone(task, prefetch);
+                }
+            }
+        }
+    }
+
+    public interface Decoder {
+
+        /**
+         * Decode the page. It is called in worker thread.
+         * Stop early and notify nothing if the token is cancelled.
+         *
+         * @param targetWidth the width the page is shown in, 0 for no limit
+         * @param targetHeight the height the page is shown in, 0 for no limit
+         * @param token the token the page is requested with, {@code null} for none
+         * @see GalleryProvider#computeSampleSize(int, int, int, int)
+         */
+        void decode(int chapter, int index, int targetWidth, int targetHeight,
+                @Nullable CancellationToken token);
+
+        /**
+         * Called in worker thread if {@link #decode(int, int, int, int, CancellationToken)}
+         * throws, unless the token is cancelled. Notify the page failed here.
+         */
+        void onDecodeFailed(int chapter, int index, @NonNull Throwable e,
+                @Nullable CancellationToken token);
+    }
+}
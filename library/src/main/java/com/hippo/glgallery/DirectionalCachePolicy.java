@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+/**
+ * Evicts pages behind the user first, they are rarely read again in linear
+ * reading. The direction is the one of the last page change. The page just
+ * behind the current one is kept for turning back, it's evicted with pages ahead.
+ * <p>
+ * Pages behind, including pages of other chapters, are evicted eldest first.
+ * If none, the page farthest ahead is evicted, it's needed the latest.
+ * <p>
+ * It is thread-safe.
+ */
+public class DirectionalCachePolicy implements ImageCachePolicy {
+
+    // Pages just behind the current one which are not evicted as pages behind
+    private static final int KEEP_BEHIND = 1;
+
+    private int mChapter = -1;
+    private int mIndex = -1;
+    // 1 for forward, -1 for backward
+    private int mDirection = 1;
+
+    @Override
+    public synchronized void onCurrentPage(int chapter, int index) {
+        if (chapter == mChapter) {
+            if (index != mIndex) {
+                mDirection = index > mIndex ? 1 : -1;
+            }
+        } else if (mChapter != -1) {
+            mDirection = chapter > mChapter ? 1 : -1;
+        }
+        mChapter = chapter;
+        mIndex = index;
+    }
+
+    @Override
+    public void onAccess(long key) {}
+
+    @Override
+    public synchronized int selectVictim(Keys keys) {
+        if (mChapter == -1) {
+            return 0;
+        }
+
+        int farthest = -1;
+        int farthestOffset = Integer.MIN_VALUE;
+        for (int i = 0, count = keys.count(); i < count; i++) {
+            final long key = keys.get(i);
+            if ((int) (key >>> 32) != mChapter) {
+                return i;
+            }
+            // Positive for pages ahead
+            final int offset = ((int) key - mIndex) * mDirection;
+            if (offset < -KEEP_BEHIND) {
+                return i;
+            }
+            if (offset > farthestOffset) {
+                farthest = i;
+                farthestOffset = offset;
+            }
+        }
+        return farthest;
+    }
+}
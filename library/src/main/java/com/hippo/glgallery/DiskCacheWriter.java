@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.hippo.image.ImageData;
+import com.hippo.yorozuya.thread.PriorityThread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes pages to {@link MappedImageCache} in a worker thread, so pages
+ * are delivered without waiting for disk. Writing is only an optimization,
+ * if too many pages are waiting, the eldest one is dropped.
+ * The thread exits if nothing to do for a while.
+ */
+class DiskCacheWriter {
+
+    private static final String TAG = DiskCacheWriter.class.getSimpleName();
+    private static final String THREAD_NAME = "DiskCacheWriter";
+    private static final long IDLE_TIMEOUT = 5000L; // ms
+    private static final int MAX_PENDING_WRITES = 4;
+
+    private final Object mLock = new Object();
+    // Eldest first
+    private final List<Write> mWrites = new ArrayList<>();
+    private Thread mThread;
+
+    private void ensureThread() {
+        if (mThread == null) {
+            mThread = new PriorityThread(new Worker(), THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+            mThread.start();
+        } else {
+            mLock.notify();
+        }
+    }
+
+    /**
+     * Write the page later. The image is referenced until it's written or dropped,
+     * so call it before the image could be released.
+     */
+    public void write(@NonNull MappedImageCache cache, long key, @NonNull ImageData image,
+            int sampleSize) {
+        image.addReference();
+        Write dropped = null;
+        synchronized (mLock) {
+            final List<Write> writes = mWrites;
+            // The newer one of the page replaces the pending one
+            for (int i = 0, n = writes.size(); i < n; i++) {
+                final Write write = writes.get(i);
+                if (write.cache == cache && write.key == key) {
+                    dropped = writes.remove(i);
+                    break;
+                }
+            }
+            if (dropped == null && writes.size() == MAX_PENDING_WRITES) {
+                dropped = writes.remove(0);
+            }
+            writes.add(new Write(cache, key, image, sampleSize));
+            ensureThread();
+        }
+        if (dropped != null) {
+            release(dropped.image);
+        }
+    }
+
+    private static void release(ImageData image) {
+        image.removeReference();
+        if (!image.isReferenced()) {
+            image.recycle();
+        }
+    }
+
+    private static class Write {
+
+        final MappedImageCache cache;
+        final long key;
+        final ImageData image;
+        final int sampleSize;
+
+        Write(MappedImageCache cache, long key, ImageData image, int sampleSize) {
+            this.cache = cache;
+            this.key = key;
+            this.image = image;
+            this.sampleSize = sampleSize;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                loop();
+            } finally {
+                // Let a new thread start if it dies
+                synchronized (mLock) {
+                    if (mThread == Thread.currentThread()) {
+                        mThread = null;
+                    }
+                }
+            }
+        }
+
+        private void loop() {
+            while (true) {
+                final Write write;
+                synchronized (mLock) {
+                    if (mWrites.isEmpty()) {
+                        try {
+                            mLock.wait(IDLE_TIMEOUT);
+                        } catch (InterruptedException e) {
+                            // Ignore
+                        }
+                        if (mWrites.isEmpty()) {
+                            mThread = null;
+                            return;
+                        }
+                    }
+                    write = mWrites.remove(0);
+                }
+
+                try {
+                    write.cache.put(write.key, write.image, write.sampleSize);
+                } catch (Throwable e) {
+                    Log.w(TAG, "Can't write page " + write.key, e);
+                } finally {
+                    release(write.image);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+
+/**
+ * Timings and counters of the latest frames rendered by {@link GalleryView},
+ * kept in a fixed-size ring buffer. Frames are indexed from 0, the eldest,
+ * to {@link #getFrameCount()} - 1, the latest.
+ * <p>
+ * It's written in render thread. Read it in
+ * {@link GalleryView.Metrics#onFrame(FrameMetrics)}, or copy it there.
+ */
+public final class FrameMetrics {
+
+    @IntDef({PHASE_ANIMATION, PHASE_FILL, PHASE_RENDER, PHASE_EDGE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Phase {}
+
+    /** Update animation of layout manager */
+    public static final int PHASE_ANIMATION = 0;
+    /** Fill pages, binds and unbinds happen here */
+    public static final int PHASE_FILL = 1;
+    /** Render pages */
+    public static final int PHASE_RENDER = 2;
+    /** Render edge view */
+    public static final int PHASE_EDGE = 3;
+
+    public static final int PHASE_COUNT = 4;
+
+    @IntDef({COUNTER_BIND, COUNTER_UNBIND, COUNTER_OBTAIN_PAGE, COUNTER_NEW_PAGE, COUNTER_UPLOAD_BYTES})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Counter {}
+
+    /** Pages bound to adapter */
+    public static final int COUNTER_BIND = 0;
+    /** Pages unbound from adapter */
+    public static final int COUNTER_UNBIND = 1;
+    /** Pages obtained from page pool */
+    public static final int COUNTER_OBTAIN_PAGE = 2;
+    /** Pages created because page pool is empty */
+    public static final int COUNTER_NEW_PAGE = 3;
+    /** Bytes of textures added to uploader */
+    public static final int COUNTER_UPLOAD_BYTES = 4;
+
+    public static final int COUNTER_COUNT = 5;
+
+    private final GalleryView.Metrics mMetrics;
+    private final int mCapacity;
+
+    // Start time of each frame
+    private final long[] mStartTimes;
+    // PHASE_COUNT durations of each frame
+    private final long[] mPhaseTimes;
+    // COUNTER_COUNT counters of each frame
+    private final long[] mCounters;
+
+    // Counters since last frame
+    private final long[] mCurrentCounters = new long[COUNTER_COUNT];
+
+    // The slot of next frame
+    private int mNext;
+    private int mCount;
+
+    private long mFrameStart;
+    private long mPhaseStart;
+
+    /**
+     * @param capacity the number of the latest frames to keep
+     */
+    public FrameMetrics(int capacity, GalleryView.Metrics metrics) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        mMetrics = metrics;
+        mCapacity = capacity;
+        mStartTimes = new long[capacity];
+        mPhaseTimes = new long[capacity * PHASE_COUNT];
+        mCounters = new long[capacity * COUNTER_COUNT];
+    }
+
+    void beginFrame() {
+        final long now = System.nanoTime();
+        mFrameStart = now;
+        mPhaseStart = now;
+        // Clear durations of phases skipped in this frame
+        Arrays.fill(mPhaseTimes, mNext * PHASE_COUNT, (mNext + 1) * PHASE_COUNT, 0L);
+    }
+
+    // The phase ends now, the next phase starts
+    void endPhase(@Phase int phase) {
+        final long now = System.nanoTime();
+        mPhaseTimes[mNext * PHASE_COUNT + phase] = now - mPhaseStart;
+        mPhaseStart = now;
+    }
+
+    void count(@Counter int counter, long delta) {
+        mCurrentCounters[counter] += delta;
+    }
+
+    void endFrame() {
+        final int slot = mNext;
+        mStartTimes[slot] = mFrameStart;
+        System.arraycopy(mCurrentCounters, 0, mCounters, slot * COUNTER_COUNT, COUNTER_COUNT);
+        Arrays.fill(mCurrentCounters, 0L);
+
+        mNext = (slot + 1) % mCapacity;
+        mCount = Math.min(mCount + 1, mCapacity);
+
+        mMetrics.onFrame(this);
+    }
+
+    private int getSlot(int frame) {
+        if (frame < 0 || frame >= mCount) {
+            throw new IndexOutOfBoundsException("Frame: " + frame + ", count: " + mCount);
+        }
+        return (mNext - mCount + frame + mCapacity) % mCapacity;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Return the number of frames kept, no more than capacity.
+     */
+    public int getFrameCount() {
+        return mCount;
+    }
+
+    /**
+     * Return the start time of the frame in {@link System#nanoTime()}.
+     */
+    public long getStartTime(int frame) {
+        return mStartTimes[getSlot(frame)];
+    }
+
+    /**
+     * Return the duration of the phase in the frame in nanoseconds.
+     */
+    public long getPhaseTime(int frame, @Phase int phase) {
+        return mPhaseTimes[getSlot(frame) * PHASE_COUNT + phase];
+    }
+
+    /**
+     * Return the duration of all phases in the frame in nanoseconds.
+     */
+    public long getFrameTime(int frame) {
+        final int offset = getSlot(frame) * PHASE_COUNT;
+        long time = 0;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            time += mPhaseTimes[offset + i];
+        }
+        return time;
+    }
+
+    /**
+     * Return the counter of the frame. It counts from the end of
+     * previous frame to the end of this frame.
+     */
+    public long getCounter(int frame, @Counter int counter) {
+        return mCounters[getSlot(frame) * COUNTER_COUNT + counter];
+    }
+
+    /**
+     * Drop all frames.
+     */
+    public void clear() {
+        mNext = 0;
+        mCount = 0;
+        Arrays.fill(mCurrentCounters, 0L);
+    }
+}
@@ -45,6 +45,8 @@ public class GalleryPageView extends GLFrameLayout {
     private final Params mParams;
 
     private long mId = GalleryView.Adapter.INVALID_ID;
+    // The image is a thumbnail
+    private boolean mThumb;
 
     public static class Params {
         int progressSize;
@@ -59,9 +61,15 @@ public class GalleryPageView extends GLFrameLayout {
         int errorTextColor;
     }
 
-    public GalleryPageView(GalleryView galleryView, Params params, ImageMovableTextTexture pageTextTexture) {
+    public GalleryPageView(final GalleryView galleryView, Params params, ImageMovableTextTexture pageTextTexture) {
         // Add image
         mImage = new ImageView();
+        mImage.setListener(new ImageView.Listener() {
+            @Override
+            public void onRequestOrigin() {
+                galleryView.onRequestOrigin(GalleryPageView.this);
+            }
+        });
         GravityLayoutParams glp = new GravityLayoutParams(LayoutParams.MATCH_PARENT,
                 LayoutParams.MATCH_PARENT);
         addComponent(mImage, glp);
@@ -142,7 +150,7 @@ public class GalleryPageView extends GLFrameLayout {
      * Clear all resources
      */
     public void clear() {
-        setImage(null, null);
+        setImage(null, null, null, 1);
         setError(null);
     }
 
@@ -152,7 +160,7 @@ public class GalleryPageView extends GLFrameLayout {
      */
     public void showProgress(float progress, boolean showIndex, int index) {
         showInfo();
-        setImage(null, null);
+        setImage(null, null, null, 1);
         if (showIndex) {
             setIndex(index);
         } else {
@@ -166,18 +174,69 @@ public class GalleryPageView extends GLFrameLayout {
      * Show image in the View.
      */
     public void showImage(ImageTexture image, Rect rect) {
+        showImage(image, rect, 1);
+    }
+
+    /**
+     * Show image in the View. If the view shows the same page in
+     * another sample size, the scale and position are kept.
+     *
+     * @param sampleSize the image is decoded in 1 / sampleSize of original size
+     */
+    public void showImage(ImageTexture image, Rect rect, int sampleSize) {
+        showImage();
+        setImage(image, null, rect, sampleSize);
+        setProgress(GalleryPageView.PROGRESS_GONE);
+        setError(null);
+    }
+
+    /**
+     * Like {@link #showImage(ImageTexture, Rect, int)}, the texture is shared
+     * with other views, it's detached instead of recycled when replaced.
+     */
+    void showImage(SharedTexture image, Rect rect, int sampleSize) {
         showImage();
-        setImage(image, rect);
+        setImage(null, image, rect, sampleSize);
         setProgress(GalleryPageView.PROGRESS_GONE);
         setError(null);
     }
 
+    /**
+     * Show a thumbnail or a preview of the page while the page is loading.
+     * Showing the page later keeps the scale and position.
+     *
+     * @param sampleSize the thumbnail is decoded in 1 / sampleSize of original size
+     */
+    public void showThumb(ImageTexture image, Rect rect, int sampleSize) {
+        showImage(image, rect, sampleSize);
+        mThumb = true;
+    }
+
+    void showThumb(SharedTexture image, Rect rect, int sampleSize) {
+        showImage(image, rect, sampleSize);
+        mThumb = true;
+    }
+
+    /**
+     * Return {@code true} if it shows a thumbnail.
+     */
+    public boolean isShowingThumb() {
+        return mThumb;
+    }
+
+    /**
+     * Return {@code true} if it shows the image of the page, not a thumbnail.
+     */
+    public boolean isShowingPage() {
+        return mImage.isLoaded() && !mThumb;
+    }
+
     /**
      * Show only text in the View.
      */
     public void showText(String str) {
         showInfo();
-        setImage(null, null);
+        setImage(null, null, null, 1);
         hideIndex();
         setProgress(GalleryPageView.PROGRESS_GONE);
         setText(str);
@@ -188,7 +247,7 @@ public class GalleryPageView extends GLFrameLayout {
      */
     public void showError(String error, boolean showIndex, int index) {
         showInfo();
-        setImage(null, null);
+        setImage(null, null, null, 1);
         if (showIndex) {
             setIndex(index);
         } else {
@@ -209,18 +268,46 @@ public class GalleryPageView extends GLFrameLayout {
         mInfo.setVisibility(VISIBLE);
     }
 
-    private void unbindImage() {
-        final ImageTexture texture = mImage.getImageTexture();
-        if (texture != null) {
-            mImage.setImageTexture(null, null);
-            texture.recycle();
+    /**
+     * Show a page in tiles. The TiledImage is recycled when replaced.
+     */
+    void showTiledImage(TiledImage tiledImage) {
+        showImage();
+        setImage(null, null, null, 1);
+        setTiledImage(tiledImage);
+        setProgress(GalleryPageView.PROGRESS_GONE);
+        setError(null);
+    }
+
+    private void setTiledImage(TiledImage tiledImage) {
+        final TiledImage oldTiledImage = mImage.getTiledImage();
+        if (oldTiledImage == tiledImage) {
+            return;
+        }
+        mImage.setTiledImage(tiledImage);
+        if (oldTiledImage != null) {
+            oldTiledImage.recycle();
         }
     }
 
-    private void setImage(ImageTexture imageTexture, Rect rect) {
-        unbindImage();
-        if (imageTexture != null) {
-            mImage.setImageTexture(imageTexture, rect);
+    // Set imageTexture or sharedTexture
+    private void setImage(ImageTexture imageTexture, SharedTexture sharedTexture, Rect rect, int sampleSize) {
+        mThumb = false;
+        setTiledImage(null);
+        final ImageTexture oldTexture = mImage.getImageTexture();
+        if (oldTexture == null && imageTexture == null && sharedTexture == null) {
+            return;
+        }
+        // A shared one is detached by ImageView
+        final boolean oldShared = mImage.getSharedTexture() != null;
+        // Replace it directly, let ImageView keep scale for the same page
+        if (sharedTexture != null) {
+            mImage.setSharedTexture(sharedTexture, rect, sampleSize);
+        } else {
+            mImage.setImageTexture(imageTexture, rect, sampleSize);
+        }
+        if (oldTexture != null && !oldShared) {
+            oldTexture.recycle();
         }
     }
 
@@ -285,6 +372,10 @@ public class GalleryPageView extends GLFrameLayout {
         return mImage;
     }
 
+    GalleryView getGalleryView() {
+        return mGalleryView;
+    }
+
     public boolean isLoaded() {
         return mImage.getVisibility() == VISIBLE;
     }
@@ -16,22 +16,31 @@
 
 package com.hippo.glgallery;
 
+import android.content.ComponentCallbacks2;
+import android.os.Process;
 import android.support.annotation.CheckResult;
 import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.UiThread;
 
-import com.hippo.beerbelly.LruCache;
-import com.hippo.beerbelly.LruCacheHelper;
 import com.hippo.glview.glrenderer.GLCanvas;
 import com.hippo.glview.view.GLRoot;
 import com.hippo.image.ImageData;
 import com.hippo.yorozuya.ConcurrentPool;
 import com.hippo.yorozuya.MathUtils;
 import com.hippo.yorozuya.OSUtils;
+import com.hippo.yorozuya.thread.PriorityThread;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class GalleryProvider {
 
@@ -40,19 +49,79 @@ public abstract class GalleryProvider {
 
     private static final long MAX_CACHE_SIZE = 128 * 1024 * 1024; // 128MB
     private static final long MIN_CACHE_SIZE = 32 * 1024 * 1024; // 32MB
+    // Bounds of adaptive cache size
+    private static final long MAX_ADAPTIVE_CACHE_SIZE = 256 * 1024 * 1024; // 256MB
+    private static final long MIN_ADAPTIVE_CACHE_SIZE = 16 * 1024 * 1024; // 16MB
+    private static final long MAX_THUMB_CACHE_SIZE = 16 * 1024 * 1024; // 16MB
+    private static final long MIN_THUMB_CACHE_SIZE = 4 * 1024 * 1024; // 4MB
 
-    private final ConcurrentPool<NotifyTask> mNotifyTaskPool = new ConcurrentPool<>(5);
+    /**
+     * Thumbnails are decoded not smaller than it in both width and height.
+     */
+    public static final int THUMB_SIZE = 256;
+
+    // A page is tall if height / width is larger than it
+    private static final int TILE_MIN_RATIO = 3;
+    private static final long TILE_MIN_PIXELS = 4 * 1024 * 1024;
+
+    // Progress of many pages could be notified in one frame
+    private static final int NOTIFY_TASK_POOL_SIZE = 64;
+
+    private final ConcurrentPool<NotifyTask> mNotifyTaskPool = new ConcurrentPool<>(NOTIFY_TASK_POOL_SIZE);
+    // Notifications not handled yet, the latest first
+    private final AtomicReference<NotifyTask> mPendingTasks = new AtomicReference<>();
+    private final NotifyDrainer mNotifyDrainer;
     private volatile Listener mListener;
     private volatile GLRoot mGLRoot;
 
-    private final LruCache<Long, ImageData> mImageCache;
+    private final LongLruCache<ImageData> mImageCache;
+    private final CacheSizer mCacheSizer;
+    private volatile boolean mAdaptiveCacheSize = true;
+    @Nullable
+    private volatile ImageCachePolicy mImageCachePolicy;
+    @Nullable
+    private volatile ReadingRecorder mRecorder;
+    private final RequestMetrics mRequestMetrics = new RequestMetrics();
+    // Tokens of pages requested or prefetched, until they are done or cancelled
+    private final LongMap<CancellationToken> mTokens = new LongMap<>();
+    // Closes streams of cancelled tokens, closing could block the cancelling thread
+    private final ThreadPoolExecutor mStreamCloser = newStreamCloser();
+    // Thumbnails have their own budget, full pages can't evict them
+    private final LongLruCache<ImageData> mThumbCache;
+    @Nullable
+    private volatile MappedImageCache mDiskCache;
+
+    // The size pages are shown in, 0 for no limit
+    private volatile int mTargetWidth;
+    private volatile int mTargetHeight;
+    private volatile boolean mTileEnabled;
 
     private boolean mStarted = false;
 
     public GalleryProvider() {
-        final int imageCacheSize = (int) MathUtils.clamp(
+        final long imageCacheSize = MathUtils.clamp(
                 OSUtils.getTotalMemory() / 16, MIN_CACHE_SIZE, MAX_CACHE_SIZE);
-        mImageCache = LruCache.create(imageCacheSize, new ImageCacheHelper(), false);
+        mImageCache = new LongLruCache<>(imageCacheSize, new ImageCacheHelper(mRequestMetrics));
+        mCacheSizer = new CacheSizer(MIN_ADAPTIVE_CACHE_SIZE, MathUtils.clamp(
+                OSUtils.getTotalMemory() / 8, imageCacheSize, MAX_ADAPTIVE_CACHE_SIZE), imageCacheSize);
+        final long thumbCacheSize = MathUtils.clamp(
+                OSUtils.getTotalMemory() / 128, MIN_THUMB_CACHE_SIZE, MAX_THUMB_CACHE_SIZE);
+        mThumbCache = new LongLruCache<>(thumbCacheSize, new ImageCacheHelper(null));
+        mNotifyDrainer = new NotifyDrainer(mPendingTasks, mNotifyTaskPool, mImageCache, mThumbCache,
+                mRequestMetrics, new DiskCacheWriter());
+    }
+
+    private static ThreadPoolExecutor newStreamCloser() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        return new PriorityThread(r, "GalleryProvider-closer",
+                                Process.THREAD_PRIORITY_BACKGROUND);
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @UiThread
@@ -65,7 +134,121 @@ public abstract class GalleryProvider {
 
     @UiThread
     public void stop() {
+        final List<CancellationToken> tokens = new ArrayList<>();
+        synchronized (mTokens) {
+            mTokens.getValues(tokens);
+            mTokens.clear();
+        }
+        // Pages being loaded are not wanted any more
+        for (int i = 0, n = tokens.size(); i < n; i++) {
+            tokens.get(i).cancel();
+        }
+        // Streams closing now are still closed
+        mStreamCloser.shutdown();
+        mRequestMetrics.onStop();
         mImageCache.close();
+        mThumbCache.close();
+    }
+
+    /**
+     * Release memory for the level from {@link ComponentCallbacks2#onTrimMemory(int)}.
+     * Cached images are evicted to a fraction of them, and the cache doesn't
+     * grow back at once. Call it in any thread.
+     */
+    public void trimMemory(int level) {
+        final float fraction = getTrimFraction(level);
+        if (fraction >= 1.0f) {
+            return;
+        }
+        mImageCache.trimToSize((long) (mImageCache.size() * fraction));
+        mThumbCache.trimToSize((long) (mThumbCache.size() * fraction));
+        mImageCache.resize(mCacheSizer.trim(fraction));
+    }
+
+    // The fraction of cached images to keep for the trim memory level
+    static float getTrimFraction(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            // The app might be killed soon
+            return 0.0f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.75f;
+        } else {
+            return 1.0f;
+        }
+    }
+
+    /**
+     * Resize the image cache from its hit rate and {@link #getMemoryHeadroom()}.
+     * It's enabled by default. If disabled, the size is kept,
+     * only {@link #trimMemory(int)} shrinks it.
+     */
+    public void setAdaptiveCacheSize(boolean adaptive) {
+        mAdaptiveCacheSize = adaptive;
+    }
+
+    /**
+     * Set the policy to choose pages to evict from the image cache,
+     * {@code null} for LRU. The thumbnail cache is always LRU.
+     */
+    public void setImageCachePolicy(@Nullable ImageCachePolicy policy) {
+        mImageCachePolicy = policy;
+        mImageCache.setPolicy(policy);
+    }
+
+    /**
+     * Record requests, cancels and results of pages. {@code null} to disable it.
+     */
+    public void setRecorder(@Nullable ReadingRecorder recorder) {
+        mRecorder = recorder;
+    }
+
+    /**
+     * Return timings and counters of requests, for telemetry.
+     */
+    public final RequestMetrics getRequestMetrics() {
+        return mRequestMetrics;
+    }
+
+    /**
+     * Return the bytes could be allocated without memory pressure,
+     * the image cache grows only if there is enough. It's the free
+     * Java heap by default. Override it if images are not in Java heap,
+     * like with {@code ActivityManager.MemoryInfo}.
+     */
+    protected long getMemoryHeadroom() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    // Called for requests in render thread
+    private void onCacheRequest(boolean hit) {
+        if (mAdaptiveCacheSize && mCacheSizer.onRequest(hit)) {
+            final long size = mCacheSizer.evaluate(getMemoryHeadroom());
+            if (size != mImageCache.maxSize()) {
+                mImageCache.resize(size);
+            }
+        }
+    }
+
+    /**
+     * Set a disk cache under the memory cache. Decoded pages are written to it.
+     * Providers read pages from it with {@link #readDiskCache(int, int, int, int, CancellationToken)}
+     * before decoding them. The disk cache is not cleared when the provider stops,
+     * it could be shared.
+     */
+    public final void setDiskCache(@Nullable MappedImageCache diskCache) {
+        mDiskCache = diskCache;
+    }
+
+    @Nullable
+    public final MappedImageCache getDiskCache() {
+        return mDiskCache;
     }
 
     public void setGLRoot(GLRoot glRoot) {
@@ -95,43 +278,398 @@ public abstract class GalleryProvider {
         return ((long) chapter) << 32 | index;
     }
 
+    /**
+     * Set the size pages are shown in. Pages could be decoded smaller than
+     * original size, but not smaller than it. 0 for no limit.
+     */
+    public final void setTargetSize(int width, int height) {
+        mTargetWidth = Math.max(0, width);
+        mTargetHeight = Math.max(0, height);
+    }
+
+    /**
+     * Set whether tall pages could be shown in tiles.
+     *
+     * @see #shouldTile(int, int)
+     */
+    public final void setTileEnabled(boolean tileEnabled) {
+        mTileEnabled = tileEnabled;
+    }
+
+    /**
+     * Return {@code true} if the page should be shown in tiles,
+     * with {@link #notifyPageTiled(int, int, RegionDecoder)}.
+     * Providers check it with the page size before decoding.
+     */
+    public final boolean shouldTile(int width, int height) {
+        return mTileEnabled && width > 0 && height / width >= TILE_MIN_RATIO
+                && (long) width * height >= TILE_MIN_PIXELS;
+    }
+
+    /**
+     * Return the largest power-of-two sample size to decode the image,
+     * keeps the decoded image not smaller than target size.
+     * For both dimensions limited, fitting one of them is enough.
+     *
+     * @param targetWidth 0 for no limit
+     * @param targetHeight 0 for no limit
+     */
+    public static int computeSampleSize(int imageWidth, int imageHeight,
+            int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 && targetHeight <= 0) {
+            return 1;
+        }
+        final int limit = Math.max(targetWidth > 0 ? imageWidth / targetWidth : 0,
+                targetHeight > 0 ? imageHeight / targetHeight : 0);
+        return limit <= 1 ? 1 : Integer.highestOneBit(limit);
+    }
+
     public final void requestChapter(int chapter) {
         onRequestChapter(chapter);
     }
 
+    private void onPolicyAccess(long key) {
+        final ImageCachePolicy policy = mImageCachePolicy;
+        if (policy != null) {
+            policy.onAccess(key);
+        }
+    }
+
+    // Find image in memory cache. The disk cache is read by providers in worker thread.
+    private ImageData getCachedImage(int chapter, int index, boolean request) {
+        final long key = genKey(chapter, index);
+        final ImageData imageData = mImageCache.get(key);
+        if (request) {
+            onCacheRequest(imageData != null);
+            onPolicyAccess(key);
+        }
+        return imageData;
+    }
+
     /**
-     * Find image in cache first. Call {@link #onRequest(int, int)} if miss.
+     * Find image in cache first. Call {@link #onRequest(int, int, int, int, CancellationToken)} if miss.
      */
     @CheckResult
     public final ImageData request(int chapter, int index) {
-        final ImageData imageData = mImageCache.get(genKey(chapter, index));
+        final ImageData imageData = getCachedImage(chapter, index, true);
+        mRequestMetrics.onRequest(genKey(chapter, index), imageData != null);
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordRequest(chapter, index, imageData != null);
+        }
+        if (imageData != null) {
+            return imageData;
+        } else {
+            onRequest(chapter, index, mTargetWidth, mTargetHeight, obtainToken(chapter, index, false));
+            return null;
+        }
+    }
+
+    /**
+     * Return the page in cache, or {@code null}. Nothing is requested.
+     */
+    @Nullable
+    public final ImageData peek(int chapter, int index) {
+        final ImageData imageData = getCachedImage(chapter, index, false);
+        if (imageData != null) {
+            mRequestMetrics.onUse(genKey(chapter, index));
+        }
+        return imageData;
+    }
+
+    /**
+     * Count a hit of the page shown from somewhere else, like a texture still in GPU.
+     * It keeps the page recent in cache and in stats, as {@link #request(int, int)} does.
+     */
+    public final void touch(int chapter, int index) {
+        final long key = genKey(chapter, index);
+        // The page might be evicted from the image cache, it's shown without decoding anyway
+        mImageCache.get(key);
+        onCacheRequest(true);
+        onPolicyAccess(key);
+        mRequestMetrics.onRequest(key, true);
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordRequest(chapter, index, true);
+        }
+    }
+
+    /**
+     * Find thumbnail in cache first. Call {@link #onRequestThumb(int, int, int)} if miss.
+     * Thumbnails are shown while pages are loading, and instead of pages
+     * while the user is scrubbing.
+     */
+    @CheckResult
+    public final ImageData requestThumb(int chapter, int index) {
+        final ImageData imageData = mThumbCache.get(genKey(chapter, index));
         if (imageData != null) {
             return imageData;
         } else {
-            onRequest(chapter, index);
+            onRequestThumb(chapter, index, THUMB_SIZE);
             return null;
         }
     }
 
     /**
-     * Cache will be ignored. Call {@link #onForceRequest(int, int)} directly.
+     * Return the thumbnail in cache, or {@code null}. Nothing is requested.
+     */
+    @Nullable
+    public final ImageData peekThumb(int chapter, int index) {
+        return mThumbCache.get(genKey(chapter, index));
+    }
+
+    /**
+     * Return the sample size of the thumbnail in cache, 1 if missing.
+     */
+    public final int getThumbSampleSize(int chapter, int index) {
+        return mThumbCache.getExtra(genKey(chapter, index), 1);
+    }
+
+    public final void cancelThumb(int chapter, int index) {
+        onCancelThumb(chapter, index);
+    }
+
+    /**
+     * Return the sample size of the page in cache, 1 if missing.
+     */
+    public final int getSampleSize(int chapter, int index) {
+        return mImageCache.getExtra(genKey(chapter, index), 1);
+    }
+
+    /**
+     * Find image in cache first. Call {@link #onPrefetch(int, int, int, int, CancellationToken)} if miss.
+     * Unlike {@link #request(int, int)}, no view is waiting for the page.
+     *
+     * @return {@code true} if the image is in cache
+     */
+    public final boolean prefetch(int chapter, int index) {
+        final boolean hit = getCachedImage(chapter, index, false) != null;
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordPrefetch(chapter, index, hit);
+        }
+        if (hit) {
+            return true;
+        } else {
+            onPolicyAccess(genKey(chapter, index));
+            onPrefetch(chapter, index, mTargetWidth, mTargetHeight, obtainToken(chapter, index, true));
+            return false;
+        }
+    }
+
+    /**
+     * Decode the page in original size, the user zooms in it.
+     * The page in cache is still available before it is done.
+     */
+    public final void requestOrigin(int chapter, int index) {
+        onRequestOrigin(chapter, index, obtainToken(chapter, index, false));
+    }
+
+    /**
+     * Cancel a page requested by {@link #prefetch(int, int)}. Its token is cancelled
+     * unless views request the page too. Call it once for each prefetch returning {@code false}.
+     */
+    public final void cancelPrefetch(int chapter, int index) {
+        cancelPrefetch(chapter, index, getToken(chapter, index));
+    }
+
+    // Cancel the prefetch counted on the token from getToken()
+    void cancelPrefetch(int chapter, int index, @Nullable CancellationToken token) {
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordCancelPrefetch(chapter, index);
+        }
+        cancelToken(chapter, index, true, token);
+        onCancelPrefetch(chapter, index);
+    }
+
+    /**
+     * Tell the provider which page the user is reading,
+     * pages near it should be handled first.
+     */
+    public final void setCurrentPage(int chapter, int index) {
+        final ImageCachePolicy policy = mImageCachePolicy;
+        if (policy != null) {
+            policy.onCurrentPage(chapter, index);
+        }
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordCurrentPage(chapter, index);
+        }
+        onSetCurrentPage(chapter, index);
+    }
+
+    /**
+     * Cache will be ignored. Call {@link #onForceRequest(int, int, int, int, CancellationToken)} directly.
      */
     public final void forceRequest(int chapter, int index) {
-        onForceRequest(chapter, index);
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordForceRequest(chapter, index);
+        }
+        mRequestMetrics.onRequest(genKey(chapter, index), false);
+        onForceRequest(chapter, index, mTargetWidth, mTargetHeight, obtainToken(chapter, index, false));
+    }
+
+    // Return the token of the page, the same one until it's done or cancelled.
+    // Several views could request the page at once, each is counted.
+    private CancellationToken obtainToken(int chapter, int index, boolean prefetch) {
+        final long key = genKey(chapter, index);
+        synchronized (mTokens) {
+            CancellationToken token = mTokens.get(key);
+            if (token == null) {
+                token = new CancellationToken(mStreamCloser);
+                mTokens.put(key, token);
+            }
+            if (prefetch) {
+                ++token.prefetches;
+            } else {
+                ++token.requests;
+            }
+            return token;
+        }
+    }
+
+    // Return the token of the page being loaded, or null. Callers keep it
+    // to cancel their own request later, the page might be done and requested again.
+    @Nullable
+    CancellationToken getToken(int chapter, int index) {
+        synchronized (mTokens) {
+            return mTokens.get(genKey(chapter, index));
+        }
+    }
+
+    // Cancel the token if no request or prefetch of the page is left.
+    // Nothing is done if the token is not the one of the page any more.
+    private void cancelToken(int chapter, int index, boolean prefetch,
+            @Nullable CancellationToken token) {
+        if (token == null) {
+            return;
+        }
+        final long key = genKey(chapter, index);
+        synchronized (mTokens) {
+            if (mTokens.get(key) != token) {
+                return;
+            }
+            if (prefetch) {
+                --token.prefetches;
+            } else {
+                --token.requests;
+            }
+            if (token.requests > 0 || token.prefetches > 0) {
+                return;
+            }
+            mTokens.remove(key);
+        }
+        token.cancel();
+    }
+
+    // The page is done, the token is not needed. A late notification of
+    // a cancelled load must not release the token of a new request,
+    // so the token is only released if it's still the one of the page.
+    // Without token, the token of the page is released.
+    private void releaseToken(int chapter, int index, @Nullable CancellationToken token) {
+        final long key = genKey(chapter, index);
+        synchronized (mTokens) {
+            if (token == null || mTokens.get(key) == token) {
+                mTokens.remove(key);
+            }
+        }
     }
 
     protected abstract void onRequestChapter(int chapter);
 
-    protected abstract void onRequest(int chapter, int index);
+    /**
+     * Load the page. The page is shown in target size, decoding it smaller
+     * saves memory, {@link #computeSampleSize(int, int, int, int)} helps.
+     * Pass the sample size to {@link #notifyPageSucceed(int, int, ImageData, int)}.
+     * If {@link #shouldTile(int, int)}, call {@link #notifyPageTiled(int, int, RegionDecoder)}
+     * instead of decoding whole page.
+     * If a disk cache is set, try {@link #readDiskCache(int, int, int, int, CancellationToken)}
+     * in worker thread first.
+     * <p>
+     * The token is cancelled when the page is not wanted any more, stop
+     * the work early then and notify nothing. Requesting the page again
+     * before it's done gives the same token, unless it's cancelled.
+     * Pass the token back when notifying the result, like
+     * {@link #notifyPageSucceed(int, int, ImageData, int, CancellationToken)}.
+     *
+     * @param targetWidth 0 for no limit
+     * @param targetHeight 0 for no limit
+     */
+    protected abstract void onRequest(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token);
 
-    protected abstract void onForceRequest(int chapter, int index);
+    protected abstract void onForceRequest(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token);
 
+    /**
+     * Cancel a page requested by views. Its token is cancelled
+     * unless the page is prefetched too or other requests are left.
+     * Call it once for each {@link #request(int, int)} returning {@code null},
+     * not for pages got from cache.
+     */
     public final void cancelRequest(int chapter, int index) {
+        cancelRequest(chapter, index, getToken(chapter, index));
+    }
+
+    // Cancel the request counted on the token from getToken()
+    void cancelRequest(int chapter, int index, @Nullable CancellationToken token) {
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordCancelRequest(chapter, index);
+        }
+        mRequestMetrics.onCancel(genKey(chapter, index));
+        cancelToken(chapter, index, false, token);
         onCancelRequest(chapter, index);
     }
 
+    // Drop a request counted twice for one view, it's not a cancel
+    void releaseRequest(int chapter, int index, @NonNull CancellationToken token) {
+        cancelToken(chapter, index, false, token);
+    }
+
     protected abstract void onCancelRequest(int chapter, int index);
 
+    /**
+     * Load the page in low priority. Call {@link #onRequest(int, int, int, int, CancellationToken)}
+     * by default.
+     */
+    protected void onPrefetch(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {
+        onRequest(chapter, index, targetWidth, targetHeight, token);
+    }
+
+    /**
+     * Load the page in original size. Views keep showing the page in cache,
+     * so it's better not to notify wait or percent.
+     * Call {@link #onForceRequest(int, int, int, int, CancellationToken)} by default.
+     */
+    protected void onRequestOrigin(int chapter, int index, CancellationToken token) {
+        onForceRequest(chapter, index, 0, 0, token);
+    }
+
+    /**
+     * Cancel a prefetched page. Visible pages with the same chapter and index
+     * must not be affected, so it does nothing by default.
+     */
+    protected void onCancelPrefetch(int chapter, int index) {}
+
+    protected void onSetCurrentPage(int chapter, int index) {}
+
+    /**
+     * Load a thumbnail of the page, it should be much cheaper than the page,
+     * like an embedded thumbnail or a decode with large sample size.
+     * {@link #computeSampleSize(int, int, int, int)} with the size helps.
+     * Call {@link #notifyThumbSucceed(int, int, ImageData, int)} when it's done.
+     * It does nothing by default, pages are shown without thumbnails.
+     *
+     * @param size the thumbnail should not be smaller than it in both width and height
+     */
+    protected void onRequestThumb(int chapter, int index, int size) {}
+
+    protected void onCancelThumb(int chapter, int index) {}
+
     /**
      * Return the error message of this gallery.
      */
@@ -149,56 +687,432 @@ public abstract class GalleryProvider {
     }
 
     public void notifyStateChanged() {
-        notify(NotifyTask.TYPE_STATE_CHANGED, -1, -1, 0.0f, null, null);
+        notify(NotifyTask.TYPE_STATE_CHANGED, -1, -1, 0.0f, null, null, 1, null);
     }
 
     public void notifyChapterStateChanged(int chapter) {
-        notify(NotifyTask.TYPE_STATE_CHANGED, chapter, -1, 0.0f, null, null);
+        notify(NotifyTask.TYPE_STATE_CHANGED, chapter, -1, 0.0f, null, null, 1, null);
     }
 
     public void notifyDataChanged(int chapter, int index) {
-        notify(NotifyTask.TYPE_DATA_CHANGED, chapter, index, 0.0f, null, null);
+        notify(NotifyTask.TYPE_DATA_CHANGED, chapter, index, 0.0f, null, null, 1, null);
     }
 
     public void notifyPageWait(int chapter, int index) {
-        notify(NotifyTask.TYPE_WAIT, chapter, index, 0.0f, null, null);
+        notify(NotifyTask.TYPE_WAIT, chapter, index, 0.0f, null, null, 1, null);
     }
 
     public void notifyPagePercent(int chapter, int index, float percent) {
-        notify(NotifyTask.TYPE_PERCENT, chapter, index, percent, null, null);
+        notify(NotifyTask.TYPE_PERCENT, chapter, index, percent, null, null, 1, null);
     }
 
     public void notifyPageSucceed(int chapter, int index, @Nullable ImageData image) {
-        notify(NotifyTask.TYPE_SUCCEED, chapter, index, 0.0f, image, null);
+        notifyPageSucceed(chapter, index, image, 1);
+    }
+
+    /**
+     * The image is written to disk cache in background if there is one.
+     *
+     * @param sampleSize the image is decoded in 1 / sampleSize of original size
+     */
+    public void notifyPageSucceed(int chapter, int index, @Nullable ImageData image, int sampleSize) {
+        notifyPageSucceed(chapter, index, image, sampleSize, null);
+    }
+
+    /**
+     * Like {@link #notifyPageSucceed(int, int, ImageData, int)}, with the token
+     * the page is requested with. Only the token is released, a late
+     * notification of a cancelled request doesn't affect a new request.
+     *
+     * @param token the token from {@link #onRequest(int, int, int, int, CancellationToken)},
+     *              or {@code null}
+     */
+    public void notifyPageSucceed(int chapter, int index, @Nullable ImageData image, int sampleSize,
+            @Nullable CancellationToken token) {
+        notify(NotifyTask.TYPE_SUCCEED, chapter, index, 0.0f, image, null,
+                Math.max(1, sampleSize), null, token, mDiskCache);
+    }
+
+    /**
+     * Read the page from disk cache, and notify it like
+     * {@link #notifyPageSucceed(int, int, ImageData, int)} if found.
+     * Call it in worker thread before decoding the page, it reads the file.
+     * A page on disk is decoded in sample size, so it's skipped
+     * if it's coarser than the target size needs.
+     *
+     * @param targetWidth 0 for no limit
+     * @param targetHeight 0 for no limit
+     * @param token the token of the request, or {@code null}
+     * @return {@code true} if the page is read and notified
+     */
+    protected final boolean readDiskCache(int chapter, int index, int targetWidth, int targetHeight,
+            @Nullable CancellationToken token) {
+        final MappedImageCache diskCache = mDiskCache;
+        final long key = genKey(chapter, index);
+        if (diskCache == null || !diskCache.contains(key)) {
+            return false;
+        }
+        final int sampleSize = diskCache.getSampleSize(key);
+        if (targetWidth <= 0 && targetHeight <= 0 && sampleSize != 1) {
+            return false;
+        }
+        if (token != null && token.isCancelled()) {
+            return false;
+        }
+        final ImageData image = diskCache.get(key);
+        if (image == null) {
+            return false;
+        }
+        // Written for a smaller target
+        if (sampleSize > computeSampleSize(image.getWidth() * sampleSize,
+                image.getHeight() * sampleSize, targetWidth, targetHeight)) {
+            image.recycle();
+            return false;
+        }
+        // It's on disk, don't write it again
+        notify(NotifyTask.TYPE_SUCCEED, chapter, index, 0.0f, image, null, sampleSize, null, token);
+        return true;
+    }
+
+    /**
+     * Notify the page is shown in tiles. The decoder is owned by
+     * the library now, it will be recycled in worker thread.
+     */
+    public void notifyPageTiled(int chapter, int index, RegionDecoder decoder) {
+        notifyPageTiled(chapter, index, decoder, null);
+    }
+
+    /**
+     * Like {@link #notifyPageTiled(int, int, RegionDecoder)}, with the token
+     * the page is requested with.
+     *
+     * @see #notifyPageSucceed(int, int, ImageData, int, CancellationToken)
+     */
+    public void notifyPageTiled(int chapter, int index, RegionDecoder decoder,
+            @Nullable CancellationToken token) {
+        if (!notify(NotifyTask.TYPE_TILED, chapter, index, 0.0f, null, decoder, 1, null, token)) {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * Thumbnails are not written to disk cache. A cached thumbnail
+     * or preview in finer resolution is not replaced.
+     *
+     * @param sampleSize the thumbnail is decoded in 1 / sampleSize of original size
+     */
+    public void notifyThumbSucceed(int chapter, int index, ImageData image, int sampleSize) {
+        notify(NotifyTask.TYPE_THUMB, chapter, index, 0.0f, image, null, Math.max(1, sampleSize), null);
+    }
+
+    /**
+     * Notify a coarse preview of the page, like the first pass of a progressive
+     * image. The page must still be notified with
+     * {@link #notifyPageSucceed(int, int, ImageData, int)} or failure later.
+     * The preview is shown instead of the progress, and it's kept in
+     * thumbnail cache as a thumbnail.
+     *
+     * @param sampleSize the preview is decoded in 1 / sampleSize of original size
+     */
+    public void notifyPagePreview(int chapter, int index, ImageData image, int sampleSize) {
+        notify(NotifyTask.TYPE_PREVIEW, chapter, index, 0.0f, image, null, Math.max(1, sampleSize), null);
     }
 
     public void notifyPageFailed(int chapter, int index, String error) {
-        notify(NotifyTask.TYPE_FAILED, chapter, index, 0.0f, null, error);
+        notifyPageFailed(chapter, index, error, null);
+    }
+
+    /**
+     * Like {@link #notifyPageFailed(int, int, String)}, with the token
+     * the page is requested with.
+     *
+     * @see #notifyPageSucceed(int, int, ImageData, int, CancellationToken)
+     */
+    public void notifyPageFailed(int chapter, int index, String error,
+            @Nullable CancellationToken token) {
+        notify(NotifyTask.TYPE_FAILED, chapter, index, 0.0f, null, null, 1, error, token);
+    }
+
+    /**
+     * Return a batch to notify many pages at once. The batch is not thread-safe,
+     * but it could be reused in the same thread after {@link Batch#submit()}.
+     */
+    public final Batch newBatch() {
+        return new Batch();
+    }
+
+    private NotifyTask obtainNotifyTask(Listener listener, @NotifyTask.Type int type, int chapter, int index,
+            float percent, ImageData image, RegionDecoder decoder, int sampleSize, String error,
+            @Nullable MappedImageCache diskCache) {
+        NotifyTask task = mNotifyTaskPool.pop();
+        if (task == null) {
+            task = new NotifyTask();
+        }
+        task.setData(listener, type, chapter, index, percent, image, decoder, sampleSize, error);
+        task.mDiskCache = diskCache;
+        return task;
+    }
+
+    // Push tasks from first to last, first is the latest.
+    // All pending tasks are handled in one GL idle callback.
+    private void enqueue(GLRoot glRoot, NotifyTask first, NotifyTask last) {
+        NotifyTask head;
+        do {
+            head = mPendingTasks.get();
+            last.mNext = head;
+        } while (!mPendingTasks.compareAndSet(head, first));
+
+        // The drainer takes all tasks, only schedule it if the queue was empty
+        if (head == null) {
+            glRoot.addOnGLIdleListener(mNotifyDrainer);
+        }
     }
 
-    private void notify(@NotifyTask.Type int type, int chapter, int index, float percent, ImageData image, String error) {
+    // Record results of pages, and release their tokens
+    private void record(@NotifyTask.Type int type, int chapter, int index,
+            @Nullable CancellationToken token) {
+        final ReadingRecorder recorder = mRecorder;
+        if (type == NotifyTask.TYPE_SUCCEED || type == NotifyTask.TYPE_TILED
+                || type == NotifyTask.TYPE_FAILED) {
+            releaseToken(chapter, index, token);
+        }
+        if (type == NotifyTask.TYPE_WAIT) {
+            mRequestMetrics.onWait(genKey(chapter, index));
+        } else if (type == NotifyTask.TYPE_SUCCEED || type == NotifyTask.TYPE_TILED) {
+            mRequestMetrics.onSucceed(genKey(chapter, index));
+            if (recorder != null) {
+                recorder.recordPageSucceed(chapter, index);
+            }
+        } else if (type == NotifyTask.TYPE_FAILED) {
+            mRequestMetrics.onFailure(genKey(chapter, index));
+            if (recorder != null) {
+                recorder.recordPageFailed(chapter, index);
+            }
+        }
+    }
+
+    private boolean notify(@NotifyTask.Type int type, int chapter, int index, float percent,
+            ImageData image, RegionDecoder decoder, int sampleSize, String error) {
+        return notify(type, chapter, index, percent, image, decoder, sampleSize, error, null);
+    }
+
+    // Return false if no one to notify
+    private boolean notify(@NotifyTask.Type int type, int chapter, int index, float percent,
+            ImageData image, RegionDecoder decoder, int sampleSize, String error,
+            @Nullable CancellationToken token) {
+        return notify(type, chapter, index, percent, image, decoder, sampleSize, error, token, null);
+    }
+
+    // The image is written to the disk cache after it's delivered
+    private boolean notify(@NotifyTask.Type int type, int chapter, int index, float percent,
+            ImageData image, RegionDecoder decoder, int sampleSize, String error,
+            @Nullable CancellationToken token, @Nullable MappedImageCache diskCache) {
+        record(type, chapter, index, token);
         final Listener listener = mListener;
         if (listener == null) {
-            return;
+            return false;
         }
 
         final GLRoot glRoot = mGLRoot;
         if (glRoot == null) {
-            return;
+            return false;
         }
 
-        NotifyTask task = mNotifyTaskPool.pop();
-        if (task == null) {
-            task = new NotifyTask(listener, mNotifyTaskPool, mImageCache);
+        final NotifyTask task = obtainNotifyTask(listener, type, chapter, index,
+                percent, image, decoder, sampleSize, error, diskCache);
+        enqueue(glRoot, task, task);
+        return true;
+    }
+
+    /**
+     * Notifications submitted together. Percent of the same page
+     * in one frame is coalesced, only the latest one is handled.
+     */
+    public final class Batch {
+
+        // The latest one
+        private NotifyTask mFirst;
+        // The eldest one
+        private NotifyTask mLast;
+
+        private Batch() {}
+
+        private Batch add(@NotifyTask.Type int type, int chapter, int index, float percent,
+                ImageData image, int sampleSize, String error) {
+            return add(type, chapter, index, percent, image, sampleSize, error, null);
+        }
+
+        private Batch add(@NotifyTask.Type int type, int chapter, int index, float percent,
+                ImageData image, int sampleSize, String error, @Nullable CancellationToken token) {
+            return add(type, chapter, index, percent, image, sampleSize, error, token, null);
+        }
+
+        private Batch add(@NotifyTask.Type int type, int chapter, int index, float percent,
+                ImageData image, int sampleSize, String error, @Nullable CancellationToken token,
+                @Nullable MappedImageCache diskCache) {
+            record(type, chapter, index, token);
+            final Listener listener = mListener;
+            if (listener == null) {
+                return this;
+            }
+
+            final NotifyTask task = obtainNotifyTask(listener, type, chapter, index,
+                    percent, image, null, sampleSize, error, diskCache);
+            task.mNext = mFirst;
+            mFirst = task;
+            if (mLast == null) {
+                mLast = task;
+            }
+            return this;
+        }
+
+        public Batch pageWait(int chapter, int index) {
+            return add(NotifyTask.TYPE_WAIT, chapter, index, 0.0f, null, 1, null);
+        }
+
+        public Batch pagePercent(int chapter, int index, float percent) {
+            return add(NotifyTask.TYPE_PERCENT, chapter, index, percent, null, 1, null);
+        }
+
+        /**
+         * Like {@link #notifyPageSucceed(int, int, ImageData, int)},
+         * the image is written to disk cache in background.
+         */
+        public Batch pageSucceed(int chapter, int index, @Nullable ImageData image, int sampleSize) {
+            return pageSucceed(chapter, index, image, sampleSize, null);
+        }
+
+        /**
+         * @see #notifyPageSucceed(int, int, ImageData, int, CancellationToken)
+         */
+        public Batch pageSucceed(int chapter, int index, @Nullable ImageData image, int sampleSize,
+                @Nullable CancellationToken token) {
+            return add(NotifyTask.TYPE_SUCCEED, chapter, index, 0.0f, image,
+                    Math.max(1, sampleSize), null, token, mDiskCache);
+        }
+
+        public Batch thumbSucceed(int chapter, int index, ImageData image, int sampleSize) {
+            return add(NotifyTask.TYPE_THUMB, chapter, index, 0.0f, image, Math.max(1, sampleSize), null);
+        }
+
+        public Batch pagePreview(int chapter, int index, ImageData image, int sampleSize) {
+            return add(NotifyTask.TYPE_PREVIEW, chapter, index, 0.0f, image, Math.max(1, sampleSize), null);
+        }
+
+        public Batch pageFailed(int chapter, int index, String error) {
+            return pageFailed(chapter, index, error, null);
+        }
+
+        public Batch pageFailed(int chapter, int index, String error,
+                @Nullable CancellationToken token) {
+            return add(NotifyTask.TYPE_FAILED, chapter, index, 0.0f, null, 1, error, token);
+        }
+
+        public Batch dataChanged(int chapter, int index) {
+            return add(NotifyTask.TYPE_DATA_CHANGED, chapter, index, 0.0f, null, 1, null);
+        }
+
+        /**
+         * Submit all notifications in this batch. The batch is empty after it.
+         */
+        public void submit() {
+            final NotifyTask first = mFirst;
+            final NotifyTask last = mLast;
+            mFirst = null;
+            mLast = null;
+            if (first == null) {
+                return;
+            }
+
+            final GLRoot glRoot = mGLRoot;
+            if (glRoot != null) {
+                enqueue(glRoot, first, last);
+            } else {
+                // No one to notify
+                for (NotifyTask task = first; task != null; ) {
+                    final NotifyTask next = task.mNext;
+                    task.clear();
+                    mNotifyTaskPool.push(task);
+                    task = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles all pending notifications in GL thread, in order.
+     */
+    private static class NotifyDrainer implements GLRoot.OnGLIdleListener {
+
+        private final AtomicReference<NotifyTask> mPendingTasks;
+        private final ConcurrentPool<NotifyTask> mPool;
+        private final LongLruCache<ImageData> mCache;
+        private final LongLruCache<ImageData> mThumbCache;
+        private final RequestMetrics mMetrics;
+        private final DiskCacheWriter mDiskCacheWriter;
+
+        // Key to the latest task of the page in current drain
+        private final LongMap<NotifyTask> mLatestTasks = new LongMap<>();
+
+        public NotifyDrainer(AtomicReference<NotifyTask> pendingTasks,
+                ConcurrentPool<NotifyTask> pool, LongLruCache<ImageData> cache,
+                LongLruCache<ImageData> thumbCache, RequestMetrics metrics,
+                DiskCacheWriter diskCacheWriter) {
+            mPendingTasks = pendingTasks;
+            mPool = pool;
+            mCache = cache;
+            mThumbCache = thumbCache;
+            mMetrics = metrics;
+            mDiskCacheWriter = diskCacheWriter;
+        }
+
+        @Override
+        public boolean onGLIdle(GLCanvas canvas, boolean renderRequested) {
+            NotifyTask task = mPendingTasks.getAndSet(null);
+
+            // Reverse to the order of notifying
+            NotifyTask first = null;
+            while (task != null) {
+                final NotifyTask next = task.mNext;
+                task.mNext = first;
+                first = task;
+                task = next;
+            }
+
+            final LongMap<NotifyTask> latestTasks = mLatestTasks;
+            for (task = first; task != null; task = task.mNext) {
+                if (task.mIndex >= 0) {
+                    latestTasks.put(genKey(task.mChapter, task.mIndex), task);
+                }
+            }
+
+            for (task = first; task != null; ) {
+                final NotifyTask next = task.mNext;
+                final long key = genKey(task.mChapter, task.mIndex);
+                final boolean latest = task.mIndex >= 0 && latestTasks.get(key) == task;
+                // No more tasks of the page, only remove keys of this drain,
+                // clearing the whole map costs its capacity
+                if (latest) {
+                    latestTasks.remove(key);
+                }
+                // Skip percent if there is a newer notification of the page
+                if (task.mType != NotifyTask.TYPE_PERCENT || latest) {
+                    task.run(mCache, mThumbCache, mMetrics, mDiskCacheWriter);
+                }
+                task.clear();
+                mPool.push(task);
+                task = next;
+            }
+
+            return false;
         }
-        task.setData(type, chapter, index, percent, image, error);
-        glRoot.addOnGLIdleListener(task);
     }
 
-    private static class NotifyTask implements GLRoot.OnGLIdleListener {
+    private static class NotifyTask {
 
         @IntDef({TYPE_STATE_CHANGED, TYPE_DATA_CHANGED,
-                TYPE_WAIT, TYPE_PERCENT, TYPE_SUCCEED, TYPE_FAILED})
+                TYPE_WAIT, TYPE_PERCENT, TYPE_SUCCEED, TYPE_FAILED, TYPE_TILED, TYPE_THUMB,
+                TYPE_PREVIEW})
         @Retention(RetentionPolicy.SOURCE)
         public @interface Type {}
 
@@ -208,37 +1122,41 @@ public abstract class GalleryProvider {
         public static final int TYPE_PERCENT = 3;
         public static final int TYPE_SUCCEED = 4;
         public static final int TYPE_FAILED = 5;
+        public static final int TYPE_TILED = 6;
+        public static final int TYPE_THUMB = 7;
+        public static final int TYPE_PREVIEW = 8;
 
-        private final Listener mListener;
-        private final ConcurrentPool<NotifyTask> mPool;
-        private final LruCache<Long, ImageData> mCache;
-
+        private Listener mListener;
         @Type
         private int mType;
         private int mChapter;
         private int mIndex;
         private float mPercent;
         private ImageData mImage;
+        private RegionDecoder mDecoder;
+        private int mSampleSize;
         private String mError;
+        // Not null if the image should be written to it
+        private MappedImageCache mDiskCache;
 
-        public NotifyTask(Listener listener, ConcurrentPool<NotifyTask> pool,
-                LruCache<Long, ImageData> cache) {
-            mListener = listener;
-            mPool = pool;
-            mCache = cache;
-        }
+        // Next in pending queue
+        private NotifyTask mNext;
 
-        public void setData(@Type int type, int chapter, int index, float percent, ImageData image, String error) {
+        public void setData(Listener listener, @Type int type, int chapter, int index, float percent,
+                ImageData image, RegionDecoder decoder, int sampleSize, String error) {
+            mListener = listener;
             mType = type;
             mChapter = chapter;
             mIndex = index;
             mPercent = percent;
             mImage = image;
+            mDecoder = decoder;
+            mSampleSize = sampleSize;
             mError = error;
         }
 
-        @Override
-        public boolean onGLIdle(GLCanvas canvas, boolean renderRequested) {
+        public void run(LongLruCache<ImageData> cache, LongLruCache<ImageData> thumbCache,
+                RequestMetrics metrics, DiskCacheWriter diskCacheWriter) {
             switch (mType) {
                 case TYPE_STATE_CHANGED:
                     if (mChapter == -1) {
@@ -246,7 +1164,6 @@ public abstract class GalleryProvider {
                     } else {
                         mListener.onChapterStateChanged(mChapter);
                     }
-                    mListener.onStateChanged();
                     break;
                 case TYPE_DATA_CHANGED:
                     mListener.onDataChanged(mChapter, mIndex);
@@ -258,43 +1175,73 @@ public abstract class GalleryProvider {
                     mListener.onPagePercent(mChapter, mIndex, mPercent);
                     break;
                 case TYPE_SUCCEED:
-                    mListener.onPageSucceed(mChapter, mIndex, mImage);
-                    mCache.put(genKey(mChapter, mIndex), mImage);
+                    mListener.onPageSucceed(mChapter, mIndex, mImage, mSampleSize);
+                    // Before put, it might be evicted at once
+                    metrics.onDeliver(genKey(mChapter, mIndex), mImage != null);
+                    // Referenced by the writer before put
+                    if (mDiskCache != null && mImage != null) {
+                        diskCacheWriter.write(mDiskCache, genKey(mChapter, mIndex), mImage, mSampleSize);
+                    }
+                    cache.put(genKey(mChapter, mIndex), mImage, mSampleSize);
                     break;
                 case TYPE_FAILED:
                     mListener.onPageFailed(mChapter, mIndex, mError);
                     break;
+                case TYPE_TILED:
+                    mListener.onPageTiled(mChapter, mIndex, mDecoder);
+                    metrics.onDeliver(genKey(mChapter, mIndex), false);
+                    break;
+                case TYPE_THUMB:
+                case TYPE_PREVIEW:
+                    if (mType == TYPE_THUMB) {
+                        mListener.onThumbSucceed(mChapter, mIndex, mImage, mSampleSize);
+                    } else {
+                        mListener.onPagePreview(mChapter, mIndex, mImage, mSampleSize);
+                    }
+                    // Don't replace a finer one
+                    if (thumbCache.getExtra(genKey(mChapter, mIndex), Integer.MAX_VALUE) >= mSampleSize) {
+                        thumbCache.put(genKey(mChapter, mIndex), mImage, mSampleSize);
+                    }
+                    break;
             }
+        }
 
-            // Clean data
+        public void clear() {
+            mListener = null;
             mImage = null;
+            mDecoder = null;
             mError = null;
-            // Push back
-            mPool.push(this);
-
-            return false;
+            mDiskCache = null;
+            mNext = null;
         }
     }
 
-    private static class ImageCacheHelper implements LruCacheHelper<Long, ImageData> {
+    private static class ImageCacheHelper implements LongLruCache.Helper<ImageData> {
 
-        @Override
-        public int sizeOf(Long key, ImageData value) {
-            return value.getWidth() * value.getHeight() * 4;
+        // Only for the image cache
+        @Nullable
+        private final RequestMetrics mMetrics;
+
+        public ImageCacheHelper(@Nullable RequestMetrics metrics) {
+            mMetrics = metrics;
         }
 
         @Override
-        public ImageData create(Long key) {
-            return null;
+        public int sizeOf(long key, ImageData value) {
+            return value.getWidth() * value.getHeight() * 4;
         }
 
         @Override
-        public void onEntryAdded(Long key, ImageData value) {
+        public void onEntryAdded(long key, ImageData value) {
             value.addReference();
         }
 
         @Override
-        public void onEntryRemoved(boolean evicted, Long key, ImageData oldValue, ImageData newValue) {
+        public void onEntryRemoved(boolean evicted, long key, ImageData oldValue, ImageData newValue) {
+            // Not replaced
+            if (mMetrics != null && newValue == null) {
+                mMetrics.onRemove(key, evicted);
+            }
             oldValue.removeReference();
             if (!oldValue.isReferenced()) {
                 oldValue.recycle();
@@ -320,11 +1267,33 @@ public abstract class GalleryProvider {
 
         /**
          * Here is where the ImageData first came.
+         *
+         * @param sampleSize the image is decoded in 1 / sampleSize of original size
          */
-        void onPageSucceed(int chapter, int index, ImageData image);
+        void onPageSucceed(int chapter, int index, ImageData image, int sampleSize);
 
         void onPageFailed(int chapter, int index, String error);
 
+        /**
+         * The page is shown in tiles. The listener owns the decoder now,
+         * it must recycle the decoder.
+         */
+        void onPageTiled(int chapter, int index, RegionDecoder decoder);
+
+        /**
+         * The thumbnail of the page is decoded.
+         *
+         * @param sampleSize the thumbnail is decoded in 1 / sampleSize of original size
+         */
+        void onThumbSucceed(int chapter, int index, ImageData image, int sampleSize);
+
+        /**
+         * A coarse preview of the page is decoded, the page is still loading.
+         *
+         * @param sampleSize the preview is decoded in 1 / sampleSize of original size
+         */
+        void onPagePreview(int chapter, int index, ImageData image, int sampleSize);
+
         void onDataChanged(int chapter, int index);
     }
 }
@@ -87,6 +87,11 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
     private Adapter mAdapter;
     @Nullable
     private Listener mListener;
+    // Null if metrics is disabled
+    @Nullable
+    private volatile FrameMetrics mFrameMetrics;
+    @Nullable
+    private volatile ReadingRecorder mRecorder;
 
     private final GalleryPageView.Params mPageParams;
     private ImageMovableTextTexture mIndexTextTexture;
@@ -98,7 +103,7 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
     @Nullable
     private LayoutManager mLayoutManager;
 
-    private final Postman mPostman;
+    private final GalleryViewPostman mPostman;
 
     // EdgeView is special, it is not a child of GalleryView,
     // but it works like a child of GalleryView.
@@ -245,6 +250,30 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
         mListener = listener;
     }
 
+    /**
+     * Record timings and counters of each frame. {@code null} to disable it.
+     *
+     * @param capacity the number of the latest frames to keep
+     */
+    public void setMetrics(@Nullable Metrics metrics, int capacity) {
+        mFrameMetrics = metrics != null ? new FrameMetrics(capacity, metrics) : null;
+    }
+
+    /**
+     * Record current pages, jumps and flings. {@code null} to disable it.
+     */
+    public void setRecorder(@Nullable ReadingRecorder recorder) {
+        mRecorder = recorder;
+    }
+
+    @RenderThread
+    void count(@FrameMetrics.Counter int counter, long delta) {
+        final FrameMetrics frameMetrics = mFrameMetrics;
+        if (frameMetrics != null) {
+            frameMetrics.count(counter, delta);
+        }
+    }
+
     private void ensureWaitingLayoutManager() {
         if (mWaitingLayoutManager == null) {
             mWaitingLayoutManager = new WaitingLayoutManager(
@@ -464,7 +493,11 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
 
     @Override
     public void requestLayout() {
-        // Do not need requestLayout, because the size will not change
+        // Do not need requestLayout, because the size will not change.
+        // Pages changed in fill are measured there.
+        if (mEnableRequestFill && mLayoutManager != null) {
+            mLayoutManager.onRequestLayout();
+        }
         requestFill();
     }
 
@@ -611,7 +644,11 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
         }
     }
 
-    void pageToIdInternal(int id) {
+    void pageToIdInternal(long id) {
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordPageToId(id);
+        }
         if (mLayoutManager != null) {
             mLayoutManager.onPageToId(id);
         }
@@ -660,6 +697,10 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
     }
 
     void onFlingInternal(float velocityX, float velocityY) {
+        final ReadingRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordFling(velocityX, velocityY);
+        }
         if (mLayoutManager != null) {
             mLayoutManager.onFling(velocityX, velocityY);
         }
@@ -730,17 +771,34 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
 
     @Override
     public void render(GLCanvas canvas) {
+        final FrameMetrics frameMetrics = mFrameMetrics;
+        if (frameMetrics != null) {
+            frameMetrics.beginFrame();
+        }
+
         mWillFill = true;
 
         if (mLayoutManager != null && mLayoutManager.onUpdateAnimation(AnimationTime.get())) {
             invalidate();
         }
+        if (frameMetrics != null) {
+            frameMetrics.endPhase(FrameMetrics.PHASE_ANIMATION);
+        }
 
         fill();
         mWillFill = false;
+        if (frameMetrics != null) {
+            frameMetrics.endPhase(FrameMetrics.PHASE_FILL);
+        }
 
         super.render(canvas);
+        if (frameMetrics != null) {
+            frameMetrics.endPhase(FrameMetrics.PHASE_RENDER);
+        }
         mEdgeView.render(canvas);
+        if (frameMetrics != null) {
+            frameMetrics.endPhase(FrameMetrics.PHASE_EDGE);
+        }
 
         final long newCurrentId;
         if (mLayoutManager != null) {
@@ -751,10 +809,22 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
 
         if (mCurrentId != newCurrentId) {
             mCurrentId = newCurrentId;
+            final ReadingRecorder recorder = mRecorder;
+            if (recorder != null) {
+                recorder.recordCurrentId(newCurrentId);
+            }
+            final Adapter adapter = mLayoutManager != null ? mLayoutManager.getAdapter() : null;
+            if (adapter != null) {
+                adapter.onUpdateCurrentId(newCurrentId);
+            }
             if (mListener != null) {
                 mListener.onUpdateCurrentId(newCurrentId);
             }
         }
+
+        if (frameMetrics != null) {
+            frameMetrics.endFrame();
+        }
     }
 
     public GalleryPageView findPageById(long id) {
@@ -765,11 +835,20 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
         }
     }
 
+    void onRequestOrigin(GalleryPageView page) {
+        final Adapter adapter = mLayoutManager != null ? mLayoutManager.getAdapter() : null;
+        if (adapter != null) {
+            adapter.onRequestOrigin(page);
+        }
+    }
+
     GalleryPageView obtainPage() {
         GalleryPageView page = mGalleryPageViewPool.pop();
         if (page == null) {
             page = new GalleryPageView(this, mPageParams, mIndexTextTexture);
+            count(FrameMetrics.COUNTER_NEW_PAGE, 1);
         }
+        count(FrameMetrics.COUNTER_OBTAIN_PAGE, 1);
         return page;
     }
 
@@ -860,17 +939,34 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
         void bind(GalleryPageView view) {
             view.setPageId(getCurrentId());
             onBind(view);
+            if (mGalleryView != null) {
+                mGalleryView.count(FrameMetrics.COUNTER_BIND, 1);
+            }
         }
 
         void unbind(GalleryPageView view, long id) {
             onUnbind(view, id);
             view.setPageId(INVALID_ID);
+            if (mGalleryView != null) {
+                mGalleryView.count(FrameMetrics.COUNTER_UNBIND, 1);
+            }
         }
 
         public abstract void onBind(GalleryPageView view);
 
         public abstract void onUnbind(GalleryPageView view, long id);
 
+        /**
+         * Called when the id of the page the user is reading changed.
+         */
+        public void onUpdateCurrentId(long id) {}
+
+        /**
+         * Called when the image in the view is scaled larger
+         * than its decoded resolution.
+         */
+        public void onRequestOrigin(GalleryPageView view) {}
+
         /**
          * @return Null for no error
          */
@@ -911,6 +1007,12 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
 
         public abstract Adapter onDetach();
 
+        /**
+         * Return the attached adapter, or {@code null}.
+         */
+        @Nullable
+        public abstract Adapter getAdapter();
+
         public abstract void onFill();
 
         public abstract void onDown();
@@ -949,6 +1051,26 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
         public abstract long getCurrentId();
 
         public abstract void onDataChanged();
+
+        /**
+         * Called when a page changes its size. Pages should be measured in next fill.
+         */
+        public void onRequestLayout() {}
+    }
+
+    /**
+     * Receives timings and counters of frames.
+     *
+     * @see #setMetrics(Metrics, int)
+     */
+    public interface Metrics {
+
+        /**
+         * Called in render thread after each frame.
+         * The latest frame is {@code metrics.getFrameCount() - 1}.
+         */
+        @RenderThread
+        void onFrame(FrameMetrics metrics);
     }
 
     public interface Listener {
@@ -976,7 +1098,7 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
      * It can be called in UI thread.
      */
     public void setLayoutMode(@LayoutMode int layoutMode) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_SET_LAYOUT_MODE, layoutMode);
+        mPostman.postSetLayoutMode(layoutMode);
     }
 
     /**
@@ -985,7 +1107,7 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
      * It can be called in UI thread.
      */
     public void setScaleMode(@ScaleMode int scaleMode) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_SET_SCALE_MODE, scaleMode);
+        mPostman.postSetScaleMode(scaleMode);
     }
 
     /**
@@ -994,7 +1116,7 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
      * It can be called in UI thread.
      */
     public void setStartPosition(@StartPosition int startPosition) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_SET_START_POSITION, startPosition);
+        mPostman.postSetStartPosition(startPosition);
     }
 
     /**
@@ -1003,7 +1125,7 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
      * It can be called in UI thread.
      */
     public void pageNext() {
-        mPostman.postMethod(GalleryViewPostman.METHOD_PAGE_NEXT);
+        mPostman.postPageNext();
     }
 
     /**
@@ -1012,7 +1134,7 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
      * It can be called in UI thread.
      */
     public void pagePrevious() {
-        mPostman.postMethod(GalleryViewPostman.METHOD_PAGE_PREVIOUS);
+        mPostman.postPagePrevious();
     }
 
     /**
@@ -1021,7 +1143,7 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
      * It can be called in UI thread.
      */
     public void pageToId(long id) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_PAGE_TO_ID, id);
+        mPostman.postPageToId(id);
     }
 
     /**
@@ -1030,84 +1152,84 @@ public final class GalleryView extends GLView implements GestureRecognizer.Liste
      * It can be called in UI thread.
      */
     public void scaleToNextLevel(float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_SCALE_TO_NEXT_LEVEL, x, y);
+        mPostman.postScaleToNextLevel(x, y);
     }
 
     @Override
     public boolean onSingleTapUp(float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_SINGLE_TAP_UP, x, y);
+        mPostman.postOnSingleTapUp(x, y);
         return true;
     }
 
     @Override
     public boolean onSingleTapConfirmed(float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_SINGLE_TAP_CONFIRMED, x, y);
+        mPostman.postOnSingleTapConfirmed(x, y);
         return true;
     }
 
     @Override
     public boolean onDoubleTap(float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_DOUBLE_TAP, x, y);
+        mPostman.postOnDoubleTap(x, y);
         return true;
     }
 
     @Override
     public boolean onDoubleTapConfirmed(float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_DOUBLE_TAP_CONFIRMED, x, y);
+        mPostman.postOnDoubleTapConfirmed(x, y);
         return true;
     }
 
     @Override
     public void onLongPress(float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_LONG_PRESS, x, y);
+        mPostman.postOnLongPress(x, y);
     }
 
     @Override
     public boolean onScroll(float dx, float dy, float totalX, float totalY, float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_SCROLL, dx, dy, totalX, totalY, x, y);
+        mPostman.postOnScroll(dx, dy, totalX, totalY, x, y);
         return true;
     }
 
     @Override
     public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_FLING, velocityX, velocityY);
+        mPostman.postOnFling(velocityX, velocityY);
         return true;
     }
 
     @Override
     public boolean onScaleBegin(float focusX, float focusY) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_SCALE_BEGIN, focusX, focusY);
+        mPostman.postOnScaleBegin(focusX, focusY);
         return true;
     }
 
     @Override
     public boolean onScale(float focusX, float focusY, float scale) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_SCALE, focusX, focusY, scale);
+        mPostman.postOnScale(focusX, focusY, scale);
         return true;
     }
 
     @Override
     public void onScaleEnd() {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_SCALE_END);
+        mPostman.postOnScaleEnd();
     }
 
     @Override
     public void onDown(float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_DOWN, x, y);
+        mPostman.postOnDown(x, y);
     }
 
     @Override
     public void onUp() {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_UP);
+        mPostman.postOnUp();
     }
 
     @Override
     public void onPointerDown(float x, float y) {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_POINTER_DOWN, x, y);
+        mPostman.postOnPointerDown(x, y);
     }
 
     @Override
     public void onPointerUp() {
-        mPostman.postMethod(GalleryViewPostman.METHOD_ON_POINTER_UP);
+        mPostman.postOnPointerUp();
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+/**
+ * Chooses the page to evict when the image cache of {@link GalleryProvider}
+ * is full. Keys are {@code chapter << 32 | index}.
+ * <p>
+ * Methods are called in any thread. {@link #selectVictim(Keys)} is
+ * called with the cache locked, it must be fast and must not touch the provider.
+ */
+public interface ImageCachePolicy {
+
+    /**
+     * The user is reading the page.
+     */
+    void onCurrentPage(int chapter, int index);
+
+    /**
+     * A view requests the page, hit or miss, or the page is prefetched
+     * and missing. Prefetches of pages in cache are not counted.
+     */
+    void onAccess(long key);
+
+    /**
+     * Return the index of the key to evict. The page just added is
+     * the last one, choosing it keeps it out of the cache.
+     *
+     * @param keys keys in cache in access order, eldest first, at least 1
+     */
+    int selectVictim(Keys keys);
+
+    /**
+     * Keys in cache in access order, eldest first. It is only valid in
+     * {@link #selectVictim(Keys)}. Reading keys near the eldest, the youngest
+     * or the last read one is cheap, read only keys needed.
+     */
+    interface Keys {
+
+        /**
+         * Return the number of keys.
+         */
+        int count();
+
+        /**
+         * Return the key at the index, the eldest one is 0.
+         */
+        long get(int index);
+    }
+}
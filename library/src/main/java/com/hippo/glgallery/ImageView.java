@@ -30,7 +30,7 @@ import com.hippo.yorozuya.MathUtils;
 
 import java.util.Arrays;
 
-class ImageView extends GLView implements ImageTexture.Callback {
+class ImageView extends GLView implements ImageTexture.Callback, TiledImage.Callback {
 
     public static final int SCALE_ORIGIN = 0;
     public static final int SCALE_FIT_WIDTH = 1;
@@ -47,6 +47,15 @@ class ImageView extends GLView implements ImageTexture.Callback {
     private static final long ALPHA_ANIMATION_DURING = 200L;
 
     private ImageTexture mImage;
+    // Owner of mImage if it is shared with other views
+    private SharedTexture mSharedImage;
+    // Content in tiles, mImage is null if it is not null
+    private TiledImage mTiledImage;
+    // The image is decoded in 1 / mSampleSize of original size
+    private int mSampleSize = 1;
+    // True if original image is requested for current image
+    private boolean mOriginRequested;
+    private Listener mListener;
     private int mClipLeft;
     private int mClipTop;
     private int mClipRight;
@@ -89,6 +98,15 @@ class ImageView extends GLView implements ImageTexture.Callback {
     // The alpha animation to make image show up smoothly
     private AlphaAnimation mAlphaAnimation;
 
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    // Return true if it has image or tiled image
+    private boolean hasContent() {
+        return mImage != null || mTiledImage != null;
+    }
+
     /**
      * Return the content width. It might be smaller
      * than image width if apply clip rect.
@@ -108,18 +126,18 @@ class ImageView extends GLView implements ImageTexture.Callback {
     @Override
     protected int getSuggestedMinimumWidth() {
         return Math.max(super.getSuggestedMinimumWidth(),
-                mImage == null ? 0 : getContentWidth());
+                !hasContent() ? 0 : getContentWidth());
     }
 
     @Override
     protected int getSuggestedMinimumHeight() {
         return Math.max(super.getSuggestedMinimumHeight(),
-                mImage == null ? 0 : getContentHeight());
+                !hasContent() ? 0 : getContentHeight());
     }
 
     @Override
     protected void onMeasure(int widthSpec, int heightSpec) {
-        if (mImage == null) {
+        if (!hasContent()) {
             super.onMeasure(widthSpec, heightSpec);
         } else {
             final float ratio = (float) getContentWidth() / getContentHeight();
@@ -161,7 +179,7 @@ class ImageView extends GLView implements ImageTexture.Callback {
     @Override
     protected void onSizeChanged(int newW, int newH, int oldW, int oldH) {
         // Update all scale value
-        if (mImage != null) {
+        if (hasContent()) {
             updateScale();
         }
 
@@ -177,16 +195,22 @@ class ImageView extends GLView implements ImageTexture.Callback {
         if (mImage != null) {
             getValidRect(mValidRect);
             if (!mValidRect.isEmpty()) {
-                mImage.start();
+                startImage();
             } else {
-                mImage.stop();
+                stopImage();
+            }
+        } else if (mTiledImage != null) {
+            getValidRect(mValidRect);
+            if (mValidRect.isEmpty()) {
+                // Scrolled out, release tiles
+                mTiledImage.clear();
             }
         }
     }
 
     @Nullable
     public float[] getSuggestedScaleLevel() {
-        return mImage != null ? mScaleArray : null;
+        return hasContent() ? mScaleArray : null;
     }
 
     private void updateScale() {
@@ -224,25 +248,60 @@ class ImageView extends GLView implements ImageTexture.Callback {
         }
     }
 
+    // Return true if a and b are the same length in original size
+    private static boolean isSameLength(int a, int aSampleSize, int b, int bSampleSize) {
+        return Math.abs(a * aSampleSize - b * bSampleSize) <= Math.max(aSampleSize, bSampleSize);
+    }
+
     /**
      * Set ImageTexture for the ImageView.
      *
      * @param clipRect it will be ignored if {@code null} or empty or no intersection.
+     * @param sampleSize the image is decoded in 1 / sampleSize of original size
      */
-    public void setImageTexture(ImageTexture image, Rect clipRect) {
-        // Clean old image
-        if (mImage != null) {
+    public void setImageTexture(ImageTexture image, Rect clipRect, int sampleSize) {
+        setImageTexture(image, null, clipRect, sampleSize);
+    }
+
+    /**
+     * Set SharedTexture for the ImageView. It's detached when replaced.
+     *
+     * @param clipRect it will be ignored if {@code null} or empty or no intersection.
+     * @param sampleSize the image is decoded in 1 / sampleSize of original size
+     */
+    void setSharedTexture(SharedTexture image, Rect clipRect, int sampleSize) {
+        setImageTexture(image != null ? image.getTexture() : null, image, clipRect, sampleSize);
+    }
+
+    private void setImageTexture(ImageTexture image, SharedTexture sharedImage, Rect clipRect, int sampleSize) {
+        if (image != null && mTiledImage != null) {
+            throw new IllegalStateException("Can't set ImageTexture with TiledImage");
+        }
+
+        // Clean old image, the shared one is detached after the new one is attached,
+        // they might be the same one
+        final boolean hadImage = mImage != null;
+        final SharedTexture oldSharedImage = mSharedImage;
+        if (mImage != null && oldSharedImage == null) {
             mImage.setCallback(null);
             mImage.stop();
         }
 
         final int oldContentWidth = getContentWidth();
         final int oldContentHeight = getContentHeight();
+        final int oldSampleSize = mSampleSize;
 
         mImage = image;
+        mSharedImage = sharedImage;
+        mSampleSize = Math.max(1, sampleSize);
+        mOriginRequested = false;
 
         if (image != null) {
-            image.setCallback(this);
+            if (sharedImage != null) {
+                sharedImage.attach(this);
+            } else {
+                image.setCallback(this);
+            }
 
             final int imageWidth = image.getWidth();
             final int imageHeight = image.getHeight();
@@ -263,7 +322,7 @@ class ImageView extends GLView implements ImageTexture.Callback {
 
             getValidRect(mValidRect);
             if (!mValidRect.isEmpty()) {
-                mImage.start();
+                startImage();
             }
 
             // Only show alpha animation for the ImageView which can be seen.
@@ -279,6 +338,20 @@ class ImageView extends GLView implements ImageTexture.Callback {
             mClipBottom = 1;
         }
 
+        if (oldSharedImage != null && oldSharedImage != sharedImage) {
+            oldSharedImage.detach(this);
+        }
+
+        if (hadImage && image != null && !mScaleOffsetDirty && oldSampleSize != mSampleSize
+                && isSameLength(oldContentWidth, oldSampleSize, getContentWidth(), mSampleSize)
+                && isSameLength(oldContentHeight, oldSampleSize, getContentHeight(), mSampleSize)) {
+            // The same content in another resolution, keep the area in view
+            mActualScale = mActualScale * oldContentWidth / getContentWidth();
+            mPositionInRootDirty = true;
+            invalidate();
+            return;
+        }
+
         mScaleOffsetDirty = true;
         mPositionInRootDirty = true;
 
@@ -287,12 +360,88 @@ class ImageView extends GLView implements ImageTexture.Callback {
         }
     }
 
+    /**
+     * Set TiledImage for the ImageView. ImageTexture must be
+     * cleared before it.
+     */
+    public void setTiledImage(TiledImage tiledImage) {
+        if (mImage != null) {
+            throw new IllegalStateException("Can't set TiledImage with ImageTexture");
+        }
+        if (mTiledImage != null) {
+            mTiledImage.setCallback(null);
+        }
+
+        final int oldContentWidth = getContentWidth();
+        final int oldContentHeight = getContentHeight();
+
+        mTiledImage = tiledImage;
+        mSampleSize = 1;
+        mOriginRequested = false;
+
+        mClipLeft = 0;
+        mClipTop = 0;
+        if (tiledImage != null) {
+            tiledImage.setCallback(this);
+            mClipRight = tiledImage.getWidth();
+            mClipBottom = tiledImage.getHeight();
+            updateScale();
+        } else {
+            mClipRight = 1;
+            mClipBottom = 1;
+        }
+
+        mScaleOffsetDirty = true;
+        mPositionInRootDirty = true;
+
+        if (oldContentWidth != getContentWidth() || oldContentHeight != getContentHeight()) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    public TiledImage getTiledImage() {
+        return mTiledImage;
+    }
+
+    public int getSampleSize() {
+        return mSampleSize;
+    }
+
+    // Request original image if one image pixel takes more than one screen pixel
+    private void checkResolution() {
+        if (mSampleSize > 1 && mActualScale > 1.0f && !mOriginRequested && mListener != null) {
+            mOriginRequested = true;
+            mListener.onRequestOrigin();
+        }
+    }
+
     public ImageTexture getImageTexture() {
         return mImage;
     }
 
+    SharedTexture getSharedTexture() {
+        return mSharedImage;
+    }
+
+    private void startImage() {
+        if (mSharedImage != null) {
+            mSharedImage.start(this);
+        } else {
+            mImage.start();
+        }
+    }
+
+    private void stopImage() {
+        if (mSharedImage != null) {
+            mSharedImage.stop(this);
+        } else {
+            mImage.stop();
+        }
+    }
+
     public boolean isLoaded() {
-        return mImage != null;
+        return hasContent();
     }
 
     public boolean canFlingVertically() {
@@ -417,7 +566,7 @@ class ImageView extends GLView implements ImageTexture.Callback {
         final int viewWidth = getWidth();
         final int viewHeight = getHeight();
 
-        if (mImage == null || viewWidth <= 0 || viewHeight <= 0) {
+        if (!hasContent() || viewWidth <= 0 || viewHeight <= 0) {
             // Can't handle it now, pend it.
             mScaleOffsetDirty = true;
             return;
@@ -494,6 +643,8 @@ class ImageView extends GLView implements ImageTexture.Callback {
 
         mScaleOffsetDirty = false;
         mPositionInRootDirty = true;
+
+        checkResolution();
     }
 
     public void scroll(int dx, int dy, int[] remain) {
@@ -588,6 +739,8 @@ class ImageView extends GLView implements ImageTexture.Callback {
 
         mPositionInRootDirty = true;
         invalidate();
+
+        checkResolution();
     }
 
     private void applyPositionInRoot() {
@@ -619,7 +772,8 @@ class ImageView extends GLView implements ImageTexture.Callback {
     @Override
     public void onRender(GLCanvas canvas) {
         final Texture texture = mImage;
-        if (texture == null) {
+        final TiledImage tiledImage = mTiledImage;
+        if (texture == null && tiledImage == null) {
             return;
         }
 
@@ -632,7 +786,11 @@ class ImageView extends GLView implements ImageTexture.Callback {
         }
 
         if (!mSrcActual.isEmpty()) {
-            texture.draw(canvas, mSrcActual, mDstActual);
+            if (texture != null) {
+                texture.draw(canvas, mSrcActual, mDstActual);
+            } else {
+                tiledImage.draw(canvas, mSrcActual, mDstActual);
+            }
         }
     }
 
@@ -640,4 +798,17 @@ class ImageView extends GLView implements ImageTexture.Callback {
     public void invalidateImageTexture(ImageTexture who) {
         invalidate();
     }
+
+    @Override
+    public void invalidateTiledImage(TiledImage who) {
+        invalidate();
+    }
+
+    interface Listener {
+
+        /**
+         * Called when the image is scaled larger than its decoded resolution.
+         */
+        void onRequestOrigin();
+    }
 }
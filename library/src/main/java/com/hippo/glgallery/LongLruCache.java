@@ -0,0 +1,556 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import java.util.Arrays;
+
+/**
+ * A LRU cache with primitive long keys. {@link #get(long)} and
+ * {@link #put(long, Object)} never allocate once the cache is warm.
+ * <p>
+ * Entries live in parallel arrays. An open addressing table with
+ * linear probing maps keys to entry slots, and an intrusive doubly
+ * linked list keeps the slots in access order, eldest first.
+ * <p>
+ * The eldest entry is evicted first, unless an {@link ImageCachePolicy}
+ * is set to choose the one to evict.
+ * <p>
+ * {@link Helper#onEntryRemoved(boolean, long, Object, Object)} is called
+ * after the cache is unlocked, values may be recycled in it.
+ */
+class LongLruCache<V> {
+
+    private static final int INVALID = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private final Helper<V> mHelper;
+    private ImageCachePolicy mPolicy;
+    // Keys in access order for the policy to choose from
+    private final Keys mVictimKeys = new Keys();
+
+    // Removed entries waiting for the helper, called out of the lock
+    private long[] mRemovedKeys = new long[MIN_CAPACITY];
+    private Object[] mRemovedValues = new Object[MIN_CAPACITY];
+    private Object[] mRemovedNewValues = new Object[MIN_CAPACITY];
+    private boolean[] mRemovedEvicted = new boolean[MIN_CAPACITY];
+    // The first one waiting
+    private int mRemovedStart;
+    private int mRemovedEnd;
+
+    private long mMaxSize;
+    private long mSize;
+    private int mCount;
+
+    // Key hash to entry slot, INVALID for empty bucket
+    private int[] mTable;
+    private int mMask;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int[] mSizes;
+    // An int attribute for each entry, avoids wrapping values
+    private int[] mExtras;
+    private int[] mPrevious;
+    // Next in access order, or next free slot for unused slots
+    private int[] mNext;
+
+    // The eldest entry
+    private int mHead = INVALID;
+    // The youngest entry
+    private int mTail = INVALID;
+    private int mFreeSlot = INVALID;
+    // Slots below it have been used once
+    private int mUsedSlots;
+
+    public LongLruCache(long maxSize, Helper<V> helper) {
+        this(maxSize, MIN_CAPACITY, helper);
+    }
+
+    public LongLruCache(long maxSize, int initialCapacity, Helper<V> helper) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        mHelper = helper;
+        allocate(Math.max(MIN_CAPACITY, initialCapacity));
+    }
+
+    private void allocate(int capacity) {
+        capacity = roundUpPowerOfTwo(capacity);
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mSizes = new int[capacity];
+        mExtras = new int[capacity];
+        mPrevious = new int[capacity];
+        mNext = new int[capacity];
+        // Keep load factor of the table at most 0.5
+        mTable = new int[capacity * 2];
+        Arrays.fill(mTable, INVALID);
+        mMask = mTable.length - 1;
+    }
+
+    private static int roundUpPowerOfTwo(int n) {
+        final int highest = Integer.highestOneBit(n);
+        return highest == n ? n : highest << 1;
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Return the bucket of the key, INVALID for missing
+    private int findBucket(long key) {
+        final int[] table = mTable;
+        final long[] keys = mKeys;
+        final int mask = mMask;
+        int bucket = hash(key) & mask;
+        while (true) {
+            final int slot = table[bucket];
+            if (slot == INVALID) {
+                return INVALID;
+            }
+            if (keys[slot] == key) {
+                return bucket;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+    }
+
+    private void insertBucket(long key, int slot) {
+        final int[] table = mTable;
+        final int mask = mMask;
+        int bucket = hash(key) & mask;
+        while (table[bucket] != INVALID) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = slot;
+    }
+
+    // Backward shift deletion, keeps every probe chain unbroken
+    private void removeBucket(int bucket) {
+        final int[] table = mTable;
+        final long[] keys = mKeys;
+        final int mask = mMask;
+        int hole = bucket;
+        int next = bucket;
+        while (true) {
+            table[hole] = INVALID;
+            while (true) {
+                next = (next + 1) & mask;
+                final int slot = table[next];
+                if (slot == INVALID) {
+                    return;
+                }
+                final int home = hash(keys[slot]) & mask;
+                // Stay if home is cyclically in (hole, next]
+                final boolean stay = hole <= next ?
+                        (hole < home && home <= next) : (hole < home || home <= next);
+                if (!stay) {
+                    break;
+                }
+            }
+            table[hole] = table[next];
+            hole = next;
+        }
+    }
+
+    private void grow() {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int[] sizes = mSizes;
+        final int[] extras = mExtras;
+        final int[] previous = mPrevious;
+        final int[] next = mNext;
+        final int oldCapacity = keys.length;
+
+        allocate(oldCapacity * 2);
+        System.arraycopy(keys, 0, mKeys, 0, oldCapacity);
+        System.arraycopy(values, 0, mValues, 0, oldCapacity);
+        System.arraycopy(sizes, 0, mSizes, 0, oldCapacity);
+        System.arraycopy(extras, 0, mExtras, 0, oldCapacity);
+        System.arraycopy(previous, 0, mPrevious, 0, oldCapacity);
+        System.arraycopy(next, 0, mNext, 0, oldCapacity);
+
+        for (int slot = mHead; slot != INVALID; slot = mNext[slot]) {
+            insertBucket(mKeys[slot], slot);
+        }
+    }
+
+    private int obtainSlot() {
+        final int slot;
+        if (mFreeSlot != INVALID) {
+            slot = mFreeSlot;
+            mFreeSlot = mNext[slot];
+        } else {
+            if (mUsedSlots == mKeys.length) {
+                grow();
+            }
+            slot = mUsedSlots++;
+        }
+        return slot;
+    }
+
+    private void releaseSlot(int slot) {
+        mValues[slot] = null;
+        mNext[slot] = mFreeSlot;
+        mFreeSlot = slot;
+    }
+
+    private void unlink(int slot) {
+        final int previous = mPrevious[slot];
+        final int next = mNext[slot];
+        if (previous == INVALID) {
+            mHead = next;
+        } else {
+            mNext[previous] = next;
+        }
+        if (next == INVALID) {
+            mTail = previous;
+        } else {
+            mPrevious[next] = previous;
+        }
+    }
+
+    private void linkLast(int slot) {
+        mPrevious[slot] = mTail;
+        mNext[slot] = INVALID;
+        if (mTail == INVALID) {
+            mHead = slot;
+        } else {
+            mNext[mTail] = slot;
+        }
+        mTail = slot;
+    }
+
+    /**
+     * Return the value for the key and make it the youngest one,
+     * or {@code null} if missing.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V get(long key) {
+        final int bucket = findBucket(key);
+        if (bucket == INVALID) {
+            return null;
+        }
+        final int slot = mTable[bucket];
+        if (slot != mTail) {
+            unlink(slot);
+            linkLast(slot);
+        }
+        return (V) mValues[slot];
+    }
+
+    /**
+     * Return the extra int of the key, or defaultValue if missing.
+     * Access order is not changed.
+     */
+    public synchronized int getExtra(long key, int defaultValue) {
+        final int bucket = findBucket(key);
+        return bucket == INVALID ? defaultValue : mExtras[mTable[bucket]];
+    }
+
+    /**
+     * Put the value to the cache, the old value for the key will be removed.
+     */
+    public void put(long key, V value) {
+        put(key, value, 0);
+    }
+
+    /**
+     * Put the value with an extra int to the cache,
+     * the old value for the key will be removed.
+     */
+    public void put(long key, V value, int extra) {
+        putInternal(key, value, extra);
+        dispatchRemoved();
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void putInternal(long key, V value, int extra) {
+        if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+
+        final int size = mHelper.sizeOf(key, value);
+        final int bucket = findBucket(key);
+        if (bucket != INVALID) {
+            final int slot = mTable[bucket];
+            final V oldValue = (V) mValues[slot];
+            mValues[slot] = value;
+            mSize += size - mSizes[slot];
+            mSizes[slot] = size;
+            mExtras[slot] = extra;
+            if (slot != mTail) {
+                unlink(slot);
+                linkLast(slot);
+            }
+            mHelper.onEntryAdded(key, value);
+            addRemoved(false, key, oldValue, value);
+        } else {
+            final int slot = obtainSlot();
+            mKeys[slot] = key;
+            mValues[slot] = value;
+            mSizes[slot] = size;
+            mExtras[slot] = extra;
+            linkLast(slot);
+            insertBucket(key, slot);
+            mSize += size;
+            ++mCount;
+            mHelper.onEntryAdded(key, value);
+        }
+
+        trimToSizeInternal(mMaxSize);
+    }
+
+    /**
+     * Remove the value for the key. Return the removed value,
+     * or {@code null} if missing.
+     */
+    public V remove(long key) {
+        final V value = removeInternal(key);
+        dispatchRemoved();
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized V removeInternal(long key) {
+        final int bucket = findBucket(key);
+        if (bucket == INVALID) {
+            return null;
+        }
+        final int slot = mTable[bucket];
+        final V value = (V) mValues[slot];
+        removeEntry(bucket, slot);
+        addRemoved(false, key, value, null);
+        return value;
+    }
+
+    private void removeEntry(int bucket, int slot) {
+        removeBucket(bucket);
+        unlink(slot);
+        mSize -= mSizes[slot];
+        --mCount;
+        releaseSlot(slot);
+    }
+
+    /**
+     * Remove the eldest entries until the total size is not larger than maxSize.
+     */
+    public void trimToSize(long maxSize) {
+        trimToSizeInternal(maxSize);
+        dispatchRemoved();
+    }
+
+    private synchronized void trimToSizeInternal(long maxSize) {
+        if (mSize <= maxSize || mHead == INVALID) {
+            return;
+        }
+
+        // All entries go if maxSize is negative, no need to choose
+        final ImageCachePolicy policy = mPolicy;
+        if (policy == null || maxSize < 0) {
+            while (mSize > maxSize && mHead != INVALID) {
+                evict(mHead);
+            }
+            return;
+        }
+
+        // The policy reads only keys it needs, no copy of all keys
+        final Keys keys = mVictimKeys;
+        while (mSize > maxSize && mHead != INVALID) {
+            keys.reset();
+            final int index = policy.selectVictim(keys);
+            if (index < 0 || index >= mCount) {
+                throw new IllegalStateException("Invalid victim: " + index + ", count: " + mCount);
+            }
+            evict(keys.slotAt(index));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evict(int slot) {
+        final long key = mKeys[slot];
+        final V value = (V) mValues[slot];
+        removeEntry(findBucket(key), slot);
+        addRemoved(true, key, value, null);
+    }
+
+    private void addRemoved(boolean evicted, long key, V oldValue, V newValue) {
+        final int end = mRemovedEnd;
+        if (end == mRemovedKeys.length) {
+            final int capacity = end * 2;
+            mRemovedKeys = Arrays.copyOf(mRemovedKeys, capacity);
+            mRemovedValues = Arrays.copyOf(mRemovedValues, capacity);
+            mRemovedNewValues = Arrays.copyOf(mRemovedNewValues, capacity);
+            mRemovedEvicted = Arrays.copyOf(mRemovedEvicted, capacity);
+        }
+        mRemovedKeys[end] = key;
+        mRemovedValues[end] = oldValue;
+        mRemovedNewValues[end] = newValue;
+        mRemovedEvicted[end] = evicted;
+        mRemovedEnd = end + 1;
+    }
+
+    // Call the helper for removed entries out of the lock, in removing order.
+    // Entries removed by other threads may be handled here too, it's fine.
+    @SuppressWarnings("unchecked")
+    private void dispatchRemoved() {
+        while (true) {
+            final boolean evicted;
+            final long key;
+            final V oldValue;
+            final V newValue;
+            synchronized (this) {
+                final int index = mRemovedStart;
+                if (index == mRemovedEnd) {
+                    return;
+                }
+                evicted = mRemovedEvicted[index];
+                key = mRemovedKeys[index];
+                oldValue = (V) mRemovedValues[index];
+                newValue = (V) mRemovedNewValues[index];
+                mRemovedValues[index] = null;
+                mRemovedNewValues[index] = null;
+                if (index + 1 == mRemovedEnd) {
+                    mRemovedStart = 0;
+                    mRemovedEnd = 0;
+                } else {
+                    mRemovedStart = index + 1;
+                }
+            }
+            mHelper.onEntryRemoved(evicted, key, oldValue, newValue);
+        }
+    }
+
+    /**
+     * Set the policy to choose entries to evict, {@code null} to evict the eldest.
+     */
+    public synchronized void setPolicy(ImageCachePolicy policy) {
+        mPolicy = policy;
+    }
+
+    /**
+     * Change max size of the cache, entries will be evicted if needed.
+     */
+    public void resize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        synchronized (this) {
+            mMaxSize = maxSize;
+            trimToSizeInternal(maxSize);
+        }
+        dispatchRemoved();
+    }
+
+    public void evictAll() {
+        trimToSize(-1);
+    }
+
+    /**
+     * Evict all entries.
+     */
+    public void close() {
+        evictAll();
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public synchronized long maxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized int count() {
+        return mCount;
+    }
+
+    // Keys in access order. Walks the list from the nearest one of
+    // the eldest, the youngest and the last read entry.
+    private class Keys implements ImageCachePolicy.Keys {
+
+        private int mCursorIndex;
+        private int mCursorSlot;
+
+        void reset() {
+            mCursorIndex = 0;
+            mCursorSlot = mHead;
+        }
+
+        int slotAt(int index) {
+            if (index < 0 || index >= mCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", count: " + mCount);
+            }
+            int current = mCursorIndex;
+            int slot = mCursorSlot;
+            if (index < current && index < current - index) {
+                current = 0;
+                slot = mHead;
+            } else if (index > current && mCount - 1 - index < index - current) {
+                current = mCount - 1;
+                slot = mTail;
+            }
+            final int[] next = mNext;
+            final int[] previous = mPrevious;
+            while (current < index) {
+                slot = next[slot];
+                ++current;
+            }
+            while (current > index) {
+                slot = previous[slot];
+                --current;
+            }
+            mCursorIndex = current;
+            mCursorSlot = slot;
+            return slot;
+        }
+
+        @Override
+        public int count() {
+            return mCount;
+        }
+
+        @Override
+        public long get(int index) {
+            return mKeys[slotAt(index)];
+        }
+    }
+
+    interface Helper<V> {
+
+        /**
+         * Return the size of the entry.
+         */
+        int sizeOf(long key, V value);
+
+        /**
+         * Called after the entry is added, with the cache locked,
+         * so the value is set up before other threads can get it.
+         */
+        void onEntryAdded(long key, V value);
+
+        /**
+         * Called after the entry is removed, out of the lock of the cache.
+         *
+         * @param evicted {@code true} if it is removed to make space
+         * @param newValue the new value for the key, or {@code null}
+         */
+        void onEntryRemoved(boolean evicted, long key, V oldValue, V newValue);
+    }
+}
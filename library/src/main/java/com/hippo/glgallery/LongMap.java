@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import java.util.List;
+
+/**
+ * A map with primitive long keys. It uses open addressing with linear
+ * probing, so {@link #get(long)}, {@link #put(long, Object)} and
+ * {@link #remove(long)} do not allocate unless it grows.
+ * <p>
+ * It is not thread-safe.
+ */
+class LongMap<V> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int mMask;
+    private int mSize;
+
+    public LongMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongMap(int initialCapacity) {
+        allocate(tableSizeFor(Math.max(MIN_CAPACITY, initialCapacity)));
+    }
+
+    // Keep load factor at most 0.5
+    private static int tableSizeFor(int capacity) {
+        final int n = capacity * 2;
+        final int highest = Integer.highestOneBit(n);
+        return highest == n ? n : highest << 1;
+    }
+
+    private void allocate(int tableSize) {
+        mKeys = new long[tableSize];
+        mValues = new Object[tableSize];
+        mMask = tableSize - 1;
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int find(long key) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int mask = mMask;
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final int i = find(key);
+        return i < 0 ? null : (V) mValues[i];
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Return the old value, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int mask = mMask;
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                final V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++mSize * 2 > keys.length) {
+            grow();
+        }
+        return null;
+    }
+
+    private void grow() {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        allocate(keys.length * 2);
+        final long[] newKeys = mKeys;
+        final Object[] newValues = mValues;
+        final int mask = mMask;
+        for (int i = 0, n = keys.length; i < n; i++) {
+            if (values[i] != null) {
+                int j = hash(keys[i]) & mask;
+                while (newValues[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                newKeys[j] = keys[i];
+                newValues[j] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Return the removed value, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int hole = find(key);
+        if (hole < 0) {
+            return null;
+        }
+
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int mask = mMask;
+        final V old = (V) values[hole];
+        --mSize;
+
+        // Backward shift deletion, keeps every probe chain unbroken
+        int next = hole;
+        while (true) {
+            values[hole] = null;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == null) {
+                    return old;
+                }
+                final int home = hash(keys[next]) & mask;
+                // Stay if home is cyclically in (hole, next]
+                final boolean stay = hole <= next ?
+                        (hole < home && home <= next) : (hole < home || home <= next);
+                if (!stay) {
+                    break;
+                }
+            }
+            keys[hole] = keys[next];
+            values[hole] = values[next];
+            hole = next;
+        }
+    }
+
+    /**
+     * Add all values to the list, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public void getValues(List<? super V> out) {
+        final Object[] values = mValues;
+        for (int i = 0, n = values.length; i < n; i++) {
+            if (values[i] != null) {
+                out.add((V) values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        final Object[] values = mValues;
+        for (int i = 0, n = values.length; i < n; i++) {
+            values[i] = null;
+        }
+        mSize = 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+}
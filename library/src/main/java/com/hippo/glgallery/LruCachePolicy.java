@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+/**
+ * Evicts the page accessed least recently. It's the default.
+ */
+public class LruCachePolicy implements ImageCachePolicy {
+
+    @Override
+    public void onCurrentPage(int chapter, int index) {}
+
+    @Override
+    public void onAccess(long key) {}
+
+    @Override
+    public int selectVictim(Keys keys) {
+        return 0;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.hippo.image.ImageData;
+import com.hippo.yorozuya.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A disk cache of decoded pages, the second tier under the memory cache of
+ * {@link GalleryProvider}. Each page is a file of raw pixels. Reading a page
+ * maps the file instead of decoding it again, the {@link Codec} could wrap
+ * the mapped buffer without copying.
+ * <p>
+ * Files are evicted in LRU order when the total size exceeds max size.
+ * Access order is lost after restarting, the files are ordered by
+ * modified time then.
+ */
+public class MappedImageCache {
+
+    private static final String TAG = MappedImageCache.class.getSimpleName();
+
+    private static final int MAGIC = 0x474C4743; // GLGC
+    // Magic, width, height
+    private static final int HEADER_SIZE = 12;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final char TEMP_PREFIX_SEPARATOR = '-';
+    private static final char SAMPLE_SIZE_SEPARATOR = '_';
+
+    private final File mDir;
+    private final Codec mCodec;
+    private final LongLruCache<File> mIndex;
+
+    private final Object mCounterLock = new Object();
+    private long mHitCount;
+    private long mMissCount;
+
+    /**
+     * Create a cache in the directory. Existing files are indexed here,
+     * so construct it in a worker thread if the directory might be large.
+     *
+     * @param maxSize max total size of files in bytes
+     */
+    public MappedImageCache(@NonNull File dir, long maxSize, @NonNull Codec codec) {
+        mDir = dir;
+        mCodec = codec;
+        mIndex = new LongLruCache<>(maxSize, new IndexHelper());
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Can't create directory: " + dir);
+        }
+        loadIndex();
+    }
+
+    private void loadIndex() {
+        final File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // Eldest first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                final long l = lhs.lastModified();
+                final long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+
+        for (final File file : files) {
+            final String name = file.getName();
+            final int separator = name.indexOf(SAMPLE_SIZE_SEPARATOR);
+            long key;
+            int sampleSize;
+            try {
+                if (separator <= 0 || name.endsWith(TEMP_SUFFIX)) {
+                    throw new NumberFormatException();
+                }
+                key = Long.parseLong(name.substring(0, separator), 16);
+                sampleSize = Integer.parseInt(name.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                // Not a page file, or a broken one
+                file.delete();
+                continue;
+            }
+            mIndex.put(key, file, sampleSize);
+        }
+    }
+
+    private File getFile(long key, int sampleSize) {
+        return new File(mDir, Long.toHexString(key) + SAMPLE_SIZE_SEPARATOR + sampleSize);
+    }
+
+    /**
+     * Return {@code true} if the page is in this cache.
+     * Counters and access order are not changed.
+     */
+    public boolean contains(long key) {
+        return mIndex.getExtra(key, 0) != 0;
+    }
+
+    /**
+     * Return the sample size of the page, 1 if missing.
+     */
+    public int getSampleSize(long key) {
+        return mIndex.getExtra(key, 1);
+    }
+
+    /**
+     * Read the page from disk, or {@code null} if missing or broken.
+     */
+    @Nullable
+    public ImageData get(long key) {
+        final File file = mIndex.get(key);
+        if (file == null) {
+            countMiss();
+            return null;
+        }
+
+        RandomAccessFile raf = null;
+        ImageData image = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            // The mapping is valid after the channel is closed
+            final MappedByteBuffer buffer = raf.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            buffer.order(ByteOrder.nativeOrder());
+            if (buffer.remaining() >= HEADER_SIZE && buffer.getInt() == MAGIC) {
+                final int width = buffer.getInt();
+                final int height = buffer.getInt();
+                image = mCodec.decode(buffer.slice(), width, height);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read " + file, e);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+
+        if (image != null) {
+            countHit();
+        } else {
+            // Drop the broken one
+            mIndex.remove(key);
+            countMiss();
+        }
+        return image;
+    }
+
+    /**
+     * Write the page to disk, the old one for the key will be replaced.
+     * It's a blocking operation, call it in worker thread.
+     *
+     * @param sampleSize the image is decoded in 1 / sampleSize of original size
+     * @return {@code true} if it's written
+     */
+    public boolean put(long key, @NonNull ImageData image, int sampleSize) {
+        return put(key, image, image.getWidth(), image.getHeight(), sampleSize);
+    }
+
+    // The image is only passed to the codec
+    boolean put(long key, ImageData image, int width, int height, int sampleSize) {
+        final int byteCount = mCodec.getByteCount(image);
+        if (byteCount <= 0 || HEADER_SIZE + (long) byteCount > mIndex.maxSize()) {
+            return false;
+        }
+
+        final File file = getFile(key, sampleSize);
+        File temp = null;
+        RandomAccessFile raf = null;
+        boolean ok = false;
+        try {
+            // Unique for each put, the page might be written in two threads
+            temp = File.createTempFile(file.getName() + TEMP_PREFIX_SEPARATOR, TEMP_SUFFIX, mDir);
+            raf = new RandomAccessFile(temp, "rw");
+            raf.setLength(HEADER_SIZE + byteCount);
+            final MappedByteBuffer buffer = raf.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + byteCount);
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.putInt(MAGIC);
+            buffer.putInt(width);
+            buffer.putInt(height);
+            ok = mCodec.encode(image, buffer.slice());
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write " + file, e);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+
+        // Rename makes the file complete or missing
+        if (ok && temp.renameTo(file)) {
+            mIndex.put(key, file, sampleSize);
+            return true;
+        } else {
+            if (temp != null) {
+                temp.delete();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Remove the page from disk.
+     */
+    public void remove(long key) {
+        mIndex.remove(key);
+    }
+
+    /**
+     * Remove all pages from disk.
+     */
+    public void clear() {
+        mIndex.evictAll();
+    }
+
+    private void countHit() {
+        synchronized (mCounterLock) {
+            ++mHitCount;
+        }
+    }
+
+    private void countMiss() {
+        synchronized (mCounterLock) {
+            ++mMissCount;
+        }
+    }
+
+    /**
+     * Return the number of {@link #get(long)} returning a page.
+     */
+    public long hitCount() {
+        synchronized (mCounterLock) {
+            return mHitCount;
+        }
+    }
+
+    /**
+     * Return the number of {@link #get(long)} returning {@code null}.
+     */
+    public long missCount() {
+        synchronized (mCounterLock) {
+            return mMissCount;
+        }
+    }
+
+    /**
+     * Return total size of files in bytes.
+     */
+    public long size() {
+        return mIndex.size();
+    }
+
+    public long maxSize() {
+        return mIndex.maxSize();
+    }
+
+    private static class IndexHelper implements LongLruCache.Helper<File> {
+
+        @Override
+        public int sizeOf(long key, File value) {
+            return (int) Math.min(Integer.MAX_VALUE, value.length());
+        }
+
+        @Override
+        public void onEntryAdded(long key, File value) {}
+
+        @Override
+        public void onEntryRemoved(boolean evicted, long key, File oldValue, File newValue) {
+            // Mapped buffers stay valid after the file is deleted
+            if (!oldValue.equals(newValue)) {
+                oldValue.delete();
+            }
+        }
+    }
+
+    /**
+     * Converts between {@link ImageData} and raw pixels.
+     * The image library decides the pixel format, so providers implement it.
+     */
+    public interface Codec {
+
+        /**
+         * Return the size of raw pixels of the image,
+         * or 0 if it can't be stored, like an animated image.
+         */
+        int getByteCount(@NonNull ImageData image);
+
+        /**
+         * Write raw pixels of the image to the buffer.
+         *
+         * @return {@code true} if done
+         */
+        boolean encode(@NonNull ImageData image, @NonNull ByteBuffer buffer);
+
+        /**
+         * Create an image from raw pixels. The buffer is mapped from
+         * a file, it can be used directly without copying.
+         */
+        @Nullable
+        ImageData decode(@NonNull ByteBuffer buffer, int width, int height);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+/**
+ * A bit for each page of each chapter. Words of a chapter are allocated
+ * when the first bit of it is set, a chapter without set bits costs nothing.
+ * Bits are kept when chapter count or page count changes.
+ * <p>
+ * It is not thread-safe.
+ */
+class PageBits {
+
+    private static final long[][] EMPTY = new long[0][];
+
+    private long[][] mBits = EMPTY;
+
+    public boolean get(int chapter, int page) {
+        final long[][] bits = mBits;
+        if (chapter < 0 || chapter >= bits.length || page < 0) {
+            return false;
+        }
+        final long[] words = bits[chapter];
+        final int word = page >>> 6;
+        return words != null && word < words.length && (words[word] & (1L << page)) != 0;
+    }
+
+    public void set(int chapter, int page, boolean value) {
+        if (chapter < 0 || page < 0) {
+            throw new IndexOutOfBoundsException("Chapter: " + chapter + ", page: " + page);
+        }
+        if (!value) {
+            clear(chapter, page);
+            return;
+        }
+
+        if (chapter >= mBits.length) {
+            final long[][] bits = new long[Math.max(chapter + 1, mBits.length * 2)][];
+            System.arraycopy(mBits, 0, bits, 0, mBits.length);
+            mBits = bits;
+        }
+        long[] words = mBits[chapter];
+        final int word = page >>> 6;
+        if (words == null || word >= words.length) {
+            final long[] newWords = new long[word + 1];
+            if (words != null) {
+                System.arraycopy(words, 0, newWords, 0, words.length);
+            }
+            words = newWords;
+            mBits[chapter] = words;
+        }
+        words[word] |= 1L << page;
+    }
+
+    private void clear(int chapter, int page) {
+        final long[][] bits = mBits;
+        if (chapter >= bits.length) {
+            return;
+        }
+        final long[] words = bits[chapter];
+        final int word = page >>> 6;
+        if (words != null && word < words.length) {
+            words[word] &= ~(1L << page);
+        }
+    }
+
+    /**
+     * Clear bits of pages from the page count. Call it when page count of
+     * the chapter shrinks, or pages out of range could come back.
+     */
+    public void truncate(int chapter, int pageCount) {
+        final long[][] bits = mBits;
+        if (chapter < 0 || chapter >= bits.length || bits[chapter] == null) {
+            return;
+        }
+        if (pageCount <= 0) {
+            bits[chapter] = null;
+            return;
+        }
+        final long[] words = bits[chapter];
+        final int word = pageCount >>> 6;
+        if (word >= words.length) {
+            return;
+        }
+        words[word] &= (1L << pageCount) - 1;
+        for (int i = word + 1, n = words.length; i < n; i++) {
+            words[i] = 0;
+        }
+    }
+
+    /**
+     * Drop bits of chapters from the chapter count.
+     */
+    public void setChapterCount(int chapterCount) {
+        final long[][] bits = mBits;
+        for (int i = Math.max(chapterCount, 0), n = bits.length; i < n; i++) {
+            bits[i] = null;
+        }
+    }
+}
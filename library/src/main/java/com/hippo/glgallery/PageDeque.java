@@ -0,0 +1,294 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.graphics.Rect;
+
+/**
+ * Pages in layout order, with an index from page id to position.
+ * <p>
+ * Pages live in an array used as a ring. Each page has an absolute position,
+ * {@link #addFirst(GalleryPageView)} and {@link #addLast(GalleryPageView)} never
+ * move other pages, so the index stays valid. An open addressing table maps
+ * page ids to positions. Nothing is allocated once the arrays are large enough.
+ * <p>
+ * {@link #take(long)} leaves a hole, {@link #get(int)} returns {@code null} for it.
+ * It is not thread-safe.
+ */
+class PageDeque {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Ring of pages, the length is power of two
+    private GalleryPageView[] mPages;
+    private int mPageMask;
+    // Absolute position of the first page, decreases in addFirst
+    private int mFirst;
+    // Absolute position after the last page
+    private int mEnd;
+
+    // Index from page id to absolute position, the length is power of two
+    private long[] mKeys;
+    private int[] mPositions;
+    private boolean[] mUsed;
+    private int mIndexMask;
+
+    public PageDeque() {
+        mPages = new GalleryPageView[MIN_CAPACITY];
+        mPageMask = MIN_CAPACITY - 1;
+        allocateIndex(MIN_CAPACITY * 2);
+    }
+
+    private void allocateIndex(int tableSize) {
+        mKeys = new long[tableSize];
+        mPositions = new int[tableSize];
+        mUsed = new boolean[tableSize];
+        mIndexMask = tableSize - 1;
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Return the number of positions, holes included.
+     */
+    public int size() {
+        return mEnd - mFirst;
+    }
+
+    public boolean isEmpty() {
+        return mEnd == mFirst;
+    }
+
+    /**
+     * Return the page at the index, {@code null} if it's taken.
+     */
+    public GalleryPageView get(int index) {
+        return mPages[(mFirst + index) & mPageMask];
+    }
+
+    public GalleryPageView getFirst() {
+        if (isEmpty()) {
+            throw new IllegalStateException("No page");
+        }
+        return get(0);
+    }
+
+    public GalleryPageView getLast() {
+        if (isEmpty()) {
+            throw new IllegalStateException("No page");
+        }
+        return get(size() - 1);
+    }
+
+    public void addFirst(GalleryPageView page) {
+        ensureCapacity();
+        final int position = --mFirst;
+        mPages[position & mPageMask] = page;
+        putIndex(page.getPageId(), position);
+    }
+
+    public void addLast(GalleryPageView page) {
+        ensureCapacity();
+        final int position = mEnd++;
+        mPages[position & mPageMask] = page;
+        putIndex(page.getPageId(), position);
+    }
+
+    public GalleryPageView removeFirst() {
+        final GalleryPageView page = getFirst();
+        mPages[mFirst++ & mPageMask] = null;
+        if (page != null) {
+            removeIndex(findIndex(page.getPageId()));
+        }
+        return page;
+    }
+
+    public GalleryPageView removeLast() {
+        final GalleryPageView page = getLast();
+        mPages[--mEnd & mPageMask] = null;
+        if (page != null) {
+            removeIndex(findIndex(page.getPageId()));
+        }
+        return page;
+    }
+
+    /**
+     * Return the page with the id, or {@code null}.
+     */
+    public GalleryPageView find(long id) {
+        final int i = findIndex(id);
+        return i < 0 ? null : mPages[mPositions[i] & mPageMask];
+    }
+
+    /**
+     * Return the index of the page with the id, or -1.
+     */
+    public int indexOf(long id) {
+        final int i = findIndex(id);
+        return i < 0 ? -1 : mPositions[i] - mFirst;
+    }
+
+    /**
+     * Remove the page with the id and return it, or {@code null}.
+     * Its position becomes a hole.
+     */
+    public GalleryPageView take(long id) {
+        final int i = findIndex(id);
+        if (i < 0) {
+            return null;
+        }
+        final int slot = mPositions[i] & mPageMask;
+        final GalleryPageView page = mPages[slot];
+        mPages[slot] = null;
+        removeIndex(i);
+        return page;
+    }
+
+    /**
+     * Return the index of the page containing the point, or -1.
+     * Pages must be laid out from top to bottom without overlapping,
+     * and there must be no hole.
+     */
+    public int search(int x, int y) {
+        // Find the last page whose top <= y
+        int low = 0;
+        int high = size() - 1;
+        int found = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final GalleryPageView page = get(mid);
+            if (page.bounds().top <= y) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) {
+            return -1;
+        }
+        final Rect bounds = get(found).bounds();
+        return bounds.contains(x, y) ? found : -1;
+    }
+
+    public void clear() {
+        final GalleryPageView[] pages = mPages;
+        for (int i = 0, n = pages.length; i < n; i++) {
+            pages[i] = null;
+        }
+        final boolean[] used = mUsed;
+        for (int i = 0, n = used.length; i < n; i++) {
+            used[i] = false;
+        }
+        mFirst = 0;
+        mEnd = 0;
+    }
+
+    private void ensureCapacity() {
+        final int size = size();
+        if (size < mPages.length) {
+            return;
+        }
+
+        // Pages keep their absolute positions, only slots change
+        final GalleryPageView[] pages = mPages;
+        final int oldMask = mPageMask;
+        final int capacity = pages.length * 2;
+        final GalleryPageView[] newPages = new GalleryPageView[capacity];
+        final int newMask = capacity - 1;
+        for (int position = mFirst; position != mEnd; position++) {
+            newPages[position & newMask] = pages[position & oldMask];
+        }
+        mPages = newPages;
+        mPageMask = newMask;
+
+        // Keep load factor of index at most 0.5
+        if (mKeys.length < capacity * 2) {
+            final long[] keys = mKeys;
+            final int[] positions = mPositions;
+            final boolean[] used = mUsed;
+            allocateIndex(keys.length * 2);
+            for (int i = 0, n = keys.length; i < n; i++) {
+                if (used[i]) {
+                    putIndex(keys[i], positions[i]);
+                }
+            }
+        }
+    }
+
+    private int findIndex(long key) {
+        final long[] keys = mKeys;
+        final boolean[] used = mUsed;
+        final int mask = mIndexMask;
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void putIndex(long key, int position) {
+        final long[] keys = mKeys;
+        final boolean[] used = mUsed;
+        final int mask = mIndexMask;
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                throw new IllegalStateException("Duplicate page id: " + key);
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        mPositions[i] = position;
+        used[i] = true;
+    }
+
+    // Backward shift deletion, keeps every probe chain unbroken
+    private void removeIndex(int hole) {
+        final long[] keys = mKeys;
+        final int[] positions = mPositions;
+        final boolean[] used = mUsed;
+        final int mask = mIndexMask;
+        int next = hole;
+        while (true) {
+            used[hole] = false;
+            while (true) {
+                next = (next + 1) & mask;
+                if (!used[next]) {
+                    return;
+                }
+                final int home = hash(keys[next]) & mask;
+                // Stay if home is cyclically in (hole, next]
+                final boolean stay = hole <= next ?
+                        (hole < home && home <= next) : (hole < home || home <= next);
+                if (!stay) {
+                    break;
+                }
+            }
+            keys[hole] = keys[next];
+            positions[hole] = positions[next];
+            used[hole] = true;
+            hole = next;
+        }
+    }
+}
@@ -221,6 +221,11 @@ class PagerLayoutManager extends GalleryView.LayoutManager {
         return adapter;
     }
 
+    @Override
+    public GalleryView.Adapter getAdapter() {
+        return mAdapter;
+    }
+
     private GalleryPageView getLeftPage() {
         switch (mMode) {
             case MODE_LEFT_TO_RIGHT:
@@ -22,51 +22,148 @@ package com.hippo.glgallery;
 
 import com.hippo.glview.view.GLRoot;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import javax.microedition.khronos.opengles.GL10;
 
+/**
+ * Posts method calls to render thread. Subclasses are generated by postmangen,
+ * with a typed post method for each method.
+ * <p>
+ * Messages are stored in primitive arrays, no boxing and no allocation
+ * once the arrays are large enough. Arguments are float or long,
+ * int and boolean are stored as long.
+ */
 public abstract class Postman extends GLRoot.Handler {
 
-    private static final int INIT_SIZE = 5;
+    private static final int INIT_CAPACITY = 8;
 
-    private final List<Integer> mMethodList = new ArrayList<>(INIT_SIZE);
-    private final List<Object[]> mArgsList = new ArrayList<>(INIT_SIZE);
-    private final List<Integer> mMethodListTemp = new ArrayList<>(INIT_SIZE);
-    private final List<Object[]> mArgsListTemp = new ArrayList<>(INIT_SIZE);
+    static final int INVALID_MESSAGE = -1;
 
-    void postMethod(int method, Object... args) {
-        synchronized (this) {
-            mMethodList.add(method);
-            mArgsList.add(args);
+    // Argument count of each message
+    private final int mFloatCount;
+    private final int mLongCount;
+
+    // Messages posted, guarded by this
+    private Messages mPending;
+    // Messages being handled, only used in render thread
+    private Messages mHandling;
+
+    protected Postman(int floatCount, int longCount) {
+        mFloatCount = floatCount;
+        mLongCount = longCount;
+        mPending = new Messages(INIT_CAPACITY, floatCount, longCount);
+        mHandling = new Messages(INIT_CAPACITY, floatCount, longCount);
+    }
+
+    /**
+     * Add a message and return its index. Call it with lock of this held.
+     */
+    final int obtainMessage(int method) {
+        final Messages messages = mPending;
+        if (messages.count == messages.methods.length) {
+            messages.grow(mFloatCount, mLongCount);
         }
-        request();
+        final int message = messages.count++;
+        messages.methods[message] = method;
+        return message;
+    }
+
+    /**
+     * Return the latest posted message if it is the method and not handled,
+     * otherwise {@link #INVALID_MESSAGE}. Call it with lock of this held.
+     */
+    final int getLastMessage(int method) {
+        final Messages messages = mPending;
+        final int message = messages.count - 1;
+        return message >= 0 && messages.methods[message] == method ? message : INVALID_MESSAGE;
+    }
+
+    final void putFloat(int message, int index, float value) {
+        mPending.floats[message * mFloatCount + index] = value;
+    }
+
+    final void addFloat(int message, int index, float value) {
+        mPending.floats[message * mFloatCount + index] += value;
+    }
+
+    final void putLong(int message, int index, long value) {
+        mPending.longs[message * mLongCount + index] = value;
+    }
+
+    final void putInt(int message, int index, int value) {
+        putLong(message, index, value);
     }
 
-    protected abstract void handleMethod(int method, Object... args);
+    final void putBoolean(int message, int index, boolean value) {
+        putLong(message, index, value ? 1L : 0L);
+    }
+
+    final float getFloat(int message, int index) {
+        return mHandling.floats[message * mFloatCount + index];
+    }
+
+    final long getLong(int message, int index) {
+        return mHandling.longs[message * mLongCount + index];
+    }
+
+    final int getInt(int message, int index) {
+        return (int) getLong(message, index);
+    }
+
+    final boolean getBoolean(int message, int index) {
+        return getLong(message, index) != 0L;
+    }
+
+    /**
+     * Handle the message in render thread. Read arguments with
+     * {@link #getFloat(int, int)}, {@link #getLong(int, int)},
+     * {@link #getInt(int, int)} and {@link #getBoolean(int, int)}.
+     */
+    protected abstract void handleMethod(int method, int message);
 
     @Override
     public void onHandle(GL10 gl) {
-        final List<Integer> methodList = mMethodListTemp;
-        final List<Object[]> argsList = mArgsListTemp;
+        // Swap, post methods could be called in handling
+        final Messages messages;
         synchronized (this) {
-            if (mMethodList.isEmpty()) {
+            if (mPending.count == 0) {
                 return;
             }
-            methodList.addAll(mMethodList);
-            argsList.addAll(mArgsList);
-            mMethodList.clear();
-            mArgsList.clear();
+            messages = mPending;
+            mPending = mHandling;
+            mHandling = messages;
+        }
+
+        for (int i = 0, n = messages.count; i < n; i++) {
+            handleMethod(messages.methods[i], i);
         }
 
-        for (int i = 0, n = methodList.size(); i < n; i++) {
-            final int method = methodList.get(i);
-            final Object[] args = argsList.get(i);
-            handleMethod(method, args);
+        messages.count = 0;
+    }
+
+    private static class Messages {
+
+        public int[] methods;
+        public float[] floats;
+        public long[] longs;
+        public int count;
+
+        public Messages(int capacity, int floatCount, int longCount) {
+            methods = new int[capacity];
+            floats = new float[capacity * floatCount];
+            longs = new long[capacity * longCount];
         }
 
-        methodList.clear();
-        argsList.clear();
+        public void grow(int floatCount, int longCount) {
+            final int capacity = methods.length * 2;
+            final int[] newMethods = new int[capacity];
+            final float[] newFloats = new float[capacity * floatCount];
+            final long[] newLongs = new long[capacity * longCount];
+            System.arraycopy(methods, 0, newMethods, 0, methods.length);
+            System.arraycopy(floats, 0, newFloats, 0, floats.length);
+            System.arraycopy(longs, 0, newLongs, 0, longs.length);
+            methods = newMethods;
+            floats = newFloats;
+            longs = newLongs;
+        }
     }
 }
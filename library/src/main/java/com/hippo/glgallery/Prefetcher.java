@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.support.annotation.NonNull;
+
+import com.hippo.yorozuya.MathUtils;
+
+/**
+ * Read-ahead policy for {@link ProviderAdapter}.
+ * <p>
+ * It follows the current page to get reading direction and
+ * reading velocity, and follows prefetched pages to get decode latency.
+ * The number of pages to prefetch is the number of pages the user
+ * can read while a page is decoding, but at least {@link #MIN_PAGES}.
+ */
+class Prefetcher {
+
+    public static final int DIRECTION_NONE = 0;
+    public static final int DIRECTION_FORWARD = 1;
+    public static final int DIRECTION_BACKWARD = -1;
+
+    static final int MIN_PAGES = 2;
+    static final int MAX_PAGES = 12;
+
+    // Pages read while decoding is multiplied by it
+    private static final float SAFETY_FACTOR = 1.5f;
+    private static final float DEFAULT_LATENCY = 0.2f; // second
+    private static final float SMOOTHING = 0.5f;
+    // Velocity is treated as 0 if the user stays longer
+    private static final long IDLE_TIME = 5000L; // ms
+
+    // Must be power of two
+    private static final int TRACKED_SIZE = 32;
+    // A page tracked longer is forgotten, it might be dropped without notification
+    private static final long TRACKED_TIMEOUT = 10000L; // ms
+
+    private static final int INVALID = -1;
+
+    private final GalleryProvider mProvider;
+
+    private int mCurrentChapter = INVALID;
+    private int mCurrentIndex = INVALID;
+    private long mCurrentTime;
+    private int mDirection = DIRECTION_NONE;
+    // Pages per second
+    private float mVelocity;
+    // Second
+    private float mLatency = DEFAULT_LATENCY;
+
+    // Prefetched pages waiting for decoding, a ring buffer, eldest first
+    private final long[] mTrackedKeys = new long[TRACKED_SIZE];
+    private final long[] mTrackedTimes = new long[TRACKED_SIZE];
+    // The prefetch is counted on it, a newer token of the page is not touched
+    private final CancellationToken[] mTrackedTokens = new CancellationToken[TRACKED_SIZE];
+    private int mTrackedStart;
+    private int mTrackedCount;
+
+    public Prefetcher(@NonNull GalleryProvider provider) {
+        mProvider = provider;
+    }
+
+    private static long genKey(int chapter, int index) {
+        return ((long) chapter) << 32 | (index & 0xffffffffL);
+    }
+
+    private static int getChapter(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int getIndex(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Update current page. Pending prefetched pages are
+     * cancelled if reading direction reverses.
+     */
+    public void onUpdateCurrentPage(int chapter, int index, long time) {
+        final int oldChapter = mCurrentChapter;
+        final int oldIndex = mCurrentIndex;
+        final long oldTime = mCurrentTime;
+        mCurrentChapter = chapter;
+        mCurrentIndex = index;
+        mCurrentTime = time;
+
+        if (oldChapter == INVALID) {
+            mDirection = DIRECTION_FORWARD;
+            return;
+        }
+
+        final int pages;
+        if (chapter == oldChapter) {
+            pages = index - oldIndex;
+        } else {
+            pages = chapter > oldChapter ? 1 : -1;
+        }
+        if (pages == 0) {
+            return;
+        }
+
+        final int direction = pages > 0 ? DIRECTION_FORWARD : DIRECTION_BACKWARD;
+        if (direction != mDirection) {
+            cancelAll();
+            mDirection = direction;
+            mVelocity = 0.0f;
+        }
+
+        final long duration = time - oldTime;
+        final float velocity = duration <= 0 || duration > IDLE_TIME ?
+                0.0f : Math.abs(pages) * 1000.0f / duration;
+        mVelocity = MathUtils.lerp(mVelocity, velocity, SMOOTHING);
+    }
+
+    /**
+     * Start over from the page, the user jumps to it.
+     * Pending prefetched pages are cancelled.
+     */
+    public void seek(int chapter, int index, long time) {
+        cancelAll();
+        mCurrentChapter = chapter;
+        mCurrentIndex = index;
+        mCurrentTime = time;
+        mDirection = DIRECTION_FORWARD;
+        mVelocity = 0.0f;
+    }
+
+    public int getDirection() {
+        return mDirection;
+    }
+
+    /**
+     * Return the number of pages ahead to prefetch.
+     */
+    public int getPrefetchCount() {
+        final int count = MIN_PAGES + (int) Math.ceil(mVelocity * mLatency * SAFETY_FACTOR);
+        return MathUtils.clamp(count, MIN_PAGES, MAX_PAGES);
+    }
+
+    private int findTracked(long key) {
+        for (int i = 0; i < mTrackedCount; i++) {
+            final int position = (mTrackedStart + i) & (TRACKED_SIZE - 1);
+            if (mTrackedKeys[position] == key) {
+                return position;
+            }
+        }
+        return INVALID;
+    }
+
+    // Remove the tracked page at the position, younger ones are moved to keep the order
+    private void removeTracked(int position) {
+        final int mask = TRACKED_SIZE - 1;
+        final int last = (mTrackedStart + mTrackedCount - 1) & mask;
+        for (int i = position; i != last; i = (i + 1) & mask) {
+            final int next = (i + 1) & mask;
+            mTrackedKeys[i] = mTrackedKeys[next];
+            mTrackedTimes[i] = mTrackedTimes[next];
+            mTrackedTokens[i] = mTrackedTokens[next];
+        }
+        mTrackedTokens[last] = null;
+        --mTrackedCount;
+    }
+
+    // Forget pages tracked too long, so they can be prefetched again
+    private void expireTracked(long time) {
+        while (mTrackedCount > 0 && time - mTrackedTimes[mTrackedStart] > TRACKED_TIMEOUT) {
+            mTrackedTokens[mTrackedStart] = null;
+            mTrackedStart = (mTrackedStart + 1) & (TRACKED_SIZE - 1);
+            --mTrackedCount;
+        }
+    }
+
+    /**
+     * Prefetch the page if it is not in cache or being prefetched.
+     *
+     * @return {@code true} if the page is in cache
+     */
+    public boolean prefetch(int chapter, int index, long time) {
+        expireTracked(time);
+        final long key = genKey(chapter, index);
+        if (findTracked(key) != INVALID) {
+            return false;
+        }
+        if (mProvider.prefetch(chapter, index)) {
+            // Hit cache
+            return true;
+        }
+
+        if (mTrackedCount == TRACKED_SIZE) {
+            // Drop the eldest one, it is still decoding, so cancel it
+            final long eldest = mTrackedKeys[mTrackedStart];
+            mProvider.cancelPrefetch(getChapter(eldest), getIndex(eldest),
+                    mTrackedTokens[mTrackedStart]);
+            mTrackedTokens[mTrackedStart] = null;
+            mTrackedStart = (mTrackedStart + 1) & (TRACKED_SIZE - 1);
+            --mTrackedCount;
+        }
+        final int position = (mTrackedStart + mTrackedCount) & (TRACKED_SIZE - 1);
+        mTrackedKeys[position] = key;
+        mTrackedTimes[position] = time;
+        mTrackedTokens[position] = mProvider.getToken(chapter, index);
+        ++mTrackedCount;
+        return false;
+    }
+
+    /**
+     * Called when a page is decoded.
+     */
+    public void onPageSucceed(int chapter, int index, long time) {
+        final int position = findTracked(genKey(chapter, index));
+        if (position != INVALID) {
+            final float latency = (time - mTrackedTimes[position]) / 1000.0f;
+            mLatency = MathUtils.lerp(mLatency, latency, SMOOTHING);
+            removeTracked(position);
+        }
+    }
+
+    /**
+     * Called when a page can't be decoded.
+     */
+    public void onPageFailed(int chapter, int index) {
+        final int position = findTracked(genKey(chapter, index));
+        if (position != INVALID) {
+            removeTracked(position);
+        }
+    }
+
+    /**
+     * Cancel all prefetched pages which are not decoded.
+     */
+    public void cancelAll() {
+        for (int i = 0; i < mTrackedCount; i++) {
+            final int position = (mTrackedStart + i) & (TRACKED_SIZE - 1);
+            final long key = mTrackedKeys[position];
+            mProvider.cancelPrefetch(getChapter(key), getIndex(key), mTrackedTokens[position]);
+            mTrackedTokens[position] = null;
+        }
+        mTrackedStart = 0;
+        mTrackedCount = 0;
+    }
+}
@@ -16,7 +16,11 @@
 
 package com.hippo.glgallery;
 
+import android.content.ComponentCallbacks2;
 import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.util.Log;
@@ -43,7 +47,15 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
 
     private static final float CLIP_LIMIT = 1.3f;
 
-    private static final int INVALID_CHAPTER = -1;
+    private static final int INVALID_CHAPTER = ChapterIndex.NOT_FOUND;
+
+    // Max bytes of textures shown by no view
+    private static final long TEXTURE_CACHE_SIZE = 32 * 1024 * 1024;
+
+    // Longest time to keep current pages for the page sought
+    private static final long SEEK_TIMEOUT = 300L; // ms
+    // Pages before the page sought to prefetch
+    private static final int SEEK_BACKWARD_PAGES = 1;
 
     private static final int TEXT_OFFSET = 63;
     private static final long TEXT_MASK = 1L << TEXT_OFFSET;
@@ -56,15 +68,28 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
 
     private final GalleryProvider mProvider;
     private final ImageTexture.Uploader mUploader;
+    private final UploadScheduler mUploadScheduler;
+    // Both halves of a clipped page share one texture,
+    // textures stay in GPU for a while after pages are unbound
+    private final TextureCache mTextureCache = new TextureCache(TEXTURE_CACHE_SIZE);
+    // Tokens of pages views are waiting for, by view id. A view got
+    // the page from cache has none, so it can't cancel requests of others.
+    private final LongMap<CancellationToken> mRequestTokens = new LongMap<>();
     private final ProviderAdapterPostman mPostman;
+    private final Prefetcher mPrefetcher;
+    private final TileLoader mTileLoader;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
 
     @Clip
     private int mClipMode = CLIP_NONE;
     private boolean mShowIndex = true;
+    // Only thumbnails are requested while scrubbing
+    private boolean mScrubbing;
 
     private int mChapterCount;
-    private int[] mPageCountArray;
-    private boolean[][] mClipsArray;
+    private ChapterIndex mChapterIndex;
+    // Pages with width / height >= CLIP_LIMIT, they are clipped if clip mode is on
+    private final PageBits mWidePages = new PageBits();
 
     private int mHeadChapter = INVALID_CHAPTER;
     private int mTailChapter = INVALID_CHAPTER;
@@ -76,6 +101,11 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
     // false for first one, true for second one
     private boolean mClip;
 
+    // The page sought and waited for, INVALID_CHAPTER for none
+    private int mSeekChapter = INVALID_CHAPTER;
+    private int mSeekPage;
+    private long mSeekSerial;
+
     private final Rect mTemp = new Rect();
 
     public ProviderAdapter(@NonNull GLRoot glRoot, @NonNull GalleryProvider provider, int chapter, int page) {
@@ -83,8 +113,11 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         provider.setGLRoot(glRoot);
         provider.setListener(this);
         mUploader = new ImageTexture.Uploader(glRoot);
+        mUploadScheduler = new UploadScheduler(glRoot, mUploader);
         mPostman = new ProviderAdapterPostman(this);
         glRoot.registerHandler(mPostman);
+        mPrefetcher = new Prefetcher(provider);
+        mTileLoader = new TileLoader(glRoot);
 
         mChapter = chapter;
         mPage = page;
@@ -95,49 +128,29 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
 
     // INVALID_CHAPTER for failed
     private int nextNonEmptyChapter(int chapter) {
-        final int[] pageCountArray = mPageCountArray;
-        if (pageCountArray == null) {
-            return INVALID_CHAPTER;
-        }
-
-        for (int i = chapter + 1, len = pageCountArray.length; i < len; ++i) {
-            if (pageCountArray[i] != 0) {
-                return i;
-            }
-        }
-
-        return INVALID_CHAPTER;
+        final ChapterIndex chapterIndex = mChapterIndex;
+        return chapterIndex == null ? INVALID_CHAPTER : chapterIndex.nextNonEmpty(chapter);
     }
 
     // INVALID_CHAPTER for failed
     private int previousNonEmptyChapter(int chapter) {
-        final int[] pageCountArray = mPageCountArray;
-        if (pageCountArray == null) {
-            return INVALID_CHAPTER;
-        }
-
-        for (int i = chapter - 1; i >= 0; --i) {
-            if (pageCountArray[i] != 0) {
-                return i;
-            }
-        }
-
-        return INVALID_CHAPTER;
+        final ChapterIndex chapterIndex = mChapterIndex;
+        return chapterIndex == null ? INVALID_CHAPTER : chapterIndex.previousNonEmpty(chapter);
     }
 
     private void checkHeadTail(int seed) {
-        final int[] pageCountArray = mPageCountArray;
-        if (pageCountArray == null) {
+        final ChapterIndex chapterIndex = mChapterIndex;
+        if (chapterIndex == null) {
             throw new IllegalStateException("Can't expand head and tail without chapter count known");
         }
 
         // Use current chapter as seed if no seed
-        if (seed < 0 && seed >= mChapterCount) {
+        if (seed < 0 || seed >= mChapterCount) {
             seed = mChapter;
         }
 
         // Try to avoid empty seed
-        if (pageCountArray[seed] == 0) {
+        if (chapterIndex.getPageCount(seed) == 0) {
             // seed chapter is empty, try to find first next non-empty chapter
             int newChapter = nextNonEmptyChapter(seed);
             if (newChapter == INVALID_CHAPTER) {
@@ -149,7 +162,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             }
         }
 
-        if (pageCountArray[seed] <= 0) {
+        if (chapterIndex.getPageCount(seed) <= 0) {
             mHeadChapter = seed;
             mTailChapter = seed;
             mHeadCheckedChapter = seed;
@@ -157,37 +170,25 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             return;
         }
 
-        mTailCheckedChapter = INVALID_CHAPTER;
-        for (int i = seed, len = mChapterCount; i < len; ++i) {
-            final int pageCount = pageCountArray[i];
-            if (pageCount > 0) {
-                // This chapter contain pages, check next
-                mTailChapter = i;
-            } else if (pageCount < 0) {
-                // This chapter is not ready, stop here
-                mTailChapter = i;
-                mTailCheckedChapter = i;
-                break;
-            }
-        }
-        if (mTailCheckedChapter == INVALID_CHAPTER) {
+        // Tail stops at the first not ready chapter,
+        // or it's the last chapter containing pages
+        final int tailNotReady = chapterIndex.nextNotReady(seed);
+        if (tailNotReady != INVALID_CHAPTER) {
+            mTailChapter = tailNotReady;
+            mTailCheckedChapter = tailNotReady;
+        } else {
+            mTailChapter = previousNonEmptyChapter(mChapterCount);
             mTailCheckedChapter = mChapterCount - 1;
         }
 
-        mHeadCheckedChapter = INVALID_CHAPTER;
-        for (int i = seed; i >= 0; --i) {
-            final int pageCount = pageCountArray[i];
-            if (pageCount > 0) {
-                // This chapter contain pages, check next
-                mHeadChapter = i;
-            } else if (pageCount < 0) {
-                // This chapter is not ready, stop here
-                mHeadChapter = i;
-                mHeadCheckedChapter = i;
-                break;
-            }
-        }
-        if (mHeadCheckedChapter == INVALID_CHAPTER) {
+        // Head stops at the last not ready chapter,
+        // or it's the first chapter containing pages
+        final int headNotReady = chapterIndex.previousNotReady(seed);
+        if (headNotReady != INVALID_CHAPTER) {
+            mHeadChapter = headNotReady;
+            mHeadCheckedChapter = headNotReady;
+        } else {
+            mHeadChapter = nextNonEmptyChapter(-1);
             mHeadCheckedChapter = 0;
         }
     }
@@ -202,18 +203,16 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             mChapter = MathUtils.clamp(mChapter, 0, chapterCount - 1);
 
             final int[] pageCountArray = new int[chapterCount];
-            final boolean[][] clipsArray = new boolean[chapterCount][];
-            mPageCountArray = pageCountArray;
-            mClipsArray = clipsArray;
-
             for (int i = 0; i < chapterCount; i++) {
                 final int pageCount = provider.getPageCount(i);
                 pageCountArray[i] = pageCount;
-
-                if (pageCount > 0) {
-                    clipsArray[i] = new boolean[pageCount];
-                }
+                // Keep wide pages still in range
+                mWidePages.truncate(i, pageCount);
             }
+            mWidePages.setChapterCount(chapterCount);
+
+            final ChapterIndex chapterIndex = new ChapterIndex(pageCountArray);
+            mChapterIndex = chapterIndex;
 
             // Find tail chapter
             mHeadChapter = INVALID_CHAPTER;
@@ -226,15 +225,14 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             mChapter = MathUtils.clamp(mChapter, mHeadChapter, mTailChapter);
 
             // Sanitize mPage, avoid out of range
-            final int pageCount = pageCountArray[mChapter];
+            final int pageCount = chapterIndex.getPageCount(mChapter);
             if (pageCount > 0) {
                 mPage = MathUtils.clamp(mPage, 0, pageCount - 1);
                 // No clip state, mClip always set false here
                 mClip = false;
             }
         } else {
-            mPageCountArray = null;
-            mClipsArray = null;
+            mChapterIndex = null;
             mHeadChapter = INVALID_CHAPTER;
             mTailChapter = INVALID_CHAPTER;
             mHeadCheckedChapter = INVALID_CHAPTER;
@@ -243,26 +241,81 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
     }
 
     public void clearUploader() {
+        mUploadScheduler.clear();
+        mTextureCache.evictAll();
         mUploader.clear();
     }
 
+    /**
+     * Release memory for the level from {@link ComponentCallbacks2#onTrimMemory(int)}.
+     * Images in the provider and textures not shown are trimmed.
+     * <p>
+     * It can be called in UI thread.
+     */
+    public void trimMemory(int level) {
+        mProvider.trimMemory(level);
+        mPostman.postTrimMemory(level);
+    }
+
     public void setClipMode(@Clip int clipMode) {
-        mPostman.postMethod(ProviderAdapterPostman.METHOD_SET_CLIP_MODE, clipMode);
+        mPostman.postSetClipMode(clipMode);
     }
 
     public void setShowIndex(boolean showIndex) {
-        mPostman.postMethod(ProviderAdapterPostman.METHOD_SET_SHOW_INDEX, showIndex);
+        mPostman.postSetShowIndex(showIndex);
+    }
+
+    /**
+     * Set whether the user is scrubbing through pages, like dragging a slider.
+     * Only thumbnails are requested while scrubbing, pages are requested after it.
+     * <p>
+     * It can be called in UI thread.
+     */
+    public void setScrubbing(boolean scrubbing) {
+        mPostman.postSetScrubbing(scrubbing);
+    }
+
+    /**
+     * Go to the page. The page and pages near it are prefetched first,
+     * current pages are kept until the page is decoded, so it lands on
+     * the image instead of a progress bar. It waits {@link #SEEK_TIMEOUT} at most.
+     * <p>
+     * It can be called in UI thread.
+     */
+    public void seekTo(int chapter, int page) {
+        mPostman.postSeekTo(chapter, page);
+    }
+
+    /**
+     * Like {@link #seekTo(int, int)}, the page is counted from
+     * the first page of all chapters. Not ready chapters have no pages.
+     * <p>
+     * It can be called in UI thread.
+     */
+    public void seekToGlobalPage(long page) {
+        mPostman.postSeekToGlobalPage(page);
     }
 
     void setClipModeInternal(int clipMode) {
         if (mClipMode != clipMode) {
             mClipMode = clipMode;
+            // Clips are known from wide pages, no need to request images again
+            if (mClip && !isClip(mChapter, mPage)) {
+                mClip = false;
+            }
             if (isAttached()) {
                 notifyDataChanged();
             }
         }
     }
 
+    void trimMemoryInternal(int level) {
+        final float fraction = GalleryProvider.getTrimFraction(level);
+        if (fraction < 1.0f) {
+            mTextureCache.trimToSize((long) (mTextureCache.size() * fraction));
+        }
+    }
+
     void setShowIndexInternal(boolean showIndex) {
         if (mShowIndex != showIndex) {
             mShowIndex = showIndex;
@@ -272,6 +325,98 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         }
     }
 
+    void setScrubbingInternal(boolean scrubbing) {
+        if (mScrubbing != scrubbing) {
+            mScrubbing = scrubbing;
+            if (scrubbing) {
+                // Pages passed by are not needed
+                mPrefetcher.cancelAll();
+            } else if (isAttached()) {
+                // Bind again to request pages
+                notifyDataChanged();
+            }
+        }
+    }
+
+    void seekToInternal(int chapter, int page) {
+        if (!isValidPage(chapter, page)) {
+            Log.e(LOG_TAG, "Can't seek, page out of range.");
+            return;
+        }
+
+        if (mScrubbing) {
+            // Don't wait, only the thumbnail is requested in binding
+            mSeekChapter = chapter;
+            mSeekPage = page;
+            ++mSeekSerial;
+            finishSeek();
+            return;
+        }
+
+        // Prefetch before current pages are unbound, the page is decoded first
+        final long now = SystemClock.uptimeMillis();
+        final Prefetcher prefetcher = mPrefetcher;
+        prefetcher.seek(chapter, page, now);
+        final boolean cached = prefetcher.prefetch(chapter, page, now);
+        prefetchPages(chapter, page, true, Prefetcher.MIN_PAGES, now);
+        prefetchPages(chapter, page, false, SEEK_BACKWARD_PAGES, now);
+
+        mSeekChapter = chapter;
+        mSeekPage = page;
+        final long serial = ++mSeekSerial;
+        if (cached || mGalleryView == null) {
+            finishSeek();
+        } else {
+            // Stop waiting if it takes too long
+            mHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    mPostman.postFinishSeek(serial);
+                }
+            }, SEEK_TIMEOUT);
+        }
+    }
+
+    void seekToGlobalPageInternal(long page) {
+        final ChapterIndex chapterIndex = mChapterIndex;
+        final int chapter = chapterIndex != null ? chapterIndex.getChapterOfPage(page) : INVALID_CHAPTER;
+        if (chapter == INVALID_CHAPTER) {
+            Log.e(LOG_TAG, "Can't seek, global page out of range: " + page);
+            return;
+        }
+        seekToInternal(chapter, (int) (page - chapterIndex.getPageOffset(chapter)));
+    }
+
+    void finishSeekInternal(long serial) {
+        // Ignore timeout of previous seek
+        if (serial == mSeekSerial) {
+            finishSeek();
+        }
+    }
+
+    // Go to the page sought
+    private void finishSeek() {
+        final int chapter = mSeekChapter;
+        if (chapter == INVALID_CHAPTER) {
+            return;
+        }
+        mSeekChapter = INVALID_CHAPTER;
+
+        final long id = genId(chapter, mSeekPage, false);
+        if (mGalleryView != null) {
+            mGalleryView.pageToIdInternal(id);
+        } else {
+            setCurrentId(id);
+        }
+    }
+
+    // The page sought is decoded or failed
+    private void onSeekPageDone(int chapter, int page) {
+        if (chapter == mSeekChapter && page == mSeekPage) {
+            finishSeek();
+        }
+    }
+
     // For page with image:
     //
     // 0   XXX...XXX   XXX...XXX   X
@@ -290,15 +435,15 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         return 1L << 63 | ((long) chapter) << 32;
     }
 
-    private static int getChapter(long id) {
+    static int getChapter(long id) {
         return (int) ((id & CHAPTER_MASK) >>> CHAPTER_OFFSET);
     }
 
-    private static boolean getIsText(long id) {
+    static boolean getIsText(long id) {
         return (id & TEXT_MASK) != 0;
     }
 
-    private static int getPage(long id) {
+    static int getPage(long id) {
         return (int) ((id & INDEX_MASK) >>> INDEX_OFFSET);
     }
 
@@ -311,7 +456,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         if (mChapterCount <= 0) {
             throw new IllegalStateException("Can't next, not data now");
         }
-        final int pageCount = mPageCountArray[mChapter];
+        final int pageCount = mChapterIndex.getPageCount(mChapter);
         if (pageCount == 0) {
             // Current chapter is empty
             throw new IllegalStateException("Can't next, current chapter is empty.");
@@ -323,8 +468,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             // Go to next chapter
         } else {
             // A chapter with pages, find next in this chapter first
-            final boolean[] clips = mClipsArray[mChapter];
-            final boolean clip = clips[mPage];
+            final boolean clip = isClip(mChapter, mPage);
 
             if (mClip == clip && mPage == pageCount - 1) {
                 if (mChapter == mTailChapter) {
@@ -349,7 +493,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         if (mChapter == INVALID_CHAPTER || mChapter > mTailChapter) {
             throw new IllegalStateException("Can't next, internal error");
         }
-        if (mPageCountArray[mChapter] > 0) {
+        if (mChapterIndex.getPageCount(mChapter) > 0) {
             mPage = 0;
             mClip = false;
         }
@@ -360,7 +504,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         if (mChapterCount <= 0) {
             throw new IllegalStateException("Can't previous, not data now");
         }
-        int pageCount = mPageCountArray[mChapter];
+        int pageCount = mChapterIndex.getPageCount(mChapter);
         if (pageCount == 0) {
             // Current chapter is empty
             throw new IllegalStateException("Can't previous, current chapter is empty.");
@@ -372,8 +516,6 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             // Go to previous chapter
         } else {
             // A chapter with pages, find previous in this chapter first
-            final boolean[] clips = mClipsArray[mChapter];
-
             if (!mClip && mPage == 0) {
                 if (mChapter == mHeadChapter) {
                     throw new IllegalStateException("Can't previous, no previous");
@@ -385,7 +527,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
                     mClip = false;
                 } else {
                     --mPage;
-                    mClip = clips[mPage];
+                    mClip = isClip(mChapter, mPage);
                 }
                 // Done
                 return;
@@ -397,10 +539,10 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         if (mChapter == INVALID_CHAPTER || mChapter < mHeadChapter) {
             throw new IllegalStateException("Can't previous, internal error");
         }
-        pageCount = mPageCountArray[mChapter];
+        pageCount = mChapterIndex.getPageCount(mChapter);
         if (pageCount > 0) {
             mPage = pageCount - 1;
-            mClip = mClipsArray[mChapter][mPage];
+            mClip = isClip(mChapter, mPage);
         }
     }
 
@@ -416,9 +558,18 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
 
     // Return GalleryProvider.STATE_ERROR if can't get page count
     private int getPageCount(int chapter) {
-        final int[] pageCountArray = mPageCountArray;
-        return pageCountArray == null || chapter < 0 || chapter >= pageCountArray.length ?
-                GalleryProvider.STATE_ERROR : pageCountArray[chapter];
+        final ChapterIndex chapterIndex = mChapterIndex;
+        return chapterIndex == null || chapter < 0 || chapter >= chapterIndex.getChapterCount() ?
+                GalleryProvider.STATE_ERROR : chapterIndex.getPageCount(chapter);
+    }
+
+    private boolean isValidPage(int chapter, int page) {
+        return page >= 0 && page < getPageCount(chapter);
+    }
+
+    // The page is shown in two clips
+    private boolean isClip(int chapter, int page) {
+        return mClipMode != CLIP_NONE && mWidePages.get(chapter, page);
     }
 
     @Override
@@ -439,7 +590,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             return false;
         }
 
-        final int pageCount = mPageCountArray[chapter];
+        final int pageCount = mChapterIndex.getPageCount(chapter);
         if (getIsText(id)) {
             if ((pageCount == 0 && chapter == mHeadChapter && chapter == mTailChapter)
                     || (pageCount < 0 && (chapter == mHeadChapter || chapter == mTailChapter))) {
@@ -460,7 +611,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             }
 
             final boolean clip = getClip(id);
-            if (!clip || mClipsArray[chapter][page]) {
+            if (!clip || isClip(chapter, page)) {
                 mChapter = chapter;
                 mPage = page;
                 mClip = clip;
@@ -506,7 +657,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             Log.e(LOG_TAG, "Can't check isHead, no data now.");
             return true;
         }
-        final int pageCount = mPageCountArray[chapter];
+        final int pageCount = mChapterIndex.getPageCount(chapter);
         if (pageCount == 0) {
             // This chapter is empty.
             return true;
@@ -524,7 +675,7 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             Log.e(LOG_TAG, "Can't check isHead, no data now.");
             return true;
         }
-        final int pageCount = mPageCountArray[chapter];
+        final int pageCount = mChapterIndex.getPageCount(chapter);
         if (pageCount == 0) {
             // This chapter is empty.
             return true;
@@ -534,24 +685,115 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
             return true;
         }
 
-        return chapter == mTailChapter && (pageCount < 0 || (page >= pageCount - 1 && clip == mClipsArray[chapter][pageCount - 1]));
+        return chapter == mTailChapter && (pageCount < 0 || (page >= pageCount - 1 && clip == isClip(chapter, pageCount - 1)));
+    }
+
+    // Tell provider the size pages are shown in
+    private void updateTargetSize() {
+        final GalleryView galleryView = mGalleryView;
+        if (galleryView == null) {
+            return;
+        }
+
+        int width = galleryView.getWidth();
+        int height = galleryView.getHeight();
+        if (width <= 0 || height <= 0) {
+            // Not laid out
+            return;
+        }
+
+        final int layoutMode = galleryView.getLayoutMode();
+        // Only long strips in vertical scroll layout are shown in tiles
+        mProvider.setTileEnabled(layoutMode == GalleryView.LAYOUT_SCROLL_TOP_TO_BOTTOM);
+
+        switch (layoutMode) {
+            case GalleryView.LAYOUT_SCROLL_TOP_TO_BOTTOM:
+                height = 0;
+                break;
+            case GalleryView.LAYOUT_SCROLL_LEFT_TO_RIGHT:
+            case GalleryView.LAYOUT_SCROLL_RIGHT_TO_LEFT:
+                width = 0;
+                break;
+            default:
+                switch (galleryView.getScaleMode()) {
+                    case GalleryView.SCALE_FIT_WIDTH:
+                        height = 0;
+                        break;
+                    case GalleryView.SCALE_FIT_HEIGHT:
+                        width = 0;
+                        break;
+                    case GalleryView.SCALE_FIT:
+                        break;
+                    default:
+                        // Shown in original size or assigned scale
+                        width = 0;
+                        height = 0;
+                        break;
+                }
+                break;
+        }
+
+        // A wide page might be clipped into two
+        if (mClipMode != CLIP_NONE) {
+            width *= 2;
+        }
+
+        mProvider.setTargetSize(width, height);
     }
 
     private void bindView(GalleryPageView view, int chapter, int page, boolean clip) {
-        final ImageData image = mProvider.request(chapter, page);
+        // The page is still in GPU
+        final GalleryProvider provider = mProvider;
+        final boolean scrubbing = mScrubbing;
+        final SharedTexture texture = mTextureCache.get(chapter, page);
+        if (texture != null && !texture.isThumb()) {
+            // Still an access of the page for cache and stats
+            if (scrubbing) {
+                provider.peek(chapter, page);
+            } else {
+                provider.touch(chapter, page);
+            }
+            bindView(view, clip, texture);
+            return;
+        }
+
+        final ImageData image = scrubbing ? provider.peek(chapter, page) : provider.request(chapter, page);
         if (image != null) {
-            bindView(view, clip, image);
+            bindView(view, chapter, page, clip, image, provider.getSampleSize(chapter, page), false);
+            return;
+        } else if (!scrubbing) {
+            holdRequest(genId(chapter, page, clip), chapter, page);
+        }
+
+        // Show thumbnail while the page is loading
+        final ImageData thumb = scrubbing ?
+                provider.requestThumb(chapter, page) : provider.peekThumb(chapter, page);
+        if (thumb != null) {
+            bindView(view, chapter, page, clip, thumb, provider.getThumbSampleSize(chapter, page), true);
         } else {
             view.showProgress(GalleryPageView.PROGRESS_INDETERMINATE, mShowIndex, page);
         }
     }
 
+    // The view waits for the page it just requested
+    private void holdRequest(long id, int chapter, int page) {
+        final CancellationToken token = mProvider.getToken(chapter, page);
+        final CancellationToken old = token != null ?
+                mRequestTokens.put(id, token) : mRequestTokens.remove(id);
+        // Requested by the view again, count it once
+        if (old != null) {
+            mProvider.releaseRequest(chapter, page, old);
+        }
+    }
+
     @Override
     public void onBind(GalleryPageView view) {
         if (mChapterCount <= 0) {
             return;
         }
 
+        updateTargetSize();
+
         final int pageCount = getPageCount(mChapter);
         if (pageCount == GalleryProvider.STATE_ERROR) {
             view.showError(mProvider.getError(mChapter), false, 0);
@@ -570,11 +812,83 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
     @Override
     public void onUnbind(GalleryPageView view, long id) {
         if (!getIsText(id)) {
-            mProvider.cancelRequest(getChapter(id), getPage(id));
+            final CancellationToken token = mRequestTokens.remove(id);
+            if (token != null) {
+                mProvider.cancelRequest(getChapter(id), getPage(id), token);
+            }
+            mProvider.cancelThumb(getChapter(id), getPage(id));
         }
+        mUploadScheduler.cancel(view);
         view.clear();
     }
 
+    @Override
+    public void onUpdateCurrentId(long id) {
+        if (id != INVALID_ID && !getIsText(id)) {
+            final int chapter = getChapter(id);
+            final int page = getPage(id);
+            mProvider.setCurrentPage(chapter, page);
+            updateTargetSize();
+            if (!mScrubbing) {
+                prefetch(chapter, page);
+            }
+        }
+    }
+
+    @Override
+    public void onRequestOrigin(GalleryPageView view) {
+        final long id = view.getPageId();
+        // Thumbnails are always small, wait for the page
+        if (id != INVALID_ID && !getIsText(id) && !view.isShowingThumb()) {
+            mProvider.requestOrigin(getChapter(id), getPage(id));
+            holdRequest(id, getChapter(id), getPage(id));
+        }
+    }
+
+    // Request pages ahead in reading direction, without binding views
+    private void prefetch(int chapter, int page) {
+        final ChapterIndex chapterIndex = mChapterIndex;
+        if (chapterIndex == null || chapter < 0 || chapter >= chapterIndex.getChapterCount()) {
+            return;
+        }
+
+        final long now = SystemClock.uptimeMillis();
+        final Prefetcher prefetcher = mPrefetcher;
+        prefetcher.onUpdateCurrentPage(chapter, page, now);
+        final boolean forward = prefetcher.getDirection() != Prefetcher.DIRECTION_BACKWARD;
+        prefetchPages(chapter, page, forward, prefetcher.getPrefetchCount(), now);
+    }
+
+    // Prefetch pages next to the page, the page itself excluded
+    private void prefetchPages(int chapter, int page, boolean forward, int count, long now) {
+        final ChapterIndex chapterIndex = mChapterIndex;
+        final Prefetcher prefetcher = mPrefetcher;
+        for (int i = count; i > 0; i--) {
+            if (forward) {
+                if (page + 1 < chapterIndex.getPageCount(chapter)) {
+                    ++page;
+                } else {
+                    chapter = nextNonEmptyChapter(chapter);
+                    if (chapter == INVALID_CHAPTER || chapterIndex.getPageCount(chapter) <= 0) {
+                        break;
+                    }
+                    page = 0;
+                }
+            } else {
+                if (page > 0) {
+                    --page;
+                } else {
+                    chapter = previousNonEmptyChapter(chapter);
+                    if (chapter == INVALID_CHAPTER || chapterIndex.getPageCount(chapter) <= 0) {
+                        break;
+                    }
+                    page = chapterIndex.getPageCount(chapter) - 1;
+                }
+            }
+            prefetcher.prefetch(chapter, page, now);
+        }
+    }
+
     @Override
     public String getError() {
         return mProvider.getError();
@@ -611,8 +925,8 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         final int oldChapter = mChapter;
         final int newPageCount = mProvider.getPageCount(chapter);
 
-        mPageCountArray[chapter] = newPageCount;
-        mClipsArray[chapter] = new boolean[newPageCount];
+        mChapterIndex.setPageCount(chapter, newPageCount);
+        mWidePages.truncate(chapter, newPageCount);
 
         checkHeadTail(mChapter);
 
@@ -646,51 +960,45 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
 
     @Override
     public void onPageWait(int chapter, int page) {
-        if (mChapterCount <= 0 || mClipsArray == null ||
-                chapter < 0 || chapter >= mClipsArray.length) {
-            return;
-        }
-        final boolean[] clips = mClipsArray[chapter];
-        if (clips == null || page < 0 || page >= clips.length) {
+        if (!isValidPage(chapter, page)) {
             return;
         }
 
         final GalleryPageView page1 = findPageById(genId(chapter, page, false));
-        final GalleryPageView page2 = clips[page] ? findPageById(genId(chapter, page, true)) : null;
-        if (page1 != null) {
+        final GalleryPageView page2 = isClip(chapter, page) ? findPageById(genId(chapter, page, true)) : null;
+        // Keep thumbnails
+        if (page1 != null && !page1.isShowingThumb()) {
             page1.showProgress(GalleryPageView.PROGRESS_INDETERMINATE, mShowIndex, page);
         }
-        if (page2 != null) {
+        if (page2 != null && !page2.isShowingThumb()) {
             page2.showProgress(GalleryPageView.PROGRESS_INDETERMINATE, mShowIndex, page);
         }
     }
 
     @Override
     public void onPagePercent(int chapter, int page, float percent) {
-        if (mChapterCount <= 0 || mClipsArray == null ||
-                chapter < 0 || chapter >= mClipsArray.length) {
-            return;
-        }
-        final boolean[] clips = mClipsArray[chapter];
-        if (clips == null || page < 0 || page >= clips.length) {
+        if (!isValidPage(chapter, page)) {
             return;
         }
 
         final GalleryPageView page1 = findPageById(genId(chapter, page, false));
-        final GalleryPageView page2 = clips[page] ? findPageById(genId(chapter, page, false)) : null;
-        if (page1 != null) {
+        final GalleryPageView page2 = isClip(chapter, page) ? findPageById(genId(chapter, page, true)) : null;
+        // Keep thumbnails
+        if (page1 != null && !page1.isShowingThumb()) {
             page1.showProgress(percent, mShowIndex, page);
         }
-        if (page2 != null) {
+        if (page2 != null && !page2.isShowingThumb()) {
             page2.showProgress(percent, mShowIndex, page);
         }
     }
 
-    private void bindView(GalleryPageView page, boolean clip, ImageData image) {
-        // Upload the texture
-        final ImageTexture imageTexture = new ImageTexture(image);
-        mUploader.addTexture(imageTexture);
+    private void bindView(GalleryPageView page, int chapter, int index, boolean clip,
+            ImageData image, int sampleSize, boolean thumb) {
+        bindView(page, clip, mTextureCache.obtain(chapter, index, image, sampleSize, thumb));
+    }
 
+    private void bindView(GalleryPageView page, boolean clip, SharedTexture texture) {
+        final ImageData image = texture.getImageData();
         final int width = image.getWidth();
         final int height = image.getHeight();
 
@@ -705,88 +1013,169 @@ public class ProviderAdapter extends GalleryView.Adapter implements GalleryProvi
         } else {
             throw new IllegalStateException("Invalid clip: " + mClipMode);
         }
-        page.showImage(imageTexture, temp);
+        if (texture.isThumb()) {
+            page.showThumb(texture, temp, texture.getSampleSize());
+        } else {
+            page.showImage(texture, temp, texture.getSampleSize());
+        }
+
+        // Upload the texture, visible pages first
+        mUploadScheduler.schedule(page, texture, texture.getSize());
     }
 
     @Override
-    public void onPageSucceed(int chapter, int page, ImageData image) {
-        if (mChapterCount <= 0 || mClipsArray == null ||
-                chapter < 0 || chapter >= mClipsArray.length) {
-            return;
-        }
-        final boolean[] clips = mClipsArray[chapter];
-        if (clips == null || page < 0 || page >= clips.length) {
+    public void onPageSucceed(int chapter, int page, ImageData image, int sampleSize) {
+        if (!isValidPage(chapter, page)) {
             return;
         }
 
+        mPrefetcher.onPageSucceed(chapter, page, SystemClock.uptimeMillis());
+
         // Check clip
         final int width = image.getWidth();
         final int height = image.getHeight();
-        final boolean newClip = mClipMode != CLIP_NONE && (float) width / (float) height >= CLIP_LIMIT;
-        final boolean oldClip = clips[page];
-        if ((!oldClip && newClip) || (oldClip && !newClip)) {
+        final boolean oldClip = isClip(chapter, page);
+        mWidePages.set(chapter, page, (float) width / (float) height >= CLIP_LIMIT);
+        final boolean newClip = isClip(chapter, page);
+        final GalleryPageView page1 = findPageById(genId(chapter, page, false));
+        // Prefetched page is not laid out, no need to refill
+        if (oldClip != newClip && page1 != null) {
             notifyDataChanged();
         }
-        clips[page] = newClip;
 
-        final GalleryPageView page1 = findPageById(genId(chapter, page, false));
         final GalleryPageView page2 = newClip ? findPageById(genId(chapter, page, true)) : null;
 
         image.addReference();
         if (page1 != null || page2 != null) {
             if (page1 != null) {
-                bindView(page1, false, image);
+                bindView(page1, chapter, page, false, image, sampleSize, false);
             }
             if (page2 != null) {
-                bindView(page2, true, image);
+                bindView(page2, chapter, page, true, image, sampleSize, false);
             }
         }
         image.removeReference();
+
+        onSeekPageDone(chapter, page);
     }
 
     @Override
-    public void onPageFailed(int chapter, int page, String error) {
-        if (mChapterCount <= 0 || mClipsArray == null ||
-                chapter < 0 || chapter >= mClipsArray.length) {
+    public void onThumbSucceed(int chapter, int page, ImageData image, int sampleSize) {
+        bindThumb(chapter, page, image, sampleSize);
+    }
+
+    @Override
+    public void onPagePreview(int chapter, int page, ImageData image, int sampleSize) {
+        bindThumb(chapter, page, image, sampleSize);
+    }
+
+    private void bindThumb(int chapter, int page, ImageData image, int sampleSize) {
+        if (!isValidPage(chapter, page)) {
             return;
         }
-        final boolean[] clips = mClipsArray[chapter];
-        if (clips == null || page < 0 || page >= clips.length) {
+
+        // The thumbnail has the aspect ratio of the page, clip is known before the page
+        final boolean oldClip = isClip(chapter, page);
+        mWidePages.set(chapter, page, (float) image.getWidth() / (float) image.getHeight() >= CLIP_LIMIT);
+        final boolean newClip = isClip(chapter, page);
+        final GalleryPageView page1 = findPageById(genId(chapter, page, false));
+        if (oldClip != newClip && page1 != null) {
+            notifyDataChanged();
+        }
+
+        final GalleryPageView page2 = newClip ? findPageById(genId(chapter, page, true)) : null;
+
+        // Never replace the page or a finer thumbnail
+        image.addReference();
+        if (page1 != null && canShowThumb(page1, sampleSize)) {
+            bindView(page1, chapter, page, false, image, sampleSize, true);
+        }
+        if (page2 != null && canShowThumb(page2, sampleSize)) {
+            bindView(page2, chapter, page, true, image, sampleSize, true);
+        }
+        image.removeReference();
+    }
+
+    private static boolean canShowThumb(GalleryPageView view, int sampleSize) {
+        return canShowThumb(view.isShowingPage(), view.isShowingThumb(),
+                view.getImageView().getSampleSize(), sampleSize);
+    }
+
+    // A thumbnail replaces a coarser or the same one only
+    static boolean canShowThumb(boolean showingPage, boolean showingThumb,
+            int shownSampleSize, int sampleSize) {
+        return !showingPage && (!showingThumb || shownSampleSize >= sampleSize);
+    }
+
+    @Override
+    public void onPageTiled(int chapter, int page, RegionDecoder decoder) {
+        mPrefetcher.onPageSucceed(chapter, page, SystemClock.uptimeMillis());
+
+        GalleryPageView page1 = null;
+        if (isValidPage(chapter, page)) {
+            // Tall pages are never clipped
+            final boolean oldClip = isClip(chapter, page);
+            mWidePages.set(chapter, page, false);
+            if (oldClip) {
+                notifyDataChanged();
+            }
+            page1 = findPageById(genId(chapter, page, false));
+        }
+
+        if (page1 != null) {
+            page1.showTiledImage(new TiledImage(decoder, mTileLoader, mUploader, mGalleryView));
+        } else {
+            mTileLoader.recycle(decoder);
+        }
+
+        onSeekPageDone(chapter, page);
+    }
+
+    @Override
+    public void onPageFailed(int chapter, int page, String error) {
+        mPrefetcher.onPageFailed(chapter, page);
+
+        if (!isValidPage(chapter, page)) {
             return;
         }
 
         final GalleryPageView page1 = findPageById(genId(chapter, page, false));
-        final GalleryPageView page2 = clips[page] ? findPageById(genId(chapter, page, true)) : null;
+        final GalleryPageView page2 = isClip(chapter, page) ? findPageById(genId(chapter, page, true)) : null;
         if (page1 != null) {
             page1.showError(error, mShowIndex, page);
         }
         if (page2 != null) {
             page2.showError(error, mShowIndex, page);
         }
+
+        // Show the error
+        onSeekPageDone(chapter, page);
     }
 
     @Override
     public void onDataChanged(int chapter, int page) {
-        if (mChapterCount <= 0 || mClipsArray == null ||
-                chapter < 0 || chapter >= mClipsArray.length) {
-            return;
-        }
-        final boolean[] clips = mClipsArray[chapter];
-        if (clips == null || page < 0 || page >= clips.length) {
+        if (!isValidPage(chapter, page)) {
             return;
         }
 
+        // The texture in cache is out of date
+        mTextureCache.remove(chapter, page);
+
         final GalleryPageView page1 = findPageById(genId(chapter, page, false));
-        final GalleryPageView page2 = clips[page] ? findPageById(genId(chapter, page, true)) : null;
+        final GalleryPageView page2 = isClip(chapter, page) ? findPageById(genId(chapter, page, true)) : null;
         if (page1 != null || page2 != null) {
             final ImageData image = mProvider.request(chapter, page);
             if (image != null) {
+                final int sampleSize = mProvider.getSampleSize(chapter, page);
                 if (page1 != null) {
-                    bindView(page1, false, image);
+                    bindView(page1, chapter, page, false, image, sampleSize, false);
                 }
                 if (page2 != null) {
-                    bindView(page1, true, image);
+                    bindView(page2, chapter, page, true, image, sampleSize, false);
                 }
+            } else {
+                // Requested once, one of the views holds it
+                holdRequest(genId(chapter, page, page1 == null), chapter, page);
             }
         }
     }
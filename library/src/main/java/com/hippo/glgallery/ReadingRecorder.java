@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Records what the user reads to a compact binary stream, for replaying
+ * reading sessions when tuning prefetch and caching. Set it to
+ * {@link GalleryView#setRecorder(ReadingRecorder)} for current pages,
+ * jumps and flings, and to {@link GalleryProvider#setRecorder(ReadingRecorder)}
+ * for requests, cancels and results of the provider.
+ * <p>
+ * The stream starts with {@link #MAGIC} and {@link #VERSION} in a byte.
+ * Each event is the event type in a byte, milliseconds since the last event
+ * in a varint, then its arguments. Chapters and indexes are varints, ids and
+ * velocities are zigzag varints, hit flags are bytes. Varints are 7 bits in
+ * each byte, lowest first, the high bit is set for more bytes.
+ * <p>
+ * It's thread-safe. An IO error stops recording.
+ */
+public class ReadingRecorder implements Closeable {
+
+    private static final String LOG_TAG = ReadingRecorder.class.getSimpleName();
+
+    /** "GLRT" */
+    public static final int MAGIC = 0x474c5254;
+    public static final int VERSION = 1;
+
+    @IntDef({EVENT_CURRENT_ID, EVENT_PAGE_TO_ID, EVENT_FLING, EVENT_CURRENT_PAGE,
+            EVENT_REQUEST, EVENT_FORCE_REQUEST, EVENT_CANCEL_REQUEST, EVENT_PREFETCH,
+            EVENT_CANCEL_PREFETCH, EVENT_PAGE_SUCCEED, EVENT_PAGE_FAILED})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Event {}
+
+    /** The user is reading another page. Id */
+    public static final int EVENT_CURRENT_ID = 0;
+    /** The view goes to a page. Id */
+    public static final int EVENT_PAGE_TO_ID = 1;
+    /** The user flings. Velocity x and y in pixels per second */
+    public static final int EVENT_FLING = 2;
+    /** The provider is told the current page. Chapter and index */
+    public static final int EVENT_CURRENT_PAGE = 3;
+    /** A view requests a page. Chapter, index and hit */
+    public static final int EVENT_REQUEST = 4;
+    /** Chapter and index */
+    public static final int EVENT_FORCE_REQUEST = 5;
+    /** Chapter and index */
+    public static final int EVENT_CANCEL_REQUEST = 6;
+    /** Chapter, index and hit */
+    public static final int EVENT_PREFETCH = 7;
+    /** Chapter and index */
+    public static final int EVENT_CANCEL_PREFETCH = 8;
+    /** The provider decoded a page. Chapter and index */
+    public static final int EVENT_PAGE_SUCCEED = 9;
+    /** Chapter and index */
+    public static final int EVENT_PAGE_FAILED = 10;
+
+    private DataOutputStream mOut;
+    private long mLastTime;
+
+    /**
+     * Write the header to the stream. The stream is closed by {@link #close()}.
+     */
+    public ReadingRecorder(@NonNull OutputStream os) throws IOException {
+        mOut = new DataOutputStream(new BufferedOutputStream(os));
+        mOut.writeInt(MAGIC);
+        mOut.writeByte(VERSION);
+        mLastTime = SystemClock.uptimeMillis();
+    }
+
+    void recordCurrentId(long id) {
+        recordId(EVENT_CURRENT_ID, id);
+    }
+
+    void recordPageToId(long id) {
+        recordId(EVENT_PAGE_TO_ID, id);
+    }
+
+    synchronized void recordFling(float velocityX, float velocityY) {
+        try {
+            if (begin(EVENT_FLING)) {
+                writeVarLong(zigzag(Math.round(velocityX)));
+                writeVarLong(zigzag(Math.round(velocityY)));
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    void recordCurrentPage(int chapter, int index) {
+        recordPage(EVENT_CURRENT_PAGE, chapter, index);
+    }
+
+    void recordRequest(int chapter, int index, boolean hit) {
+        recordPage(EVENT_REQUEST, chapter, index, hit);
+    }
+
+    void recordForceRequest(int chapter, int index) {
+        recordPage(EVENT_FORCE_REQUEST, chapter, index);
+    }
+
+    void recordCancelRequest(int chapter, int index) {
+        recordPage(EVENT_CANCEL_REQUEST, chapter, index);
+    }
+
+    void recordPrefetch(int chapter, int index, boolean hit) {
+        recordPage(EVENT_PREFETCH, chapter, index, hit);
+    }
+
+    void recordCancelPrefetch(int chapter, int index) {
+        recordPage(EVENT_CANCEL_PREFETCH, chapter, index);
+    }
+
+    void recordPageSucceed(int chapter, int index) {
+        recordPage(EVENT_PAGE_SUCCEED, chapter, index);
+    }
+
+    void recordPageFailed(int chapter, int index) {
+        recordPage(EVENT_PAGE_FAILED, chapter, index);
+    }
+
+    private synchronized void recordId(@Event int event, long id) {
+        try {
+            if (begin(event)) {
+                writeVarLong(zigzag(id));
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private synchronized void recordPage(@Event int event, int chapter, int index) {
+        try {
+            if (begin(event)) {
+                writeVarLong(chapter);
+                writeVarLong(index);
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private synchronized void recordPage(@Event int event, int chapter, int index, boolean hit) {
+        try {
+            if (begin(event)) {
+                writeVarLong(chapter);
+                writeVarLong(index);
+                mOut.writeByte(hit ? 1 : 0);
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    // Write event type and time, return false if stopped
+    private boolean begin(@Event int event) throws IOException {
+        if (mOut == null) {
+            return false;
+        }
+        final long time = SystemClock.uptimeMillis();
+        mOut.writeByte(event);
+        writeVarLong(Math.max(0, time - mLastTime));
+        mLastTime = time;
+        return true;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            mOut.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        mOut.writeByte((int) value);
+    }
+
+    private void onError(IOException e) {
+        Log.w(LOG_TAG, "Stop recording", e);
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    /**
+     * Write buffered events to the stream.
+     */
+    public synchronized void flush() throws IOException {
+        if (mOut != null) {
+            mOut.flush();
+        }
+    }
+
+    /**
+     * Stop recording and close the stream.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        final DataOutputStream out = mOut;
+        if (out != null) {
+            mOut = null;
+            out.close();
+        }
+    }
+}
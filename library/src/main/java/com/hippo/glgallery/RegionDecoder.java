@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.hippo.image.ImageData;
+
+/**
+ * Decodes regions of a page. Very tall pages are shown in tiles
+ * with it, only tiles on screen are decoded.
+ *
+ * @see GalleryProvider#notifyPageTiled(int, int, RegionDecoder)
+ */
+public interface RegionDecoder {
+
+    /**
+     * Return the width of the page.
+     */
+    int getWidth();
+
+    /**
+     * Return the height of the page.
+     */
+    int getHeight();
+
+    /**
+     * Decode the region in 1 / sampleSize of original size.
+     * It is called in worker thread.
+     *
+     * @return {@code null} for failed
+     */
+    @Nullable
+    ImageData decodeRegion(@NonNull Rect region, int sampleSize);
+
+    /**
+     * Release resources. It is called in worker thread,
+     * after all {@link #decodeRegion(Rect, int)}.
+     */
+    void recycle();
+}
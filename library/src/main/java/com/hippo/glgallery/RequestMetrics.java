@@ -0,0 +1,400 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Timings and counters of page requests of {@link GalleryProvider}.
+ * Timings start when {@link GalleryProvider#request(int, int)} misses
+ * or {@link GalleryProvider#forceRequest(int, int)} is called, and are kept
+ * in {@link Histogram}s of milliseconds. Take a {@link Snapshot} to read them.
+ * <p>
+ * It's thread-safe.
+ */
+public final class RequestMetrics {
+
+    @IntDef({HISTOGRAM_WAIT, HISTOGRAM_SUCCEED, HISTOGRAM_DISPLAY})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface HistogramType {}
+
+    /** From request to the first wait notified */
+    public static final int HISTOGRAM_WAIT = 0;
+    /** From request to the page decoded, succeed or tiled notified */
+    public static final int HISTOGRAM_SUCCEED = 1;
+    /** From request to the page handed to the listener in render thread */
+    public static final int HISTOGRAM_DISPLAY = 2;
+
+    public static final int HISTOGRAM_COUNT = 3;
+
+    @IntDef({COUNTER_HIT, COUNTER_MISS, COUNTER_CANCEL, COUNTER_DECODE, COUNTER_FAILURE,
+            COUNTER_WASTED_CANCELLED, COUNTER_WASTED_EVICTED})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Counter {}
+
+    /** Requests found in cache */
+    public static final int COUNTER_HIT = 0;
+    /** Requests not found in cache, and force requests */
+    public static final int COUNTER_MISS = 1;
+    /** Missed requests cancelled before their pages decoded */
+    public static final int COUNTER_CANCEL = 2;
+    /** Pages decoded, requested or prefetched */
+    public static final int COUNTER_DECODE = 3;
+    /** Pages failed */
+    public static final int COUNTER_FAILURE = 4;
+    /** Pages decoded after their requests were cancelled */
+    public static final int COUNTER_WASTED_CANCELLED = 5;
+    /** Decoded pages evicted from the image cache before any view used them */
+    public static final int COUNTER_WASTED_EVICTED = 6;
+
+    public static final int COUNTER_COUNT = 7;
+
+    // Pending requests kept at most, requests never notified are dropped beyond it
+    private static final int MAX_REQUESTS = 256;
+
+    private final Histogram[] mHistograms = new Histogram[HISTOGRAM_COUNT];
+    private final long[] mCounters = new long[COUNTER_COUNT];
+    private long mStartTime;
+
+    // Requests waiting for results, and cancelled ones
+    private final LongMap<Request> mRequests = new LongMap<>();
+    private final List<Request> mRecycledRequests = new ArrayList<>();
+    // Decoded pages in the image cache no view has used
+    private final LongMap<Boolean> mUnusedPages = new LongMap<>();
+
+    RequestMetrics() {
+        for (int i = 0; i < HISTOGRAM_COUNT; i++) {
+            mHistograms[i] = new Histogram();
+        }
+        mStartTime = SystemClock.uptimeMillis();
+    }
+
+    private Request obtainRequest(long key, long time) {
+        Request request = mRequests.get(key);
+        if (request == null) {
+            if (mRequests.size() >= MAX_REQUESTS) {
+                clearRequests();
+            }
+            final int size = mRecycledRequests.size();
+            request = size == 0 ? new Request() : mRecycledRequests.remove(size - 1);
+            mRequests.put(key, request);
+        }
+        request.startTime = time;
+        request.waited = false;
+        request.succeeded = false;
+        request.cancelled = false;
+        return request;
+    }
+
+    private void removeRequest(long key) {
+        final Request request = mRequests.remove(key);
+        if (request != null) {
+            mRecycledRequests.add(request);
+        }
+    }
+
+    // Recycled ones are dropped too, they are as many as the pending ones
+    private void clearRequests() {
+        mRequests.clear();
+        mRecycledRequests.clear();
+    }
+
+    // A view requests the page
+    synchronized void onRequest(long key, boolean hit) {
+        if (hit) {
+            ++mCounters[COUNTER_HIT];
+            mUnusedPages.remove(key);
+        } else {
+            ++mCounters[COUNTER_MISS];
+            obtainRequest(key, SystemClock.uptimeMillis());
+        }
+    }
+
+    // A view shows the page in cache without requesting it
+    synchronized void onUse(long key) {
+        mUnusedPages.remove(key);
+    }
+
+    synchronized void onCancel(long key) {
+        final Request request = mRequests.get(key);
+        if (request != null && !request.succeeded && !request.cancelled) {
+            ++mCounters[COUNTER_CANCEL];
+            request.cancelled = true;
+        }
+    }
+
+    // Called in notifying thread
+    synchronized void onWait(long key) {
+        final Request request = mRequests.get(key);
+        if (request != null && !request.waited && !request.cancelled) {
+            request.waited = true;
+            mHistograms[HISTOGRAM_WAIT].add(SystemClock.uptimeMillis() - request.startTime);
+        }
+    }
+
+    // Called in notifying thread
+    synchronized void onSucceed(long key) {
+        ++mCounters[COUNTER_DECODE];
+        final Request request = mRequests.get(key);
+        if (request == null) {
+            return;
+        }
+        if (request.cancelled) {
+            ++mCounters[COUNTER_WASTED_CANCELLED];
+            removeRequest(key);
+        } else if (!request.succeeded) {
+            request.succeeded = true;
+            mHistograms[HISTOGRAM_SUCCEED].add(SystemClock.uptimeMillis() - request.startTime);
+        }
+    }
+
+    // Called in notifying thread
+    synchronized void onFailure(long key) {
+        ++mCounters[COUNTER_FAILURE];
+        removeRequest(key);
+    }
+
+    /**
+     * Called in render thread when the decoded page is handed to the listener.
+     *
+     * @param cached {@code true} if the page is going to be put in the image cache
+     */
+    synchronized void onDeliver(long key, boolean cached) {
+        final Request request = mRequests.get(key);
+        if (request != null && request.succeeded) {
+            if (!request.cancelled) {
+                mHistograms[HISTOGRAM_DISPLAY].add(SystemClock.uptimeMillis() - request.startTime);
+            }
+            removeRequest(key);
+            mUnusedPages.remove(key);
+        } else if (cached) {
+            // Prefetched
+            mUnusedPages.put(key, Boolean.TRUE);
+        }
+    }
+
+    // The page is removed from the image cache, not replaced
+    synchronized void onRemove(long key, boolean evicted) {
+        if (mUnusedPages.remove(key) != null && evicted) {
+            ++mCounters[COUNTER_WASTED_EVICTED];
+        }
+    }
+
+    // Pages pending or in cache don't matter any more
+    synchronized void onStop() {
+        clearRequests();
+        mUnusedPages.clear();
+    }
+
+    /**
+     * Return a copy of timings and counters since it's created or last reset.
+     *
+     * @param reset {@code true} to reset timings and counters,
+     *              pending requests are kept
+     */
+    @NonNull
+    public synchronized Snapshot snapshot(boolean reset) {
+        final long now = SystemClock.uptimeMillis();
+        final Histogram[] histograms = new Histogram[HISTOGRAM_COUNT];
+        for (int i = 0; i < HISTOGRAM_COUNT; i++) {
+            histograms[i] = mHistograms[i].copy();
+        }
+        final Snapshot snapshot = new Snapshot(mStartTime, now, histograms, mCounters.clone());
+
+        if (reset) {
+            for (Histogram histogram : mHistograms) {
+                histogram.clear();
+            }
+            Arrays.fill(mCounters, 0L);
+            mStartTime = now;
+        }
+        return snapshot;
+    }
+
+    private static class Request {
+        public long startTime;
+        public boolean waited;
+        public boolean succeeded;
+        public boolean cancelled;
+    }
+
+    /**
+     * Timings and counters of a period.
+     */
+    public static final class Snapshot {
+
+        private final long mStartTime;
+        private final long mEndTime;
+        private final Histogram[] mHistograms;
+        private final long[] mCounters;
+
+        private Snapshot(long startTime, long endTime, Histogram[] histograms, long[] counters) {
+            mStartTime = startTime;
+            mEndTime = endTime;
+            mHistograms = histograms;
+            mCounters = counters;
+        }
+
+        /**
+         * Return the start time of the period in {@link SystemClock#uptimeMillis()}.
+         */
+        public long getStartTime() {
+            return mStartTime;
+        }
+
+        /**
+         * Return the end time of the period in {@link SystemClock#uptimeMillis()}.
+         */
+        public long getEndTime() {
+            return mEndTime;
+        }
+
+        @NonNull
+        public Histogram getHistogram(@HistogramType int type) {
+            return mHistograms[type];
+        }
+
+        public long getCounter(@Counter int counter) {
+            return mCounters[counter];
+        }
+
+        /**
+         * Return hits / (hits + misses), 1 for no request.
+         */
+        public float getHitRate() {
+            final long hits = mCounters[COUNTER_HIT];
+            final long requests = hits + mCounters[COUNTER_MISS];
+            return requests == 0 ? 1.0f : (float) hits / (float) requests;
+        }
+
+        /**
+         * Return cancels / misses, 0 for no miss.
+         */
+        public float getCancelRate() {
+            final long misses = mCounters[COUNTER_MISS];
+            return misses == 0 ? 0.0f : (float) mCounters[COUNTER_CANCEL] / (float) misses;
+        }
+    }
+
+    /**
+     * Durations in milliseconds in power-of-two buckets. Bucket 0 is 0 ms,
+     * bucket i is [2^(i-1), 2^i) ms, the last bucket is everything longer.
+     */
+    public static final class Histogram {
+
+        public static final int BUCKET_COUNT = 16;
+
+        private final long[] mCounts = new long[BUCKET_COUNT];
+        private long mCount;
+        private long mSum;
+        private long mMax;
+
+        Histogram() {}
+
+        private static int bucketOf(long duration) {
+            return Math.min(64 - Long.numberOfLeadingZeros(Math.max(0L, duration)), BUCKET_COUNT - 1);
+        }
+
+        void add(long duration) {
+            duration = Math.max(0L, duration);
+            ++mCounts[bucketOf(duration)];
+            ++mCount;
+            mSum += duration;
+            mMax = Math.max(mMax, duration);
+        }
+
+        void clear() {
+            Arrays.fill(mCounts, 0L);
+            mCount = 0;
+            mSum = 0;
+            mMax = 0;
+        }
+
+        Histogram copy() {
+            final Histogram histogram = new Histogram();
+            System.arraycopy(mCounts, 0, histogram.mCounts, 0, BUCKET_COUNT);
+            histogram.mCount = mCount;
+            histogram.mSum = mSum;
+            histogram.mMax = mMax;
+            return histogram;
+        }
+
+        /**
+         * Return the exclusive upper bound of the bucket in milliseconds,
+         * {@link Long#MAX_VALUE} for the last one.
+         */
+        public static long getUpperBound(int bucket) {
+            if (bucket < 0 || bucket >= BUCKET_COUNT) {
+                throw new IndexOutOfBoundsException("Bucket: " + bucket);
+            }
+            return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        public long getCount(int bucket) {
+            return mCounts[bucket];
+        }
+
+        public long getTotalCount() {
+            return mCount;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public float getMean() {
+            return mCount == 0 ? 0.0f : (float) mSum / (float) mCount;
+        }
+
+        /**
+         * Return the upper bound of the bucket the percentile falls in,
+         * no larger than the max. 0 for empty.
+         *
+         * @param percentile in [0, 1]
+         */
+        public long getPercentile(float percentile) {
+            if (percentile < 0.0f || percentile > 1.0f) {
+                throw new IllegalArgumentException("Invalid percentile: " + percentile);
+            }
+            if (mCount == 0) {
+                return 0;
+            }
+            final long target = Math.max(1L, (long) Math.ceil(mCount * (double) percentile));
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                count += mCounts[i];
+                if (count >= target) {
+                    // Bucket 0 holds only 0 ms
+                    return i == 0 ? 0 : Math.min(getUpperBound(i) - 1, mMax);
+                }
+            }
+            return mMax;
+        }
+    }
+}
@@ -33,9 +33,6 @@ import junit.framework.Assert;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 
 // TODO Handle Image animation start
 class ScrollLayoutManager extends GalleryView.LayoutManager {
@@ -60,8 +57,10 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
 
     private GalleryView.Adapter mAdapter;
 
-    private final LinkedList<GalleryPageView> mPages = new LinkedList<>();
-    private final LinkedList<GalleryPageView> mTempPages = new LinkedList<>();
+    // Pages in layout order
+    private PageDeque mPages = new PageDeque();
+    // Pages of last fill, they are swapped in fill
+    private PageDeque mTempPages = new PageDeque();
 
     @Mode
     private int mMode = MODE_RIGHT_TO_LEFT;
@@ -89,6 +88,12 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
     private int mBottomStateBottom;
     private boolean mBottomStateHasNext;
 
+    // Pages are measured in the size, a scroll only needs to move them.
+    // Zero width for measuring all pages in next fill.
+    private int mMeasuredWidth;
+    private int mMeasuredHeight;
+    private int mMeasuredPageWidth;
+
     public ScrollLayoutManager(Context context, @NonNull GalleryView galleryView, int interval) {
         super(galleryView);
 
@@ -160,10 +165,11 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
     }
 
     private void removeAllPages() {
-        for (final GalleryPageView page : mPages) {
-            removePage(page);
+        final PageDeque pages = mPages;
+        for (int i = 0, n = pages.size(); i < n; i++) {
+            removePage(pages.get(i));
         }
-        mPages.clear();
+        pages.clear();
     }
 
     @Override
@@ -183,23 +189,30 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         return adapter;
     }
 
+    @Override
+    public GalleryView.Adapter getAdapter() {
+        return mAdapter;
+    }
+
     private GalleryPageView obtainPage() {
         final GalleryPageView page = mGalleryView.obtainPage();
         page.getImageView().setScaleOffset(ImageView.SCALE_FIT, ImageView.START_POSITION_TOP_RIGHT, 1.0f);
         return page;
     }
 
-    private GalleryPageView getPageById(List<GalleryPageView> pages, long id, boolean remove) {
-        for (final Iterator<GalleryPageView> iterator = pages.iterator(); iterator.hasNext();) {
-            final GalleryPageView page = iterator.next();
-            if (page.getPageId() == id) {
-                if (remove) {
-                    iterator.remove();
-                }
-                return page;
-            }
+    // Top of the page if pages are laid out from mOffsetY,
+    // or the bottom of all pages if the page is missing
+    private int getKeepTop(long keepTopId) {
+        final PageDeque pages = mPages;
+        int index = pages.indexOf(keepTopId);
+        if (index < 0) {
+            index = pages.size();
+        }
+        int keepTop = mOffsetY;
+        for (int i = 0; i < index; i++) {
+            keepTop += pages.get(i).getHeight() + mInterval;
         }
-        return null;
+        return keepTop;
     }
 
     private boolean isInScreen(GalleryPageView page) {
@@ -215,8 +228,6 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
     private void fillPagesVertical(int startOffset) {
         final GalleryView.Adapter adapter = mAdapter;
         final GalleryView galleryView = mGalleryView;
-        final LinkedList<GalleryPageView> pages = mPages;
-        final LinkedList<GalleryPageView> tempPages = mTempPages;
         final int width = galleryView.getWidth();
         final int height = galleryView.getHeight();
         final int pageWidth = (int) (width * mScale);
@@ -227,12 +238,21 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         final int widthSpec = GLView.MeasureSpec.makeMeasureSpec(pageWidth, GLView.MeasureSpec.EXACTLY);
         final int heightSpec = GLView.MeasureSpec.makeMeasureSpec(height, GLView.MeasureSpec.UNSPECIFIED);
 
+        if (width == mMeasuredWidth && height == mMeasuredHeight && pageWidth == mMeasuredPageWidth
+                && fillPagesVerticalIncrementally(startOffset, pageWidth, minY, maxY, widthSpec, heightSpec)) {
+            if (!hasSpaceVertical(height)) {
+                return;
+            }
+            // Adapter position is at the first page now
+            startOffset = mOffsetY;
+        }
+
         // Fix adapter position and start offset
         if (!adapter.hasPrevious() && startOffset > 0) {
             startOffset = 0;
         } else if (startOffset < minY) {
             while (true) {
-                final GalleryPageView page = getPageById(pages, adapter.getCurrentId(), false);
+                final GalleryPageView page = mPages.find(adapter.getCurrentId());
                 if (page == null) {
                     startOffset = minY;
                     break;
@@ -257,7 +277,7 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
                 adapter.previous();
                 int startBottomOffset = startOffset - interval;
                 while (true) {
-                    final GalleryPageView page = getPageById(pages, adapter.getCurrentId(), false);
+                    final GalleryPageView page = mPages.find(adapter.getCurrentId());
                     if (page == null) {
                         startOffset = maxY - 1;
                         break;
@@ -280,9 +300,11 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
             }
         }
 
-        // Put page to temp list
-        tempPages.addAll(pages);
-        pages.clear();
+        // Pages of last fill become temp pages, take pages from them
+        final PageDeque tempPages = mPages;
+        final PageDeque pages = mTempPages;
+        mPages = pages;
+        mTempPages = tempPages;
 
         // Sanitize offsetX
         final int margin = pageWidth - width;
@@ -293,13 +315,13 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         }
 
         // Layout start page
-        GalleryPageView page = getPageById(tempPages, adapter.getCurrentId(), true);
+        GalleryPageView page = tempPages.take(adapter.getCurrentId());
         if (page == null) {
             page = obtainPage();
             galleryView.addComponent(page);
             adapter.bind(page);
         }
-        pages.add(page);
+        pages.addLast(page);
         page.measure(widthSpec, heightSpec);
         page.layout(mOffsetX, startOffset, mOffsetX + pageWidth, startOffset + page.getMeasuredHeight());
 
@@ -313,7 +335,7 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         // Layout up
         while (topBound > minY && adapter.hasPrevious()) {
             adapter.previous();
-            page = getPageById(tempPages, adapter.getCurrentId(), true);
+            page = tempPages.take(adapter.getCurrentId());
             if (page == null) {
                 page = obtainPage();
                 galleryView.addComponent(page);
@@ -331,8 +353,8 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
             page = pages.getFirst();
             if (page.bounds().top > 0) {
                 final int offset = -page.bounds().top;
-                for (GalleryPageView p: pages) {
-                    p.offsetTopAndBottom(offset);
+                for (int i = 0, n = pages.size(); i < n; i++) {
+                    pages.get(i).offsetTopAndBottom(offset);
                 }
                 bottomBound += offset;
             }
@@ -344,7 +366,7 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         // Check down
         while (bottomBound < maxY && adapter.hasNext()) {
             adapter.next();
-            page = getPageById(tempPages, adapter.getCurrentId(), true);
+            page = tempPages.take(adapter.getCurrentId());
             if (page == null) {
                 page = obtainPage();
                 galleryView.addComponent(page);
@@ -382,8 +404,8 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
                     offset = Math.min(height - pagesBottom, pagesTop);
                 }
                 // Scroll down whole pages
-                for (GalleryPageView p: pages) {
-                    p.offsetTopAndBottom(offset);
+                for (int i = 0, n = pages.size(); i < n; i++) {
+                    pages.get(i).offsetTopAndBottom(offset);
                 }
 
                 if (!hasPrevious) {
@@ -398,7 +420,7 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
                 // Layout up
                 while (topBound > minY && adapter.hasPrevious()) {
                     adapter.previous();
-                    page = getPageById(tempPages, adapter.getCurrentId(), true);
+                    page = tempPages.take(adapter.getCurrentId());
                     if (page == null) {
                         page = obtainPage();
                         galleryView.addComponent(page);
@@ -414,8 +436,11 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         }
 
         // Remove remain page
-        for (GalleryPageView p : tempPages) {
-            removePage(p);
+        for (int i = 0, n = tempPages.size(); i < n; i++) {
+            final GalleryPageView p = tempPages.get(i);
+            if (p != null) {
+                removePage(p);
+            }
         }
         tempPages.clear();
 
@@ -424,6 +449,98 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
             page = pages.getFirst();
             mOffsetY = page.bounds().top;
         }
+
+        mMeasuredWidth = width;
+        mMeasuredHeight = height;
+        mMeasuredPageWidth = pageWidth;
+    }
+
+    // Move pages for scrolling, only measure pages entering.
+    // Return false if it can't, pages are not changed then.
+    private boolean fillPagesVerticalIncrementally(int startOffset, int pageWidth, int minY, int maxY,
+            int widthSpec, int heightSpec) {
+        final GalleryView.Adapter adapter = mAdapter;
+        final GalleryView galleryView = mGalleryView;
+        final PageDeque pages = mPages;
+        final int interval = mInterval;
+
+        if (pages.isEmpty()) {
+            return false;
+        }
+        // The page at start offset
+        final int index = pages.indexOf(adapter.getCurrentId());
+        if (index < 0) {
+            return false;
+        }
+        // Horizontal offset changes, layout all
+        final Rect anchor = pages.get(index).bounds();
+        if (anchor.left != mOffsetX) {
+            return false;
+        }
+        // Jump out of the pages
+        final int offset = startOffset - anchor.top;
+        if (pages.getLast().bounds().bottom + offset <= minY || pages.getFirst().bounds().top + offset >= maxY) {
+            return false;
+        }
+
+        if (offset != 0) {
+            for (int i = 0, n = pages.size(); i < n; i++) {
+                pages.get(i).offsetTopAndBottom(offset);
+            }
+        }
+
+        // Remove pages leaving
+        while (pages.getFirst().bounds().bottom <= minY) {
+            removePage(pages.removeFirst());
+        }
+        while (pages.getLast().bounds().top >= maxY) {
+            removePage(pages.removeLast());
+        }
+
+        // Layout up
+        GalleryPageView page;
+        adapter.setCurrentId(pages.getFirst().getPageId());
+        int topBound = pages.getFirst().bounds().top - interval;
+        while (topBound > minY && adapter.hasPrevious()) {
+            adapter.previous();
+            page = obtainPage();
+            galleryView.addComponent(page);
+            adapter.bind(page);
+            pages.addFirst(page);
+            page.measure(widthSpec, heightSpec);
+            page.layout(mOffsetX, topBound - page.getMeasuredHeight(), mOffsetX + pageWidth, topBound);
+            topBound -= page.getMeasuredHeight() + interval;
+        }
+
+        // Layout down
+        adapter.setCurrentId(pages.getLast().getPageId());
+        int bottomBound = pages.getLast().bounds().bottom + interval;
+        while (bottomBound < maxY && adapter.hasNext()) {
+            adapter.next();
+            page = obtainPage();
+            galleryView.addComponent(page);
+            adapter.bind(page);
+            pages.addLast(page);
+            page.measure(widthSpec, heightSpec);
+            page.layout(mOffsetX, bottomBound, mOffsetX + pageWidth, bottomBound + page.getMeasuredHeight());
+            bottomBound += page.getMeasuredHeight() + interval;
+        }
+
+        adapter.setCurrentId(pages.getFirst().getPageId());
+        mOffsetY = pages.getFirst().bounds().top;
+        return true;
+    }
+
+    // True if there is space in top or bottom which full fill should avoid
+    private boolean hasSpaceVertical(int height) {
+        final PageDeque pages = mPages;
+        final Rect first = pages.getFirst().bounds();
+        final Rect last = pages.getLast().bounds();
+        final boolean head = mAdapter.isHead(pages.getFirst().getPageId());
+        if (head && first.top > 0) {
+            return true;
+        }
+        return mAdapter.isTail(pages.getLast().getPageId()) && last.bottom < height && !(head && first.top >= 0);
     }
 
     private void fillPagesHorizontal(int startOffset) {
@@ -459,8 +576,6 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         // Update bounds
         mScreenBounds.set(0, 0, galleryView.getWidth(), galleryView.getHeight());
 
-        final LinkedList<GalleryPageView> pages = mPages;
-
         // Find keep index and keep top
         final long keepTopId;
         int keepTop = INVALID_TOP;
@@ -474,14 +589,7 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         }
         if (keepTopId != GalleryView.Adapter.INVALID_ID && keepTop == INVALID_TOP) {
             // Find keepTop now
-            keepTop = mOffsetY;
-            for (GalleryPageView page : pages) {
-                // Check keep page
-                if (keepTopId == page.getPageId()) {
-                    break;
-                }
-                keepTop += page.getHeight() + mInterval;
-            }
+            keepTop = getKeepTop(keepTopId);
         }
 
         // Clear keep top if needed
@@ -503,7 +611,9 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
 
         // Get first shown image
         mFirstShownPageId = GalleryView.Adapter.INVALID_ID;
-        for (GalleryPageView page : mPages) {
+        final PageDeque pages = mPages;
+        for (int i = 0, n = pages.size(); i < n; i++) {
+            final GalleryPageView page = pages.get(i);
             // Check first shown loaded page
             if ((mScrollUp || mFlingUp) && !page.isLoaded()) {
                 continue;
@@ -562,23 +672,21 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
     }
 
     private void getBottomState() {
-        final List<GalleryPageView> pages = mPages;
+        final PageDeque pages = mPages;
         if (pages.isEmpty()) {
             Log.e(LOG_TAG, "No pages, can't get bottom state");
             return;
         }
 
         int bottom = mOffsetY;
-        int i = 0;
-        for (GalleryPageView page : pages) {
+        for (int i = 0, n = pages.size(); i < n; i++) {
             if (i != 0) {
                 bottom += mInterval;
             }
-            bottom += page.getHeight();
-            i++;
+            bottom += pages.get(i).getHeight();
         }
 
-        final boolean hasNext = !mAdapter.isTail(mPages.getLast().getPageId());
+        final boolean hasNext = !mAdapter.isTail(pages.getLast().getPageId());
 
         mBottomStateBottom = bottom;
         mBottomStateHasNext = hasNext;
@@ -634,8 +742,8 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
                     mDeltaY = 0;
                 } else {
                     if (mAdapter.hasPrevious()) {
-                        mOffsetY = limit;
                         remainY = remainY + limit - mOffsetY;
+                        mOffsetY = limit;
                         // Offset one pixel to avoid infinite loop
                         ++mOffsetY;
                         ++remainY;
@@ -778,7 +886,9 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         if (mScale != oldScale) {
             GalleryPageView page = null;
             // Keep scale page origin position
-            for (GalleryPageView p : mPages) {
+            final PageDeque pages = mPages;
+            for (int i = 0, n = pages.size(); i < n; i++) {
+                final GalleryPageView p = pages.get(i);
                 if (p.bounds().top < focusY) {
                     page = p;
                 } else {
@@ -848,7 +958,9 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
             // Get first shown page
             GalleryPageView previousPage = null;
             GalleryPageView firstShownPage = null;
-            for (GalleryPageView p: mPages) {
+            final PageDeque pages = mPages;
+            for (int i = 0, n = pages.size(); i < n; i++) {
+                final GalleryPageView p = pages.get(i);
                 if (isInScreen(p)) {
                     firstShownPage = p;
                     break;
@@ -902,7 +1014,9 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
             // Get first shown page
             GalleryPageView lastShownPage = null;
             GalleryPageView nextPage = null;
-            for (GalleryPageView p: mPages) {
+            final PageDeque pages = mPages;
+            for (int i = 0, n = pages.size(); i < n; i++) {
+                final GalleryPageView p = pages.get(i);
                 if (isInScreen(p)) {
                     lastShownPage = p;
                 } else if (null != lastShownPage) {
@@ -943,13 +1057,7 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
 
             if (!mPages.isEmpty()) {
                 // Fix the index page
-                GalleryPageView targetPage = null;
-                for (GalleryPageView page : mPages) {
-                    if (page.getPageId() == id) {
-                        targetPage = page;
-                        break;
-                    }
-                }
+                final GalleryPageView targetPage = mPages.find(id);
 
                 if (targetPage != null) {
                     // Cancel all animations
@@ -985,33 +1093,20 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
 
     @Override
     public GalleryPageView findPageById(long id) {
-        for (GalleryPageView page : mPages) {
-            if (page.getPageId() == id) {
-                return page;
-            }
-        }
-        return null;
+        return mPages.find(id);
     }
 
     @Override
     public long getIdUnder(float x, float y) {
-        if (mPages.isEmpty()) {
-            return GalleryView.Adapter.INVALID_ID;
-        } else {
-            final int intX = (int) x;
-            final int intY = (int) y;
-            for (GalleryPageView page : mPages) {
-                if (page.bounds().contains(intX, intY)) {
-                    return page.getPageId();
-                }
-            }
-            return GalleryView.Adapter.INVALID_ID;
-        }
+        final int index = mPages.search((int) x, (int) y);
+        return index >= 0 ? mPages.get(index).getPageId() : GalleryView.Adapter.INVALID_ID;
     }
 
     @Override
     public long getCurrentId() {
-        for (GalleryPageView page : mPages) {
+        final PageDeque pages = mPages;
+        for (int i = 0, n = pages.size(); i < n; i++) {
+            final GalleryPageView page = pages.get(i);
             if (isInScreen(page)) {
                 return page.getPageId();
             }
@@ -1025,14 +1120,7 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         // Convert mFirstShownPageId to mKeepTopPageId to make sure top keep.
         if (mFirstShownPageId != GalleryView.Adapter.INVALID_ID) {
             final long keepTopId = mFirstShownPageId;
-            int keepTop = mOffsetY;
-            for (GalleryPageView page : mPages) {
-                // Check keep page
-                if (keepTopId == page.getPageId()) {
-                    break;
-                }
-                keepTop += page.getHeight() + mInterval;
-            }
+            final int keepTop = getKeepTop(keepTopId);
             // Must clean keep top in next layout, or fling will stuck
             mClearKeepTop = true;
             mKeepTopPageId = keepTopId;
@@ -1049,6 +1137,11 @@ class ScrollLayoutManager extends GalleryView.LayoutManager {
         mGalleryView.requestFill();
     }
 
+    @Override
+    public void onRequestLayout() {
+        mMeasuredWidth = 0;
+    }
+
     private class PageFling extends Fling {
 
         private int mVelocityX;
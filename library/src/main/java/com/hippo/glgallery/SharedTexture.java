@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.support.annotation.NonNull;
+
+import com.hippo.glview.image.ImageTexture;
+import com.hippo.image.ImageData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link ImageTexture} shown by many {@link ImageView}s, like the two halves
+ * of a clipped page. It's started if any view starts it. It's given back to
+ * the {@link TextureCache} when the last view detaches, and recycled by it.
+ * <p>
+ * It is not thread-safe.
+ */
+class SharedTexture implements ImageTexture.Callback {
+
+    private final ImageData mImage;
+    private final ImageTexture mTexture;
+    private final TextureCache mCache;
+    private final long mKey;
+    private final int mSampleSize;
+    private final boolean mThumb;
+
+    private final List<ImageView> mViews = new ArrayList<>(2);
+    private final List<ImageView> mStartedViews = new ArrayList<>(2);
+    private boolean mUploaded;
+    private boolean mRecycled;
+
+    /**
+     * @param sampleSize the image is decoded in 1 / sampleSize of original size
+     * @param thumb {@code true} if the image is a thumbnail or a preview of the page
+     */
+    public SharedTexture(@NonNull ImageData image, @NonNull TextureCache cache, long key,
+            int sampleSize, boolean thumb) {
+        mImage = image;
+        mTexture = new ImageTexture(image);
+        mTexture.setCallback(this);
+        mCache = cache;
+        mKey = key;
+        mSampleSize = sampleSize;
+        mThumb = thumb;
+    }
+
+    public long getKey() {
+        return mKey;
+    }
+
+    public ImageData getImageData() {
+        return mImage;
+    }
+
+    public ImageTexture getTexture() {
+        return mTexture;
+    }
+
+    public int getSampleSize() {
+        return mSampleSize;
+    }
+
+    public boolean isThumb() {
+        return mThumb;
+    }
+
+    /**
+     * Return the bytes of the texture in GPU.
+     */
+    public int getSize() {
+        return mImage.getWidth() * mImage.getHeight() * 4;
+    }
+
+    /**
+     * Return {@code true} if any view shows it.
+     */
+    public boolean isShown() {
+        return !mViews.isEmpty();
+    }
+
+    /**
+     * Return {@code true} if it has been handed to the uploader.
+     */
+    public boolean isUploaded() {
+        return mUploaded;
+    }
+
+    public void setUploaded() {
+        mUploaded = true;
+    }
+
+    public void attach(@NonNull ImageView view) {
+        if (mRecycled) {
+            throw new IllegalStateException("The texture is recycled");
+        }
+        if (!mViews.contains(view)) {
+            mViews.add(view);
+            if (mViews.size() == 1) {
+                mCache.onShown(this);
+            }
+        }
+    }
+
+    public void detach(@NonNull ImageView view) {
+        if (!mViews.remove(view)) {
+            return;
+        }
+        stop(view);
+        if (mViews.isEmpty()) {
+            mCache.onHidden(this);
+        }
+    }
+
+    /**
+     * Called by {@link TextureCache} when no view shows it.
+     */
+    void recycle() {
+        if (mRecycled) {
+            return;
+        }
+        mRecycled = true;
+        mTexture.setCallback(null);
+        mTexture.recycle();
+    }
+
+    public void start(@NonNull ImageView view) {
+        if (!mStartedViews.contains(view)) {
+            mStartedViews.add(view);
+            if (mStartedViews.size() == 1) {
+                mTexture.start();
+            }
+        }
+    }
+
+    public void stop(@NonNull ImageView view) {
+        if (mStartedViews.remove(view) && mStartedViews.isEmpty()) {
+            mTexture.stop();
+        }
+    }
+
+    @Override
+    public void invalidateImageTexture(ImageTexture who) {
+        final List<ImageView> views = mViews;
+        for (int i = 0, n = views.size(); i < n; i++) {
+            views.get(i).invalidateImageTexture(who);
+        }
+    }
+}
@@ -58,6 +58,11 @@ abstract class StaticLayoutManager extends GalleryView.LayoutManager {
         return adapter;
     }
 
+    @Override
+    public GalleryView.Adapter getAdapter() {
+        return mAdapter;
+    }
+
     // Add views to GalleryView
     protected abstract void addViews();
 
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.hippo.image.ImageData;
+
+/**
+ * Textures of pages, keyed by chapter and page. Textures shown by views are
+ * always kept. Textures shown by no view stay in GPU in LRU order until their
+ * bytes reach the max size, so a page shown again is not uploaded again.
+ * The texture keeps its image, so the image is kept too.
+ * <p>
+ * It is not thread-safe.
+ */
+class TextureCache {
+
+    // The newest texture of each page, shown or not
+    private final LongMap<SharedTexture> mTextures = new LongMap<>();
+    // Textures shown by no view, recycled when removed
+    private final LongLruCache<SharedTexture> mHiddenTextures;
+
+    public TextureCache(long maxSize) {
+        mHiddenTextures = new LongLruCache<>(maxSize, new HiddenTextureHelper());
+    }
+
+    private static long genKey(int chapter, int index) {
+        return ((long) chapter) << 32 | (index & 0xffffffffL);
+    }
+
+    /**
+     * Return the texture of the page, or {@code null}.
+     */
+    @Nullable
+    public SharedTexture get(int chapter, int index) {
+        return mTextures.get(genKey(chapter, index));
+    }
+
+    /**
+     * Return the texture of the page if it is of the image,
+     * or create a new one to replace it.
+     *
+     * @param sampleSize the image is decoded in 1 / sampleSize of original size
+     * @param thumb {@code true} if the image is a thumbnail or a preview of the page
+     */
+    @NonNull
+    public SharedTexture obtain(int chapter, int index, @NonNull ImageData image,
+            int sampleSize, boolean thumb) {
+        final long key = genKey(chapter, index);
+        final SharedTexture texture = mTextures.get(key);
+        if (texture != null && texture.getImageData() == image) {
+            return texture;
+        }
+
+        // The old one is recycled if hidden, or when views let it go
+        final SharedTexture newTexture = new SharedTexture(image, this, key, sampleSize, thumb);
+        mTextures.put(key, newTexture);
+        mHiddenTextures.remove(key);
+        return newTexture;
+    }
+
+    /**
+     * Remove the texture of the page. It's recycled now if it is hidden,
+     * or when views let it go.
+     */
+    public void remove(int chapter, int index) {
+        final long key = genKey(chapter, index);
+        if (mTextures.remove(key) != null) {
+            mHiddenTextures.remove(key);
+        }
+    }
+
+    // Called by SharedTexture when the first view shows it
+    void onShown(SharedTexture texture) {
+        if (mTextures.get(texture.getKey()) == texture) {
+            mHiddenTextures.remove(texture.getKey());
+        }
+    }
+
+    // Called by SharedTexture when the last view lets it go
+    void onHidden(SharedTexture texture) {
+        final long key = texture.getKey();
+        if (mTextures.get(key) == texture) {
+            mHiddenTextures.put(key, texture);
+        } else {
+            // Replaced by a newer one
+            texture.recycle();
+        }
+    }
+
+    /**
+     * Change the max bytes of textures shown by no view.
+     */
+    public void resize(long maxSize) {
+        mHiddenTextures.resize(maxSize);
+    }
+
+    /**
+     * Recycle textures shown by no view, eldest first,
+     * until their bytes are not larger than the size.
+     */
+    public void trimToSize(long size) {
+        mHiddenTextures.trimToSize(size);
+    }
+
+    /**
+     * Recycle all textures shown by no view.
+     */
+    public void evictAll() {
+        mHiddenTextures.evictAll();
+    }
+
+    public long size() {
+        return mHiddenTextures.size();
+    }
+
+    private class HiddenTextureHelper implements LongLruCache.Helper<SharedTexture> {
+
+        @Override
+        public int sizeOf(long key, SharedTexture value) {
+            return value.getSize();
+        }
+
+        @Override
+        public void onEntryAdded(long key, SharedTexture value) {}
+
+        @Override
+        public void onEntryRemoved(boolean evicted, long key, SharedTexture oldValue, SharedTexture newValue) {
+            // Shown again or replaced by a shown one
+            if (oldValue.isShown()) {
+                return;
+            }
+            oldValue.recycle();
+            if (mTextures.get(key) == oldValue) {
+                mTextures.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.hippo.glview.view.GLRoot;
+import com.hippo.image.ImageData;
+import com.hippo.yorozuya.thread.PriorityThread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes tiles of {@link TiledImage} in a worker thread.
+ * The latest requested tile is decoded first, it is most likely on screen.
+ * The thread exits if nothing to do for a while.
+ */
+class TileLoader {
+
+    private static final String TAG = TileLoader.class.getSimpleName();
+    private static final String THREAD_NAME = "TileLoader";
+    private static final long IDLE_TIMEOUT = 5000L; // ms
+
+    private final GLRoot mGLRoot;
+
+    private final Object mLock = new Object();
+    private final List<TiledImage.Tile> mTiles = new ArrayList<>();
+    private final List<RegionDecoder> mRecycledDecoders = new ArrayList<>();
+    private Thread mThread;
+
+    public TileLoader(@NonNull GLRoot glRoot) {
+        mGLRoot = glRoot;
+    }
+
+    private void ensureThread() {
+        if (mThread == null) {
+            mThread = new PriorityThread(new Worker(), THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+            mThread.start();
+        } else {
+            mLock.notify();
+        }
+    }
+
+    /**
+     * Add the tile to decode.
+     */
+    public void request(@NonNull TiledImage.Tile tile) {
+        synchronized (mLock) {
+            mTiles.add(tile);
+            ensureThread();
+        }
+    }
+
+    /**
+     * Remove the tile if it is not decoding.
+     *
+     * @return {@code true} if it is removed
+     */
+    public boolean cancel(@NonNull TiledImage.Tile tile) {
+        synchronized (mLock) {
+            return mTiles.remove(tile);
+        }
+    }
+
+    /**
+     * Recycle the decoder after current decoding.
+     */
+    public void recycle(@NonNull RegionDecoder decoder) {
+        synchronized (mLock) {
+            mRecycledDecoders.add(decoder);
+            ensureThread();
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                loop();
+            } finally {
+                // Let a new thread start if it dies
+                synchronized (mLock) {
+                    if (mThread == Thread.currentThread()) {
+                        mThread = null;
+                    }
+                }
+            }
+        }
+
+        private void loop() {
+            while (true) {
+                TiledImage.Tile tile = null;
+                RegionDecoder recycled = null;
+                synchronized (mLock) {
+                    if (mRecycledDecoders.isEmpty() && mTiles.isEmpty()) {
+                        try {
+                            mLock.wait(IDLE_TIMEOUT);
+                        } catch (InterruptedException e) {
+                            // Ignore
+                        }
+                        if (mRecycledDecoders.isEmpty() && mTiles.isEmpty()) {
+                            mThread = null;
+                            return;
+                        }
+                    }
+                    if (!mRecycledDecoders.isEmpty()) {
+                        recycled = mRecycledDecoders.remove(mRecycledDecoders.size() - 1);
+                    } else {
+                        tile = mTiles.remove(mTiles.size() - 1);
+                    }
+                }
+
+                if (recycled != null) {
+                    try {
+                        recycled.recycle();
+                    } catch (Throwable e) {
+                        Log.w(TAG, "Can't recycle decoder", e);
+                    }
+                } else {
+                    ImageData image = null;
+                    try {
+                        image = tile.decoder.decodeRegion(tile.region, tile.sampleSize);
+                    } catch (Throwable e) {
+                        // Same as null, the tile is left blank
+                        Log.w(TAG, "Can't decode tile " + tile.region, e);
+                    }
+                    tile.setImage(image);
+                    mGLRoot.addOnGLIdleListener(tile);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.hippo.glview.glrenderer.GLCanvas;
+import com.hippo.glview.image.ImageTexture;
+import com.hippo.glview.view.GLRoot;
+import com.hippo.image.ImageData;
+import com.hippo.yorozuya.MathUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A page shown in tiles. Only tiles intersecting the visible area,
+ * and one more tile around it, are decoded and uploaded.
+ * Other tiles are recycled, so memory scales with the view
+ * instead of the page.
+ */
+class TiledImage {
+
+    // Tile size in decoded pixels
+    static final int TILE_SIZE = 512;
+
+    private final RegionDecoder mDecoder;
+    private final TileLoader mLoader;
+    private final ImageTexture.Uploader mUploader;
+    // To count uploaded bytes
+    @Nullable
+    private final GalleryView mGalleryView;
+    private final int mWidth;
+    private final int mHeight;
+
+    // Tiles in memory, decoding or decoded
+    private final List<Tile> mTiles = new ArrayList<>();
+    private int mSampleSize = 1;
+    private Callback mCallback;
+    private boolean mRecycled;
+
+    private final RectF mTileSrc = new RectF();
+    private final RectF mTileDst = new RectF();
+
+    public TiledImage(@NonNull RegionDecoder decoder, @NonNull TileLoader loader,
+            @NonNull ImageTexture.Uploader uploader, @Nullable GalleryView galleryView) {
+        mDecoder = decoder;
+        mLoader = loader;
+        mUploader = uploader;
+        mGalleryView = galleryView;
+        mWidth = decoder.getWidth();
+        mHeight = decoder.getHeight();
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    // One image pixel takes at least one screen pixel
+    static int getSampleSize(float scale) {
+        if (scale <= 0.0f || scale >= 0.5f) {
+            return 1;
+        }
+        return Integer.highestOneBit((int) (1.0f / scale));
+    }
+
+    // The tile containing the start, in tiles of the span
+    static int getFirstTile(float start, int span) {
+        return Math.max(0, (int) (start / span));
+    }
+
+    // The tile containing the end, the end itself excluded
+    static int getLastTile(float end, int span, int count) {
+        return Math.min(count - 1, (int) Math.ceil(end / span) - 1);
+    }
+
+    // The number of tiles to cover the length
+    static int getTileCount(int length, int span) {
+        return (length + span - 1) / span;
+    }
+
+    private Tile findTile(int column, int row) {
+        final List<Tile> tiles = mTiles;
+        for (int i = 0, n = tiles.size(); i < n; i++) {
+            final Tile tile = tiles.get(i);
+            if (tile.column == column && tile.row == row) {
+                return tile;
+            }
+        }
+        return null;
+    }
+
+    private void removeTile(int i) {
+        final List<Tile> tiles = mTiles;
+        final Tile tile = tiles.get(i);
+        // Order is not important
+        final int last = tiles.size() - 1;
+        tiles.set(i, tiles.get(last));
+        tiles.remove(last);
+
+        tile.evicted = true;
+        if (!mLoader.cancel(tile)) {
+            // Decoding or decoded
+            tile.releaseTexture();
+        }
+    }
+
+    /**
+     * Recycle all tiles. Tiles will be decoded again when drawn.
+     */
+    public void clear() {
+        for (int i = mTiles.size() - 1; i >= 0; i--) {
+            removeTile(i);
+        }
+    }
+
+    /**
+     * Draw the area of the page to the area in canvas.
+     * Tiles are requested or evicted here.
+     *
+     * @param src the area in page
+     * @param dst the area in canvas
+     */
+    public void draw(GLCanvas canvas, RectF src, RectF dst) {
+        if (mRecycled || src.isEmpty()) {
+            return;
+        }
+
+        final int sampleSize = getSampleSize(dst.width() / src.width());
+        if (sampleSize != mSampleSize) {
+            clear();
+            mSampleSize = sampleSize;
+        }
+
+        final int span = TILE_SIZE * sampleSize;
+        final int columnCount = getTileCount(mWidth, span);
+        final int rowCount = getTileCount(mHeight, span);
+        final int firstColumn = getFirstTile(src.left, span);
+        final int lastColumn = getLastTile(src.right, span, columnCount);
+        final int firstRow = getFirstTile(src.top, span);
+        final int lastRow = getLastTile(src.bottom, span, rowCount);
+
+        // Evict tiles far away
+        final int keepFirstColumn = Math.max(0, firstColumn - 1);
+        final int keepLastColumn = Math.min(columnCount - 1, lastColumn + 1);
+        final int keepFirstRow = Math.max(0, firstRow - 1);
+        final int keepLastRow = Math.min(rowCount - 1, lastRow + 1);
+        for (int i = mTiles.size() - 1; i >= 0; i--) {
+            final Tile tile = mTiles.get(i);
+            if (tile.column < keepFirstColumn || tile.column > keepLastColumn
+                    || tile.row < keepFirstRow || tile.row > keepLastRow) {
+                removeTile(i);
+            }
+        }
+
+        // Draw visible tiles, request missing ones first
+        final RectF tileSrc = mTileSrc;
+        final RectF tileDst = mTileDst;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final Tile tile = obtainTile(column, row, span);
+                final ImageTexture texture = tile.texture;
+                if (texture == null) {
+                    continue;
+                }
+
+                final Rect region = tile.region;
+                tileSrc.set(Math.max(src.left, region.left), Math.max(src.top, region.top),
+                        Math.min(src.right, region.right), Math.min(src.bottom, region.bottom));
+                if (tileSrc.isEmpty()) {
+                    continue;
+                }
+                tileDst.set(MathUtils.lerp(dst.left, dst.right, MathUtils.norm(src.left, src.right, tileSrc.left)),
+                        MathUtils.lerp(dst.top, dst.bottom, MathUtils.norm(src.top, src.bottom, tileSrc.top)),
+                        MathUtils.lerp(dst.left, dst.right, MathUtils.norm(src.left, src.right, tileSrc.right)),
+                        MathUtils.lerp(dst.top, dst.bottom, MathUtils.norm(src.top, src.bottom, tileSrc.bottom)));
+                // Page pixel to texture pixel
+                final float scaleX = (float) texture.getWidth() / region.width();
+                final float scaleY = (float) texture.getHeight() / region.height();
+                tileSrc.set((tileSrc.left - region.left) * scaleX, (tileSrc.top - region.top) * scaleY,
+                        (tileSrc.right - region.left) * scaleX, (tileSrc.bottom - region.top) * scaleY);
+                texture.draw(canvas, tileSrc, tileDst);
+            }
+        }
+
+        // Prepare tiles around
+        for (int row = keepFirstRow; row <= keepLastRow; row++) {
+            for (int column = keepFirstColumn; column <= keepLastColumn; column++) {
+                obtainTile(column, row, span);
+            }
+        }
+    }
+
+    private Tile obtainTile(int column, int row, int span) {
+        Tile tile = findTile(column, row);
+        if (tile == null) {
+            final int left = column * span;
+            final int top = row * span;
+            tile = new Tile(this, column, row, mSampleSize, new Rect(left, top,
+                    Math.min(mWidth, left + span), Math.min(mHeight, top + span)));
+            mTiles.add(tile);
+            mLoader.request(tile);
+        }
+        return tile;
+    }
+
+    private void onTileDecoded(Tile tile) {
+        final ImageData image = tile.image;
+        if (mRecycled || tile.evicted || image == null) {
+            tile.releaseTexture();
+            return;
+        }
+
+        tile.texture = new ImageTexture(image);
+        mUploader.addTexture(tile.texture);
+        if (mGalleryView != null) {
+            mGalleryView.count(FrameMetrics.COUNTER_UPLOAD_BYTES, image.getWidth() * image.getHeight() * 4L);
+        }
+        if (mCallback != null) {
+            mCallback.invalidateTiledImage(this);
+        }
+    }
+
+    /**
+     * Recycle all tiles and the decoder. It can't be used any more.
+     */
+    public void recycle() {
+        if (mRecycled) {
+            return;
+        }
+        mRecycled = true;
+        clear();
+        mLoader.recycle(mDecoder);
+    }
+
+    static class Tile implements GLRoot.OnGLIdleListener {
+
+        final TiledImage owner;
+        final RegionDecoder decoder;
+        final int column;
+        final int row;
+        final int sampleSize;
+        final Rect region;
+
+        // Set in worker thread, handled in GL thread
+        volatile ImageData image;
+        ImageTexture texture;
+        boolean evicted;
+
+        Tile(TiledImage owner, int column, int row, int sampleSize, Rect region) {
+            this.owner = owner;
+            this.decoder = owner.mDecoder;
+            this.column = column;
+            this.row = row;
+            this.sampleSize = sampleSize;
+            this.region = region;
+        }
+
+        void setImage(ImageData image) {
+            this.image = image;
+        }
+
+        void releaseTexture() {
+            if (texture != null) {
+                texture.recycle();
+                texture = null;
+            }
+            final ImageData image = this.image;
+            if (image != null) {
+                this.image = null;
+                if (!image.isReferenced()) {
+                    image.recycle();
+                }
+            }
+        }
+
+        @Override
+        public boolean onGLIdle(GLCanvas canvas, boolean renderRequested) {
+            owner.onTileDecoded(this);
+            return false;
+        }
+    }
+
+    interface Callback {
+
+        /**
+         * Called when a tile is ready to draw.
+         */
+        void invalidateTiledImage(TiledImage who);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+/**
+ * A frequency-aware admission filter like W-TinyLFU. Request frequency of
+ * pages, in cache or not, is estimated by a count-min sketch of 4-bit
+ * counters, halved periodically to forget old history.
+ * <p>
+ * The youngest fraction of pages in cache, at least one, is a window. When the
+ * cache is full, the eldest page of the window competes with the eldest page
+ * out of the window, the less frequent one is evicted, the latter on a tie.
+ * So pages read once can't push out pages read again and again.
+ * <p>
+ * A policy serves one cache. It is thread-safe.
+ */
+public class TinyLfuCachePolicy implements ImageCachePolicy {
+
+    private static final float DEFAULT_WINDOW_FRACTION = 0.75f;
+
+    // 4096 counters, 4 indexes from 12-bit slices of the hash
+    private static final int COUNTER_BITS = 12;
+    private static final int COUNTER_MASK = (1 << COUNTER_BITS) - 1;
+    private static final int HASH_COUNT = 4;
+    // Halve all counters after requests of so many times of pages in cache
+    private static final int SAMPLE_FACTOR = 2;
+    private static final int MIN_SAMPLE_SIZE = 16;
+
+    private final float mWindowFraction;
+    // 16 counters in a long
+    private final long[] mTable = new long[(1 << COUNTER_BITS) / 16];
+    private int mAccesses;
+    private int mSampleSize = MIN_SAMPLE_SIZE;
+
+    public TinyLfuCachePolicy() {
+        this(DEFAULT_WINDOW_FRACTION);
+    }
+
+    /**
+     * @param windowFraction the fraction of pages in the window, in [0, 1)
+     */
+    public TinyLfuCachePolicy(float windowFraction) {
+        if (windowFraction < 0.0f || windowFraction >= 1.0f) {
+            throw new IllegalArgumentException("Invalid window fraction: " + windowFraction);
+        }
+        mWindowFraction = windowFraction;
+    }
+
+    // SplitMix64, the first page, key 0, must not hash to 0
+    private static long spread(long key) {
+        key += 0x9e3779b97f4a7c15L;
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
+    }
+
+    private static int getIndex(long hash, int i) {
+        return (int) (hash >>> (i * COUNTER_BITS)) & COUNTER_MASK;
+    }
+
+    private static boolean hasIndexBefore(long hash, int i, int index) {
+        for (int j = 0; j < i; j++) {
+            if (getIndex(hash, j) == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getCounter(int index) {
+        return (int) (mTable[index >>> 4] >>> ((index & 15) << 2)) & 0xf;
+    }
+
+    private void increaseCounter(int index) {
+        final int shift = (index & 15) << 2;
+        if (((mTable[index >>> 4] >>> shift) & 0xf) != 0xf) {
+            mTable[index >>> 4] += 1L << shift;
+        }
+    }
+
+    /**
+     * Return the estimated access count of the key, at most 15.
+     */
+    public synchronized int frequency(long key) {
+        final long hash = spread(key);
+        int frequency = 0xf;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            frequency = Math.min(frequency, getCounter(getIndex(hash, i)));
+        }
+        return frequency;
+    }
+
+    @Override
+    public void onCurrentPage(int chapter, int index) {}
+
+    @Override
+    public synchronized void onAccess(long key) {
+        final long hash = spread(key);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            final int index = getIndex(hash, i);
+            // A counter is increased once even if two slices hit it
+            if (!hasIndexBefore(hash, i, index)) {
+                increaseCounter(index);
+            }
+        }
+        if (++mAccesses >= mSampleSize) {
+            mAccesses = 0;
+            final long[] table = mTable;
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+            }
+        }
+    }
+
+    @Override
+    public synchronized int selectVictim(Keys keys) {
+        final int count = keys.count();
+        mSampleSize = Math.max(MIN_SAMPLE_SIZE, SAMPLE_FACTOR * count);
+        final int window = Math.max(1, (int) (count * mWindowFraction));
+        final int candidate = count - window;
+        if (candidate <= 0) {
+            return 0;
+        }
+        // The candidate gets in unless it's less frequent
+        return frequency(keys.get(candidate)) >= frequency(keys.get(0)) ? 0 : candidate;
+    }
+}
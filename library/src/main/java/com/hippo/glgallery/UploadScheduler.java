@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.hippo.glview.annotation.RenderThread;
+import com.hippo.glview.glrenderer.GLCanvas;
+import com.hippo.glview.image.ImageTexture;
+import com.hippo.glview.view.GLRoot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands textures of pages to {@link ImageTexture.Uploader} in GL idle time,
+ * a shared texture is handed once.
+ * Textures of visible pages are handed first, all of them at once.
+ * Textures of off-screen pages are handed until the bytes of the idle callback
+ * reach the budget, the rest wait for the next one. A texture is dropped
+ * if its page is unbound or shows another texture before it's handed.
+ * <p>
+ * All methods must be called in render thread.
+ */
+class UploadScheduler implements GLRoot.OnGLIdleListener {
+
+    // Bytes handed to the uploader in one GL idle callback, visible pages excluded
+    private static final long UPLOAD_BUDGET = 8 * 1024 * 1024;
+
+    private final GLRoot mGLRoot;
+    private final ImageTexture.Uploader mUploader;
+
+    // Pending textures in bind order, at most one for a page
+    private final List<Entry> mEntries = new ArrayList<>();
+    private final List<Entry> mRecycledEntries = new ArrayList<>();
+    private boolean mQueued;
+
+    private final Rect mTemp = new Rect();
+
+    public UploadScheduler(@NonNull GLRoot glRoot, @NonNull ImageTexture.Uploader uploader) {
+        mGLRoot = glRoot;
+        mUploader = uploader;
+    }
+
+    /**
+     * Schedule the texture shown by the page. The pending one of the page is replaced.
+     */
+    @RenderThread
+    public void schedule(@NonNull GalleryPageView page, @NonNull SharedTexture texture, long bytes) {
+        if (texture.isUploaded()) {
+            return;
+        }
+
+        Entry entry = find(page);
+        if (entry == null) {
+            final int size = mRecycledEntries.size();
+            entry = size == 0 ? new Entry() : mRecycledEntries.remove(size - 1);
+            entry.page = page;
+            mEntries.add(entry);
+        }
+        entry.texture = texture;
+        entry.bytes = bytes;
+
+        if (!mQueued) {
+            mQueued = true;
+            mGLRoot.addOnGLIdleListener(this);
+        }
+    }
+
+    /**
+     * Drop the pending texture of the page.
+     */
+    @RenderThread
+    public void cancel(@NonNull GalleryPageView page) {
+        final Entry entry = find(page);
+        if (entry != null) {
+            mEntries.remove(entry);
+            recycle(entry);
+        }
+    }
+
+    /**
+     * Drop all pending textures.
+     */
+    @RenderThread
+    public void clear() {
+        final List<Entry> entries = mEntries;
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            recycle(entries.get(i));
+        }
+        entries.clear();
+    }
+
+    @Nullable
+    private Entry find(GalleryPageView page) {
+        final List<Entry> entries = mEntries;
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            final Entry entry = entries.get(i);
+            if (entry.page == page) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void recycle(Entry entry) {
+        entry.page = null;
+        entry.texture = null;
+        mRecycledEntries.add(entry);
+    }
+
+    private boolean isVisible(GalleryPageView page) {
+        final Rect temp = mTemp;
+        page.getImageView().getValidRect(temp);
+        return !temp.isEmpty();
+    }
+
+    // The page still shows the texture
+    private static boolean isValid(Entry entry) {
+        return entry.page.getImageView().getSharedTexture() == entry.texture;
+    }
+
+    private void upload(Entry entry) {
+        // The other half of the page might have handed it
+        if (entry.texture.isUploaded()) {
+            return;
+        }
+        entry.texture.setUploaded();
+        mUploader.addTexture(entry.texture.getTexture());
+        entry.page.getGalleryView().count(FrameMetrics.COUNTER_UPLOAD_BYTES, entry.bytes);
+    }
+
+    @Override
+    public boolean onGLIdle(GLCanvas canvas, boolean renderRequested) {
+        final List<Entry> entries = mEntries;
+
+        // Visible pages first, all of them
+        for (int i = 0; i < entries.size(); ) {
+            final Entry entry = entries.get(i);
+            if (!isValid(entry)) {
+                entries.remove(i);
+                recycle(entry);
+            } else if (isVisible(entry.page)) {
+                upload(entry);
+                entries.remove(i);
+                recycle(entry);
+            } else {
+                i++;
+            }
+        }
+
+        // Then off-screen pages in bind order, at least one
+        long bytes = 0;
+        while (!entries.isEmpty() && (bytes == 0 || bytes + entries.get(0).bytes <= UPLOAD_BUDGET)) {
+            final Entry entry = entries.remove(0);
+            upload(entry);
+            bytes += entry.bytes;
+            recycle(entry);
+        }
+
+        mQueued = !entries.isEmpty();
+        return mQueued;
+    }
+
+    private static class Entry {
+        public GalleryPageView page;
+        public SharedTexture texture;
+        public long bytes;
+    }
+}
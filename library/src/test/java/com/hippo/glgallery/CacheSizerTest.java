@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CacheSizerTest {
+
+    private static final long MB = 1024 * 1024;
+    // Requests in a window
+    private static final int WINDOW = 64;
+
+    // Request a window of the hit rate, return true if the window is done
+    private static boolean window(CacheSizer sizer, int hits) {
+        boolean done = false;
+        for (int i = 0; i < WINDOW; i++) {
+            done = sizer.onRequest(i < hits);
+            assertEquals(i == WINDOW - 1, done);
+        }
+        return done;
+    }
+
+    @Test
+    public void clampInitialSize() {
+        assertEquals(16 * MB, new CacheSizer(16 * MB, 64 * MB, 4 * MB).getSize());
+        assertEquals(64 * MB, new CacheSizer(16 * MB, 64 * MB, 128 * MB).getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRange() {
+        new CacheSizer(64 * MB, 16 * MB, 32 * MB);
+    }
+
+    @Test
+    public void growOnLowHitRate() {
+        final CacheSizer sizer = new CacheSizer(16 * MB, 256 * MB, 64 * MB);
+        // Hit rate 0.5, a step is 16MB
+        assertTrue(window(sizer, WINDOW / 2));
+        assertEquals(80 * MB, sizer.evaluate(1024 * MB));
+        assertEquals(80 * MB, sizer.getSize());
+    }
+
+    @Test
+    public void keepOnHighHitRate() {
+        final CacheSizer sizer = new CacheSizer(16 * MB, 256 * MB, 64 * MB);
+        assertTrue(window(sizer, WINDOW * 9 / 10));
+        assertEquals(64 * MB, sizer.evaluate(1024 * MB));
+    }
+
+    @Test
+    public void keepWithoutHeadroomToGrow() {
+        final CacheSizer sizer = new CacheSizer(16 * MB, 256 * MB, 64 * MB);
+        window(sizer, 0);
+        // Less than 4 steps
+        assertEquals(64 * MB, sizer.evaluate(63 * MB));
+        window(sizer, 0);
+        assertEquals(80 * MB, sizer.evaluate(64 * MB));
+    }
+
+    @Test
+    public void shrinkOnLowHeadroom() {
+        final CacheSizer sizer = new CacheSizer(16 * MB, 256 * MB, 64 * MB);
+        window(sizer, 0);
+        // Less than a step, shrink even if hit rate is low
+        assertEquals(48 * MB, sizer.evaluate(16 * MB - 1));
+        window(sizer, WINDOW);
+        // The step is 12MB now
+        assertEquals(36 * MB, sizer.evaluate(0));
+    }
+
+    @Test
+    public void stepAtLeastMin() {
+        final CacheSizer sizer = new CacheSizer(4 * MB, 256 * MB, 8 * MB);
+        window(sizer, 0);
+        assertEquals(12 * MB, sizer.evaluate(1024 * MB));
+        window(sizer, 0);
+        assertEquals(8 * MB, sizer.evaluate(MB));
+    }
+
+    @Test
+    public void stayInRange() {
+        final CacheSizer sizer = new CacheSizer(16 * MB, 80 * MB, 64 * MB);
+        window(sizer, 0);
+        assertEquals(80 * MB, sizer.evaluate(1024 * MB));
+        window(sizer, 0);
+        assertEquals(80 * MB, sizer.evaluate(1024 * MB));
+
+        for (int i = 0; i < 10; i++) {
+            window(sizer, WINDOW);
+            sizer.evaluate(0);
+        }
+        assertEquals(16 * MB, sizer.getSize());
+    }
+
+    @Test
+    public void windowReset() {
+        final CacheSizer sizer = new CacheSizer(16 * MB, 256 * MB, 64 * MB);
+        window(sizer, 0);
+        sizer.evaluate(0);
+        // Hits of last window are not counted
+        window(sizer, WINDOW);
+        assertEquals(48 * MB, sizer.evaluate(16 * MB));
+    }
+
+    @Test
+    public void trim() {
+        final CacheSizer sizer = new CacheSizer(16 * MB, 256 * MB, 64 * MB);
+        assertEquals(32 * MB, sizer.trim(0.5f));
+        assertEquals(16 * MB, sizer.trim(0.1f));
+        // Never grows
+        assertEquals(16 * MB, sizer.trim(2.0f));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class CancellationTokenTest {
+
+    // Keeps commands until run
+    private static class PendingExecutor implements Executor {
+
+        final List<Runnable> commands = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            commands.add(command);
+        }
+
+        void runAll() {
+            for (Runnable command : commands) {
+                command.run();
+            }
+            commands.clear();
+        }
+    }
+
+    private static class TestInputStream extends ByteArrayInputStream {
+
+        boolean closed;
+
+        TestInputStream() {
+            super(new byte[] {1, 2, 3, 4});
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    @Test
+    public void read() throws IOException {
+        final CancellationToken token = new CancellationToken(new PendingExecutor());
+        final InputStream is = token.wrap(new TestInputStream());
+        assertEquals(1, is.read());
+        assertEquals(2, is.read(new byte[2], 0, 2));
+        assertEquals(1, is.skip(1));
+        assertEquals(-1, is.read());
+        token.throwIfCancelled();
+    }
+
+    @Test
+    public void cancelClosesInCloser() throws IOException {
+        final PendingExecutor closer = new PendingExecutor();
+        final CancellationToken token = new CancellationToken(closer);
+        final TestInputStream raw = new TestInputStream();
+        final InputStream is = token.wrap(raw);
+        assertEquals(1, is.read());
+
+        token.cancel();
+        assertTrue(token.isCancelled());
+        // Not in the cancelling thread
+        assertFalse(raw.closed);
+        assertEquals(1, closer.commands.size());
+        closer.runAll();
+        assertTrue(raw.closed);
+
+        try {
+            is.read();
+            fail();
+        } catch (InterruptedIOException e) {
+            // Expected
+        }
+        try {
+            token.throwIfCancelled();
+            fail();
+        } catch (InterruptedIOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void cancelTwice() {
+        final PendingExecutor closer = new PendingExecutor();
+        final CancellationToken token = new CancellationToken(closer);
+        token.wrap(new TestInputStream());
+        token.cancel();
+        token.cancel();
+        assertEquals(1, closer.commands.size());
+    }
+
+    @Test
+    public void closedStreamNotTracked() throws IOException {
+        final PendingExecutor closer = new PendingExecutor();
+        final CancellationToken token = new CancellationToken(closer);
+        token.wrap(new TestInputStream()).close();
+        token.cancel();
+        assertTrue(closer.commands.isEmpty());
+    }
+
+    @Test
+    public void wrapAfterCancel() throws IOException {
+        final PendingExecutor closer = new PendingExecutor();
+        final CancellationToken token = new CancellationToken(closer);
+        token.cancel();
+        final TestInputStream raw = new TestInputStream();
+        final InputStream is = token.wrap(raw);
+        assertTrue(raw.closed);
+        assertTrue(closer.commands.isEmpty());
+        try {
+            is.read();
+            fail();
+        } catch (InterruptedIOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void closeWhenCloserStopped() {
+        final CancellationToken token = new CancellationToken(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        final TestInputStream raw = new TestInputStream();
+        token.wrap(raw);
+        token.cancel();
+        assertTrue(raw.closed);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChapterIndexTest {
+
+    private static final int[] SIZES = {0, 1, 2, 3, 7, 8, 9, 16, 33};
+
+    // Waits, errors, empty chapters and small chapters
+    private static int randomPageCount(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return GalleryProvider.STATE_WAIT;
+            case 1:
+                return random.nextBoolean() ? GalleryProvider.STATE_ERROR : 0;
+            default:
+                return 1 + random.nextInt(5);
+        }
+    }
+
+    // Linear scans over page counts
+    private static void assertMatches(int[] counts, ChapterIndex index) {
+        final int n = counts.length;
+        assertEquals(n, index.getChapterCount());
+
+        long offset = 0;
+        for (int chapter = 0; chapter < n; chapter++) {
+            assertEquals(counts[chapter], index.getPageCount(chapter));
+            assertEquals("offset of " + chapter, offset, index.getPageOffset(chapter));
+            offset += Math.max(counts[chapter], 0);
+        }
+        assertEquals(offset, index.getTotalPageCount());
+
+        for (int chapter = -1; chapter <= n; chapter++) {
+            int next = ChapterIndex.NOT_FOUND;
+            for (int i = chapter + 1; i < n; i++) {
+                if (counts[i] != 0) {
+                    next = i;
+                    break;
+                }
+            }
+            assertEquals("next non-empty of " + chapter, next, index.nextNonEmpty(chapter));
+
+            int previous = ChapterIndex.NOT_FOUND;
+            for (int i = Math.min(chapter - 1, n - 1); i >= 0; i--) {
+                if (counts[i] != 0) {
+                    previous = i;
+                    break;
+                }
+            }
+            assertEquals("previous non-empty of " + chapter, previous, index.previousNonEmpty(chapter));
+
+            next = ChapterIndex.NOT_FOUND;
+            for (int i = Math.max(chapter, 0); i < n; i++) {
+                if (counts[i] < 0) {
+                    next = i;
+                    break;
+                }
+            }
+            assertEquals("next not ready of " + chapter, next, index.nextNotReady(chapter));
+
+            previous = ChapterIndex.NOT_FOUND;
+            for (int i = Math.min(chapter, n - 1); i >= 0; i--) {
+                if (counts[i] < 0) {
+                    previous = i;
+                    break;
+                }
+            }
+            assertEquals("previous not ready of " + chapter, previous, index.previousNotReady(chapter));
+        }
+
+        for (long page = -1; page <= offset; page++) {
+            int expected = ChapterIndex.NOT_FOUND;
+            long start = 0;
+            for (int i = 0; i < n; i++) {
+                final long end = start + Math.max(counts[i], 0);
+                if (page >= 0 && page >= start && page < end) {
+                    expected = i;
+                    break;
+                }
+                start = end;
+            }
+            assertEquals("chapter of page " + page, expected, index.getChapterOfPage(page));
+        }
+    }
+
+    @Test
+    public void build() {
+        final Random random = new Random(5);
+        for (int size : SIZES) {
+            for (int round = 0; round < 20; round++) {
+                final int[] counts = new int[size];
+                for (int i = 0; i < size; i++) {
+                    counts[i] = randomPageCount(random);
+                }
+                assertMatches(counts.clone(), new ChapterIndex(counts.clone()));
+            }
+        }
+    }
+
+    // Updates at both ends walk the whole tree
+    @Test
+    public void setFirstAndLast() {
+        for (int size : SIZES) {
+            if (size == 0) {
+                continue;
+            }
+            final int[] counts = new int[size];
+            final ChapterIndex index = new ChapterIndex(counts.clone());
+            final int[] updates = {3, GalleryProvider.STATE_WAIT, 0, 5, GalleryProvider.STATE_ERROR, 1};
+            for (int count : updates) {
+                counts[0] = count;
+                index.setPageCount(0, count);
+                assertMatches(counts, index);
+                counts[size - 1] = count;
+                index.setPageCount(size - 1, count);
+                assertMatches(counts, index);
+            }
+        }
+    }
+
+    @Test
+    public void randomUpdates() {
+        final Random random = new Random(6);
+        for (int size : SIZES) {
+            if (size == 0) {
+                continue;
+            }
+            final int[] counts = new int[size];
+            for (int i = 0; i < size; i++) {
+                counts[i] = GalleryProvider.STATE_WAIT;
+            }
+            final ChapterIndex index = new ChapterIndex(counts.clone());
+            for (int round = 0; round < 200; round++) {
+                final int chapter = random.nextInt(size);
+                final int count = randomPageCount(random);
+                counts[chapter] = count;
+                index.setPageCount(chapter, count);
+                assertMatches(counts, index);
+            }
+        }
+    }
+}
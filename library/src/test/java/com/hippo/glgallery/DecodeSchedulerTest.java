@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DecodeSchedulerTest {
+
+    private static final long TIMEOUT = 5000L; // ms
+
+    // Tokens here wrap no stream
+    private static final Executor CLOSER = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // Records decodes as "chapter:index:targetWidth", pages listed in
+    // blocked wait for a permit, page -1 throws
+    private static class TestDecoder implements DecodeScheduler.Decoder {
+
+        final BlockingQueue<String> decoded = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> failed = new LinkedBlockingQueue<>();
+        final List<Integer> blocked = new ArrayList<>();
+        final Semaphore permits = new Semaphore(0);
+        // Released when a blocked page starts decoding
+        final Semaphore started = new Semaphore(0);
+
+        @Override
+        public void decode(int chapter, int index, int targetWidth, int targetHeight,
+                CancellationToken token) {
+            final boolean block;
+            synchronized (blocked) {
+                block = blocked.contains(index);
+            }
+            if (block) {
+                started.release();
+                permits.acquireUninterruptibly();
+            }
+            if (index == -1) {
+                throw new OutOfMemoryError("Too large");
+            }
+            decoded.add(chapter + ":" + index + ":" + targetWidth);
+        }
+
+        @Override
+        public void onDecodeFailed(int chapter, int index, Throwable e, CancellationToken token) {
+            failed.add(chapter + ":" + index + ":" + e.getMessage());
+        }
+
+        void block(int index) {
+            synchronized (blocked) {
+                blocked.add(index);
+            }
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(started.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+        String next() throws InterruptedException {
+            return decoded.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void nearestFirst() throws InterruptedException {
+        final TestDecoder decoder = new TestDecoder();
+        final DecodeScheduler scheduler = new DecodeScheduler("Test", 1, 0, decoder);
+        scheduler.setCurrentPage(1, 5);
+        scheduler.request(1, 9, false);
+        scheduler.request(2, 0, false);
+        scheduler.request(0, 9, false);
+        scheduler.request(1, 4, false);
+        scheduler.request(1, 7, false);
+        scheduler.request(1, 8, true);
+        // Pending pages are kept, visible pages first
+        scheduler.start();
+        try {
+            assertEquals("1:8:0", decoder.next());
+            assertEquals("1:4:0", decoder.next());
+            assertEquals("1:7:0", decoder.next());
+            assertEquals("1:9:0", decoder.next());
+            assertEquals("2:0:0", decoder.next());
+            assertEquals("0:9:0", decoder.next());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void reorderOnCurrentPage() throws InterruptedException {
+        final TestDecoder decoder = new TestDecoder();
+        final DecodeScheduler scheduler = new DecodeScheduler("Test", 1, 0, decoder);
+        for (int i = 0; i < 5; i++) {
+            scheduler.request(0, i, false);
+        }
+        scheduler.setCurrentPage(0, 4);
+        scheduler.start();
+        try {
+            for (int i = 4; i >= 0; i--) {
+                assertEquals("0:" + i + ":0", decoder.next());
+            }
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void keepWorkerForVisible() throws InterruptedException {
+        final TestDecoder decoder = new TestDecoder();
+        decoder.block(1);
+        decoder.block(2);
+        final DecodeScheduler scheduler = new DecodeScheduler("Test", 2, 0, decoder);
+        scheduler.start();
+        try {
+            scheduler.request(0, 1, false);
+            decoder.awaitStarted();
+            // The other worker is kept
+            scheduler.request(0, 2, false);
+            scheduler.request(0, 3, true);
+            assertEquals("0:3:0", decoder.next());
+            assertTrue(scheduler.contains(0, 2));
+
+            decoder.permits.release(2);
+            assertEquals("0:1:0", decoder.next());
+            assertEquals("0:2:0", decoder.next());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void requestCancelRedo() throws InterruptedException {
+        final TestDecoder decoder = new TestDecoder();
+        decoder.block(1);
+        decoder.block(4);
+        final DecodeScheduler scheduler = new DecodeScheduler("Test", 1, 0, decoder);
+        scheduler.start();
+        try {
+            // Larger target size while decoding, decode again
+            assertTrue(scheduler.request(0, 1, 100, 100, true));
+            decoder.awaitStarted();
+            assertFalse(scheduler.request(0, 1, 200, 200, true));
+            // Pending pages are removed
+            scheduler.request(0, 2, true);
+            scheduler.cancel(0, 2);
+            assertFalse(scheduler.contains(0, 2));
+            decoder.permits.release();
+            assertEquals("0:1:100", decoder.next());
+            decoder.awaitStarted();
+            decoder.permits.release();
+            assertEquals("0:1:200", decoder.next());
+
+            // Cancelled while decoding, no redo
+            scheduler.request(0, 4, 100, 100, true);
+            decoder.awaitStarted();
+            scheduler.request(0, 4, 200, 200, true);
+            scheduler.cancel(0, 4);
+            scheduler.request(0, 3, true);
+            decoder.permits.release();
+            assertEquals("0:4:100", decoder.next());
+            assertEquals("0:3:0", decoder.next());
+            decoder.permits.release();
+            assertNull(decoder.decoded.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void cancelledToken() throws InterruptedException {
+        final TestDecoder decoder = new TestDecoder();
+        final DecodeScheduler scheduler = new DecodeScheduler("Test", 1, 0, decoder);
+        final CancellationToken token = new CancellationToken(CLOSER);
+        scheduler.request(0, 1, 0, 0, true, token);
+        scheduler.request(0, 2, 0, 0, true, new CancellationToken(CLOSER));
+        token.cancel();
+        scheduler.start();
+        try {
+            assertEquals("0:2:0", decoder.next());
+            assertFalse(scheduler.contains(0, 1));
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void decoderThrows() throws InterruptedException {
+        final TestDecoder decoder = new TestDecoder();
+        final DecodeScheduler scheduler = new DecodeScheduler("Test", 1, 0, decoder);
+        scheduler.setCurrentPage(0, -1);
+        scheduler.request(0, -1, true);
+        scheduler.request(0, 0, true);
+        scheduler.start();
+        try {
+            // The worker goes on
+            assertEquals("0:0:0", decoder.next());
+            assertEquals("0:-1:Too large", decoder.failed.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertFalse(scheduler.contains(0, -1));
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void restart() throws InterruptedException {
+        final TestDecoder decoder = new TestDecoder();
+        final DecodeScheduler scheduler = new DecodeScheduler("Test", 1, 0, decoder);
+        scheduler.start();
+        scheduler.stop();
+        // Pending pages are dropped
+        scheduler.request(0, 1, true);
+        scheduler.stop();
+        assertFalse(scheduler.contains(0, 1));
+        scheduler.request(0, 2, true);
+        scheduler.start();
+        try {
+            assertEquals("0:2:0", decoder.next());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void startTwice() {
+        final DecodeScheduler scheduler = new DecodeScheduler("Test", 1, 0, new TestDecoder());
+        scheduler.start();
+        try {
+            scheduler.start();
+        } finally {
+            scheduler.stop();
+        }
+    }
+}
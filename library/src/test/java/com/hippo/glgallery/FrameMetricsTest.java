@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameMetricsTest {
+
+    // Counts frames, checks the latest one
+    private static class TestMetrics implements GalleryView.Metrics {
+
+        int frames;
+        long latestBinds;
+
+        @Override
+        public void onFrame(FrameMetrics metrics) {
+            ++frames;
+            latestBinds = metrics.getCounter(metrics.getFrameCount() - 1, FrameMetrics.COUNTER_BIND);
+        }
+    }
+
+    // The frame is tagged with binds
+    private static void frame(FrameMetrics metrics, long binds) {
+        metrics.beginFrame();
+        metrics.count(FrameMetrics.COUNTER_BIND, binds);
+        metrics.endFrame();
+    }
+
+    private static void assertFrames(FrameMetrics metrics, long... binds) {
+        assertEquals(binds.length, metrics.getFrameCount());
+        for (int i = 0; i < binds.length; i++) {
+            assertEquals(binds[i], metrics.getCounter(i, FrameMetrics.COUNTER_BIND));
+        }
+    }
+
+    @Test
+    public void eldestFirst() {
+        final TestMetrics listener = new TestMetrics();
+        final FrameMetrics metrics = new FrameMetrics(4, listener);
+        assertFrames(metrics);
+        frame(metrics, 1);
+        frame(metrics, 2);
+        frame(metrics, 3);
+        assertFrames(metrics, 1, 2, 3);
+        assertEquals(3, listener.frames);
+        assertEquals(3, listener.latestBinds);
+    }
+
+    @Test
+    public void wrap() {
+        final TestMetrics listener = new TestMetrics();
+        final FrameMetrics metrics = new FrameMetrics(4, listener);
+        for (int i = 1; i <= 10; i++) {
+            frame(metrics, i);
+            assertEquals(i, listener.latestBinds);
+        }
+        assertFrames(metrics, 7, 8, 9, 10);
+        assertEquals(4, metrics.getCapacity());
+    }
+
+    @Test
+    public void countersSinceLastFrame() {
+        final FrameMetrics metrics = new FrameMetrics(2, new TestMetrics());
+        // Counted between frames
+        metrics.count(FrameMetrics.COUNTER_UNBIND, 2);
+        metrics.beginFrame();
+        metrics.count(FrameMetrics.COUNTER_UNBIND, 3);
+        metrics.endFrame();
+        frame(metrics, 0);
+        assertEquals(5, metrics.getCounter(0, FrameMetrics.COUNTER_UNBIND));
+        assertEquals(0, metrics.getCounter(1, FrameMetrics.COUNTER_UNBIND));
+    }
+
+    @Test
+    public void skippedPhaseCleared() {
+        final FrameMetrics metrics = new FrameMetrics(1, new TestMetrics());
+        metrics.beginFrame();
+        final long start = System.nanoTime();
+        while (System.nanoTime() == start) {
+            // Let time pass
+        }
+        metrics.endPhase(FrameMetrics.PHASE_RENDER);
+        metrics.endFrame();
+        assertTrue(metrics.getPhaseTime(0, FrameMetrics.PHASE_RENDER) > 0);
+        assertEquals(metrics.getPhaseTime(0, FrameMetrics.PHASE_RENDER), metrics.getFrameTime(0));
+
+        // The same slot, no render phase
+        frame(metrics, 0);
+        assertEquals(0, metrics.getPhaseTime(0, FrameMetrics.PHASE_RENDER));
+        assertEquals(0, metrics.getFrameTime(0));
+    }
+
+    @Test
+    public void clear() {
+        final FrameMetrics metrics = new FrameMetrics(3, new TestMetrics());
+        frame(metrics, 1);
+        frame(metrics, 2);
+        metrics.clear();
+        assertFrames(metrics);
+        frame(metrics, 3);
+        assertFrames(metrics, 3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfRange() {
+        final FrameMetrics metrics = new FrameMetrics(3, new TestMetrics());
+        frame(metrics, 1);
+        metrics.getStartTime(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void negativeFrame() {
+        final FrameMetrics metrics = new FrameMetrics(3, new TestMetrics());
+        frame(metrics, 1);
+        metrics.getStartTime(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity() {
+        new FrameMetrics(0, new TestMetrics());
+    }
+}
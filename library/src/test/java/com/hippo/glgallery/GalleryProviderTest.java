@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GalleryProviderTest {
+
+    // Records accessed keys, evicts the eldest
+    private static class RecordingPolicy implements ImageCachePolicy {
+
+        final List<Long> accessed = new ArrayList<>();
+
+        @Override
+        public void onCurrentPage(int chapter, int index) {}
+
+        @Override
+        public void onAccess(long key) {
+            accessed.add(key);
+        }
+
+        @Override
+        public int selectVictim(Keys keys) {
+            return 0;
+        }
+    }
+
+    @Test
+    public void touchCountsHit() {
+        final TestProvider provider = new TestProvider();
+        final RecordingPolicy policy = new RecordingPolicy();
+        provider.setImageCachePolicy(policy);
+
+        provider.touch(0, 3);
+
+        final RequestMetrics.Snapshot snapshot = provider.getRequestMetrics().snapshot(false);
+        assertEquals(1, snapshot.getCounter(RequestMetrics.COUNTER_HIT));
+        assertEquals(0, snapshot.getCounter(RequestMetrics.COUNTER_MISS));
+        assertEquals(1, policy.accessed.size());
+        assertEquals(3L, (long) policy.accessed.get(0));
+        // Nothing to decode
+        assertTrue(provider.takeCalls().isEmpty());
+    }
+
+    @Test
+    public void requestCountsMiss() {
+        final TestProvider provider = new TestProvider();
+
+        assertNull(provider.request(0, 3));
+
+        final RequestMetrics.Snapshot snapshot = provider.getRequestMetrics().snapshot(false);
+        assertEquals(0, snapshot.getCounter(RequestMetrics.COUNTER_HIT));
+        assertEquals(1, snapshot.getCounter(RequestMetrics.COUNTER_MISS));
+        assertEquals("request 0:3", provider.takeCalls().get(0));
+    }
+
+    @Test
+    public void tokenCountsRequests() {
+        final TestProvider provider = new TestProvider();
+        // Two halves of a clipped page
+        provider.request(0, 3);
+        final CancellationToken token = provider.token;
+        provider.request(0, 3);
+        assertSame(token, provider.token);
+        assertSame(token, provider.getToken(0, 3));
+
+        provider.cancelRequest(0, 3, token);
+        assertFalse(token.isCancelled());
+        provider.cancelRequest(0, 3, token);
+        assertTrue(token.isCancelled());
+        assertNull(provider.getToken(0, 3));
+    }
+
+    @Test
+    public void tokenCountsPrefetches() {
+        final TestProvider provider = new TestProvider();
+        assertFalse(provider.prefetch(0, 3));
+        final CancellationToken token = provider.token;
+        provider.request(0, 3);
+        assertSame(token, provider.token);
+
+        provider.cancelRequest(0, 3, token);
+        assertFalse(token.isCancelled());
+        provider.cancelPrefetch(0, 3, token);
+        assertTrue(token.isCancelled());
+    }
+
+    @Test
+    public void releaseRequestCountsOnce() {
+        final TestProvider provider = new TestProvider();
+        provider.request(0, 3);
+        final CancellationToken token = provider.token;
+        // Requested by the same view again
+        provider.requestOrigin(0, 3);
+        assertSame(token, provider.token);
+        provider.releaseRequest(0, 3, token);
+        assertFalse(token.isCancelled());
+
+        provider.cancelRequest(0, 3, token);
+        assertTrue(token.isCancelled());
+    }
+
+    @Test
+    public void doneTokenNotCancelled() {
+        final TestProvider provider = new TestProvider();
+        provider.request(0, 3);
+        final CancellationToken oldToken = provider.token;
+        // A late notification of the old request
+        provider.notifyPageFailed(0, 3, "Failed", oldToken);
+        assertNull(provider.getToken(0, 3));
+
+        provider.request(0, 3);
+        final CancellationToken newToken = provider.token;
+        assertNotSame(oldToken, newToken);
+        provider.notifyPageFailed(0, 3, "Failed", oldToken);
+        assertSame(newToken, provider.getToken(0, 3));
+
+        // The view waiting for the old one is unbound
+        provider.cancelRequest(0, 3, oldToken);
+        assertFalse(newToken.isCancelled());
+        assertFalse(oldToken.isCancelled());
+    }
+
+    @Test
+    public void stopCancelsTokens() {
+        final TestProvider provider = new TestProvider();
+        provider.start();
+        provider.request(0, 3);
+        final CancellationToken token1 = provider.token;
+        provider.prefetch(0, 4);
+        final CancellationToken token2 = provider.token;
+
+        provider.stop();
+        assertTrue(token1.isCancelled());
+        assertTrue(token2.isCancelled());
+        assertNull(provider.getToken(0, 3));
+    }
+}
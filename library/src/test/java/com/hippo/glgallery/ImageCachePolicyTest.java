@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImageCachePolicyTest {
+
+    // Keys eldest first, counts reads
+    private static class ArrayKeys implements ImageCachePolicy.Keys {
+
+        final long[] keys;
+        int reads;
+
+        ArrayKeys(long... keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public int count() {
+            return keys.length;
+        }
+
+        @Override
+        public long get(int index) {
+            ++reads;
+            return keys[index];
+        }
+    }
+
+    private static long key(int chapter, int index) {
+        return ((long) chapter) << 32 | index;
+    }
+
+    private static void access(ImageCachePolicy policy, long key, int times) {
+        for (int i = 0; i < times; i++) {
+            policy.onAccess(key);
+        }
+    }
+
+    @Test
+    public void lru() {
+        final ArrayKeys keys = new ArrayKeys(key(0, 9), key(0, 1), key(0, 5));
+        final LruCachePolicy policy = new LruCachePolicy();
+        policy.onCurrentPage(0, 9);
+        assertEquals(0, policy.selectVictim(keys));
+        assertEquals(0, keys.reads);
+    }
+
+    @Test
+    public void directionalWithoutCurrentPage() {
+        final DirectionalCachePolicy policy = new DirectionalCachePolicy();
+        assertEquals(0, policy.selectVictim(new ArrayKeys(key(0, 6), key(0, 1))));
+    }
+
+    @Test
+    public void directionalBehindFirst() {
+        final DirectionalCachePolicy policy = new DirectionalCachePolicy();
+        policy.onCurrentPage(0, 5);
+        final ArrayKeys keys = new ArrayKeys(key(0, 6), key(0, 3), key(0, 2));
+        assertEquals(1, policy.selectVictim(keys));
+        // Stops at the first page behind
+        assertEquals(2, keys.reads);
+    }
+
+    @Test
+    public void directionalKeepJustBehind() {
+        final DirectionalCachePolicy policy = new DirectionalCachePolicy();
+        policy.onCurrentPage(0, 5);
+        // The farthest ahead one
+        assertEquals(2, policy.selectVictim(new ArrayKeys(key(0, 4), key(0, 6), key(0, 9), key(0, 5))));
+    }
+
+    @Test
+    public void directionalOtherChapter() {
+        final DirectionalCachePolicy policy = new DirectionalCachePolicy();
+        policy.onCurrentPage(1, 5);
+        assertEquals(1, policy.selectVictim(new ArrayKeys(key(1, 9), key(0, 5), key(2, 0))));
+    }
+
+    @Test
+    public void directionalBackward() {
+        final DirectionalCachePolicy policy = new DirectionalCachePolicy();
+        policy.onCurrentPage(0, 5);
+        policy.onCurrentPage(0, 3);
+        // Page 6 is behind now
+        assertEquals(1, policy.selectVictim(new ArrayKeys(key(0, 2), key(0, 6), key(0, 1))));
+        // Page 4 is just behind, page 0 is the farthest ahead
+        assertEquals(2, policy.selectVictim(new ArrayKeys(key(0, 4), key(0, 2), key(0, 0))));
+
+        // The same page keeps the direction
+        policy.onCurrentPage(0, 3);
+        assertEquals(1, policy.selectVictim(new ArrayKeys(key(0, 2), key(0, 6))));
+    }
+
+    @Test
+    public void directionalChapterChange() {
+        final DirectionalCachePolicy policy = new DirectionalCachePolicy();
+        policy.onCurrentPage(1, 0);
+        policy.onCurrentPage(0, 9);
+        assertEquals(1, policy.selectVictim(new ArrayKeys(key(0, 3), key(0, 11))));
+    }
+
+    @Test
+    public void tinyLfuFrequency() {
+        final TinyLfuCachePolicy policy = new TinyLfuCachePolicy();
+        assertEquals(0, policy.frequency(key(0, 1)));
+        access(policy, key(0, 1), 3);
+        assertEquals(3, policy.frequency(key(0, 1)));
+        access(policy, key(0, 1), 12);
+        assertEquals(15, policy.frequency(key(0, 1)));
+        // Saturated, then halved after 16 accesses
+        access(policy, key(0, 1), 1);
+        assertEquals(7, policy.frequency(key(0, 1)));
+    }
+
+    @Test
+    public void tinyLfuFrequencyOfManyKeys() {
+        final TinyLfuCachePolicy policy = new TinyLfuCachePolicy();
+        for (int i = 0; i < 15; i++) {
+            policy.onAccess(key(0, i));
+        }
+        // Never underestimated, collisions are rare
+        int exact = 0;
+        for (int i = 0; i < 15; i++) {
+            final int frequency = policy.frequency(key(0, i));
+            assertTrue(frequency >= 1);
+            if (frequency == 1) {
+                ++exact;
+            }
+        }
+        assertTrue(exact >= 14);
+    }
+
+    @Test
+    public void tinyLfuAdmission() {
+        final TinyLfuCachePolicy policy = new TinyLfuCachePolicy();
+        // 4 pages, the window is 3, the candidate is 1
+        final ArrayKeys keys = new ArrayKeys(key(0, 0), key(0, 1), key(0, 2), key(0, 3));
+
+        // A tie, the eldest is evicted
+        assertEquals(0, policy.selectVictim(keys));
+
+        access(policy, key(0, 0), 3);
+        access(policy, key(0, 1), 1);
+        // The candidate is less frequent
+        assertEquals(1, policy.selectVictim(keys));
+
+        access(policy, key(0, 1), 3);
+        assertEquals(0, policy.selectVictim(keys));
+    }
+
+    @Test
+    public void tinyLfuSmallCache() {
+        final TinyLfuCachePolicy policy = new TinyLfuCachePolicy();
+        access(policy, key(0, 0), 5);
+        // Only the window
+        assertEquals(0, policy.selectVictim(new ArrayKeys(key(0, 0))));
+        // The page just added is the candidate
+        assertEquals(1, policy.selectVictim(new ArrayKeys(key(0, 0), key(0, 1))));
+        access(policy, key(0, 1), 5);
+        assertEquals(0, policy.selectVictim(new ArrayKeys(key(0, 0), key(0, 1))));
+    }
+
+    @Test
+    public void tinyLfuNoWindow() {
+        final TinyLfuCachePolicy policy = new TinyLfuCachePolicy(0.0f);
+        access(policy, key(0, 0), 2);
+        // The page just added competes with the eldest
+        assertEquals(2, policy.selectVictim(new ArrayKeys(key(0, 0), key(0, 1), key(0, 2))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tinyLfuInvalidWindow() {
+        new TinyLfuCachePolicy(1.0f);
+    }
+}
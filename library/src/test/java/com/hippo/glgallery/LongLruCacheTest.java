@@ -0,0 +1,402 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class LongLruCacheTest {
+
+    // Values are their sizes
+    private static class SizeHelper implements LongLruCache.Helper<Integer> {
+
+        final List<Long> added = new ArrayList<>();
+        final List<Long> evicted = new ArrayList<>();
+        final List<Long> removed = new ArrayList<>();
+
+        @Override
+        public int sizeOf(long key, Integer value) {
+            return value;
+        }
+
+        @Override
+        public void onEntryAdded(long key, Integer value) {
+            added.add(key);
+        }
+
+        @Override
+        public void onEntryRemoved(boolean evicted, long key, Integer oldValue, Integer newValue) {
+            (evicted ? this.evicted : removed).add(key);
+        }
+    }
+
+    // LinkedHashMap in access order, evicts the eldest
+    private static class ReferenceCache {
+
+        final LinkedHashMap<Long, Integer> map = new LinkedHashMap<>(16, 0.75f, true);
+        long maxSize;
+        long size;
+
+        ReferenceCache(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        void put(long key, int value) {
+            final Integer old = map.put(key, value);
+            size += value - (old != null ? old : 0);
+            trimToSize(maxSize);
+        }
+
+        Integer remove(long key) {
+            final Integer old = map.remove(key);
+            if (old != null) {
+                size -= old;
+            }
+            return old;
+        }
+
+        void trimToSize(long maxSize) {
+            final Iterator<Map.Entry<Long, Integer>> iterator = map.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().getValue();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void assertSameContent(ReferenceCache expected, LongLruCache<Integer> actual,
+            long keyBound) {
+        assertEquals(expected.size, actual.size());
+        assertEquals(expected.map.size(), actual.count());
+        for (long key = 0; key < keyBound; key++) {
+            // getExtra doesn't change access order
+            assertEquals("key " + key, expected.map.containsKey(key) ? 1 : 0, actual.getExtra(key, 0));
+        }
+    }
+
+    @Test
+    public void evictEldest() {
+        final SizeHelper helper = new SizeHelper();
+        final LongLruCache<Integer> cache = new LongLruCache<>(10, helper);
+        cache.put(1L, 4);
+        cache.put(2L, 4);
+        // 1 is the youngest now
+        assertEquals(Integer.valueOf(4), cache.get(1L));
+        cache.put(3L, 4);
+
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(1L));
+        assertNotNull(cache.get(3L));
+        assertEquals(8, cache.size());
+        assertEquals(2, cache.count());
+        assertEquals(1, helper.evicted.size());
+        assertEquals(Long.valueOf(2L), helper.evicted.get(0));
+    }
+
+    @Test
+    public void replace() {
+        final SizeHelper helper = new SizeHelper();
+        final LongLruCache<Integer> cache = new LongLruCache<>(10, helper);
+        cache.put(1L, 4, 2);
+        cache.put(1L, 6, 3);
+        assertEquals(6, cache.size());
+        assertEquals(1, cache.count());
+        assertEquals(3, cache.getExtra(1L, 0));
+        assertEquals(2, helper.added.size());
+        assertEquals(1, helper.removed.size());
+        assertTrue(helper.evicted.isEmpty());
+    }
+
+    @Test
+    public void largerThanMaxSize() {
+        final SizeHelper helper = new SizeHelper();
+        final LongLruCache<Integer> cache = new LongLruCache<>(10, helper);
+        cache.put(1L, 4);
+        cache.put(2L, 11);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.count());
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+    }
+
+    @Test
+    public void removeResizeEvictAll() {
+        final SizeHelper helper = new SizeHelper();
+        final LongLruCache<Integer> cache = new LongLruCache<>(100, helper);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, 10, i);
+        }
+        assertEquals(Integer.valueOf(10), cache.remove(5L));
+        assertNull(cache.remove(5L));
+        assertEquals(90, cache.size());
+
+        cache.resize(30);
+        assertEquals(30, cache.maxSize());
+        assertEquals(3, cache.count());
+        // The youngest are kept
+        for (int i = 7; i < 10; i++) {
+            assertEquals(i, cache.getExtra(i, -1));
+        }
+
+        cache.evictAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.count());
+        assertEquals(10, helper.added.size());
+        assertEquals(10, helper.evicted.size() + helper.removed.size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void putNull() {
+        new LongLruCache<>(10, new SizeHelper()).put(1L, null);
+    }
+
+    // Slots are reused after removal and the table grows,
+    // the cache always matches a LinkedHashMap in access order
+    @Test
+    public void randomOperations() {
+        final Random random = new Random(3);
+        final LongLruCache<Integer> cache = new LongLruCache<>(200, new SizeHelper());
+        final ReferenceCache expected = new ReferenceCache(200);
+        for (int i = 0; i < 20000; i++) {
+            final long key = random.nextInt(96);
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                case 2: {
+                    final int value = 1 + random.nextInt(10);
+                    cache.put(key, value, 1);
+                    expected.put(key, value);
+                    break;
+                }
+                case 3:
+                case 4:
+                case 5:
+                    assertEquals(expected.map.get(key), cache.get(key));
+                    break;
+                case 6:
+                    assertEquals(expected.remove(key), cache.remove(key));
+                    break;
+                default: {
+                    final long maxSize = 50 + random.nextInt(300);
+                    cache.resize(maxSize);
+                    expected.maxSize = maxSize;
+                    expected.trimToSize(maxSize);
+                    break;
+                }
+            }
+            if (i % 500 == 0) {
+                assertSameContent(expected, cache, 96);
+            }
+        }
+        assertSameContent(expected, cache, 96);
+    }
+
+    // Evicts the largest key, records keys it chooses from
+    private static class MaxKeyPolicy implements ImageCachePolicy {
+
+        final List<long[]> choices = new ArrayList<>();
+
+        @Override
+        public void onCurrentPage(int chapter, int index) {}
+
+        @Override
+        public void onAccess(long key) {}
+
+        @Override
+        public int selectVictim(Keys keys) {
+            final long[] choice = new long[keys.count()];
+            for (int i = 0; i < choice.length; i++) {
+                choice[i] = keys.get(i);
+            }
+            choices.add(choice);
+            return maxIndex(keys);
+        }
+
+        static int maxIndex(Keys keys) {
+            int victim = 0;
+            for (int i = 1, count = keys.count(); i < count; i++) {
+                if (keys.get(i) > keys.get(victim)) {
+                    victim = i;
+                }
+            }
+            return victim;
+        }
+    }
+
+    @Test
+    public void policyChoosesFromAccessOrder() {
+        final MaxKeyPolicy policy = new MaxKeyPolicy();
+        final LongLruCache<Integer> cache = new LongLruCache<>(40, new SizeHelper());
+        cache.setPolicy(policy);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, 10);
+        }
+        cache.get(0L);
+        cache.put(4L, 10);
+        // The new one is the largest, it's evicted at once
+        assertNull(cache.get(4L));
+
+        cache.resize(20);
+        assertEquals(2, cache.count());
+        assertNotNull(cache.get(0L));
+        assertNotNull(cache.get(1L));
+
+        // Each choice sees keys left
+        assertEquals(3, policy.choices.size());
+        assertArrayEquals(new long[] {1, 2, 3, 0, 4}, policy.choices.get(0));
+        assertArrayEquals(new long[] {1, 2, 3, 0}, policy.choices.get(1));
+        assertArrayEquals(new long[] {1, 2, 0}, policy.choices.get(2));
+
+        // Nothing to choose when all entries go
+        cache.evictAll();
+        assertEquals(0, cache.count());
+        assertEquals(3, policy.choices.size());
+    }
+
+    @Test
+    public void randomOperationsWithPolicy() {
+        final Random random = new Random(8);
+        final LongLruCache<Integer> cache = new LongLruCache<>(200, new SizeHelper());
+        cache.setPolicy(new MaxKeyPolicy() {
+            @Override
+            public int selectVictim(Keys keys) {
+                // Don't record
+                return maxIndex(keys);
+            }
+        });
+        // Evicts the largest key too
+        final TreeMap<Long, Integer> expected = new TreeMap<>();
+        long size = 0;
+        for (int i = 0; i < 20000; i++) {
+            final long key = random.nextInt(96);
+            long maxSize = cache.maxSize();
+            if (random.nextInt(8) == 0) {
+                maxSize = 50 + random.nextInt(300);
+                cache.resize(maxSize);
+            } else {
+                final int value = 1 + random.nextInt(10);
+                cache.put(key, value);
+                final Integer old = expected.put(key, value);
+                size += value - (old != null ? old : 0);
+            }
+            while (size > maxSize) {
+                size -= expected.pollLastEntry().getValue();
+            }
+            assertEquals(size, cache.size());
+            assertEquals(expected.size(), cache.count());
+            if (i % 500 == 0) {
+                for (long k = 0; k < 96; k++) {
+                    assertEquals(expected.containsKey(k) ? 0 : -1, cache.getExtra(k, -1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void removedOutOfLock() {
+        final List<String> calls = new ArrayList<>();
+        final LongLruCache<Integer>[] holder = new LongLruCache[1];
+        final LongLruCache<Integer> cache = new LongLruCache<>(20, new LongLruCache.Helper<Integer>() {
+            @Override
+            public int sizeOf(long key, Integer value) {
+                return value;
+            }
+
+            @Override
+            public void onEntryAdded(long key, Integer value) {
+                assertTrue(Thread.holdsLock(holder[0]));
+                calls.add("added " + key);
+            }
+
+            @Override
+            public void onEntryRemoved(boolean evicted, long key, Integer oldValue, Integer newValue) {
+                assertFalse(Thread.holdsLock(holder[0]));
+                // The cache can be used in it
+                assertEquals(null, holder[0].get(key));
+                calls.add((evicted ? "evicted " : "removed ") + key);
+            }
+        });
+        holder[0] = cache;
+
+        cache.put(1L, 10);
+        cache.put(2L, 10);
+        cache.put(3L, 10);
+        cache.remove(2L);
+        cache.evictAll();
+        // In removing order
+        final List<String> expected = new ArrayList<>();
+        expected.add("added 1");
+        expected.add("added 2");
+        expected.add("added 3");
+        expected.add("evicted 1");
+        expected.add("removed 2");
+        expected.add("evicted 3");
+        assertEquals(expected, calls);
+    }
+
+    @Test
+    public void policyReadsKeysAtRandom() {
+        final Random random = new Random(3);
+        final LongLruCache<Integer> cache = new LongLruCache<>(100, new SizeHelper());
+        final ReferenceCache expected = new ReferenceCache(100);
+        cache.setPolicy(new ImageCachePolicy() {
+            @Override
+            public void onCurrentPage(int chapter, int index) {}
+
+            @Override
+            public void onAccess(long key) {}
+
+            @Override
+            public int selectVictim(Keys keys) {
+                final List<Long> order = new ArrayList<>(expected.map.keySet());
+                assertEquals(order.size(), keys.count());
+                for (int i = 0; i < 20; i++) {
+                    final int index = random.nextInt(order.size());
+                    assertEquals((long) order.get(index), keys.get(index));
+                }
+                // Same as no policy
+                final Iterator<Integer> eldest = expected.map.values().iterator();
+                expected.size -= eldest.next();
+                eldest.remove();
+                return 0;
+            }
+        });
+        for (int i = 0; i < 2000; i++) {
+            final long key = random.nextInt(64);
+            if (random.nextBoolean()) {
+                // The reference is updated first, the policy reads it
+                expected.map.get(key);
+                cache.get(key);
+            } else {
+                final int value = 1 + random.nextInt(10);
+                final Integer old = expected.map.put(key, value);
+                expected.size += value - (old != null ? old : 0);
+                cache.put(key, value, 1);
+            }
+        }
+        assertSameContent(expected, cache, 64);
+    }
+}
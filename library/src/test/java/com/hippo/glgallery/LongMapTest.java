@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongMapTest {
+
+    private static void assertSameContent(Map<Long, Integer> expected, LongMap<Integer> actual,
+            long keyBound) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        for (long key = -keyBound; key < keyBound; key++) {
+            assertEquals("key " + key, expected.get(key), actual.get(key));
+            assertEquals("key " + key, expected.containsKey(key), actual.containsKey(key));
+        }
+    }
+
+    @Test
+    public void putGetRemove() {
+        final LongMap<Integer> map = new LongMap<>();
+        assertNull(map.put(1L, 1));
+        assertNull(map.put(1L << 32, 2));
+        assertEquals(Integer.valueOf(1), map.put(1L, 3));
+        assertEquals(2, map.size());
+        assertEquals(Integer.valueOf(3), map.get(1L));
+        assertEquals(Integer.valueOf(2), map.get(1L << 32));
+        assertNull(map.get(2L));
+
+        assertEquals(Integer.valueOf(3), map.remove(1L));
+        assertNull(map.remove(1L));
+        assertFalse(map.containsKey(1L));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1L << 32));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void putNull() {
+        new LongMap<Integer>().put(1L, null);
+    }
+
+    @Test
+    public void grow() {
+        final LongMap<Integer> map = new LongMap<>();
+        final Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            final long key = ((long) (i % 7) << 32) | i;
+            map.put(key, i);
+            expected.put(key, i);
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    // Probe chains wrap around the end of the small table,
+    // removing from them shifts entries backward across it
+    @Test
+    public void removeKeepsProbeChains() {
+        final Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            final LongMap<Integer> map = new LongMap<>();
+            final Map<Long, Integer> expected = new HashMap<>();
+            // At most MIN_CAPACITY keys, the table doesn't grow
+            for (int i = 0; i < 8; i++) {
+                final long key = random.nextInt(64) - 32;
+                map.put(key, i);
+                expected.put(key, i);
+            }
+            while (!expected.isEmpty()) {
+                final long key = expected.keySet().iterator().next();
+                assertEquals(expected.remove(key), map.remove(key));
+                assertSameContent(expected, map, 32);
+            }
+        }
+    }
+
+    @Test
+    public void randomOperations() {
+        final Random random = new Random(2);
+        final LongMap<Integer> map = new LongMap<>();
+        final Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            final long key = random.nextInt(128) - 64;
+            switch (random.nextInt(3)) {
+                case 0:
+                case 1:
+                    assertEquals(expected.put(key, i), map.put(key, i));
+                    break;
+                default:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+            }
+            if (i % 1000 == 0) {
+                assertSameContent(expected, map, 64);
+            }
+        }
+        assertSameContent(expected, map, 64);
+    }
+}
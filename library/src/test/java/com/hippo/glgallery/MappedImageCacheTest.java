@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import android.support.annotation.NonNull;
+
+import com.hippo.image.ImageData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MappedImageCacheTest {
+
+    private static final int WIDTH = 2;
+    private static final int HEIGHT = 3;
+    private static final int BYTE_COUNT = 16;
+    // Header and pixels
+    private static final int FILE_SIZE = 12 + BYTE_COUNT;
+
+    // Writes the seed to pixels, records pixels it reads
+    private static class RecordingCodec implements MappedImageCache.Codec {
+
+        byte seed;
+        byte[] decoded;
+        int width;
+        int height;
+
+        @Override
+        public int getByteCount(@NonNull ImageData image) {
+            return BYTE_COUNT;
+        }
+
+        @Override
+        public boolean encode(@NonNull ImageData image, @NonNull ByteBuffer buffer) {
+            for (int i = 0; i < BYTE_COUNT; i++) {
+                buffer.put((byte) (seed + i));
+            }
+            return true;
+        }
+
+        @Override
+        public ImageData decode(@NonNull ByteBuffer buffer, int width, int height) {
+            decoded = new byte[buffer.remaining()];
+            buffer.get(decoded);
+            this.width = width;
+            this.height = height;
+            // No image on JVM, it looks like a broken file
+            return null;
+        }
+    }
+
+    private File mDir;
+    private final RecordingCodec mCodec = new RecordingCodec();
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("MappedImageCacheTest", "");
+        assertTrue(mDir.delete());
+        assertTrue(mDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    private int countFiles() {
+        final File[] files = mDir.listFiles();
+        return files != null ? files.length : 0;
+    }
+
+    private int countTempFiles() {
+        int count = 0;
+        final File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void roundTrip() {
+        final MappedImageCache cache = new MappedImageCache(mDir, 1024, mCodec);
+        mCodec.seed = 7;
+        assertTrue(cache.put(1L, null, WIDTH, HEIGHT, 4));
+        assertTrue(cache.contains(1L));
+        assertEquals(4, cache.getSampleSize(1L));
+        assertEquals(FILE_SIZE, cache.size());
+        assertEquals(0, countTempFiles());
+
+        // Read by a new instance, like a new session
+        final MappedImageCache reloaded = new MappedImageCache(mDir, 1024, mCodec);
+        assertTrue(reloaded.contains(1L));
+        assertEquals(4, reloaded.getSampleSize(1L));
+
+        assertNull(reloaded.get(1L));
+        assertEquals(WIDTH, mCodec.width);
+        assertEquals(HEIGHT, mCodec.height);
+        assertEquals(BYTE_COUNT, mCodec.decoded.length);
+        for (int i = 0; i < BYTE_COUNT; i++) {
+            assertEquals((byte) (7 + i), mCodec.decoded[i]);
+        }
+    }
+
+    @Test
+    public void dropUndecodable() {
+        final MappedImageCache cache = new MappedImageCache(mDir, 1024, mCodec);
+        assertTrue(cache.put(1L, null, WIDTH, HEIGHT, 1));
+        assertNull(cache.get(1L));
+        assertFalse(cache.contains(1L));
+        assertEquals(0, countFiles());
+        assertEquals(0, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void replace() {
+        final MappedImageCache cache = new MappedImageCache(mDir, 1024, mCodec);
+        assertTrue(cache.put(1L, null, WIDTH, HEIGHT, 4));
+        assertTrue(cache.put(1L, null, WIDTH, HEIGHT, 1));
+        assertEquals(1, cache.getSampleSize(1L));
+        assertEquals(1, countFiles());
+        assertEquals(FILE_SIZE, cache.size());
+    }
+
+    @Test
+    public void evict() {
+        // Two files fit
+        final MappedImageCache cache = new MappedImageCache(mDir, FILE_SIZE * 2 + 1, mCodec);
+        assertTrue(cache.put(1L, null, WIDTH, HEIGHT, 1));
+        assertTrue(cache.put(2L, null, WIDTH, HEIGHT, 1));
+        assertTrue(cache.put(3L, null, WIDTH, HEIGHT, 1));
+        assertFalse(cache.contains(1L));
+        assertTrue(cache.contains(2L));
+        assertTrue(cache.contains(3L));
+        assertEquals(2, countFiles());
+    }
+
+    @Test
+    public void tooLarge() {
+        final MappedImageCache cache = new MappedImageCache(mDir, FILE_SIZE - 1, mCodec);
+        assertFalse(cache.put(1L, null, WIDTH, HEIGHT, 1));
+        assertFalse(cache.contains(1L));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void deleteTempOnLoad() throws IOException {
+        assertTrue(new File(mDir, "1_1-123.tmp").createNewFile());
+        assertTrue(new File(mDir, "broken").createNewFile());
+        final MappedImageCache cache = new MappedImageCache(mDir, 1024, mCodec);
+        assertEquals(0, countFiles());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void putSamePageConcurrently() throws InterruptedException {
+        final MappedImageCache cache = new MappedImageCache(mDir, 1024, mCodec);
+        final AtomicInteger written = new AtomicInteger();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 50; j++) {
+                        if (cache.put(1L, null, WIDTH, HEIGHT, 2)) {
+                            written.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threads.length * 50, written.get());
+        assertTrue(cache.contains(1L));
+        assertEquals(1, countFiles());
+        assertEquals(0, countTempFiles());
+        assertEquals(FILE_SIZE, cache.size());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PageBitsTest {
+
+    private static final int CHAPTER_BOUND = 6;
+    private static final int PAGE_BOUND = 200;
+
+    private static long genKey(int chapter, int page) {
+        return ((long) chapter) << 32 | page;
+    }
+
+    private static void assertMatches(Set<Long> expected, PageBits actual) {
+        for (int chapter = -1; chapter <= CHAPTER_BOUND; chapter++) {
+            for (int page = -1; page <= PAGE_BOUND; page++) {
+                assertEquals("chapter " + chapter + ", page " + page,
+                        expected.contains(genKey(chapter, page)), actual.get(chapter, page));
+            }
+        }
+    }
+
+    @Test
+    public void emptyBits() {
+        final PageBits bits = new PageBits();
+        assertFalse(bits.get(0, 0));
+        assertFalse(bits.get(-1, 0));
+        assertFalse(bits.get(0, -1));
+        // Clearing doesn't allocate, and nothing to truncate
+        bits.set(3, 100, false);
+        bits.truncate(3, 0);
+        bits.setChapterCount(0);
+        assertFalse(bits.get(3, 100));
+    }
+
+    // Words grow when a page of a larger word is set,
+    // bits in words already allocated are kept
+    @Test
+    public void growWords() {
+        final PageBits bits = new PageBits();
+        bits.set(2, 0, true);
+        bits.set(2, 63, true);
+        bits.set(2, 64, true);
+        bits.set(2, 190, true);
+        bits.set(5, 1, true);
+        assertTrue(bits.get(2, 0));
+        assertTrue(bits.get(2, 63));
+        assertTrue(bits.get(2, 64));
+        assertTrue(bits.get(2, 190));
+        assertFalse(bits.get(2, 191));
+        assertFalse(bits.get(2, 1000));
+        assertFalse(bits.get(3, 0));
+        assertTrue(bits.get(5, 1));
+    }
+
+    // Page counts at and around word boundaries
+    @Test
+    public void truncate() {
+        final int[] pageCounts = {0, 1, 63, 64, 65, 128, 129, 500};
+        for (int pageCount : pageCounts) {
+            final PageBits bits = new PageBits();
+            for (int page = 0; page < PAGE_BOUND; page++) {
+                bits.set(0, page, true);
+            }
+            bits.truncate(0, pageCount);
+            for (int page = 0; page < PAGE_BOUND; page++) {
+                assertEquals("page count " + pageCount + ", page " + page,
+                        page < pageCount, bits.get(0, page));
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void setNegative() {
+        new PageBits().set(0, -1, true);
+    }
+
+    @Test
+    public void randomOperations() {
+        final Random random = new Random(7);
+        final PageBits bits = new PageBits();
+        final Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            final int chapter = random.nextInt(CHAPTER_BOUND);
+            final int page = random.nextInt(PAGE_BOUND);
+            switch (random.nextInt(10)) {
+                case 0: {
+                    final int pageCount = random.nextInt(PAGE_BOUND + 1);
+                    bits.truncate(chapter, pageCount);
+                    for (Iterator<Long> iterator = expected.iterator(); iterator.hasNext(); ) {
+                        final long key = iterator.next();
+                        if ((int) (key >>> 32) == chapter && (int) key >= pageCount) {
+                            iterator.remove();
+                        }
+                    }
+                    break;
+                }
+                case 1: {
+                    final int chapterCount = random.nextInt(CHAPTER_BOUND + 1);
+                    bits.setChapterCount(chapterCount);
+                    for (Iterator<Long> iterator = expected.iterator(); iterator.hasNext(); ) {
+                        if ((int) (iterator.next() >>> 32) >= chapterCount) {
+                            iterator.remove();
+                        }
+                    }
+                    break;
+                }
+                case 2:
+                case 3:
+                case 4:
+                    bits.set(chapter, page, false);
+                    expected.remove(genKey(chapter, page));
+                    break;
+                default:
+                    bits.set(chapter, page, true);
+                    expected.add(genKey(chapter, page));
+                    break;
+            }
+            if (i % 100 == 0) {
+                assertMatches(expected, bits);
+            }
+        }
+        assertMatches(expected, bits);
+    }
+}
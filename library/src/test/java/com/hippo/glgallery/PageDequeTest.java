@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PageDequeTest {
+
+    private static GalleryPageView newPage(long id) {
+        final GalleryPageView page = new GalleryPageView(null, new GalleryPageView.Params(), null);
+        page.setPageId(id);
+        return page;
+    }
+
+    // Holes are null in expected
+    private static void assertSameContent(List<GalleryPageView> expected, PageDeque actual,
+            Map<Long, GalleryPageView> pages) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        for (int i = 0, n = expected.size(); i < n; i++) {
+            assertSame("index " + i, expected.get(i), actual.get(i));
+        }
+        for (Map.Entry<Long, GalleryPageView> entry : pages.entrySet()) {
+            final int index = expected.indexOf(entry.getValue());
+            assertEquals("id " + entry.getKey(), index, actual.indexOf(entry.getKey()));
+            assertSame("id " + entry.getKey(), index < 0 ? null : entry.getValue(),
+                    actual.find(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void addAndRemoveBothEnds() {
+        final PageDeque deque = new PageDeque();
+        final GalleryPageView a = newPage(1);
+        final GalleryPageView b = newPage(2);
+        final GalleryPageView c = newPage(3);
+        deque.addLast(b);
+        deque.addFirst(a);
+        deque.addLast(c);
+
+        assertEquals(3, deque.size());
+        assertSame(a, deque.getFirst());
+        assertSame(c, deque.getLast());
+        assertEquals(0, deque.indexOf(1));
+        assertEquals(2, deque.indexOf(3));
+
+        assertSame(a, deque.removeFirst());
+        assertEquals(-1, deque.indexOf(1));
+        assertEquals(0, deque.indexOf(2));
+        assertSame(c, deque.removeLast());
+        assertSame(b, deque.removeFirst());
+        assertTrue(deque.isEmpty());
+        assertNull(deque.find(2));
+    }
+
+    @Test
+    public void takeLeavesHole() {
+        final PageDeque deque = new PageDeque();
+        for (int i = 0; i < 3; i++) {
+            deque.addLast(newPage(i));
+        }
+        final GalleryPageView page = deque.find(1);
+        assertSame(page, deque.take(1));
+        assertNull(deque.take(1));
+        assertEquals(3, deque.size());
+        assertNull(deque.get(1));
+        assertEquals(-1, deque.indexOf(1));
+        assertEquals(2, deque.indexOf(2));
+
+        // The same id could be added again
+        deque.addFirst(page);
+        assertEquals(0, deque.indexOf(1));
+        assertEquals(3, deque.indexOf(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void duplicateId() {
+        final PageDeque deque = new PageDeque();
+        deque.addLast(newPage(1));
+        deque.addFirst(newPage(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getFirstOfEmpty() {
+        new PageDeque().getFirst();
+    }
+
+    // Pages wrap around the end of the ring in both directions,
+    // and the ring grows while it's wrapped
+    @Test
+    public void randomOperations() {
+        final Random random = new Random(4);
+        final PageDeque deque = new PageDeque();
+        final List<GalleryPageView> expected = new ArrayList<>();
+        final Map<Long, GalleryPageView> pages = new HashMap<>();
+        long nextId = 0;
+        for (int i = 0; i < 20000; i++) {
+            // Keep it around the initial capacity most of time
+            final boolean grow = expected.size() < 12 || random.nextInt(20) == 0;
+            switch (random.nextInt(grow ? 2 : 5)) {
+                case 0: {
+                    final GalleryPageView page = newPage(nextId);
+                    pages.put(nextId++, page);
+                    deque.addFirst(page);
+                    expected.add(0, page);
+                    break;
+                }
+                case 1: {
+                    final GalleryPageView page = newPage(nextId);
+                    pages.put(nextId++, page);
+                    deque.addLast(page);
+                    expected.add(page);
+                    break;
+                }
+                case 2:
+                    if (!expected.isEmpty()) {
+                        assertSame(expected.remove(0), deque.removeFirst());
+                    }
+                    break;
+                case 3:
+                    if (!expected.isEmpty()) {
+                        assertSame(expected.remove(expected.size() - 1), deque.removeLast());
+                    }
+                    break;
+                default: {
+                    final int index = random.nextInt(expected.size() + 1);
+                    if (index < expected.size()) {
+                        final GalleryPageView page = expected.get(index);
+                        if (page != null) {
+                            assertSame(page, deque.take(page.getPageId()));
+                            expected.set(index, null);
+                        }
+                    }
+                    break;
+                }
+            }
+            if (pages.size() > 256) {
+                // Forget pages not in deque, keeps the check fast
+                pages.values().retainAll(expected);
+            }
+            if (i % 100 == 0) {
+                assertSameContent(expected, deque, pages);
+            }
+        }
+        assertSameContent(expected, deque, pages);
+
+        deque.clear();
+        assertTrue(deque.isEmpty());
+        for (long id : pages.keySet()) {
+            assertNull(deque.find(id));
+        }
+    }
+}
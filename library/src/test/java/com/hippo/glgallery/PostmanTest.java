@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PostmanTest {
+
+    private static final int METHOD_SCROLL = 0;
+    private static final int METHOD_TAP = 1;
+    private static final int METHOD_PAGE = 2;
+
+    // Written like postmangen output, records handled messages
+    private static class TestPostman extends Postman {
+
+        final List<String> handled = new ArrayList<>();
+
+        TestPostman() {
+            super(3, 3);
+        }
+
+        // {"scroll", "float+", "float+", "float"}
+        void postScroll(float arg0, float arg1, float arg2) {
+            synchronized (this) {
+                int message = getLastMessage(METHOD_SCROLL);
+                if (message != INVALID_MESSAGE) {
+                    addFloat(message, 0, arg0);
+                    addFloat(message, 1, arg1);
+                    putFloat(message, 2, arg2);
+                } else {
+                    message = obtainMessage(METHOD_SCROLL);
+                    putFloat(message, 0, arg0);
+                    putFloat(message, 1, arg1);
+                    putFloat(message, 2, arg2);
+                }
+            }
+        }
+
+        // {"tap", "float"}
+        void postTap(float arg0) {
+            synchronized (this) {
+                final int message = obtainMessage(METHOD_TAP);
+                putFloat(message, 0, arg0);
+            }
+        }
+
+        // {"page", "long", "int", "boolean"}
+        void postPage(long arg0, int arg1, boolean arg2) {
+            synchronized (this) {
+                final int message = obtainMessage(METHOD_PAGE);
+                putLong(message, 0, arg0);
+                putInt(message, 1, arg1);
+                putBoolean(message, 2, arg2);
+            }
+        }
+
+        @Override
+        protected void handleMethod(int method, int message) {
+            switch (method) {
+                case METHOD_SCROLL:
+                    handled.add("scroll " + getFloat(message, 0) + " " + getFloat(message, 1)
+                            + " " + getFloat(message, 2));
+                    break;
+                case METHOD_TAP:
+                    handled.add("tap " + getFloat(message, 0));
+                    break;
+                case METHOD_PAGE:
+                    handled.add("page " + getLong(message, 0) + " " + getInt(message, 1)
+                            + " " + getBoolean(message, 2));
+                    break;
+            }
+        }
+
+        // Handle pending messages, return and clear handled ones
+        List<String> handle() {
+            onHandle(null);
+            final List<String> result = new ArrayList<>(handled);
+            handled.clear();
+            return result;
+        }
+    }
+
+    @Test
+    public void coalesce() {
+        final TestPostman postman = new TestPostman();
+        postman.postScroll(1.0f, 2.0f, 10.0f);
+        postman.postScroll(3.0f, 4.0f, 20.0f);
+        postman.postScroll(5.0f, 6.0f, 30.0f);
+
+        final List<String> handled = postman.handle();
+        assertEquals(1, handled.size());
+        // Summed and latest
+        assertEquals("scroll 9.0 12.0 30.0", handled.get(0));
+    }
+
+    @Test
+    public void coalesceOnlyConsecutive() {
+        final TestPostman postman = new TestPostman();
+        postman.postScroll(1.0f, 1.0f, 1.0f);
+        postman.postTap(5.0f);
+        postman.postScroll(2.0f, 2.0f, 2.0f);
+        postman.postScroll(3.0f, 3.0f, 3.0f);
+
+        final List<String> handled = postman.handle();
+        assertEquals(3, handled.size());
+        assertEquals("scroll 1.0 1.0 1.0", handled.get(0));
+        assertEquals("tap 5.0", handled.get(1));
+        assertEquals("scroll 5.0 5.0 3.0", handled.get(2));
+    }
+
+    @Test
+    public void noCoalesceWithHandled() {
+        final TestPostman postman = new TestPostman();
+        postman.postScroll(1.0f, 1.0f, 1.0f);
+        assertEquals("scroll 1.0 1.0 1.0", postman.handle().get(0));
+
+        // The buffer is reused, nothing left to add to
+        postman.postScroll(2.0f, 2.0f, 2.0f);
+        assertEquals("scroll 2.0 2.0 2.0", postman.handle().get(0));
+        assertTrue(postman.handle().isEmpty());
+    }
+
+    @Test
+    public void typedArguments() {
+        final TestPostman postman = new TestPostman();
+        postman.postPage(Long.MAX_VALUE, -3, true);
+        postman.postPage(1L << 40, Integer.MIN_VALUE, false);
+
+        final List<String> handled = postman.handle();
+        assertEquals("page " + Long.MAX_VALUE + " -3 true", handled.get(0));
+        assertEquals("page " + (1L << 40) + " " + Integer.MIN_VALUE + " false", handled.get(1));
+    }
+
+    @Test
+    public void grow() {
+        final TestPostman postman = new TestPostman();
+        for (int i = 0; i < 100; i++) {
+            postman.postTap(i);
+            postman.postPage(i, i, i % 2 == 0);
+        }
+
+        final List<String> handled = postman.handle();
+        assertEquals(200, handled.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("tap " + (float) i, handled.get(i * 2));
+            assertEquals("page " + i + " " + i + " " + (i % 2 == 0), handled.get(i * 2 + 1));
+        }
+    }
+
+    @Test
+    public void postInHandling() {
+        final TestPostman postman = new TestPostman() {
+            @Override
+            protected void handleMethod(int method, int message) {
+                super.handleMethod(method, message);
+                if (method == METHOD_TAP) {
+                    postScroll(1.0f, 1.0f, 1.0f);
+                }
+            }
+        };
+        postman.postTap(1.0f);
+
+        assertEquals(1, postman.handle().size());
+        // Handled in next round
+        final List<String> handled = postman.handle();
+        assertEquals(1, handled.size());
+        assertEquals("scroll 1.0 1.0 1.0", handled.get(0));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PrefetcherTest {
+
+    private static List<String> list(String... calls) {
+        final List<String> list = new ArrayList<>();
+        Collections.addAll(list, calls);
+        return list;
+    }
+
+    @Test
+    public void trackedPageNotPrefetchedAgain() {
+        final TestProvider provider = new TestProvider();
+        final Prefetcher prefetcher = new Prefetcher(provider);
+        assertFalse(prefetcher.prefetch(0, 1, 0));
+        assertFalse(prefetcher.prefetch(0, 1, 100));
+        assertEquals(list("prefetch 0:1"), provider.takeCalls());
+
+        // Decoded, it can be prefetched again
+        prefetcher.onPageFailed(0, 1);
+        prefetcher.prefetch(0, 1, 200);
+        assertEquals(list("prefetch 0:1"), provider.takeCalls());
+    }
+
+    @Test
+    public void eldestCancelledInOrder() {
+        final TestProvider provider = new TestProvider();
+        final Prefetcher prefetcher = new Prefetcher(provider);
+        for (int i = 0; i < 32; i++) {
+            prefetcher.prefetch(0, i, i);
+        }
+        prefetcher.onPageSucceed(0, 5, 40);
+        provider.takeCalls();
+
+        // Room for one
+        prefetcher.prefetch(0, 32, 50);
+        assertEquals(list("prefetch 0:32"), provider.takeCalls());
+        // The eldest ones are dropped and cancelled, 5 is gone
+        final List<String> cancelled = new ArrayList<>();
+        for (int i = 33; i < 39; i++) {
+            prefetcher.prefetch(0, i, 50);
+        }
+        for (final String call : provider.takeCalls()) {
+            if (call.startsWith("cancelPrefetch")) {
+                cancelled.add(call);
+            }
+        }
+        assertEquals(list("cancelPrefetch 0:0", "cancelPrefetch 0:1", "cancelPrefetch 0:2",
+                "cancelPrefetch 0:3", "cancelPrefetch 0:4", "cancelPrefetch 0:6"), cancelled);
+    }
+
+    @Test
+    public void expireTrackedPages() {
+        final TestProvider provider = new TestProvider();
+        final Prefetcher prefetcher = new Prefetcher(provider);
+        prefetcher.prefetch(0, 1, 0);
+        prefetcher.prefetch(0, 2, 6000);
+        provider.takeCalls();
+
+        // Never notified, forgotten after a while
+        prefetcher.prefetch(0, 1, 10000);
+        prefetcher.prefetch(0, 2, 10001);
+        assertEquals(list(), provider.takeCalls());
+        prefetcher.prefetch(0, 1, 10001);
+        prefetcher.prefetch(0, 2, 10001);
+        assertEquals(list("prefetch 0:1"), provider.takeCalls());
+        prefetcher.prefetch(0, 2, 16001);
+        assertEquals(list("prefetch 0:2"), provider.takeCalls());
+    }
+
+    @Test
+    public void cancelOnReverse() {
+        final TestProvider provider = new TestProvider();
+        final Prefetcher prefetcher = new Prefetcher(provider);
+        prefetcher.onUpdateCurrentPage(0, 5, 0);
+        prefetcher.prefetch(0, 6, 0);
+        prefetcher.prefetch(0, 7, 0);
+        prefetcher.onPageSucceed(0, 6, 100);
+        prefetcher.onUpdateCurrentPage(0, 6, 1000);
+        assertEquals(Prefetcher.DIRECTION_FORWARD, prefetcher.getDirection());
+        provider.takeCalls();
+
+        prefetcher.onUpdateCurrentPage(0, 5, 2000);
+        assertEquals(Prefetcher.DIRECTION_BACKWARD, prefetcher.getDirection());
+        assertEquals(list("cancelPrefetch 0:7"), provider.takeCalls());
+        // Nothing left
+        prefetcher.cancelAll();
+        assertEquals(list(), provider.takeCalls());
+    }
+
+    @Test
+    public void prefetchCountFollowsLatency() {
+        final TestProvider provider = new TestProvider();
+        final Prefetcher prefetcher = new Prefetcher(provider);
+        assertEquals(Prefetcher.MIN_PAGES, prefetcher.getPrefetchCount());
+
+        // 0.5 page per second after smoothing
+        prefetcher.onUpdateCurrentPage(0, 0, 0);
+        prefetcher.onUpdateCurrentPage(0, 1, 1000);
+        // 0.2 second latency by default
+        assertEquals(3, prefetcher.getPrefetchCount());
+
+        // Latency goes halfway to 10 seconds each time, 5.1 then 7.55
+        prefetcher.prefetch(0, 2, 1000);
+        prefetcher.onPageSucceed(0, 2, 11000);
+        assertEquals(6, prefetcher.getPrefetchCount());
+        prefetcher.prefetch(0, 3, 11000);
+        prefetcher.onPageSucceed(0, 3, 21000);
+        assertEquals(8, prefetcher.getPrefetchCount());
+
+        // Failed pages don't count
+        prefetcher.prefetch(0, 4, 21000);
+        prefetcher.onPageFailed(0, 4);
+        assertEquals(8, prefetcher.getPrefetchCount());
+
+        // Idle, velocity is halved
+        prefetcher.onUpdateCurrentPage(0, 2, 100000);
+        assertEquals(5, prefetcher.getPrefetchCount());
+    }
+
+    @Test
+    public void prefetchCountClamped() {
+        final Prefetcher prefetcher = new Prefetcher(new TestProvider());
+        for (int i = 0; i < 20; i++) {
+            prefetcher.onUpdateCurrentPage(0, i, i * 10);
+        }
+        assertEquals(Prefetcher.MAX_PAGES, prefetcher.getPrefetchCount());
+    }
+}
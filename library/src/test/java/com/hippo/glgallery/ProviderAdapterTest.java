@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProviderAdapterTest {
+
+    // What a page view shows, follows ProviderAdapter.bindThumb()
+    private static class PageState {
+
+        boolean showingPage;
+        boolean showingThumb;
+        int sampleSize;
+
+        boolean offerThumb(int thumbSampleSize) {
+            if (ProviderAdapter.canShowThumb(showingPage, showingThumb,
+                    sampleSize, thumbSampleSize)) {
+                showingThumb = true;
+                sampleSize = thumbSampleSize;
+                return true;
+            }
+            return false;
+        }
+
+        void showPage(int pageSampleSize) {
+            showingPage = true;
+            showingThumb = false;
+            sampleSize = pageSampleSize;
+        }
+    }
+
+    @Test
+    public void thumbThenPreview() {
+        final PageState state = new PageState();
+        assertTrue(state.offerThumb(8));
+        // The preview is finer
+        assertTrue(state.offerThumb(2));
+        assertEquals(2, state.sampleSize);
+        state.showPage(1);
+        assertFalse(state.offerThumb(2));
+        assertFalse(state.offerThumb(8));
+        assertEquals(1, state.sampleSize);
+    }
+
+    @Test
+    public void previewThenThumb() {
+        final PageState state = new PageState();
+        assertTrue(state.offerThumb(2));
+        // The late thumbnail is coarser
+        assertFalse(state.offerThumb(8));
+        assertEquals(2, state.sampleSize);
+        // The same one again, like a rebind
+        assertTrue(state.offerThumb(2));
+        assertEquals(2, state.sampleSize);
+    }
+
+    @Test
+    public void pageFirst() {
+        final PageState state = new PageState();
+        state.showPage(4);
+        // Even a finer thumbnail never replaces the page
+        assertFalse(state.offerThumb(2));
+        assertFalse(state.offerThumb(8));
+        assertTrue(state.showingPage);
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RequestMetricsTest {
+
+    private static final long KEY = 3L;
+
+    private static long counter(RequestMetrics metrics, @RequestMetrics.Counter int counter) {
+        return metrics.snapshot(false).getCounter(counter);
+    }
+
+    private static long count(RequestMetrics metrics, @RequestMetrics.HistogramType int type) {
+        return metrics.snapshot(false).getHistogram(type).getTotalCount();
+    }
+
+    @Test
+    public void histogramBuckets() {
+        final RequestMetrics.Histogram histogram = new RequestMetrics.Histogram();
+        histogram.add(0);
+        histogram.add(-5);
+        histogram.add(1);
+        histogram.add(2);
+        histogram.add(3);
+        histogram.add(4);
+        histogram.add(Long.MAX_VALUE / 2);
+
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(1, histogram.getCount(1));
+        assertEquals(2, histogram.getCount(2));
+        assertEquals(1, histogram.getCount(3));
+        assertEquals(1, histogram.getCount(RequestMetrics.Histogram.BUCKET_COUNT - 1));
+        assertEquals(7, histogram.getTotalCount());
+        assertEquals(Long.MAX_VALUE / 2, histogram.getMax());
+    }
+
+    @Test
+    public void histogramBounds() {
+        assertEquals(1, RequestMetrics.Histogram.getUpperBound(0));
+        assertEquals(2, RequestMetrics.Histogram.getUpperBound(1));
+        assertEquals(1L << 14, RequestMetrics.Histogram.getUpperBound(14));
+        assertEquals(Long.MAX_VALUE,
+                RequestMetrics.Histogram.getUpperBound(RequestMetrics.Histogram.BUCKET_COUNT - 1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void histogramBoundOutOfRange() {
+        RequestMetrics.Histogram.getUpperBound(RequestMetrics.Histogram.BUCKET_COUNT);
+    }
+
+    @Test
+    public void histogramPercentile() {
+        final RequestMetrics.Histogram histogram = new RequestMetrics.Histogram();
+        assertEquals(0, histogram.getPercentile(0.5f));
+        assertEquals(0.0f, histogram.getMean(), 0.0f);
+
+        histogram.add(0);
+        histogram.add(1);
+        histogram.add(3);
+        histogram.add(100);
+        assertEquals(0, histogram.getPercentile(0.0f));
+        assertEquals(0, histogram.getPercentile(0.25f));
+        assertEquals(1, histogram.getPercentile(0.5f));
+        assertEquals(3, histogram.getPercentile(0.75f));
+        // The bucket is [64, 128), no larger than the max
+        assertEquals(100, histogram.getPercentile(1.0f));
+        assertEquals(26.0f, histogram.getMean(), 0.0f);
+        assertEquals(104, histogram.getSum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogramInvalidPercentile() {
+        new RequestMetrics.Histogram().getPercentile(1.5f);
+    }
+
+    @Test
+    public void histogramCopy() {
+        final RequestMetrics.Histogram histogram = new RequestMetrics.Histogram();
+        histogram.add(5);
+        final RequestMetrics.Histogram copy = histogram.copy();
+        histogram.add(6);
+        histogram.clear();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(1, copy.getTotalCount());
+        assertEquals(1, copy.getCount(3));
+        assertEquals(5, copy.getMax());
+    }
+
+    @Test
+    public void requestLifecycle() {
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.onRequest(KEY, false);
+        metrics.onWait(KEY);
+        // Only the first wait
+        metrics.onWait(KEY);
+        metrics.onSucceed(KEY);
+        metrics.onDeliver(KEY, true);
+
+        assertEquals(1, counter(metrics, RequestMetrics.COUNTER_MISS));
+        assertEquals(1, counter(metrics, RequestMetrics.COUNTER_DECODE));
+        assertEquals(1, count(metrics, RequestMetrics.HISTOGRAM_WAIT));
+        assertEquals(1, count(metrics, RequestMetrics.HISTOGRAM_SUCCEED));
+        assertEquals(1, count(metrics, RequestMetrics.HISTOGRAM_DISPLAY));
+
+        // Delivered, nothing pending
+        metrics.onSucceed(KEY);
+        metrics.onDeliver(KEY, false);
+        assertEquals(1, count(metrics, RequestMetrics.HISTOGRAM_SUCCEED));
+        assertEquals(1, count(metrics, RequestMetrics.HISTOGRAM_DISPLAY));
+    }
+
+    @Test
+    public void cancelledRequest() {
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.onRequest(KEY, false);
+        metrics.onCancel(KEY);
+        metrics.onCancel(KEY);
+        metrics.onWait(KEY);
+        metrics.onSucceed(KEY);
+
+        assertEquals(1, counter(metrics, RequestMetrics.COUNTER_CANCEL));
+        assertEquals(1, counter(metrics, RequestMetrics.COUNTER_WASTED_CANCELLED));
+        assertEquals(0, count(metrics, RequestMetrics.HISTOGRAM_WAIT));
+        assertEquals(0, count(metrics, RequestMetrics.HISTOGRAM_SUCCEED));
+        assertEquals(1.0f, metrics.snapshot(false).getCancelRate(), 0.0f);
+    }
+
+    @Test
+    public void cancelAfterSucceed() {
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.onRequest(KEY, false);
+        metrics.onSucceed(KEY);
+        // Decoded, not delivered yet
+        metrics.onCancel(KEY);
+        metrics.onDeliver(KEY, true);
+
+        assertEquals(0, counter(metrics, RequestMetrics.COUNTER_CANCEL));
+        assertEquals(1, count(metrics, RequestMetrics.HISTOGRAM_DISPLAY));
+    }
+
+    @Test
+    public void failure() {
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.onRequest(KEY, false);
+        metrics.onFailure(KEY);
+        metrics.onSucceed(KEY);
+
+        assertEquals(1, counter(metrics, RequestMetrics.COUNTER_FAILURE));
+        assertEquals(0, count(metrics, RequestMetrics.HISTOGRAM_SUCCEED));
+    }
+
+    @Test
+    public void wastedEvicted() {
+        final RequestMetrics metrics = new RequestMetrics();
+        // Prefetched pages
+        metrics.onSucceed(1L);
+        metrics.onDeliver(1L, true);
+        metrics.onSucceed(2L);
+        metrics.onDeliver(2L, true);
+        metrics.onSucceed(3L);
+        metrics.onDeliver(3L, true);
+
+        metrics.onRequest(1L, true);
+        metrics.onUse(2L);
+        metrics.onRemove(1L, true);
+        metrics.onRemove(2L, true);
+        // Removed, not evicted
+        metrics.onRemove(3L, false);
+        assertEquals(0, counter(metrics, RequestMetrics.COUNTER_WASTED_EVICTED));
+
+        metrics.onSucceed(4L);
+        metrics.onDeliver(4L, true);
+        metrics.onRemove(4L, true);
+        assertEquals(1, counter(metrics, RequestMetrics.COUNTER_WASTED_EVICTED));
+    }
+
+    @Test
+    public void hitRate() {
+        final RequestMetrics metrics = new RequestMetrics();
+        assertEquals(1.0f, metrics.snapshot(false).getHitRate(), 0.0f);
+        assertEquals(0.0f, metrics.snapshot(false).getCancelRate(), 0.0f);
+        metrics.onRequest(1L, true);
+        metrics.onRequest(2L, true);
+        metrics.onRequest(3L, true);
+        metrics.onRequest(4L, false);
+        assertEquals(0.75f, metrics.snapshot(false).getHitRate(), 0.0f);
+    }
+
+    @Test
+    public void snapshotReset() {
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.onRequest(KEY, false);
+        metrics.onWait(KEY);
+
+        final RequestMetrics.Snapshot snapshot = metrics.snapshot(true);
+        assertEquals(1, snapshot.getCounter(RequestMetrics.COUNTER_MISS));
+        assertEquals(1, snapshot.getHistogram(RequestMetrics.HISTOGRAM_WAIT).getTotalCount());
+        assertEquals(0, counter(metrics, RequestMetrics.COUNTER_MISS));
+        assertEquals(0, count(metrics, RequestMetrics.HISTOGRAM_WAIT));
+
+        // The pending request is kept
+        metrics.onSucceed(KEY);
+        assertEquals(1, count(metrics, RequestMetrics.HISTOGRAM_SUCCEED));
+    }
+
+    @Test
+    public void stopDropsPending() {
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.onRequest(KEY, false);
+        metrics.onStop();
+        metrics.onSucceed(KEY);
+        assertEquals(0, count(metrics, RequestMetrics.HISTOGRAM_SUCCEED));
+        // Still decoded
+        assertEquals(1, counter(metrics, RequestMetrics.COUNTER_DECODE));
+    }
+
+    @Test
+    public void manyPendingRequests() {
+        final RequestMetrics metrics = new RequestMetrics();
+        // Never notified, dropped beyond the limit
+        for (long key = 0; key < 1000; key++) {
+            metrics.onRequest(key, false);
+        }
+        metrics.onSucceed(999L);
+        assertEquals(1, count(metrics, RequestMetrics.HISTOGRAM_SUCCEED));
+        assertEquals(1000, counter(metrics, RequestMetrics.COUNTER_MISS));
+    }
+}
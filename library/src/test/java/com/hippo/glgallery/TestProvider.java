@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Records calls to the provider, decodes nothing
+class TestProvider extends GalleryProvider {
+
+    final List<String> calls = new ArrayList<>();
+    // The token of the latest request or prefetch
+    CancellationToken token;
+
+    @Override
+    public int getChapterCount() {
+        return 1;
+    }
+
+    @Override
+    public int getPageCount(int chapter) {
+        return 100;
+    }
+
+    @Override
+    protected void onRequestChapter(int chapter) {}
+
+    @Override
+    protected void onRequest(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {
+        calls.add("request " + chapter + ":" + index);
+        this.token = token;
+    }
+
+    @Override
+    protected void onForceRequest(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {
+        calls.add("forceRequest " + chapter + ":" + index);
+        this.token = token;
+    }
+
+    @Override
+    protected void onCancelRequest(int chapter, int index) {
+        calls.add("cancelRequest " + chapter + ":" + index);
+    }
+
+    @Override
+    protected void onPrefetch(int chapter, int index, int targetWidth, int targetHeight,
+            CancellationToken token) {
+        calls.add("prefetch " + chapter + ":" + index);
+        this.token = token;
+    }
+
+    @Override
+    protected void onCancelPrefetch(int chapter, int index) {
+        calls.add("cancelPrefetch " + chapter + ":" + index);
+    }
+
+    @Override
+    public String getError() {
+        return null;
+    }
+
+    @Override
+    public String getError(int chapter) {
+        return null;
+    }
+
+    // Return and clear calls
+    List<String> takeCalls() {
+        final List<String> result = new ArrayList<>(calls);
+        calls.clear();
+        return result;
+    }
+}
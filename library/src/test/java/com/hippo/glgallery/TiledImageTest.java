@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.glgallery;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TiledImageTest {
+
+    @Test
+    public void sampleSize() {
+        assertEquals(1, TiledImage.getSampleSize(0.0f));
+        assertEquals(1, TiledImage.getSampleSize(2.0f));
+        assertEquals(1, TiledImage.getSampleSize(1.0f));
+        assertEquals(1, TiledImage.getSampleSize(0.5f));
+        assertEquals(2, TiledImage.getSampleSize(0.49f));
+        assertEquals(2, TiledImage.getSampleSize(0.26f));
+        assertEquals(4, TiledImage.getSampleSize(0.25f));
+        assertEquals(4, TiledImage.getSampleSize(0.2f));
+        assertEquals(8, TiledImage.getSampleSize(0.1f));
+    }
+
+    @Test
+    public void tileCount() {
+        assertEquals(0, TiledImage.getTileCount(0, 512));
+        assertEquals(1, TiledImage.getTileCount(1, 512));
+        assertEquals(1, TiledImage.getTileCount(512, 512));
+        assertEquals(2, TiledImage.getTileCount(513, 512));
+        assertEquals(20, TiledImage.getTileCount(20000, 1024));
+    }
+
+    @Test
+    public void tileRange() {
+        // Edges belong to the tile after them
+        assertEquals(0, TiledImage.getFirstTile(0.0f, 512));
+        assertEquals(0, TiledImage.getFirstTile(511.9f, 512));
+        assertEquals(1, TiledImage.getFirstTile(512.0f, 512));
+        assertEquals(0, TiledImage.getLastTile(512.0f, 512, 4));
+        assertEquals(1, TiledImage.getLastTile(512.5f, 512, 4));
+        // Out of the page
+        assertEquals(0, TiledImage.getFirstTile(-100.0f, 512));
+        assertEquals(3, TiledImage.getLastTile(5000.0f, 512, 4));
+    }
+
+    // Tiles from first to last cover the range, and each of them intersects it
+    @Test
+    public void randomRanges() {
+        final Random random = new Random(5);
+        for (int i = 0; i < 10000; i++) {
+            final int span = TiledImage.TILE_SIZE << random.nextInt(4);
+            final int length = 1 + random.nextInt(30000);
+            final int count = TiledImage.getTileCount(length, span);
+            final float start = random.nextFloat() * (length - 1);
+            final float end = Math.min(length, start + 0.01f + random.nextFloat() * 3000);
+            final int first = TiledImage.getFirstTile(start, span);
+            final int last = TiledImage.getLastTile(end, span, count);
+
+            assertTrue(first <= last);
+            assertTrue(first >= 0 && last < count);
+            assertTrue((long) first * span <= start);
+            assertTrue(Math.min(length, (long) (last + 1) * span) >= end);
+            assertTrue((long) (first + 1) * span > start);
+            assertTrue((long) last * span < end);
+        }
+    }
+}
@@ -16,17 +16,19 @@ public class Main {
 
     private static final String METHOD_GALLERY_VIEW_POSTMAN_CONSTRUCTOR =
             "GalleryViewPostman(GalleryView galleryView) {\n" +
+            "    super(FLOAT_COUNT, LONG_COUNT);\n" +
             "    mGalleryView = galleryView;\n" +
             "}";
 
     private static final String METHOD_PROVIDER_ADAPTER_POSTMAN_CONSTRUCTOR =
             "ProviderAdapterPostman(ProviderAdapter providerAdapter) {\n" +
+            "    super(FLOAT_COUNT, LONG_COUNT);\n" +
             "    mProviderAdapter = providerAdapter;\n" +
             "}";
 
     private static final String METHOD_HANDLE_METHOD_PART1 =
             "@Override\n" +
-            "protected void handleMethod(int method, Object... args) {\n" +
+            "protected void handleMethod(int method, int message) {\n" +
             "    switch (method) {\n";
 
     private static final String METHOD_HANDLE_METHOD_PART2 =
@@ -35,33 +37,47 @@ public class Main {
             "    }\n" +
             "}";
 
+    private static final String TYPE_FLOAT = "float";
+    private static final String TYPE_LONG = "long";
+    private static final String TYPE_INT = "int";
+    private static final String TYPE_BOOLEAN = "boolean";
+
+    // Consecutive calls of a method with summed arguments are coalesced into one.
+    // Summed arguments end with SUFFIX_SUM, others take the latest value.
+    private static final String SUFFIX_SUM = "+";
+
     private static final String[][] METHOD_GALLERY_VIEW_POSTMAN_ARRAY = {
-            {"setLayoutMode", "Integer"},
-            {"setScaleMode", "Integer"},
-            {"setStartPosition", "Integer"},
+            {"setLayoutMode", "int"},
+            {"setScaleMode", "int"},
+            {"setStartPosition", "int"},
             {"pageNext"},
             {"pagePrevious"},
-            {"pageToId", "Integer"},
-            {"scaleToNextLevel", "Float", "Float"},
-
-            {"onSingleTapUp", "Float", "Float"},
-            {"onSingleTapConfirmed", "Float", "Float"},
-            {"onDoubleTap", "Float", "Float"},
-            {"onDoubleTapConfirmed", "Float", "Float"},
-            {"onLongPress", "Float", "Float"},
-            {"onScroll", "Float", "Float", "Float", "Float", "Float", "Float"},
-            {"onFling", "Float", "Float"},
-            {"onScaleBegin", "Float", "Float"},
-            {"onScale", "Float", "Float", "Float"},
+            {"pageToId", "long"},
+            {"scaleToNextLevel", "float", "float"},
+
+            {"onSingleTapUp", "float", "float"},
+            {"onSingleTapConfirmed", "float", "float"},
+            {"onDoubleTap", "float", "float"},
+            {"onDoubleTapConfirmed", "float", "float"},
+            {"onLongPress", "float", "float"},
+            {"onScroll", "float+", "float+", "float", "float", "float", "float"},
+            {"onFling", "float", "float"},
+            {"onScaleBegin", "float", "float"},
+            {"onScale", "float", "float", "float"},
             {"onScaleEnd"},
-            {"onDown", "Float", "Float"},
+            {"onDown", "float", "float"},
             {"onUp"},
-            {"onPointerDown", "Float", "Float"},
+            {"onPointerDown", "float", "float"},
             {"onPointerUp"},
     };
     private static final String[][] METHOD_PROVIDER_ADAPTER_POSTMAN_ARRAY = {
-            {"setClipMode", "Integer"},
-            {"setShowIndex", "Boolean"},
+            {"trimMemory", "int"},
+            {"setClipMode", "int"},
+            {"setShowIndex", "boolean"},
+            {"setScrubbing", "boolean"},
+            {"seekTo", "int", "int"},
+            {"seekToGlobalPage", "long"},
+            {"finishSeek", "long"},
     };
 
     public static void main(String[] args) throws IOException {
@@ -77,6 +93,7 @@ public class Main {
         javaClass.setSuperType("Postman");
 
         javaClass.addField("private final GalleryView mGalleryView");
+        addArgumentCountFields(javaClass, METHOD_GALLERY_VIEW_POSTMAN_ARRAY);
         javaClass.addMethod(METHOD_GALLERY_VIEW_POSTMAN_CONSTRUCTOR).setConstructor(true);
         addDispatchMethod(javaClass, METHOD_GALLERY_VIEW_POSTMAN_ARRAY, "mGalleryView");
 
@@ -95,6 +112,7 @@ public class Main {
         javaClass.setSuperType("Postman");
 
         javaClass.addField("private final ProviderAdapter mProviderAdapter");
+        addArgumentCountFields(javaClass, METHOD_PROVIDER_ADAPTER_POSTMAN_ARRAY);
         javaClass.addMethod(METHOD_PROVIDER_ADAPTER_POSTMAN_CONSTRUCTOR).setConstructor(true);
         addDispatchMethod(javaClass, METHOD_PROVIDER_ADAPTER_POSTMAN_ARRAY, "mProviderAdapter");
 
@@ -105,6 +123,40 @@ public class Main {
         fileWriter.close();
     }
 
+    // Each message has room for the most float and long arguments of all methods
+    private static void addArgumentCountFields(JavaClassSource javaClass, String[][] methodArray) {
+        int floatCount = 0;
+        int longCount = 0;
+        for (final String[] method : methodArray) {
+            int f = 0;
+            int l = 0;
+            for (int i = 1; i < method.length; i++) {
+                if (isFloat(method[i])) {
+                    f++;
+                } else {
+                    l++;
+                }
+            }
+            floatCount = Math.max(floatCount, f);
+            longCount = Math.max(longCount, l);
+        }
+
+        javaClass.addField()
+                .setPrivate()
+                .setStatic(true)
+                .setFinal(true)
+                .setName("FLOAT_COUNT")
+                .setType(int.class)
+                .setLiteralInitializer(Integer.toString(floatCount));
+        javaClass.addField()
+                .setPrivate()
+                .setStatic(true)
+                .setFinal(true)
+                .setName("LONG_COUNT")
+                .setType(int.class)
+                .setLiteralInitializer(Integer.toString(longCount));
+    }
+
     private static void addDispatchMethod(JavaClassSource javaClass, String[][] methodArray, String obj) {
         for (int i = 0; i < methodArray.length; i++) {
             final String[] method = methodArray[i];
@@ -117,16 +169,24 @@ public class Main {
                     .setLiteralInitializer(Integer.toString(i));
         }
 
+        for (final String[] method : methodArray) {
+            javaClass.addMethod(getPostMethod(method));
+        }
+
         final StringBuilder methodDispatchMethod = new StringBuilder(METHOD_HANDLE_METHOD_PART1);
         for (final String[] method : methodArray) {
             methodDispatchMethod.append("            case ").append(getMethodIdName(method)).append(":\n");
             methodDispatchMethod.append("                ").append(obj).append(".").append(method[0]).append("Internal(");
+            int floatIndex = 0;
+            int longIndex = 0;
             for (int i = 1; i < method.length; i++) {
-                final String type = method[i];
+                final String type = getType(method[i]);
                 if (i != 1) {
                     methodDispatchMethod.append(", ");
                 }
-                methodDispatchMethod.append("(").append(type).append(") args[").append(i - 1).append("]");
+                final int index = isFloat(type) ? floatIndex++ : longIndex++;
+                methodDispatchMethod.append("get").append(capitalize(type))
+                        .append("(message, ").append(index).append(")");
             }
             methodDispatchMethod.append(");\n");
             methodDispatchMethod.append("                break;\n");
@@ -135,7 +195,85 @@ public class Main {
         javaClass.addMethod(methodDispatchMethod.toString());
     }
 
+    // Like:
+    // void postOnScroll(float arg0, float arg1, ...) {
+    //     synchronized (this) {
+    //         int message = getLastMessage(METHOD_ON_SCROLL);
+    //         if (message != INVALID_MESSAGE) {
+    //             addFloat(message, 0, arg0);
+    //             ...
+    //         } else {
+    //             message = obtainMessage(METHOD_ON_SCROLL);
+    //             putFloat(message, 0, arg0);
+    //             ...
+    //         }
+    //     }
+    //     request();
+    // }
+    private static String getPostMethod(String[] method) {
+        final String id = getMethodIdName(method);
+        final StringBuilder sb = new StringBuilder("void post").append(capitalize(method[0])).append("(");
+        boolean coalesced = false;
+        for (int i = 1; i < method.length; i++) {
+            if (i != 1) {
+                sb.append(", ");
+            }
+            sb.append(getType(method[i])).append(" arg").append(i - 1);
+            coalesced |= method[i].endsWith(SUFFIX_SUM);
+        }
+        sb.append(") {\n");
+        sb.append("    synchronized (this) {\n");
+        if (coalesced) {
+            sb.append("        int message = getLastMessage(").append(id).append(");\n");
+            sb.append("        if (message != INVALID_MESSAGE) {\n");
+            appendPutArguments(sb, method, "            ", true);
+            sb.append("        } else {\n");
+            sb.append("            message = obtainMessage(").append(id).append(");\n");
+            appendPutArguments(sb, method, "            ", false);
+            sb.append("        }\n");
+        } else {
+            sb.append("        final int message = obtainMessage(").append(id).append(");\n");
+            appendPutArguments(sb, method, "        ", false);
+        }
+        sb.append("    }\n");
+        sb.append("    request();\n");
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private static void appendPutArguments(StringBuilder sb, String[] method, String indent, boolean merge) {
+        int floatIndex = 0;
+        int longIndex = 0;
+        for (int i = 1; i < method.length; i++) {
+            final String type = getType(method[i]);
+            final int index = isFloat(type) ? floatIndex++ : longIndex++;
+            final String action = merge && method[i].endsWith(SUFFIX_SUM) ? "add" : "put";
+            sb.append(indent).append(action).append(capitalize(type))
+                    .append("(message, ").append(index).append(", arg").append(i - 1).append(");\n");
+        }
+    }
+
+    private static String getType(String arg) {
+        final String type = arg.endsWith(SUFFIX_SUM) ?
+                arg.substring(0, arg.length() - SUFFIX_SUM.length()) : arg;
+        switch (type) {
+            case TYPE_FLOAT:
+            case TYPE_LONG:
+            case TYPE_INT:
+            case TYPE_BOOLEAN:
+                return type;
+            default:
+                throw new IllegalStateException("Unsupported type: " + type);
+        }
+    }
 
+    private static boolean isFloat(String arg) {
+        return TYPE_FLOAT.equals(getType(arg));
+    }
+
+    private static String capitalize(String str) {
+        return Character.toUpperCase(str.charAt(0)) + str.substring(1);
+    }
 
     private static String getMethodIdName(String[] method) {
         final String methodName = method[0];